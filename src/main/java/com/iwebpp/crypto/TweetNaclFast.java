@@ -590,6 +590,95 @@ public final class TweetNaclFast {
          * */
         public static final int boxzerobytesLength = 16;
 
+        // Scratch space of the in-place operations, which makes them unsafe for concurrent use of the same instance
+        private byte [] subkey, counter, block, polyKey, tag;
+        private poly1305 authenticator;
+        private int blockUsed;
+
+        /*
+         * @description
+         *   Encrypts and authenticates mlen bytes at position off+overheadLength of the buffer in place,
+         *   and writes the authenticator to the overheadLength bytes at off.
+         *   This produces the same output as box(), but does not allocate after the first call.
+         *
+         *   Returns the length of the box (mlen+overheadLength), or -1 if the arguments are invalid.
+         * */
+        public int sealInPlace(byte [] buffer, final int off, final int mlen, byte [] theNonce) {
+            if (!(buffer!=null && off>=0 && mlen>=0 && buffer.length>=(off+overheadLength+mlen) &&
+                    theNonce!=null && theNonce.length==nonceLength))
+                return -1;
+
+            final int mpos = off + overheadLength;
+            startStream(theNonce);
+            streamXor(buffer, mpos, mlen);
+            authenticator.reset(polyKey).update(buffer, mpos, mlen).finish(buffer, off);
+            return mlen + overheadLength;
+        }
+
+        /*
+         * @description
+         *   Authenticates and decrypts a box of boxlen bytes at position off of the buffer in place.
+         *   The decrypted message is written to position off+overheadLength, the buffer is not modified
+         *   if the authentication fails.
+         *   This accepts the same input as open(), but does not allocate after the first call.
+         *
+         *   Returns the length of the message (boxlen-overheadLength), or -1 if authentication fails.
+         * */
+        public int openInPlace(byte [] buffer, final int off, final int boxlen, byte [] theNonce) {
+            if (!(buffer!=null && off>=0 && boxlen>=overheadLength && buffer.length>=(off+boxlen) &&
+                    theNonce!=null && theNonce.length==nonceLength))
+                return -1;
+
+            final int cpos = off + overheadLength;
+            final int clen = boxlen - overheadLength;
+            startStream(theNonce);
+            authenticator.reset(polyKey).update(buffer, cpos, clen).finish(tag, 0);
+            if (crypto_verify_16(buffer, off, tag, 0) != 0)
+                return -1;
+            streamXor(buffer, cpos, clen);
+            return clen;
+        }
+
+        // Computes the first block of the xsalsa20 stream, the first 32 bytes of it are the poly1305 key
+        private void startStream(byte [] theNonce) {
+            if (subkey == null) {
+                subkey = new byte[32];
+                counter = new byte[16];
+                block = new byte[64];
+                polyKey = new byte[32];
+                tag = new byte[16];
+                authenticator = new poly1305(polyKey);
+            }
+
+            core_hsalsa20(subkey, theNonce, key, sigma);
+            for (int i = 0; i < 8; i++) counter[i] = theNonce[i+16];
+            for (int i = 8; i < 16; i++) counter[i] = 0;
+            core_salsa20(block, counter, subkey, sigma);
+            for (int i = 0; i < 32; i++) polyKey[i] = block[i];
+            blockUsed = 32;
+        }
+
+        private void streamXor(byte [] buffer, int pos, int len) {
+            while (len > 0) {
+                if (blockUsed == 64) {
+                    int u = 1;
+                    for (int i = 8; i < 16; i++) {
+                        u = u + (counter[i] & 0xff) | 0;
+                        counter[i] = (byte) (u & 0xff);
+                        u >>>= 8;
+                    }
+                    core_salsa20(block, counter, subkey, sigma);
+                    blockUsed = 0;
+                }
+                int n = Math.min(64 - blockUsed, len);
+                for (int i = 0; i < n; i++)
+                    buffer[pos+i] ^= block[blockUsed+i];
+                blockUsed += n;
+                pos += n;
+                len -= n;
+            }
+        }
+
     }
 
     /*
@@ -1458,6 +1547,7 @@ public final class TweetNaclFast {
         private int[] r;
         private int[] h;
         private int[] pad;
+        private int[] g;
         private int leftover;
         private int fin;
 
@@ -1466,8 +1556,18 @@ public final class TweetNaclFast {
             this.r = new int[10];
             this.h = new int[10];
             this.pad = new int[8];
+            this.g = new int[10];
+            reset(key);
+        }
+
+        /*
+         * @description
+         *   Starts a new authenticator with the provided key, reusing the state of this instance.
+         * */
+        public poly1305 reset(byte [] key) {
             this.leftover = 0;
             this.fin = 0;
+            for (int i = 0; i < 10; i++) this.h[i] = 0;
 
             int t0, t1, t2, t3, t4, t5, t6, t7;
 
@@ -1490,6 +1590,7 @@ public final class TweetNaclFast {
             this.pad[5] = key[26] & 0xff | (key[27] & 0xff) << 8;
             this.pad[6] = key[28] & 0xff | (key[29] & 0xff) << 8;
             this.pad[7] = key[30] & 0xff | (key[31] & 0xff) << 8;
+            return this;
         }
 
         public poly1305 blocks(byte [] m, int mpos, int bytes) {
@@ -1708,7 +1809,7 @@ public final class TweetNaclFast {
         }
 
         public poly1305 finish(byte [] mac, int macpos) {
-            int [] g = new int[10];
+            int [] g = this.g;
             int c, mask, f, i;
 
             if (this.leftover != 0) {
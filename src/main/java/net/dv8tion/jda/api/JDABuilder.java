@@ -20,7 +20,9 @@ import net.dv8tion.jda.annotations.DeprecatedSince;
 import net.dv8tion.jda.annotations.ReplaceWith;
 import net.dv8tion.jda.api.audio.factory.IAudioSendFactory;
 import net.dv8tion.jda.api.entities.Activity;
+import net.dv8tion.jda.api.hooks.EventBackpressure;
 import net.dv8tion.jda.api.hooks.IEventManager;
+import net.dv8tion.jda.api.hooks.PartitionedEventExecutor;
 import net.dv8tion.jda.api.hooks.VoiceDispatchInterceptor;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.requests.RestAction;
@@ -41,6 +43,7 @@ import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.security.auth.login.LoginException;
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
@@ -69,6 +72,8 @@ public class JDABuilder
     protected boolean shutdownCallbackPool = true;
     protected ExecutorService eventPool = null;
     protected boolean shutdownEventPool = true;
+    protected PartitionedEventExecutor partitionedEventPool = null;
+    protected EventBackpressure eventBackpressure = null;
     protected ScheduledExecutorService audioPool = null;
     protected boolean shutdownAudioPool = true;
     protected EnumSet<CacheFlag> cacheFlags = EnumSet.allOf(CacheFlag.class);
@@ -93,6 +98,7 @@ public class JDABuilder
     protected EnumSet<ConfigFlag> flags = ConfigFlag.getDefault();
     protected ChunkingFilter chunkingFilter = ChunkingFilter.ALL;
     protected MemberCachePolicy memberCachePolicy = MemberCachePolicy.ALL;
+    protected File snapshotDirectory;
     protected GatewayEncoding encoding = GatewayEncoding.JSON;
 
     private JDABuilder(@Nullable String token, int intents)
@@ -1110,6 +1116,55 @@ public class JDABuilder
         return this;
     }
 
+    /**
+     * Sets the {@link PartitionedEventExecutor} that should be used by the event proxy to schedule events.
+     * <br>Events with the same partition key are handled in order, while events of different partitions are handled in parallel.
+     * When this is set, the {@link #setEventPool(ExecutorService) event pool} is not used.
+     *
+     * <p>The executor of the partitioned pool will not be shutdown automatically when JDA is shutdown.
+     *
+     * @param  executor
+     *         The partitioned executor for the event proxy, or null to use the event pool
+     *
+     * @return The JDABuilder instance. Useful for chaining.
+     *
+     * @see    PartitionedEventExecutor
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public JDABuilder setPartitionedEventPool(@Nullable PartitionedEventExecutor executor)
+    {
+        this.partitionedEventPool = executor;
+        return this;
+    }
+
+    /**
+     * Sets the {@link EventBackpressure} used to shed events while the event pool is overloaded.
+     * <br>Once the amount of pending events reaches the queue limit, events are dropped or coalesced according to
+     * the policy of their type. This prevents slow listeners from building up an unbounded backlog.
+     *
+     * <p>This only applies when an {@link #setEventPool(ExecutorService) event pool} or
+     * {@link #setPartitionedEventPool(PartitionedEventExecutor) partitioned event pool} is used.
+     *
+     * <p>Default: {@code null}, all events are handled
+     *
+     * @param  backpressure
+     *         The backpressure policy, or null to handle all events
+     *
+     * @return The JDABuilder instance. Useful for chaining.
+     *
+     * @see    EventBackpressure#createDefault(int)
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public JDABuilder setEventBackpressure(@Nullable EventBackpressure backpressure)
+    {
+        this.eventBackpressure = backpressure;
+        return this;
+    }
+
     /**
      * Sets the {@link ScheduledExecutorService ScheduledExecutorService} used by
      * the audio WebSocket connection. Used for sending keepalives and closing the connection.
@@ -1250,6 +1305,82 @@ public class JDABuilder
         return this;
     }
 
+    /**
+     * Whether voice connections should use a non-blocking {@link java.nio.channels.DatagramChannel DatagramChannel}
+     * instead of a blocking {@link java.net.DatagramSocket DatagramSocket}.
+     * <br><b>Default</b>: {@code false}
+     *
+     * <p>With the blocking socket, every voice connection that receives audio uses its own thread.
+     * When enabled, all connections are served by a few selector threads shared by the entire JVM,
+     * which read packets into pooled direct buffers. Receive handlers are then called on these shared threads
+     * and should not block.
+     *
+     * <p>The {@link net.dv8tion.jda.api.audio.factory.IPacketProvider#getUdpSocket() socket} provided to
+     * {@link net.dv8tion.jda.api.audio.factory.IAudioSendSystem send systems} cannot be used to send packets in this mode,
+     * custom send systems have to use {@link net.dv8tion.jda.api.audio.factory.IPacketProvider#getUdpChannel()} instead.
+     * The send systems provided by JDA support both modes.
+     *
+     * @param  enable
+     *         True, to use the non-blocking transport for voice connections
+     *
+     * @return The JDABuilder instance. Useful for chaining.
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public JDABuilder setNioAudioEnabled(boolean enable)
+    {
+        return setFlag(ConfigFlag.NIO_AUDIO, enable);
+    }
+
+    /**
+     * Whether received audio should be decoded on a pool of decoder threads shared by the entire JVM.
+     * <br><b>Default</b>: {@code false}
+     *
+     * <p>By default, every packet is decrypted and decoded on the thread receiving packets for the voice connection.
+     * When enabled, that thread only decrypts packets and passes them to {@link net.dv8tion.jda.api.audio.AudioReceiveHandler#handleEncodedAudio(net.dv8tion.jda.api.audio.OpusPacket) handleEncodedAudio},
+     * the decoding for {@link net.dv8tion.jda.api.audio.AudioReceiveHandler#handleUserAudio(net.dv8tion.jda.api.audio.UserAudio) user}
+     * and {@link net.dv8tion.jda.api.audio.AudioReceiveHandler#handleCombinedAudio(net.dv8tion.jda.api.audio.CombinedAudio) combined} audio
+     * is distributed over the pool. All packets of one speaker are decoded by the same thread and stay in order.
+     * <br>This is useful for connections with many simultaneous speakers. {@code handleUserAudio} is then called on the decoder threads.
+     *
+     * @param  enable
+     *         True, to decode received audio on the shared decoder pool
+     *
+     * @return The JDABuilder instance. Useful for chaining.
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public JDABuilder setAudioDecodePoolEnabled(boolean enable)
+    {
+        return setFlag(ConfigFlag.AUDIO_DECODE_POOL, enable);
+    }
+
+    /**
+     * Whether all voice connections should send and receive through a single UDP socket shared by the entire JVM.
+     * <br><b>Default</b>: {@code false}
+     *
+     * <p>By default, every voice connection opens its own socket and performs its own IP discovery.
+     * When enabled, all connections use one non-blocking socket, received packets are routed to the connection
+     * by the address of the voice server and the SSRC of the speaker. The external address of the socket is only
+     * discovered once per voice server, which saves the round trips when many connections reconnect at once.
+     * <br>This uses the same selector threads as {@link #setNioAudioEnabled(boolean) the non-blocking transport}
+     * and has the same requirements for custom send systems.
+     *
+     * @param  enable
+     *         True, to share one UDP socket between all voice connections
+     *
+     * @return The JDABuilder instance. Useful for chaining.
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public JDABuilder setSharedVoiceSocketEnabled(boolean enable)
+    {
+        return setFlag(ConfigFlag.SHARED_VOICE_SOCKET, enable);
+    }
+
     /**
      * Sets whether or not we should mark our session as afk
      * <br>This value can be changed at any time in the {@link net.dv8tion.jda.api.managers.Presence Presence} from a JDA instance.
@@ -1483,6 +1614,85 @@ public class JDABuilder
         return this;
     }
 
+    /**
+     * Whether members should be built while the member chunks of a guild are received.
+     * <br><b>Default</b>: {@code false}
+     *
+     * <p>By default, the payload of every member is kept until the guild finished chunking, and all members are built at once.
+     * When enabled, members are built as soon as their chunk arrives and only the built members are kept,
+     * which greatly reduces the memory used while large guilds are chunking.
+     * The guild is still only added to the cache once all of its members were received,
+     * so the {@link net.dv8tion.jda.api.events.guild.GuildReadyEvent GuildReadyEvent} is not affected.
+     *
+     * @param  enable
+     *         True, to build members while chunking
+     *
+     * @return The JDABuilder instance. Useful for chaining.
+     *
+     * @see    #setChunkingFilter(ChunkingFilter)
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public JDABuilder setStreamingGuildSetupEnabled(boolean enable)
+    {
+        return setFlag(ConfigFlag.STREAMING_GUILD_SETUP, enable);
+    }
+
+    /**
+     * Directory used to store a snapshot of the member cache on shutdown.
+     * <br><b>Default</b>: {@code null}
+     *
+     * <p>When a directory is set, the members of all chunked guilds are written to a file in this directory
+     * when the session is shut down with {@link JDA#shutdown()}. On the next start, guilds which would require chunking
+     * are restored from this snapshot instead, which makes them available without waiting for their member chunks.
+     * The snapshot is only used for the first session and only if it was created for the same account and shard,
+     * snapshots older than 12 hours are ignored.
+     *
+     * <p>The restored members are reconciled with member chunks which are requested after all other chunk requests.
+     * Changes to members which happened while offline fire the usual update events and members which left are removed
+     * from the cache without an event.
+     *
+     * @param  directory
+     *         The directory for the snapshot files, or null to disable snapshots
+     *
+     * @return The JDABuilder instance. Useful for chaining.
+     *
+     * @see    #setChunkingFilter(ChunkingFilter)
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public JDABuilder setSnapshotDirectory(@Nullable File directory)
+    {
+        this.snapshotDirectory = directory;
+        return this;
+    }
+
+    /**
+     * Whether the member cache of each guild should keep indexes for name and role lookups.
+     * <br><b>Default</b>: {@code false}
+     *
+     * <p>When enabled, every guild keeps a sorted index of the user names and nicknames of its members,
+     * and an index of the members of each role. Lookups such as {@link net.dv8tion.jda.api.entities.Guild#getMembersByName(String, boolean) Guild.getMembersByName(...)},
+     * {@link net.dv8tion.jda.api.entities.Guild#getMembersWithRoles(net.dv8tion.jda.api.entities.Role...) Guild.getMembersWithRoles(...)}, and
+     * {@link net.dv8tion.jda.api.utils.cache.MemberCacheView#getElementsByPrefix(String, int) MemberCacheView.getElementsByPrefix(...)}
+     * then no longer have to check every cached member, at the cost of additional memory and slightly slower member updates.
+     * This is useful for large guilds with frequent lookups, such as autocomplete of member names.
+     *
+     * @param  enable
+     *         True, to index the member cache
+     *
+     * @return The JDABuilder instance. Useful for chaining.
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public JDABuilder setMemberIndexEnabled(boolean enable)
+    {
+        return setFlag(ConfigFlag.MEMBER_INDEX, enable);
+    }
+
     /**
      * Enable typing and presence update events.
      * <br>These events cover the majority of traffic happening on the gateway and thus cause a lot
@@ -1841,12 +2051,15 @@ public class JDABuilder
         threadingConfig.setGatewayPool(mainWsPool, shutdownMainWsPool);
         threadingConfig.setRateLimitPool(rateLimitPool, shutdownRateLimitPool);
         threadingConfig.setEventPool(eventPool, shutdownEventPool);
+        threadingConfig.setPartitionedEventPool(partitionedEventPool);
+        threadingConfig.setEventBackpressure(eventBackpressure);
         threadingConfig.setAudioPool(audioPool, shutdownAudioPool);
         SessionConfig sessionConfig = new SessionConfig(controller, httpClient, wsFactory, voiceDispatchInterceptor, flags, maxReconnectDelay, largeThreshold);
         MetaConfig metaConfig = new MetaConfig(maxBufferSize, contextMap, cacheFlags, flags);
 
         JDAImpl jda = new JDAImpl(authConfig, sessionConfig, threadingConfig, metaConfig);
         jda.setMemberCachePolicy(memberCachePolicy);
+        jda.setSnapshotDirectory(snapshotDirectory);
         // We can only do member chunking with the GUILD_MEMBERS intent
         if ((intents & GatewayIntent.GUILD_MEMBERS.getRawValue()) == 0)
             jda.setChunkingFilter(ChunkingFilter.NONE);
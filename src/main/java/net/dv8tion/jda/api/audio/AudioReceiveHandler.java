@@ -68,6 +68,40 @@ public interface AudioReceiveHandler
         return false;
     }
 
+    /**
+     * The maximum amount of 20 millisecond frames JDA may hold back per user to restore the order of received packets.
+     * <br>This only affects the decoded audio provided to {@link #handleUserAudio(UserAudio)} and {@link #handleCombinedAudio(CombinedAudio)},
+     * {@link #handleEncodedAudio(OpusPacket)} still receives every packet as soon as it arrives.
+     *
+     * <p>When this is greater than 0, audio is decoded in sequence order. Duplicated packets are discarded and lost packets are
+     * recovered with opus forward error correction or packet loss concealment. Frames are only held back while a packet is missing,
+     * the actual depth adapts to the measured jitter and is reported by {@link #handleReceiveStatistics(User, ReceiveStatistics)}.
+     * <br>Values above {@code 32} are treated as {@code 32}.
+     *
+     * <p>Default: {@code 0}, packets are decoded in the order they arrive
+     *
+     * @return The maximum jitter buffer depth in frames, or 0 to disable the jitter buffer
+     *
+     * @since  4.3.0
+     */
+    default int getJitterBufferDepth()
+    {
+        return 0;
+    }
+
+    /**
+     * If {@link #getJitterBufferDepth()} is greater than 0, JDA provides the reception statistics for a user
+     * to this method after every 50 received packets, which is about once per second of speech.
+     *
+     * @param  user
+     *         The user who sent the audio
+     * @param  statistics
+     *         The loss and jitter statistics of the audio stream of this user
+     *
+     * @since  4.3.0
+     */
+    default void handleReceiveStatistics(@Nonnull User user, @Nonnull ReceiveStatistics statistics) {}
+
     /**
      * If {@link #canReceiveEncoded()} returns true, JDA will provide raw {@link net.dv8tion.jda.api.audio.OpusPacket OpusPackets}
      * to this method <b>every 20 milliseconds</b>. These packets are for specific users rather than a combined packet
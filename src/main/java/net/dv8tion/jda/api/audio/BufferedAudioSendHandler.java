@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.audio;
+
+import net.dv8tion.jda.internal.audio.AudioConnection;
+import net.dv8tion.jda.internal.audio.Encoder;
+import net.dv8tion.jda.internal.utils.Checks;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link AudioSendHandler} which polls another handler ahead of time on its own thread.
+ *
+ * <p>The source handler is polled by a producer thread, which encodes PCM audio to opus and stores the frames
+ * in a lock-free ring buffer. Opus audio of the source is passed through without decoding.
+ * The sending thread of the voice connection only takes the next frame from the ring,
+ * so a slow source or a garbage collection pause is absorbed by the buffered frames instead of causing a missed frame.
+ * All frame buffers and the encoder buffers are allocated once and reused.
+ *
+ * <p>The producer thread is started by the first call to {@link #canProvide()} and stopped by {@link #close()}.
+ * It also stops once the handler was not polled for {@value #STOP_TIMEOUT_SECONDS} seconds,
+ * for instance because it was replaced or the connection was closed, and is started again by the next poll.
+ * The audio of the source is delayed by up to the amount of buffered frames.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * AudioSendHandler handler = new BufferedAudioSendHandler(playerSendHandler, 10); // 200ms of audio
+ * guild.getAudioManager().setSendingHandler(handler);
+ * }</pre>
+ *
+ * @since 4.3.0
+ */
+public class BufferedAudioSendHandler implements AudioSendHandler, AutoCloseable
+{
+    /** Large enough for any opus frame of 20ms */
+    private static final int MAX_FRAME_SIZE = 4096;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(OpusPacket.OPUS_FRAME_TIME_AMOUNT / 4);
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    /** The producer stops after the sending thread did not poll the handler for this amount of seconds */
+    public static final int STOP_TIMEOUT_SECONDS = 5;
+    private static final long STOP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(STOP_TIMEOUT_SECONDS);
+
+    protected final AudioSendHandler source;
+    protected final ByteBuffer[] frames;
+    protected final int mask;
+    protected final int limit;
+    // head is owned by the consumer, tail by the producer
+    protected final AtomicLong head = new AtomicLong();
+    protected final AtomicLong tail = new AtomicLong();
+
+    // consumer state, the frame returned by the last provide call is only released by the next call
+    // volatile since getBufferedFrames() can be called from any thread
+    private volatile boolean pendingRelease;
+
+    private volatile Thread producer;
+    private volatile boolean closed;
+    // set once creating an encoder failed, the PCM audio of the source is dropped from then on
+    private volatile boolean encoderUnavailable;
+    private volatile long lastPoll;
+
+    /**
+     * Creates a new buffered handler.
+     *
+     * @param  source
+     *         The handler to poll ahead of time, it is called on the producer thread
+     * @param  bufferedFrames
+     *         The amount of 20ms frames to buffer
+     *
+     * @throws IllegalArgumentException
+     *         If the source is null or the amount of frames is not between 1 and 512
+     */
+    public BufferedAudioSendHandler(@Nonnull AudioSendHandler source, int bufferedFrames)
+    {
+        Checks.notNull(source, "Source");
+        Checks.check(bufferedFrames >= 1 && bufferedFrames <= 512, "Buffered frames must be between 1 and 512. Provided: %d", bufferedFrames);
+        this.source = source;
+        // one additional slot for the frame which is still read by the sending thread
+        this.limit = bufferedFrames + 1;
+        int capacity = Integer.highestOneBit(limit);
+        if (capacity < limit)
+            capacity <<= 1;
+        this.frames = new ByteBuffer[capacity];
+        for (int i = 0; i < capacity; i++)
+            frames[i] = ByteBuffer.allocate(MAX_FRAME_SIZE);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * The handler which is polled by the producer thread.
+     *
+     * @return The source handler
+     */
+    @Nonnull
+    public AudioSendHandler getSource()
+    {
+        return source;
+    }
+
+    /**
+     * The amount of frames which are ready to be sent.
+     * <br>This is only a snapshot, since the frames are produced and consumed concurrently.
+     *
+     * @return The amount of buffered frames
+     */
+    public int getBufferedFrames()
+    {
+        return (int) (tail.get() - head.get()) - (pendingRelease ? 1 : 0);
+    }
+
+    @Override
+    public boolean canProvide()
+    {
+        if (closed)
+            return false;
+        lastPoll = System.nanoTime();
+        if (producer == null)
+            start();
+        release();
+        return tail.get() != head.get();
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer provide20MsAudio()
+    {
+        release();
+        long index = head.get();
+        if (tail.get() == index)
+            return null;
+        pendingRelease = true;
+        return frames[(int) (index & mask)];
+    }
+
+    @Override
+    public boolean isOpus()
+    {
+        return true;
+    }
+
+    /**
+     * Stops the producer thread and discards all buffered frames.
+     * <br>The source handler is not closed.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        Thread thread = producer;
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    protected synchronized void start()
+    {
+        if (producer != null || closed)
+            return;
+        Thread thread = new Thread(this::produce, "BufferedAudioSendHandler " + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        thread.setPriority((Thread.NORM_PRIORITY + Thread.MAX_PRIORITY) / 2);
+        producer = thread;
+        thread.start();
+    }
+
+    // Stops the producer if the handler is no longer polled, the next poll starts a new producer
+    private synchronized boolean stopIfIdle()
+    {
+        if (System.nanoTime() - lastPoll < STOP_TIMEOUT_NANOS)
+            return false;
+        producer = null;
+        return true;
+    }
+
+    private void release()
+    {
+        if (!pendingRelease)
+            return;
+        pendingRelease = false;
+        head.lazySet(head.get() + 1);
+        Thread thread = producer;
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    private void produce()
+    {
+        // every producer thread has its own encoder, a stopped producer might still close it while the next one starts
+        Encoder encoder = null;
+        try
+        {
+            while (!closed && !stopIfIdle())
+            {
+                long index = tail.get();
+                if (index - head.get() >= limit || !source.canProvide())
+                {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                    continue;
+                }
+
+                ByteBuffer audio = source.provide20MsAudio();
+                if (audio != null && audio.hasRemaining() && !source.isOpus())
+                {
+                    if (encoder == null && !encoderUnavailable)
+                        encoder = createEncoder();
+                    audio = encoder == null ? null : encoder.encode(audio);
+                }
+                if (audio == null || !audio.hasRemaining())
+                {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                    continue;
+                }
+                if (audio.remaining() > MAX_FRAME_SIZE)
+                {
+                    AudioConnection.LOG.warn("Dropping opus frame of {} bytes provided by {}", audio.remaining(), source);
+                    continue;
+                }
+
+                ByteBuffer frame = frames[(int) (index & mask)];
+                ((Buffer) frame).clear();
+                frame.put(audio);
+                ((Buffer) frame).flip();
+                tail.lazySet(index + 1);
+            }
+        }
+        catch (Exception e)
+        {
+            AudioConnection.LOG.error("There was an error while buffering audio of {}", source, e);
+            closed = true;
+        }
+        finally
+        {
+            if (encoder != null)
+                encoder.close();
+        }
+    }
+
+    private Encoder createEncoder()
+    {
+        Encoder encoder = Encoder.create();
+        if (encoder == null)
+        {
+            // creating the encoder is not retried for every frame
+            encoderUnavailable = true;
+            AudioConnection.LOG.warn("Could not create an opus encoder, the PCM audio of {} is dropped", source);
+        }
+        return encoder;
+    }
+}
@@ -21,7 +21,7 @@ import net.dv8tion.jda.internal.audio.Decoder;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
@@ -44,7 +44,7 @@ public final class OpusPacket implements Comparable<OpusPacket>
     public static final int OPUS_CHANNEL_COUNT = 2;
 
     private final long userId;
-    private final byte[] opusAudio;
+    private final ByteBuffer opusAudio;
     private final Decoder decoder;
     private final AudioPacket rawPacket;
 
@@ -56,7 +56,7 @@ public final class OpusPacket implements Comparable<OpusPacket>
         this.rawPacket = packet;
         this.userId = userId;
         this.decoder = decoder;
-        this.opusAudio = packet.getEncodedAudio().array();
+        this.opusAudio = packet.getEncodedAudio();
     }
 
     /**
@@ -128,7 +128,9 @@ public final class OpusPacket implements Comparable<OpusPacket>
     public byte[] getOpusAudio()
     {
         //prevent write access to backing array
-        return Arrays.copyOf(opusAudio, opusAudio.length);
+        byte[] audio = new byte[opusAudio.remaining()];
+        opusAudio.duplicate().get(audio);
+        return audio;
     }
 
     /**
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.audio;
+
+/**
+ * Snapshot of the reception quality for the audio stream of one user.
+ * <br>All counters are totals since JDA started buffering the stream.
+ *
+ * @see AudioReceiveHandler#handleReceiveStatistics(net.dv8tion.jda.api.entities.User, ReceiveStatistics)
+ *
+ * @since 4.3.0
+ */
+public class ReceiveStatistics
+{
+    protected final int ssrc;
+    protected final long packetsReceived;
+    protected final long packetsLost;
+    protected final long packetsLate;
+    protected final long packetsDuplicated;
+    protected final long packetsReordered;
+    protected final long framesConcealed;
+    protected final long framesRecovered;
+    protected final double jitter;
+    protected final int bufferDepth;
+
+    public ReceiveStatistics(int ssrc, long packetsReceived, long packetsLost, long packetsLate, long packetsDuplicated,
+                             long packetsReordered, long framesConcealed, long framesRecovered, double jitter, int bufferDepth)
+    {
+        this.ssrc = ssrc;
+        this.packetsReceived = packetsReceived;
+        this.packetsLost = packetsLost;
+        this.packetsLate = packetsLate;
+        this.packetsDuplicated = packetsDuplicated;
+        this.packetsReordered = packetsReordered;
+        this.framesConcealed = framesConcealed;
+        this.framesRecovered = framesRecovered;
+        this.jitter = jitter;
+        this.bufferDepth = bufferDepth;
+    }
+
+    /**
+     * The SSRC of the audio stream.
+     *
+     * @return The SSRC
+     */
+    public int getSSRC()
+    {
+        return ssrc;
+    }
+
+    /**
+     * The amount of packets received, including late and duplicated packets.
+     *
+     * @return The amount of received packets
+     */
+    public long getPacketsReceived()
+    {
+        return packetsReceived;
+    }
+
+    /**
+     * The amount of packets which were missing when their turn came to be decoded.
+     *
+     * @return The amount of lost packets
+     */
+    public long getPacketsLost()
+    {
+        return packetsLost;
+    }
+
+    /**
+     * The amount of packets which arrived after their frame was already concealed and were discarded.
+     *
+     * @return The amount of late packets
+     */
+    public long getPacketsLate()
+    {
+        return packetsLate;
+    }
+
+    /**
+     * The amount of packets which were received more than once.
+     *
+     * @return The amount of duplicated packets
+     */
+    public long getPacketsDuplicated()
+    {
+        return packetsDuplicated;
+    }
+
+    /**
+     * The amount of packets which arrived after a packet with a higher sequence number and were put back in order.
+     *
+     * @return The amount of reordered packets
+     */
+    public long getPacketsReordered()
+    {
+        return packetsReordered;
+    }
+
+    /**
+     * The amount of lost frames which were replaced by opus packet loss concealment.
+     *
+     * @return The amount of concealed frames
+     */
+    public long getFramesConcealed()
+    {
+        return framesConcealed;
+    }
+
+    /**
+     * The amount of lost frames which were recovered from the forward error correction data of the following packet.
+     *
+     * @return The amount of recovered frames
+     */
+    public long getFramesRecovered()
+    {
+        return framesRecovered;
+    }
+
+    /**
+     * The interarrival jitter as defined by RFC 3550, in milliseconds.
+     *
+     * @return The jitter in milliseconds
+     */
+    public double getJitter()
+    {
+        return jitter;
+    }
+
+    /**
+     * The amount of frames currently held back to wait for missing packets.
+     * <br>This adapts to the jitter and never exceeds {@link AudioReceiveHandler#getJitterBufferDepth()}.
+     *
+     * @return The current buffer depth in frames
+     */
+    public int getBufferDepth()
+    {
+        return bufferDepth;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ReceiveStatistics(ssrc=" + ssrc + ", received=" + packetsReceived + ", lost=" + packetsLost +
+            ", late=" + packetsLate + ", jitter=" + String.format("%.2fms", jitter) + ", depth=" + bufferDepth + ")";
+    }
+}
@@ -17,6 +17,7 @@
 package net.dv8tion.jda.api.audio.factory;
 
 import net.dv8tion.jda.internal.audio.AudioConnection;
+import net.dv8tion.jda.internal.audio.VoiceSelector;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import org.slf4j.MDC;
 
@@ -25,6 +26,8 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.NoRouteToHostException;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.concurrent.ConcurrentMap;
 
 import static net.dv8tion.jda.api.audio.OpusPacket.OPUS_FRAME_TIME_AMOUNT;
@@ -54,6 +57,7 @@ public class DefaultSendSystem implements IAudioSendSystem
     public void start()
     {
         final DatagramSocket udpSocket = packetProvider.getUdpSocket();
+        final DatagramChannel udpChannel = packetProvider.getUdpChannel();
 
         sendThread = new Thread(() ->
         {
@@ -66,11 +70,22 @@ public class DefaultSendSystem implements IAudioSendSystem
                 try
                 {
                     boolean changeTalking = !sentPacket || (System.currentTimeMillis() - lastFrameSent) > OPUS_FRAME_TIME_AMOUNT;
-                    DatagramPacket packet = packetProvider.getNextPacket(changeTalking);
+                    if (udpChannel != null)
+                    {
+                        ByteBuffer packet = packetProvider.getNextPacketRaw(changeTalking);
+
+                        sentPacket = packet != null;
+                        if (sentPacket)
+                            VoiceSelector.getInstance().send(udpChannel, packet, packetProvider.getSocketAddress());
+                    }
+                    else
+                    {
+                        DatagramPacket packet = packetProvider.getNextPacket(changeTalking);
 
-                    sentPacket = packet != null;
-                    if (sentPacket)
-                        udpSocket.send(packet);
+                        sentPacket = packet != null;
+                        if (sentPacket)
+                            udpSocket.send(packet);
+                    }
                 }
                 catch (NoRouteToHostException e)
                 {
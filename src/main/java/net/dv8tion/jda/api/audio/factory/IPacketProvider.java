@@ -26,6 +26,7 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 
 /**
  * Represents the connection between a {@link net.dv8tion.jda.api.audio.factory.IAudioSendSystem IAudioSendSystem} and
@@ -66,6 +67,22 @@ public interface IPacketProvider
     @Nonnull
     DatagramSocket getUdpSocket();
 
+    /**
+     * The non-blocking {@link DatagramChannel} of this audio connection, if JDA uses the NIO voice transport.
+     * <br>In that case {@link #getUdpSocket()} returns the socket adapter of this channel, which cannot be used
+     * to send or receive packets since the channel is in non-blocking mode. Packets should be sent
+     * with {@link DatagramChannel#send(ByteBuffer, java.net.SocketAddress)} and {@link #getNextPacketRaw(boolean)} instead.
+     *
+     * @return The {@link DatagramChannel}, or {@code null} if this connection uses a blocking {@link DatagramSocket}
+     *
+     * @since  4.3.0
+     */
+    @Nullable
+    default DatagramChannel getUdpChannel()
+    {
+        return null;
+    }
+
     /**
      * The connected socket address for this audio connection. This can be useful for developers
      * to open their own socket for datagram sending and allows to avoid using {@link #getNextPacket(boolean)}.
@@ -0,0 +1,560 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.audio.factory;
+
+import net.dv8tion.jda.internal.audio.AudioConnection;
+import net.dv8tion.jda.internal.audio.VoiceSelector;
+import net.dv8tion.jda.internal.utils.Checks;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.net.DatagramPacket;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static net.dv8tion.jda.api.audio.OpusPacket.OPUS_FRAME_TIME_AMOUNT;
+
+/**
+ * {@link IAudioSendFactory} which sends the audio of all connections from a fixed amount of threads,
+ * instead of using one thread per connection like the {@link DefaultSendFactory}.
+ *
+ * <p>Every thread drives a timer wheel with one slot per millisecond of the 20ms opus frame.
+ * New connections are assigned to the least used slot of the least used thread, which spreads the sending of packets
+ * evenly over the frame. Deadlines are computed from a fixed start time, so the sleep inaccuracy of a tick does not
+ * accumulate over time. If a thread falls behind by more than 3 frames, for example due to a GC pause,
+ * the missed frames are skipped instead of being sent in a burst.
+ *
+ * <p>On each tick, the thread first retrieves the next packet of every connection in the slot and then sends them in one batch.
+ * Connections using the {@link IPacketProvider#getUdpChannel() non-blocking transport} send through pooled direct buffers.
+ * The timing of each connection can be inspected with {@link #getStatistics()}.
+ *
+ * <p>A factory instance can be shared by multiple JDA instances. Its threads are started when the first connection
+ * starts sending and should be stopped with {@link #shutdown()} once the factory is no longer used.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * MultiplexedSendFactory sendFactory = new MultiplexedSendFactory(4);
+ * DefaultShardManagerBuilder.createDefault(token)
+ *     .setAudioSendFactory(sendFactory)
+ *     .build();
+ * }</pre>
+ *
+ * @since 4.3.0
+ */
+public class MultiplexedSendFactory implements IAudioSendFactory
+{
+    public static final Logger LOG = JDALogger.getLog(MultiplexedSendFactory.class);
+
+    private static final int SLOTS = OPUS_FRAME_TIME_AMOUNT;
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(OPUS_FRAME_TIME_AMOUNT);
+    private static final long TICK_NANOS = FRAME_NANOS / SLOTS;
+    private static final long MAX_DRIFT_NANOS = 3 * FRAME_NANOS;
+
+    protected final Worker[] workers;
+    protected final ThreadFactory threadFactory;
+    protected boolean started;
+    protected volatile boolean shutdown;
+
+    /**
+     * Creates a new send factory with one thread for every 4 available processors.
+     */
+    public MultiplexedSendFactory()
+    {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+    }
+
+    /**
+     * Creates a new send factory.
+     *
+     * @param  threadCount
+     *         The amount of threads used to send audio packets
+     *
+     * @throws IllegalArgumentException
+     *         If the thread count is not positive
+     */
+    public MultiplexedSendFactory(int threadCount)
+    {
+        this(threadCount, null);
+    }
+
+    /**
+     * Creates a new send factory.
+     *
+     * @param  threadCount
+     *         The amount of threads used to send audio packets
+     * @param  threadFactory
+     *         The {@link ThreadFactory} used to create the threads, or null to use daemon threads with a raised priority
+     *
+     * @throws IllegalArgumentException
+     *         If the thread count is not positive
+     */
+    public MultiplexedSendFactory(int threadCount, @CheckForNull ThreadFactory threadFactory)
+    {
+        Checks.positive(threadCount, "Thread count");
+        if (threadFactory == null)
+        {
+            AtomicInteger count = new AtomicInteger(1);
+            threadFactory = r ->
+            {
+                Thread thread = new Thread(r, "JDA Multiplexed Audio-Worker " + count.getAndIncrement());
+                thread.setDaemon(true);
+                thread.setPriority((Thread.NORM_PRIORITY + Thread.MAX_PRIORITY) / 2);
+                return thread;
+            };
+        }
+        this.threadFactory = threadFactory;
+        this.workers = new Worker[threadCount];
+        for (int i = 0; i < threadCount; i++)
+            workers[i] = new Worker();
+    }
+
+    @Nonnull
+    @Override
+    public IAudioSendSystem createSendSystem(@Nonnull IPacketProvider packetProvider)
+    {
+        return new Connection(packetProvider);
+    }
+
+    /**
+     * The amount of connections that are currently sending audio with this factory.
+     *
+     * @return The amount of connections
+     */
+    public int getConnectionCount()
+    {
+        int count = 0;
+        for (Worker worker : workers)
+            count += worker.size;
+        return count;
+    }
+
+    /**
+     * The timing statistics of every connection that is currently sending audio with this factory.
+     *
+     * @return Immutable map from {@link IPacketProvider#getIdentifier() connection identifier} to statistics
+     */
+    @Nonnull
+    public Map<String, SendStatistics> getStatistics()
+    {
+        Map<String, SendStatistics> statistics = new HashMap<>();
+        for (Worker worker : workers)
+        {
+            for (List<Connection> slot : worker.slots)
+            {
+                for (Connection connection : slot)
+                    statistics.put(connection.packetProvider.getIdentifier(), connection.getStatistics());
+            }
+        }
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * Stops all threads of this factory.
+     * <br>Connections which still use this factory will stop sending audio.
+     * Connections started after the shutdown fall back to a {@link DefaultSendSystem} with its own thread.
+     */
+    public synchronized void shutdown()
+    {
+        shutdown = true;
+        for (Worker worker : workers)
+        {
+            for (List<Connection> slot : worker.slots)
+                slot.clear();
+            worker.size = 0;
+            if (worker.thread != null)
+                LockSupport.unpark(worker.thread);
+        }
+    }
+
+    protected synchronized boolean register(Connection connection)
+    {
+        if (shutdown)
+            return false;
+        if (!started)
+        {
+            started = true;
+            for (Worker worker : workers)
+                worker.start();
+        }
+
+        Worker worker = workers[0];
+        for (Worker other : workers)
+        {
+            if (other.size < worker.size)
+                worker = other;
+        }
+
+        int slot = 0;
+        for (int i = 1; i < SLOTS; i++)
+        {
+            if (worker.slots[i].size() < worker.slots[slot].size())
+                slot = i;
+        }
+
+        connection.worker = worker;
+        connection.slot = slot;
+        worker.slots[slot].add(connection);
+        worker.size++;
+        LockSupport.unpark(worker.thread);
+        return true;
+    }
+
+    protected synchronized void unregister(Connection connection)
+    {
+        Worker worker = connection.worker;
+        if (worker == null)
+            return;
+        connection.worker = null;
+        if (worker.slots[connection.slot].remove(connection))
+            worker.size--;
+    }
+
+    protected class Worker implements Runnable
+    {
+        @SuppressWarnings("unchecked")
+        protected final List<Connection>[] slots = (List<Connection>[]) new List<?>[SLOTS];
+        protected final List<Connection> batch = new ArrayList<>();
+        protected final List<ByteBuffer> packets = new ArrayList<>();
+        protected volatile int size;
+        protected Thread thread;
+
+        protected Worker()
+        {
+            for (int i = 0; i < SLOTS; i++)
+                slots[i] = new CopyOnWriteArrayList<>();
+        }
+
+        protected void start()
+        {
+            thread = threadFactory.newThread(this);
+            thread.start();
+        }
+
+        @Override
+        public void run()
+        {
+            long epoch = System.nanoTime();
+            long tick = 0;
+            while (!shutdown)
+            {
+                if (size == 0)
+                {
+                    // idle until the next connection is registered
+                    LockSupport.park(this);
+                    epoch = System.nanoTime();
+                    tick = 0;
+                    continue;
+                }
+
+                long deadline = epoch + tick * TICK_NANOS;
+                long now = System.nanoTime();
+                if (now < deadline)
+                {
+                    LockSupport.parkNanos(this, deadline - now);
+                    continue; // park can return early, check the deadline again
+                }
+
+                long drift = now - deadline;
+                if (drift > MAX_DRIFT_NANOS)
+                {
+                    // skip whole frames, this keeps every connection in its slot
+                    long frames = drift / FRAME_NANOS;
+                    tick += frames * SLOTS;
+                    deadline += frames * FRAME_NANOS;
+                    LOG.debug("Audio send worker fell behind by {} ms, skipping {} frames", TimeUnit.NANOSECONDS.toMillis(drift), frames);
+                }
+
+                processSlot(slots[(int) (tick % SLOTS)], deadline);
+                tick++;
+            }
+        }
+
+        protected void processSlot(List<Connection> slot, long deadline)
+        {
+            if (slot.isEmpty())
+                return;
+            try
+            {
+                // Collect all packets first, encoding and encryption happen here
+                for (Connection connection : slot)
+                {
+                    ByteBuffer packet = connection.poll();
+                    if (packet != null)
+                    {
+                        batch.add(connection);
+                        packets.add(packet);
+                    }
+                }
+
+                for (int i = 0; i < batch.size(); i++)
+                    batch.get(i).send(packets.get(i), deadline);
+            }
+            finally
+            {
+                batch.clear();
+                packets.clear();
+            }
+        }
+    }
+
+    /**
+     * {@link IAudioSendSystem} of a single connection, created by {@link MultiplexedSendFactory}.
+     */
+    public class Connection implements IAudioSendSystem
+    {
+        protected final IPacketProvider packetProvider;
+        protected ConcurrentMap<String, String> contextMap;
+        protected volatile Worker worker;
+        protected volatile IAudioSendSystem fallback;
+        protected int slot;
+
+        // Only modified by the worker thread
+        protected boolean sentPacket = true;
+        protected long lastSent;
+        protected volatile long packetsSent, lateFrames, maxLateness, totalLateness, jitter;
+
+        protected Connection(IPacketProvider packetProvider)
+        {
+            this.packetProvider = packetProvider;
+        }
+
+        @Override
+        public void setContextMap(@CheckForNull ConcurrentMap<String, String> contextMap)
+        {
+            this.contextMap = contextMap;
+        }
+
+        @Override
+        public void start()
+        {
+            lastSent = System.nanoTime();
+            if (register(this))
+                return;
+            LOG.warn("Connection {} was started after the factory has been shutdown, falling back to DefaultSendSystem", packetProvider.getIdentifier());
+            IAudioSendSystem system = new DefaultSendSystem(packetProvider);
+            system.setContextMap(contextMap);
+            system.start();
+            fallback = system;
+        }
+
+        @Override
+        public void shutdown()
+        {
+            unregister(this);
+            IAudioSendSystem system = fallback;
+            if (system != null)
+                system.shutdown();
+        }
+
+        /**
+         * The current timing statistics of this connection.
+         *
+         * @return {@link SendStatistics}
+         */
+        @Nonnull
+        public SendStatistics getStatistics()
+        {
+            return new SendStatistics(packetProvider.getIdentifier(), packetsSent, lateFrames, maxLateness, totalLateness, jitter);
+        }
+
+        protected ByteBuffer poll()
+        {
+            if (packetProvider.getUdpSocket().isClosed())
+            {
+                unregister(this);
+                return null;
+            }
+
+            if (contextMap != null)
+                MDC.setContextMap(contextMap);
+            try
+            {
+                boolean changeTalking = !sentPacket || System.nanoTime() - lastSent > FRAME_NANOS;
+                ByteBuffer packet = packetProvider.getNextPacketRaw(changeTalking);
+                sentPacket = packet != null;
+                return packet;
+            }
+            catch (Exception e)
+            {
+                AudioConnection.LOG.error("Error while getting next udp audio packet", e);
+                return null;
+            }
+            finally
+            {
+                if (contextMap != null)
+                    MDC.clear();
+            }
+        }
+
+        protected void send(ByteBuffer packet, long deadline)
+        {
+            try
+            {
+                DatagramChannel udpChannel = packetProvider.getUdpChannel();
+                if (udpChannel != null)
+                {
+                    VoiceSelector.getInstance().send(udpChannel, packet, packetProvider.getSocketAddress());
+                }
+                else
+                {
+                    int offset = packet.arrayOffset() + packet.position();
+                    packetProvider.getUdpSocket().send(new DatagramPacket(packet.array(), offset, packet.remaining(), packetProvider.getSocketAddress()));
+                }
+            }
+            catch (NoRouteToHostException e)
+            {
+                packetProvider.onConnectionLost();
+                return;
+            }
+            catch (SocketException e)
+            {
+                //Most likely the socket has been closed due to the audio connection be closed. Next poll will remove it.
+                return;
+            }
+            catch (Exception e)
+            {
+                AudioConnection.LOG.error("Error while sending udp audio data", e);
+                return;
+            }
+
+            long now = System.nanoTime();
+            long lateness = now - deadline;
+            long interval = now - lastSent;
+            if (packetsSent > 0 && interval < 2 * FRAME_NANOS)
+            {
+                // Estimator from RFC 3550 section 6.4.1 applied to the send interval of consecutive frames
+                jitter += (Math.abs(interval - FRAME_NANOS) - jitter) / 16;
+            }
+            if (lateness > TICK_NANOS)
+                lateFrames++;
+            if (lateness > maxLateness)
+                maxLateness = lateness;
+            totalLateness += lateness;
+            packetsSent++;
+            lastSent = now;
+        }
+    }
+
+    /**
+     * Snapshot of the send timing of a connection.
+     */
+    public static class SendStatistics
+    {
+        private final String identifier;
+        private final long packetsSent, lateFrames, maxLateness, totalLateness, jitter;
+
+        protected SendStatistics(String identifier, long packetsSent, long lateFrames, long maxLateness, long totalLateness, long jitter)
+        {
+            this.identifier = identifier;
+            this.packetsSent = packetsSent;
+            this.lateFrames = lateFrames;
+            this.maxLateness = maxLateness;
+            this.totalLateness = totalLateness;
+            this.jitter = jitter;
+        }
+
+        /**
+         * The {@link IPacketProvider#getIdentifier() identifier} of the connection.
+         *
+         * @return The identifier
+         */
+        @Nonnull
+        public String getIdentifier()
+        {
+            return identifier;
+        }
+
+        /**
+         * The amount of packets sent by this connection.
+         *
+         * @return The amount of packets
+         */
+        public long getPacketsSent()
+        {
+            return packetsSent;
+        }
+
+        /**
+         * The amount of packets that were sent more than 1 millisecond after their deadline.
+         *
+         * @return The amount of late packets
+         */
+        public long getLateFrames()
+        {
+            return lateFrames;
+        }
+
+        /**
+         * The highest delay between the deadline of a packet and the time it was sent.
+         *
+         * @param  unit
+         *         The time unit to convert to
+         *
+         * @return The maximum lateness
+         */
+        public long getMaxLateness(@Nonnull TimeUnit unit)
+        {
+            return unit.convert(maxLateness, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * The average delay between the deadline of a packet and the time it was sent.
+         *
+         * @param  unit
+         *         The time unit to convert to
+         *
+         * @return The average lateness
+         */
+        public long getAverageLateness(@Nonnull TimeUnit unit)
+        {
+            return packetsSent == 0 ? 0 : unit.convert(totalLateness / packetsSent, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * The smoothed deviation of the interval between two packets from the 20ms frame time,
+         * computed like the interarrival jitter of RFC 3550.
+         *
+         * @param  unit
+         *         The time unit to convert to
+         *
+         * @return The jitter
+         */
+        public long getJitter(@Nonnull TimeUnit unit)
+        {
+            return unit.convert(jitter, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "SendStatistics(" + identifier + ", sent=" + packetsSent + ", late=" + lateFrames
+                    + ", jitter=" + getJitter(TimeUnit.MICROSECONDS) + "us)";
+        }
+    }
+}
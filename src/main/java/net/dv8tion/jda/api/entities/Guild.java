@@ -3025,6 +3025,63 @@ public interface Guild extends ISnowflake
         return task;
     }
 
+    /**
+     * Retrieves and collects members of this guild into a list, until the limit of matching members is reached.
+     * <br>This will use the configured {@link net.dv8tion.jda.api.utils.MemberCachePolicy MemberCachePolicy}
+     * to decide which members to retain in cache.
+     *
+     * <p>The task completes as soon as enough members were found. Discord still sends the remaining member chunks
+     * and they are still parsed, but their members are neither built nor cached. See {@link #loadMemberChunks(Predicate)}.
+     *
+     * <p><b>This requires the privileged GatewayIntent.GUILD_MEMBERS to be enabled!</b>
+     *
+     * <p><b>You MUST NOT use blocking operations such as {@link Task#get()}!</b>
+     * The response handling happens on the event thread by default.
+     *
+     * <p><b>Example</b><br>
+     * <pre>{@code
+     * guild.findMembers(member -> member.getUser().getName().equals("Minn"), 1)
+     *      .onSuccess(list -> System.out.println("Found " + list));
+     * }</pre>
+     *
+     * @param  filter
+     *         Filter to decide which members to include
+     * @param  limit
+     *         The maximum amount of members to find
+     *
+     * @throws IllegalArgumentException
+     *         If the provided filter is null or the limit is not positive
+     * @throws IllegalStateException
+     *         If the {@link GatewayIntent#GUILD_MEMBERS GatewayIntent.GUILD_MEMBERS} is not enabled
+     *
+     * @return {@link Task} - Type: {@link List} of {@link Member}
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    @CheckReturnValue
+    default Task<List<Member>> findMembers(@Nonnull Predicate<? super Member> filter, int limit)
+    {
+        Checks.notNull(filter, "Filter");
+        Checks.positive(limit, "Limit");
+        List<Member> list = new ArrayList<>();
+        CompletableFuture<List<Member>> future = new CompletableFuture<>();
+        Task<Void> reference = loadMemberChunks((members) -> {
+            for (Member member : members)
+            {
+                if (filter.test(member))
+                    list.add(member);
+                if (list.size() >= limit)
+                    return false;
+            }
+            return true;
+        });
+        GatewayTask<List<Member>> task = new GatewayTask<>(future, reference::cancel);
+        reference.onSuccess(it -> future.complete(list))
+                 .onError(future::completeExceptionally);
+        return task;
+    }
+
     /**
      * Retrieves and collects members of this guild into a list.
      * <br>This will use the configured {@link net.dv8tion.jda.api.utils.MemberCachePolicy MemberCachePolicy}
@@ -3117,6 +3174,39 @@ public interface Guild extends ISnowflake
     @Nonnull
     Task<Void> loadMembers(@Nonnull Consumer<Member> callback);
 
+    /**
+     * Retrieves all members of this guild in batches.
+     * <br>The callback receives the members of each member chunk as soon as it arrives,
+     * a chunk contains up to 1000 members. If the members of this guild are already loaded,
+     * the callback receives all cached members at once.
+     * <br>This will use the configured {@link net.dv8tion.jda.api.utils.MemberCachePolicy MemberCachePolicy}
+     * to decide which members to retain in cache.
+     *
+     * <p>The callback returns {@code false} to stop the request early. The task then completes successfully
+     * and the callback is not invoked again. This does not reduce the traffic of the request, Discord still sends
+     * the remaining member chunks and they are still parsed. Only building and caching their members is skipped.
+     * Cancelling the task has the same effect on chunks which are already on their way.
+     *
+     * <p><b>This requires the privileged GatewayIntent.GUILD_MEMBERS to be enabled!</b>
+     *
+     * <p><b>You MUST NOT use blocking operations such as {@link Task#get()}!</b>
+     * The response handling happens on the event thread by default.
+     *
+     * @param  callback
+     *         Callback for each batch of members, which returns false to stop the request
+     *
+     * @throws IllegalArgumentException
+     *         If the callback is null
+     * @throws IllegalStateException
+     *         If the {@link GatewayIntent#GUILD_MEMBERS GatewayIntent.GUILD_MEMBERS} is not enabled
+     *
+     * @return {@link Task} cancellable handle for this request
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    Task<Void> loadMemberChunks(@Nonnull Predicate<? super List<Member>> callback);
+
     /**
      * Load the member for the specified user.
      * <br>If the member is already loaded it will be retrieved from {@link #getMemberById(long)}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.hooks;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.ShutdownEvent;
+import net.dv8tion.jda.api.events.UpdateEvent;
+import net.dv8tion.jda.api.events.guild.member.update.GuildMemberUpdateNicknameEvent;
+import net.dv8tion.jda.api.events.user.update.*;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.utils.Checks;
+import net.dv8tion.jda.internal.utils.concurrent.CountingThreadFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Decorator for an {@link IEventManager} which merges bursts of {@link UpdateEvent UpdateEvents}.
+ *
+ * <p>When an update event with a registered merge function is handled, it is passed to the delegate immediately
+ * and opens a window of the configured length for its property and entity.
+ * Further updates of the same property for the same entity within that window are held back and merged,
+ * the resulting event has the old value of the first held event and the new value of the last one.
+ * It is fired once the window closes, which opens the next window. If the property changed back to its old value,
+ * no event is fired at all. Updates outside of a burst are therefore never delayed.
+ *
+ * <p>Merged events are fired through the event pool of their {@link JDA} instance,
+ * just like any other event. They are handled on the same {@link PartitionedEventExecutor} lane as the other events
+ * of their guild, but after the events that were received while they were held back.
+ *
+ * <p>By default, this merges presence updates (online status and activities), user updates (name, discriminator, avatar),
+ * and nickname updates. Other types can be added with {@link #setMergeFunction(Class, BiFunction)}.
+ *
+ * <p>Pending events are flushed before a {@link ShutdownEvent} is passed to the delegate.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * JDABuilder.createDefault(token)
+ *     .setEventManager(new CoalescingEventManager(new InterfacedEventManager(), 500, TimeUnit.MILLISECONDS))
+ *     .build();
+ * }</pre>
+ *
+ * @see net.dv8tion.jda.api.hooks.IEventManager
+ *
+ * @since 4.3.0
+ */
+public class CoalescingEventManager implements IEventManager
+{
+    private static ScheduledExecutorService defaultScheduler;
+
+    protected final IEventManager delegate;
+    protected final ScheduledExecutorService scheduler;
+    protected final long window;
+    protected final Map<Class<?>, BiFunction<GenericEvent, GenericEvent, GenericEvent>> mergeFunctions = new ConcurrentHashMap<>();
+
+    private final Map<Key, Window> windows = new ConcurrentHashMap<>();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    /**
+     * Creates a new coalescing event manager, which uses a shared daemon thread to schedule the merged events.
+     *
+     * @param  delegate
+     *         The event manager which handles the events
+     * @param  window
+     *         The time further updates of the same property are held back and merged after an update
+     * @param  unit
+     *         The time unit of the window
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided or the window is negative
+     */
+    public CoalescingEventManager(@Nonnull IEventManager delegate, long window, @Nonnull TimeUnit unit)
+    {
+        this(delegate, getDefaultScheduler(), window, unit);
+    }
+
+    /**
+     * Creates a new coalescing event manager.
+     *
+     * @param  delegate
+     *         The event manager which handles the events
+     * @param  scheduler
+     *         The scheduler used to close the windows, merged events are still handled by the event pool
+     * @param  window
+     *         The time further updates of the same property are held back and merged after an update
+     * @param  unit
+     *         The time unit of the window
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided or the window is negative
+     */
+    public CoalescingEventManager(@Nonnull IEventManager delegate, @Nonnull ScheduledExecutorService scheduler, long window, @Nonnull TimeUnit unit)
+    {
+        Checks.notNull(delegate, "Delegate");
+        Checks.notNull(scheduler, "Scheduler");
+        Checks.notNull(unit, "TimeUnit");
+        Checks.notNegative(window, "Window");
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.window = unit.toMillis(window);
+
+        setMergeFunction(UserUpdateOnlineStatusEvent.class, (first, last) ->
+            new UserUpdateOnlineStatusEvent(last.getJDA(), last.getResponseNumber(), last.getMember(), first.getOldOnlineStatus()));
+        setMergeFunction(UserUpdateActivitiesEvent.class, (first, last) ->
+            new UserUpdateActivitiesEvent(last.getJDA(), last.getResponseNumber(), last.getMember(), first.getOldValue()));
+        setMergeFunction(UserUpdateActivityOrderEvent.class, (first, last) ->
+            new UserUpdateActivityOrderEvent((JDAImpl) last.getJDA(), last.getResponseNumber(), first.getOldValue(), last.getMember()));
+        setMergeFunction(UserUpdateNameEvent.class, (first, last) ->
+            new UserUpdateNameEvent(last.getJDA(), last.getResponseNumber(), last.getUser(), first.getOldName()));
+        setMergeFunction(UserUpdateDiscriminatorEvent.class, (first, last) ->
+            new UserUpdateDiscriminatorEvent(last.getJDA(), last.getResponseNumber(), last.getUser(), first.getOldDiscriminator()));
+        setMergeFunction(UserUpdateAvatarEvent.class, (first, last) ->
+            new UserUpdateAvatarEvent(last.getJDA(), last.getResponseNumber(), last.getUser(), first.getOldAvatarId()));
+        setMergeFunction(GuildMemberUpdateNicknameEvent.class, (first, last) ->
+            new GuildMemberUpdateNicknameEvent(last.getJDA(), last.getResponseNumber(), last.getMember(), first.getOldNickname()));
+    }
+
+    /**
+     * Sets the function used to merge two update events of the provided type.
+     * <br>The function receives the pending event and the new event, and returns an event with the old value of the
+     * first and the new value of the second event.
+     *
+     * @param  type
+     *         The exact event type
+     * @param  function
+     *         The merge function, or null to stop merging events of this type
+     * @param  <E>
+     *         The event type
+     *
+     * @throws IllegalArgumentException
+     *         If the type is null
+     *
+     * @return The current CoalescingEventManager instance, useful for chaining
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public <E extends GenericEvent & UpdateEvent<?, ?>> CoalescingEventManager setMergeFunction(@Nonnull Class<E> type, @Nullable BiFunction<? super E, ? super E, ? extends E> function)
+    {
+        Checks.notNull(type, "Type");
+        if (function == null)
+            mergeFunctions.remove(type);
+        else
+            mergeFunctions.put(type, (first, last) -> function.apply((E) first, (E) last));
+        return this;
+    }
+
+    /**
+     * The event manager which handles the events.
+     *
+     * @return The delegate
+     */
+    @Nonnull
+    public IEventManager getDelegate()
+    {
+        return delegate;
+    }
+
+    /**
+     * The amount of events which are currently held back.
+     *
+     * @return The amount of pending events
+     */
+    public int getPendingEvents()
+    {
+        return (int) windows.values().stream().filter(window -> window.event != null).count();
+    }
+
+    /**
+     * The total amount of events which were merged into a pending event.
+     *
+     * @return The amount of merged events
+     */
+    public long getMergedEvents()
+    {
+        return merged.get();
+    }
+
+    /**
+     * The total amount of merged events which were not fired, because the property changed back to its old value.
+     *
+     * @return The amount of discarded events
+     */
+    public long getDiscardedEvents()
+    {
+        return discarded.get();
+    }
+
+    /**
+     * Fires all pending events immediately on the current thread and closes all windows.
+     */
+    public void flush()
+    {
+        List<Key> keys = new ArrayList<>(windows.keySet());
+        for (Key key : keys)
+        {
+            Window window = windows.remove(key);
+            if (window != null)
+                fire(window.event, true);
+        }
+    }
+
+    @Override
+    public void register(@Nonnull Object listener)
+    {
+        delegate.register(listener);
+    }
+
+    @Override
+    public void unregister(@Nonnull Object listener)
+    {
+        delegate.unregister(listener);
+    }
+
+    @Nonnull
+    @Override
+    public List<Object> getRegisteredListeners()
+    {
+        return delegate.getRegisteredListeners();
+    }
+
+    @Override
+    public void handle(@Nonnull GenericEvent event)
+    {
+        BiFunction<GenericEvent, GenericEvent, GenericEvent> function = mergeFunctions.get(event.getClass());
+        if (function == null || window == 0)
+        {
+            if (event instanceof ShutdownEvent)
+                flush();
+            delegate.handle(event);
+            return;
+        }
+
+        Key key = new Key((UpdateEvent<?, ?>) event);
+        Window[] opened = new Window[1];
+        windows.compute(key, (k, current) ->
+        {
+            if (current == null)
+                return opened[0] = new Window();
+            if (current.event == null)
+            {
+                current.event = (UpdateEvent<?, ?>) event;
+            }
+            else
+            {
+                merged.incrementAndGet();
+                current.event = (UpdateEvent<?, ?>) function.apply(current.event, event);
+            }
+            return current;
+        });
+
+        if (opened[0] == null)
+            return;
+        schedule(key, opened[0]);
+        // the first update is not part of a burst (yet)
+        delegate.handle(event);
+    }
+
+    private void schedule(Key key, Window window)
+    {
+        scheduler.schedule(() -> close(key, window), this.window, TimeUnit.MILLISECONDS);
+    }
+
+    private void close(Key key, Window window)
+    {
+        UpdateEvent<?, ?>[] event = new UpdateEvent<?, ?>[1];
+        windows.computeIfPresent(key, (k, current) ->
+        {
+            if (current != window)
+                return current; // flushed and reopened since
+            event[0] = current.event;
+            current.event = null;
+            // keep the window open for another period while the burst continues
+            return event[0] == null ? null : current;
+        });
+
+        if (event[0] == null)
+            return;
+        schedule(key, window);
+        fire(event[0], false);
+    }
+
+    private void fire(UpdateEvent<?, ?> event, boolean direct)
+    {
+        if (event == null)
+            return;
+        if (Objects.equals(event.getOldValue(), event.getNewValue()))
+        {
+            discarded.incrementAndGet();
+            return;
+        }
+
+        JDA api = event.getJDA();
+        if (direct || !(api instanceof JDAImpl))
+            handleMerged(event);
+        else // run on the event pool like every other event, instead of blocking the scheduler
+            ((JDAImpl) api).handleEvent(event, this::handleMerged);
+    }
+
+    private void handleMerged(GenericEvent event)
+    {
+        try
+        {
+            delegate.handle(event);
+        }
+        catch (RuntimeException e)
+        {
+            JDAImpl.LOG.error("The EventManager.handle() call had an uncaught exception", e);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getDefaultScheduler()
+    {
+        if (defaultScheduler == null)
+            defaultScheduler = Executors.newSingleThreadScheduledExecutor(new CountingThreadFactory(() -> "JDA", "EventCoalescer"));
+        return defaultScheduler;
+    }
+
+    private static class Window
+    {
+        private volatile UpdateEvent<?, ?> event;
+    }
+
+    private static class Key
+    {
+        private final Class<?> type;
+        private final JDA api;
+        private final long guild;
+        private final Object entity;
+
+        private Key(UpdateEvent<?, ?> event)
+        {
+            this.type = event.getClass();
+            this.api = event.getJDA();
+            // presence updates use the user as entity, but are fired for every guild
+            this.guild = PartitionedEventExecutor.GUILD.applyAsLong(event);
+            this.entity = event.getEntity();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(type, guild, entity);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj == this)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return type == other.type && api == other.api && guild == other.guild && entity.equals(other.entity);
+        }
+    }
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.hooks;
+
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.user.UserActivityEndEvent;
+import net.dv8tion.jda.api.events.user.UserActivityStartEvent;
+import net.dv8tion.jda.api.events.user.UserTypingEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateActivitiesEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateActivityOrderEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateOnlineStatusEvent;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.utils.Checks;
+import net.dv8tion.jda.internal.utils.ClassWalker;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Load shedding policy for the event pool.
+ *
+ * <p>This counts the events which were scheduled on the event pool but have not been handled yet.
+ * Once this reaches the queue limit, the pool is considered overloaded until the amount of pending events
+ * falls to half the limit again. While overloaded, events are handled according to the {@link Policy} of their type:
+ * <ul>
+ *     <li>{@link Policy#KEEP KEEP} events are always handled</li>
+ *     <li>{@link Policy#DROP DROP} events are discarded</li>
+ *     <li>{@link Policy#COALESCE COALESCE} events replace a pending event of the same type for the same user and channel (or guild).
+ *         Listeners only see the latest of these events.</li>
+ * </ul>
+ *
+ * <p>The thread reading from the gateway only decides whether an event is queued, it does not wait for the event pool.
+ * When the event pool rejects an event, events which are not {@link Policy#KEEP KEEP} are dropped
+ * instead of being handled on the gateway thread.
+ * Combined with a {@link PartitionedEventExecutor}, events which are not {@link Policy#KEEP KEEP} are also dropped
+ * when their lane is full. {@link Policy#KEEP KEEP} events still wait for a full lane,
+ * but no longer than the maximum wait of the {@link PartitionedEventExecutor}.
+ *
+ * <p>The event pool must run or reject every task. An executor which silently discards tasks,
+ * like one using a {@link java.util.concurrent.ThreadPoolExecutor.DiscardPolicy DiscardPolicy},
+ * leaves the discarded events pending forever and the pool is considered overloaded from then on.
+ *
+ * <p>Entering and leaving the overloaded state is logged, the metrics of this class can be used for monitoring.
+ * The same instance can be shared by multiple shards, in which case the limit applies to the sum of their events.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * EventBackpressure backpressure = EventBackpressure.createDefault(10000)
+ *     .setPolicy(MessageReactionAddEvent.class, EventBackpressure.Policy.DROP);
+ * JDABuilder.createDefault(token)
+ *     .setEventPool(Executors.newFixedThreadPool(4))
+ *     .setEventBackpressure(backpressure)
+ *     .build();
+ * }</pre>
+ *
+ * @see net.dv8tion.jda.api.JDABuilder#setEventBackpressure(EventBackpressure)
+ *
+ * @since 4.3.0
+ */
+public class EventBackpressure
+{
+    protected final int queueLimit;
+    protected final Map<Class<?>, Policy> policies = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Policy> resolved = new ConcurrentHashMap<>();
+    private final Map<CoalesceKey, Task> coalescing = new ConcurrentHashMap<>();
+    private final AtomicBoolean overloaded = new AtomicBoolean();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger maxPending = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong overloads = new AtomicLong();
+
+    /**
+     * Creates a new backpressure policy without any rules.
+     * <br>Every event type uses {@link Policy#KEEP KEEP} until a policy is configured with {@link #setPolicy(Class, Policy)}.
+     *
+     * @param  queueLimit
+     *         The amount of pending events at which the event pool is considered overloaded
+     *
+     * @throws IllegalArgumentException
+     *         If the limit is not positive
+     */
+    public EventBackpressure(int queueLimit)
+    {
+        Checks.positive(queueLimit, "Queue limit");
+        this.queueLimit = queueLimit;
+    }
+
+    /**
+     * Creates a new backpressure policy which sheds the events sent most frequently by the gateway.
+     * <br>Typing and activity start/end events are dropped, online status and activity updates are coalesced.
+     *
+     * @param  queueLimit
+     *         The amount of pending events at which the event pool is considered overloaded
+     *
+     * @throws IllegalArgumentException
+     *         If the limit is not positive
+     *
+     * @return The new backpressure policy
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static EventBackpressure createDefault(int queueLimit)
+    {
+        return new EventBackpressure(queueLimit)
+            .setPolicy(UserTypingEvent.class, Policy.DROP)
+            .setPolicy(UserActivityStartEvent.class, Policy.DROP)
+            .setPolicy(UserActivityEndEvent.class, Policy.DROP)
+            .setPolicy(UserUpdateOnlineStatusEvent.class, Policy.COALESCE)
+            .setPolicy(UserUpdateActivitiesEvent.class, Policy.COALESCE)
+            .setPolicy(UserUpdateActivityOrderEvent.class, Policy.COALESCE);
+    }
+
+    /**
+     * Sets the policy for the provided event type and its subtypes.
+     * <br>If an event matches multiple configured types, the most specific type is used.
+     *
+     * @param  type
+     *         The event type
+     * @param  policy
+     *         The policy to apply while the event pool is overloaded
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided
+     *
+     * @return The current EventBackpressure instance, useful for chaining
+     */
+    @Nonnull
+    public EventBackpressure setPolicy(@Nonnull Class<? extends GenericEvent> type, @Nonnull Policy policy)
+    {
+        Checks.notNull(type, "Type");
+        Checks.notNull(policy, "Policy");
+        policies.put(type, policy);
+        resolved.clear();
+        return this;
+    }
+
+    /**
+     * The policy which applies to the provided event type.
+     *
+     * @param  type
+     *         The event type
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided
+     *
+     * @return The policy of the event type
+     */
+    @Nonnull
+    public Policy getPolicy(@Nonnull Class<? extends GenericEvent> type)
+    {
+        Checks.notNull(type, "Type");
+        return resolved.computeIfAbsent(type, this::resolvePolicy);
+    }
+
+    /**
+     * The amount of pending events at which the event pool is considered overloaded.
+     *
+     * @return The queue limit
+     */
+    public int getQueueLimit()
+    {
+        return queueLimit;
+    }
+
+    /**
+     * Whether the event pool is currently overloaded.
+     *
+     * @return True, if events are currently shed
+     */
+    public boolean isOverloaded()
+    {
+        return overloaded.get();
+    }
+
+    /**
+     * The amount of events which were scheduled but not handled yet.
+     *
+     * @return The amount of pending events
+     */
+    public int getPendingEvents()
+    {
+        return pending.get();
+    }
+
+    /**
+     * The highest amount of pending events.
+     *
+     * @return The highest amount of pending events
+     */
+    public int getMaxPendingEvents()
+    {
+        return maxPending.get();
+    }
+
+    /**
+     * The total amount of dropped events.
+     *
+     * @return The amount of dropped events
+     */
+    public long getDroppedEvents()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * The total amount of events which replaced a pending event.
+     *
+     * @return The amount of coalesced events
+     */
+    public long getCoalescedEvents()
+    {
+        return coalesced.get();
+    }
+
+    /**
+     * The amount of times the event pool became overloaded.
+     *
+     * @return The amount of overloads
+     */
+    public long getOverloadCount()
+    {
+        return overloads.get();
+    }
+
+    /**
+     * Creates the task which handles the provided event on the event pool.
+     * <br>This is used by JDA to schedule events, the returned task must be run or {@link #discard(Runnable) discarded}.
+     *
+     * @param  event
+     *         The event
+     * @param  handler
+     *         The handler of the event
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided
+     *
+     * @return The task, or null if the event was shed
+     */
+    @Nullable
+    public Runnable submit(@Nonnull GenericEvent event, @Nonnull Consumer<? super GenericEvent> handler)
+    {
+        Checks.notNull(event, "Event");
+        Checks.notNull(handler, "Handler");
+        Policy policy = getPolicy(event.getClass());
+        Task task;
+        if (policy == Policy.KEEP || !overloaded.get())
+        {
+            task = new Task(event, handler, null);
+        }
+        else if (policy == Policy.DROP)
+        {
+            dropped.incrementAndGet();
+            return null;
+        }
+        else
+        {
+            CoalesceKey key = new CoalesceKey(event);
+            task = new Task(event, handler, key);
+            Task existing;
+            while ((existing = coalescing.putIfAbsent(key, task)) != null)
+            {
+                if (existing.replace(event))
+                {
+                    coalesced.incrementAndGet();
+                    return null;
+                }
+                // the existing task already started, it will remove itself
+                coalescing.remove(key, existing);
+            }
+        }
+
+        int size = pending.incrementAndGet();
+        int max;
+        while (size > (max = maxPending.get()) && !maxPending.compareAndSet(max, size));
+        if (size >= queueLimit && overloaded.compareAndSet(false, true))
+        {
+            overloads.incrementAndGet();
+            JDAImpl.LOG.warn("Event-Pool is overloaded with {} pending events! Shedding events until it recovers...", size);
+        }
+        return task;
+    }
+
+    /**
+     * Discards a task created by {@link #submit(GenericEvent, Consumer)} which could not be scheduled.
+     * <br>Tasks for events with the {@link Policy#KEEP KEEP} policy are not discarded and should be run by the caller.
+     *
+     * @param  task
+     *         The task
+     *
+     * @return True, if the task was discarded
+     */
+    public boolean discard(@Nonnull Runnable task)
+    {
+        if (!(task instanceof Task))
+            return false;
+        Task pendingTask = (Task) task;
+        GenericEvent event = pendingTask.event.get();
+        if (event == null || getPolicy(event.getClass()) == Policy.KEEP)
+            return false;
+        if (pendingTask.take() != null)
+        {
+            dropped.incrementAndGet();
+            release();
+        }
+        return true;
+    }
+
+    private Policy resolvePolicy(Class<?> type)
+    {
+        for (Class<?> clazz : ClassWalker.range(type, Object.class))
+        {
+            Policy policy = policies.get(clazz);
+            if (policy != null)
+                return policy;
+        }
+        return Policy.KEEP;
+    }
+
+    private void release()
+    {
+        int size = pending.decrementAndGet();
+        if (size <= queueLimit / 2 && overloaded.compareAndSet(true, false))
+            JDAImpl.LOG.info("Event-Pool recovered with {} pending events, dropped {} and coalesced {} events so far", size, dropped.get(), coalesced.get());
+    }
+
+    /**
+     * The behavior for events of a type while the event pool is overloaded.
+     */
+    public enum Policy
+    {
+        /** The event is always handled */
+        KEEP,
+        /** The event is dropped */
+        DROP,
+        /** The event replaces a pending event of the same type for the same user and channel, or guild if there is no channel */
+        COALESCE
+    }
+
+    private class Task implements Runnable
+    {
+        private final AtomicReference<GenericEvent> event;
+        private final Consumer<? super GenericEvent> handler;
+        private final CoalesceKey key;
+
+        private Task(GenericEvent event, Consumer<? super GenericEvent> handler, CoalesceKey key)
+        {
+            this.event = new AtomicReference<>(event);
+            this.handler = handler;
+            this.key = key;
+        }
+
+        private boolean replace(GenericEvent replacement)
+        {
+            GenericEvent current;
+            do
+            {
+                current = event.get();
+                if (current == null)
+                    return false;
+            }
+            while (!event.compareAndSet(current, replacement));
+            return true;
+        }
+
+        private GenericEvent take()
+        {
+            if (key != null)
+                coalescing.remove(key, this);
+            return event.getAndSet(null);
+        }
+
+        @Override
+        public void run()
+        {
+            GenericEvent current = take();
+            if (current == null)
+                return;
+            try
+            {
+                handler.accept(current);
+            }
+            finally
+            {
+                release();
+            }
+        }
+    }
+
+    private static class CoalesceKey
+    {
+        private final Class<?> type;
+        private final long user;
+        private final long channel;
+
+        private CoalesceKey(GenericEvent event)
+        {
+            this.type = event.getClass();
+            this.user = PartitionedEventExecutor.USER.applyAsLong(event);
+            this.channel = PartitionedEventExecutor.CHANNEL.applyAsLong(event);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(type, user, channel);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj == this)
+                return true;
+            if (!(obj instanceof CoalesceKey))
+                return false;
+            CoalesceKey other = (CoalesceKey) obj;
+            return type == other.type && user == other.user && channel == other.channel;
+        }
+    }
+}
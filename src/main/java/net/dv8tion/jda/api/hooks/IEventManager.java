@@ -24,7 +24,7 @@ import java.util.List;
  * An interface for JDA's EventManager system.
  * <br>This should be registered in the {@link net.dv8tion.jda.api.JDABuilder JDABuilder}
  *
- * <p>JDA provides 2 implementations:
+ * <p>JDA provides 4 implementations:
  * <ul>
  *     <li>{@link net.dv8tion.jda.api.hooks.InterfacedEventManager InterfacedEventManager}
  *     <br>Simple implementation that allows {@link net.dv8tion.jda.api.hooks.EventListener EventListener}
@@ -33,8 +33,18 @@ import java.util.List;
  *     <li>{@link net.dv8tion.jda.api.hooks.AnnotatedEventManager AnnotatedEventManager}
  *     <br>An implementation that accepts any object and uses the {@link net.dv8tion.jda.api.hooks.SubscribeEvent SubscribeEvent}
  *         annotation to handle events.</li>
+ *
+ *     <li>{@link net.dv8tion.jda.api.hooks.IndexedEventManager IndexedEventManager}
+ *     <br>Accepts the same listeners as the InterfacedEventManager, but caches which
+ *         {@link net.dv8tion.jda.api.hooks.ListenerAdapter ListenerAdapter} methods handle each event type.</li>
+ *
+ *     <li>{@link net.dv8tion.jda.api.hooks.IndexedAnnotatedEventManager IndexedAnnotatedEventManager}
+ *     <br>Accepts the same listeners as the AnnotatedEventManager, but binds the annotated methods to generated invokers.</li>
  * </ul>
  *
+ * <p>The {@link net.dv8tion.jda.api.hooks.CoalescingEventManager CoalescingEventManager} can wrap any of these
+ * to merge bursts of update events.
+ *
  * <p>The default event manager is {@link net.dv8tion.jda.api.hooks.InterfacedEventManager InterfacedEventManager}
  * <br>Use {@link net.dv8tion.jda.api.JDABuilder#setEventManager(IEventManager) JDABuilder.setEventManager(IEventManager)}
  * to set the preferred event manager implementation.
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.hooks;
+
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.internal.hooks.EventDispatchTable;
+import net.dv8tion.jda.internal.utils.ClassWalker;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Implementation for {@link net.dv8tion.jda.api.hooks.IEventManager IEventManager}
+ * which accepts the same listeners as the {@link AnnotatedEventManager}.
+ *
+ * <p>The {@link net.dv8tion.jda.api.hooks.SubscribeEvent SubscribeEvent} methods of a listener are bound to
+ * generated invokers once on registration, public methods are then called as fast as a listener implementing
+ * {@link net.dv8tion.jda.api.hooks.EventListener EventListener}. The invokers for every concrete event class are cached
+ * in a single array, registering a listener only adds its own methods instead of rebuilding the cache.
+ * Methods which are not public, or are declared in a class which is not public, are called through a method handle instead.
+ *
+ * <p>Listeners are called in the order of their registration. For every listener, methods for a more specific
+ * event type are called first.
+ * <br>The methods and invokers of a listener class are cached by this manager until the last listener of that class
+ * is unregistered.
+ *
+ * @see net.dv8tion.jda.api.hooks.AnnotatedEventManager
+ * @see net.dv8tion.jda.api.hooks.IEventManager
+ * @see net.dv8tion.jda.api.hooks.SubscribeEvent
+ *
+ * @since 4.3.0
+ */
+public class IndexedAnnotatedEventManager implements IEventManager
+{
+    private final Map<Class<?>, Method[]> declaredMethods = new ConcurrentHashMap<>();
+    private final Map<Object, Binding[]> bindings = new ConcurrentHashMap<>();
+    private final EventDispatchTable table = new EventDispatchTable()
+    {
+        @Override
+        protected void collect(Object listener, Class<?> eventClass, List<Handler> handlers)
+        {
+            Binding[] listenerBindings = bindings.get(listener);
+            if (listenerBindings == null)
+                return;
+            for (Class<?> clazz : ClassWalker.walk(eventClass))
+            {
+                for (Binding binding : listenerBindings)
+                {
+                    if (binding.eventType == clazz)
+                        handlers.add(new Handler(listener, binding.invoker));
+                }
+            }
+        }
+    };
+
+    @Override
+    public synchronized void register(@Nonnull Object listener)
+    {
+        if (bindings.containsKey(listener))
+            return;
+        boolean isClass = listener instanceof Class;
+        Class<?> type = getType(listener);
+        Method[] methods = declaredMethods.computeIfAbsent(type, IndexedAnnotatedEventManager::findMethods);
+
+        List<Binding> listenerBindings = new ArrayList<>(methods.length);
+        for (Method method : methods)
+        {
+            if (isClass && !Modifier.isStatic(method.getModifiers()))
+                continue;
+            listenerBindings.add(new Binding(method.getParameterTypes()[0], table.createInvoker(method, listener)));
+        }
+        bindings.put(listener, listenerBindings.toArray(new Binding[0]));
+        table.register(listener);
+    }
+
+    @Override
+    public synchronized void unregister(@Nonnull Object listener)
+    {
+        if (!table.unregister(listener))
+            return;
+        bindings.remove(listener);
+
+        Class<?> type = getType(listener);
+        for (Object other : bindings.keySet())
+        {
+            if (getType(other) == type)
+                return;
+        }
+        Method[] methods = declaredMethods.remove(type);
+        if (methods != null)
+            table.removeInvokers(methods);
+    }
+
+    @Nonnull
+    @Override
+    public List<Object> getRegisteredListeners()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(table.getListeners()));
+    }
+
+    @Override
+    public void handle(@Nonnull GenericEvent event)
+    {
+        table.dispatch(event);
+    }
+
+    private static Class<?> getType(Object listener)
+    {
+        return listener instanceof Class ? (Class<?>) listener : listener.getClass();
+    }
+
+    private static Method[] findMethods(Class<?> type)
+    {
+        // same rules as the AnnotatedEventManager, only methods declared by the class itself are considered
+        List<Method> methods = new ArrayList<>();
+        for (Method method : type.getDeclaredMethods())
+        {
+            if (!method.isAnnotationPresent(SubscribeEvent.class))
+                continue;
+            Class<?>[] parameters = method.getParameterTypes();
+            if (parameters.length == 1 && GenericEvent.class.isAssignableFrom(parameters[0]))
+                methods.add(method);
+        }
+        return methods.toArray(new Method[0]);
+    }
+
+    private static class Binding
+    {
+        private final Class<?> eventType;
+        private final Consumer<GenericEvent> invoker;
+
+        private Binding(Class<?> eventType, Consumer<GenericEvent> invoker)
+        {
+            this.eventType = eventType;
+            this.invoker = invoker;
+        }
+    }
+}
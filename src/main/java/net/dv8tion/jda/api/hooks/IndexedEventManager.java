@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.hooks;
+
+import net.dv8tion.jda.api.events.Event;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.ReconnectedEvent;
+import net.dv8tion.jda.api.events.ResumedEvent;
+import net.dv8tion.jda.api.events.UpdateEvent;
+import net.dv8tion.jda.internal.hooks.EventDispatchTable;
+import net.dv8tion.jda.internal.utils.ClassWalker;
+import net.dv8tion.jda.internal.utils.JDALogger;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * An {@link net.dv8tion.jda.api.hooks.IEventManager IEventManager} implementation
+ * that uses the {@link net.dv8tion.jda.api.hooks.EventListener EventListener} interface for
+ * event listeners, like the {@link InterfacedEventManager}.
+ *
+ * <p>For every concrete event class, this manager computes which listeners handle it and caches the result.
+ * For a {@link ListenerAdapter} only the methods overridden by its class are called directly,
+ * without going through {@link ListenerAdapter#onEvent(GenericEvent)}. A listener which overrides none of the methods
+ * for an event is skipped entirely. Other listeners are called with {@link EventListener#onEvent(GenericEvent)} as usual.
+ * <br>The cache is updated on every registration, so this manager is best suited for listeners which are registered once on startup.
+ *
+ * <p>Listeners are called in the order of their registration.
+ * Like in {@link ListenerAdapter#onEvent(GenericEvent)}, an exception thrown by one method of a {@link ListenerAdapter}
+ * skips its remaining methods for that event, but not the other listeners.
+ *
+ * @see net.dv8tion.jda.api.hooks.InterfacedEventManager
+ * @see net.dv8tion.jda.api.hooks.IEventManager
+ *
+ * @since 4.3.0
+ */
+public class IndexedEventManager implements IEventManager
+{
+    /** ListenerAdapter methods called for every event of a type, in the order of ListenerAdapter#onEvent */
+    private static final Map<Class<?>, String> GENERIC_METHODS = new LinkedHashMap<>();
+    /** Classes without a handler in ListenerAdapter, which are skipped when walking the event hierarchy */
+    private static final Set<Class<?>> UNRESOLVED = new HashSet<>();
+    private static final Map<Class<?>, Optional<Method>> ADAPTER_METHODS = new ConcurrentHashMap<>();
+
+    static
+    {
+        GENERIC_METHODS.put(GenericEvent.class, "onGenericEvent");
+        GENERIC_METHODS.put(UpdateEvent.class, "onGenericUpdate");
+        GENERIC_METHODS.put(ResumedEvent.class, "onResume");
+        GENERIC_METHODS.put(ReconnectedEvent.class, "onReconnect");
+        Collections.addAll(UNRESOLVED, Object.class, Event.class, UpdateEvent.class, GenericEvent.class);
+    }
+
+    private final EventDispatchTable table = new EventDispatchTable()
+    {
+        @Override
+        protected void collect(Object listener, Class<?> eventClass, List<Handler> handlers)
+        {
+            if (listener instanceof ListenerAdapter)
+                collectAdapter(this, (ListenerAdapter) listener, eventClass, handlers);
+            else
+                handlers.add(new Handler(listener, ((EventListener) listener)::onEvent));
+        }
+    };
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException
+     *         If the provided listener does not implement {@link net.dv8tion.jda.api.hooks.EventListener EventListener}
+     */
+    @Override
+    public void register(@Nonnull Object listener)
+    {
+        if (!(listener instanceof EventListener))
+        {
+            throw new IllegalArgumentException("Listener must implement EventListener");
+        }
+        table.register(listener);
+    }
+
+    @Override
+    public void unregister(@Nonnull Object listener)
+    {
+        if (!(listener instanceof EventListener))
+        {
+            //noinspection ConstantConditions
+            JDALogger.getLog(getClass()).warn(
+                    "Trying to remove a listener that does not implement EventListener: {}",
+                    listener == null ? "null" : listener.getClass().getName());
+        }
+
+        table.unregister(listener);
+    }
+
+    @Nonnull
+    @Override
+    public List<Object> getRegisteredListeners()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(table.getListeners()));
+    }
+
+    @Override
+    public void handle(@Nonnull GenericEvent event)
+    {
+        table.dispatch(event);
+    }
+
+    private static void collectAdapter(EventDispatchTable table, ListenerAdapter listener, Class<?> eventClass, List<EventDispatchTable.Handler> handlers)
+    {
+        List<Consumer<GenericEvent>> invokers = new ArrayList<>();
+        for (Map.Entry<Class<?>, String> entry : GENERIC_METHODS.entrySet())
+        {
+            if (entry.getKey().isAssignableFrom(eventClass))
+                addOverridden(table, listener, findAdapterMethod(entry.getValue(), entry.getKey()), invokers);
+        }
+
+        for (Class<?> clazz : ClassWalker.range(eventClass, GenericEvent.class))
+        {
+            if (UNRESOLVED.contains(clazz))
+                continue;
+            Method method = ADAPTER_METHODS.computeIfAbsent(clazz, IndexedEventManager::findAdapterMethod).orElse(null);
+            addOverridden(table, listener, method, invokers);
+        }
+
+        if (invokers.size() == 1)
+        {
+            handlers.add(new EventDispatchTable.Handler(listener, invokers.get(0)));
+        }
+        else if (!invokers.isEmpty())
+        {
+            // One handler for all methods, like ListenerAdapter#onEvent an exception skips the remaining methods
+            @SuppressWarnings("unchecked")
+            Consumer<GenericEvent>[] chain = invokers.toArray(new Consumer[0]);
+            handlers.add(new EventDispatchTable.Handler(listener, (event) ->
+            {
+                for (Consumer<GenericEvent> invoker : chain)
+                    invoker.accept(event);
+            }));
+        }
+    }
+
+    private static void addOverridden(EventDispatchTable table, ListenerAdapter listener, Method method, List<Consumer<GenericEvent>> invokers)
+    {
+        if (method == null)
+            return;
+        try
+        {
+            Method implementation = listener.getClass().getMethod(method.getName(), method.getParameterTypes());
+            if (implementation.getDeclaringClass() == ListenerAdapter.class)
+                return; // not overridden, calling it would do nothing
+        }
+        catch (NoSuchMethodException e)
+        {
+            return;
+        }
+        // the method of ListenerAdapter is invoked virtually and dispatches to the override
+        invokers.add(table.createInvoker(method, listener));
+    }
+
+    // Same naming convention as ListenerAdapter#onEvent
+    private static Optional<Method> findAdapterMethod(Class<?> clazz)
+    {
+        String name = clazz.getSimpleName();
+        if (!name.endsWith("Event"))
+            return Optional.empty();
+        return Optional.ofNullable(findAdapterMethod("on" + name.substring(0, name.length() - "Event".length()), clazz));
+    }
+
+    private static Method findAdapterMethod(String name, Class<?> type)
+    {
+        try
+        {
+            return ListenerAdapter.class.getMethod(name, type);
+        }
+        catch (NoSuchMethodException ignored) {} // this means this is probably a custom event!
+        return null;
+    }
+}
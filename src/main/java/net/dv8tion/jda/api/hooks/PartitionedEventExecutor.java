@@ -0,0 +1,499 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.hooks;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.ISnowflake;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.channel.category.GenericCategoryEvent;
+import net.dv8tion.jda.api.events.channel.store.GenericStoreChannelEvent;
+import net.dv8tion.jda.api.events.channel.text.GenericTextChannelEvent;
+import net.dv8tion.jda.api.events.channel.voice.GenericVoiceChannelEvent;
+import net.dv8tion.jda.api.events.emote.GenericEmoteEvent;
+import net.dv8tion.jda.api.events.guild.GenericGuildEvent;
+import net.dv8tion.jda.api.events.guild.member.GenericGuildMemberEvent;
+import net.dv8tion.jda.api.events.guild.voice.GenericGuildVoiceEvent;
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
+import net.dv8tion.jda.api.events.message.GenericMessageEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.react.GenericMessageReactionEvent;
+import net.dv8tion.jda.api.events.role.GenericRoleEvent;
+import net.dv8tion.jda.api.events.user.GenericUserEvent;
+import net.dv8tion.jda.api.events.user.UserTypingEvent;
+import net.dv8tion.jda.api.events.user.update.GenericUserPresenceEvent;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.utils.Checks;
+
+import javax.annotation.Nonnull;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToLongFunction;
+
+/**
+ * Event pool which dispatches events in parallel, while keeping the order of events with the same partition key.
+ *
+ * <p>Every event is assigned to one of a fixed amount of lanes, based on the key returned by the key function.
+ * A lane runs its events one after another on the provided executor, so events of the same guild, channel, or user
+ * are handled in the order they were received while different lanes run in parallel.
+ * Each lane holds at most {@code laneCapacity} pending events, if a lane is full the thread dispatching the event
+ * waits until there is room again. This slows down reading from the gateway instead of buffering an unlimited amount of events.
+ *
+ * <p>The wait is bounded by the maximum wait time, which is {@link #DEFAULT_MAX_WAIT_MILLIS 1 second} by default.
+ * The gateway thread also reads the heartbeat acknowledgements, blocking it for longer than a heartbeat interval
+ * would make the shard reconnect. Once a wait timed out, the lane accepts events beyond its capacity without waiting
+ * until it has drained below its capacity again, so a stuck listener delays the gateway thread at most once per stall.
+ * Combine this with an {@link EventBackpressure} to shed events while the lanes are full.
+ *
+ * <p>The same instance can be shared by multiple shards.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * PartitionedEventExecutor pool = new PartitionedEventExecutor(Executors.newFixedThreadPool(8), 64, 1000, PartitionedEventExecutor.CHANNEL);
+ * JDABuilder.createDefault(token)
+ *     .setPartitionedEventPool(pool)
+ *     .build();
+ * }</pre>
+ *
+ * @see net.dv8tion.jda.api.JDABuilder#setPartitionedEventPool(PartitionedEventExecutor)
+ *
+ * @since 4.3.0
+ */
+public class PartitionedEventExecutor
+{
+    /** Partitions events by their guild. Events without a guild use the channel id, or {@code 0} */
+    public static final ToLongFunction<GenericEvent> GUILD = PartitionedEventExecutor::getGuildKey;
+    /** Partitions events by their channel. Events without a channel use the guild id, or {@code 0} */
+    public static final ToLongFunction<GenericEvent> CHANNEL = PartitionedEventExecutor::getChannelKey;
+    /** Partitions events by their user. Events without a user use the guild id, or {@code 0} */
+    public static final ToLongFunction<GenericEvent> USER = PartitionedEventExecutor::getUserKey;
+
+    /** The default maximum time the dispatching thread waits for room on a full lane */
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 1000;
+
+    /** Amount of events a lane runs before it gives other lanes a turn on the executor */
+    private static final int BATCH_SIZE = 64;
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    protected final Executor executor;
+    protected final ToLongFunction<? super GenericEvent> keyFunction;
+    protected final int laneCapacity;
+    protected final long maxWaitNanos;
+    protected final Lane[] lanes;
+
+    private final ThreadLocal<Lane> currentLane = new ThreadLocal<>();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+
+    /**
+     * Creates a new partitioned executor.
+     *
+     * @param  executor
+     *         The executor which runs the lanes, its threads are shared by all lanes
+     * @param  lanes
+     *         The amount of lanes, this limits how many events can be handled in parallel
+     * @param  laneCapacity
+     *         The maximum amount of pending events per lane
+     * @param  keyFunction
+     *         The function which returns the partition key of an event, for instance {@link #GUILD}, {@link #CHANNEL}, or {@link #USER}
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided or the amount of lanes or the capacity is not positive
+     */
+    public PartitionedEventExecutor(@Nonnull Executor executor, int lanes, int laneCapacity, @Nonnull ToLongFunction<? super GenericEvent> keyFunction)
+    {
+        this(executor, lanes, laneCapacity, keyFunction, DEFAULT_MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new partitioned executor.
+     *
+     * @param  executor
+     *         The executor which runs the lanes, its threads are shared by all lanes
+     * @param  lanes
+     *         The amount of lanes, this limits how many events can be handled in parallel
+     * @param  laneCapacity
+     *         The maximum amount of pending events per lane
+     * @param  keyFunction
+     *         The function which returns the partition key of an event, for instance {@link #GUILD}, {@link #CHANNEL}, or {@link #USER}
+     * @param  maxWait
+     *         The maximum time the dispatching thread waits for room on a full lane,
+     *         this should be far below the heartbeat interval of the gateway
+     * @param  unit
+     *         The time unit of the maximum wait
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided, the amount of lanes or the capacity is not positive, or the maximum wait is negative
+     */
+    public PartitionedEventExecutor(@Nonnull Executor executor, int lanes, int laneCapacity, @Nonnull ToLongFunction<? super GenericEvent> keyFunction,
+                                    long maxWait, @Nonnull TimeUnit unit)
+    {
+        Checks.notNull(executor, "Executor");
+        Checks.notNull(keyFunction, "Key function");
+        Checks.notNull(unit, "TimeUnit");
+        Checks.positive(lanes, "Lanes");
+        Checks.positive(laneCapacity, "Lane capacity");
+        Checks.notNegative(maxWait, "Max wait");
+        this.executor = executor;
+        this.keyFunction = keyFunction;
+        this.laneCapacity = laneCapacity;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++)
+            this.lanes[i] = new Lane();
+    }
+
+    /**
+     * Queues the task on the lane of the provided event.
+     * <br>If the lane is full, this waits until the lane has room again, but no longer than the maximum wait time.
+     * After a wait timed out the task is queued beyond the capacity of the lane.
+     * Events dispatched by a task which is running on one of the lanes are always queued, to avoid a lane waiting for itself.
+     *
+     * @param  event
+     *         The event, used to find the lane
+     * @param  task
+     *         The task which handles the event
+     */
+    public void execute(@Nonnull GenericEvent event, @Nonnull Runnable task)
+    {
+        Lane lane = getLane(event);
+        if (lane.size.get() >= laneCapacity && currentLane.get() == null && !lane.overflowing)
+            awaitCapacity(lane);
+        enqueue(lane, task);
+    }
+
+    /**
+     * Queues the task on the lane of the provided event, if the lane has room for it.
+     * <br>Unlike {@link #execute(GenericEvent, Runnable)}, this never waits.
+     *
+     * @param  event
+     *         The event, used to find the lane
+     * @param  task
+     *         The task which handles the event
+     *
+     * @return True, if the task was queued
+     */
+    public boolean offer(@Nonnull GenericEvent event, @Nonnull Runnable task)
+    {
+        Lane lane = getLane(event);
+        if (lane.size.get() >= laneCapacity && currentLane.get() == null)
+            return false;
+        enqueue(lane, task);
+        return true;
+    }
+
+    private void enqueue(Lane lane, Runnable task)
+    {
+        lane.queue.add(task);
+        int size = lane.size.incrementAndGet();
+        dispatched.incrementAndGet();
+        int max;
+        while (size > (max = maxQueued.get()) && !maxQueued.compareAndSet(max, size));
+        lane.schedule();
+    }
+
+    /**
+     * The amount of lanes.
+     *
+     * @return The amount of lanes
+     */
+    public int getLaneCount()
+    {
+        return lanes.length;
+    }
+
+    /**
+     * The maximum amount of pending events per lane.
+     *
+     * @return The lane capacity
+     */
+    public int getLaneCapacity()
+    {
+        return laneCapacity;
+    }
+
+    /**
+     * The amount of events pending on the lane with the provided index.
+     *
+     * @param  lane
+     *         The index of the lane
+     *
+     * @throws IndexOutOfBoundsException
+     *         If the index is not between 0 and {@link #getLaneCount()}
+     *
+     * @return The amount of pending events
+     */
+    public int getQueueSize(int lane)
+    {
+        return lanes[lane].size.get();
+    }
+
+    /**
+     * The amount of events pending on all lanes.
+     *
+     * @return The amount of pending events
+     */
+    public int getQueueSize()
+    {
+        int size = 0;
+        for (Lane lane : lanes)
+            size += lane.size.get();
+        return size;
+    }
+
+    /**
+     * The highest amount of events which were pending on a single lane.
+     *
+     * @return The highest lane size
+     */
+    public int getMaxQueueSize()
+    {
+        return maxQueued.get();
+    }
+
+    /**
+     * The total amount of events which were queued.
+     *
+     * @return The amount of queued events
+     */
+    public long getDispatchedEvents()
+    {
+        return dispatched.get();
+    }
+
+    /**
+     * The amount of times the dispatching thread had to wait because a lane was full.
+     *
+     * @return The amount of waits
+     */
+    public long getBlockedCount()
+    {
+        return blocked.get();
+    }
+
+    /**
+     * The total time the dispatching threads waited for full lanes.
+     *
+     * @param  unit
+     *         The time unit of the result
+     *
+     * @return The time spent waiting
+     */
+    public long getBlockedTime(@Nonnull TimeUnit unit)
+    {
+        Checks.notNull(unit, "TimeUnit");
+        return unit.convert(blockedNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The amount of times a wait for a full lane timed out, after which the lane accepted events beyond its capacity.
+     *
+     * @return The amount of timed out waits
+     */
+    public long getOverflowCount()
+    {
+        return overflows.get();
+    }
+
+    protected Lane getLane(GenericEvent event)
+    {
+        long key = keyFunction.applyAsLong(event);
+        // snowflakes are time based, mix the bits so consecutive ids spread over all lanes
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return lanes[(int) ((hash >>> 32) % lanes.length)];
+    }
+
+    private void awaitCapacity(Lane lane)
+    {
+        long start = System.nanoTime();
+        blocked.incrementAndGet();
+        while (lane.size.get() >= laneCapacity && !isShutdown())
+        {
+            if (System.nanoTime() - start >= maxWaitNanos)
+            {
+                // the gateway thread has to read the heartbeat acknowledgements, stop waiting until the lane recovered
+                lane.overflowing = true;
+                overflows.incrementAndGet();
+                JDAImpl.LOG.warn("Event lane is still full after {} ms, queueing events beyond its capacity until it catches up", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+                break;
+            }
+            LockSupport.parkNanos(this, BACKOFF_NANOS);
+            if (Thread.interrupted())
+            {
+                // keep the interrupt for the caller, but don't drop the event
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        blockedNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    private boolean isShutdown()
+    {
+        return executor instanceof ExecutorService && ((ExecutorService) executor).isShutdown();
+    }
+
+    protected class Lane implements Runnable
+    {
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // set after a wait for this lane timed out, the dispatching thread doesn't wait again until the lane drained
+        private volatile boolean overflowing;
+
+        private void schedule()
+        {
+            if (!scheduled.compareAndSet(false, true))
+                return;
+            try
+            {
+                executor.execute(this);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                // the executor was shut down, run the pending events on this thread to keep their order
+                JDAImpl.LOG.warn("Event-Pool rejected event execution! Running on handling thread instead...");
+                drain(Integer.MAX_VALUE);
+                scheduled.set(false);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            drain(BATCH_SIZE);
+            scheduled.set(false);
+            // tasks which were added after the last poll have to be picked up again
+            if (!queue.isEmpty())
+                schedule();
+        }
+
+        private void drain(int limit)
+        {
+            Lane previous = currentLane.get();
+            currentLane.set(this);
+            try
+            {
+                for (int i = 0; i < limit; i++)
+                {
+                    Runnable task = queue.poll();
+                    if (task == null)
+                        break;
+                    try
+                    {
+                        task.run();
+                    }
+                    catch (Throwable throwable)
+                    {
+                        JDAImpl.LOG.error("Uncaught exception in partitioned event pool", throwable);
+                        if (throwable instanceof Error)
+                            throw (Error) throwable;
+                    }
+                    finally
+                    {
+                        if (size.decrementAndGet() < laneCapacity && overflowing)
+                            overflowing = false;
+                    }
+                }
+            }
+            finally
+            {
+                currentLane.set(previous);
+            }
+        }
+    }
+
+    private static long id(ISnowflake entity)
+    {
+        return entity == null ? 0 : entity.getIdLong();
+    }
+
+    private static long getGuildKey(GenericEvent event)
+    {
+        Guild guild = null;
+        if (event instanceof GenericGuildEvent)
+            guild = ((GenericGuildEvent) event).getGuild();
+        else if (event instanceof GenericMessageEvent)
+            return ((GenericMessageEvent) event).isFromGuild() ? id(((GenericMessageEvent) event).getGuild()) : id(((GenericMessageEvent) event).getChannel());
+        else if (event instanceof GenericTextChannelEvent)
+            guild = ((GenericTextChannelEvent) event).getGuild();
+        else if (event instanceof GenericVoiceChannelEvent)
+            guild = ((GenericVoiceChannelEvent) event).getGuild();
+        else if (event instanceof GenericStoreChannelEvent)
+            guild = ((GenericStoreChannelEvent) event).getChannel().getGuild();
+        else if (event instanceof GenericCategoryEvent)
+            guild = ((GenericCategoryEvent) event).getGuild();
+        else if (event instanceof GenericRoleEvent)
+            guild = ((GenericRoleEvent) event).getGuild();
+        else if (event instanceof GenericEmoteEvent)
+            guild = ((GenericEmoteEvent) event).getGuild();
+        else if (event instanceof GenericUserPresenceEvent)
+            guild = ((GenericUserPresenceEvent) event).getGuild();
+        else if (event instanceof GenericInteractionCreateEvent)
+        {
+            GenericInteractionCreateEvent interaction = (GenericInteractionCreateEvent) event;
+            return interaction.getGuild() != null ? id(interaction.getGuild()) : id(interaction.getChannel());
+        }
+        return id(guild);
+    }
+
+    private static long getChannelKey(GenericEvent event)
+    {
+        if (event instanceof GenericMessageEvent)
+            return id(((GenericMessageEvent) event).getChannel());
+        if (event instanceof GenericTextChannelEvent)
+            return id(((GenericTextChannelEvent) event).getChannel());
+        if (event instanceof GenericVoiceChannelEvent)
+            return id(((GenericVoiceChannelEvent) event).getChannel());
+        if (event instanceof GenericStoreChannelEvent)
+            return id(((GenericStoreChannelEvent) event).getChannel());
+        if (event instanceof GenericCategoryEvent)
+            return id(((GenericCategoryEvent) event).getCategory());
+        if (event instanceof UserTypingEvent)
+            return id(((UserTypingEvent) event).getChannel());
+        if (event instanceof GenericInteractionCreateEvent && ((GenericInteractionCreateEvent) event).getChannel() != null)
+            return id(((GenericInteractionCreateEvent) event).getChannel());
+        return getGuildKey(event);
+    }
+
+    private static long getUserKey(GenericEvent event)
+    {
+        if (event instanceof GenericUserEvent)
+            return id(((GenericUserEvent) event).getUser());
+        if (event instanceof GenericGuildMemberEvent)
+            return id(((GenericGuildMemberEvent) event).getUser());
+        if (event instanceof GenericGuildVoiceEvent)
+            return id(((GenericGuildVoiceEvent) event).getMember());
+        if (event instanceof GenericMessageReactionEvent)
+            return ((GenericMessageReactionEvent) event).getUserIdLong();
+        if (event instanceof MessageReceivedEvent)
+            return id(((MessageReceivedEvent) event).getAuthor());
+        if (event instanceof GenericInteractionCreateEvent)
+            return id(((GenericInteractionCreateEvent) event).getUser());
+        return getGuildKey(event);
+    }
+}
@@ -18,14 +18,13 @@ package net.dv8tion.jda.api.sharding;
 import gnu.trove.set.TIntSet;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.OnlineStatus;
-import net.dv8tion.jda.api.entities.Activity;
-import net.dv8tion.jda.api.entities.Guild;
-import net.dv8tion.jda.api.entities.SelfUser;
+import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.utils.ChunkingFilter;
 import net.dv8tion.jda.api.utils.MiscUtil;
 import net.dv8tion.jda.api.utils.SessionController;
 import net.dv8tion.jda.api.utils.cache.ShardCacheView;
+import net.dv8tion.jda.api.utils.cache.SnowflakeCacheView;
 import net.dv8tion.jda.internal.JDAImpl;
 import net.dv8tion.jda.internal.entities.SelfUserImpl;
 import net.dv8tion.jda.internal.managers.PresenceImpl;
@@ -34,11 +33,14 @@ import net.dv8tion.jda.internal.requests.Route;
 import net.dv8tion.jda.internal.utils.Checks;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import net.dv8tion.jda.internal.utils.UnlockHook;
+import net.dv8tion.jda.internal.utils.cache.CrossShardIndex;
 import net.dv8tion.jda.internal.utils.cache.ShardCacheViewImpl;
+import net.dv8tion.jda.internal.utils.cache.SharedUserCache;
 import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
 import net.dv8tion.jda.internal.utils.config.MetaConfig;
 import net.dv8tion.jda.internal.utils.config.SessionConfig;
 import net.dv8tion.jda.internal.utils.config.ThreadingConfig;
+import net.dv8tion.jda.internal.utils.config.flags.ShardingConfigFlag;
 import net.dv8tion.jda.internal.utils.config.sharding.*;
 import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
@@ -52,7 +54,10 @@ import java.util.EnumSet;
 import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 /**
  * JDA's default {@link net.dv8tion.jda.api.sharding.ShardManager ShardManager} implementation.
@@ -84,7 +89,13 @@ public class DefaultShardManager implements ShardManager
     /**
      * The {@link ShardCacheView ShardCacheView} that holds all shards.
      */
-    protected ShardCacheViewImpl shards;
+    protected volatile ShardCacheViewImpl shards;
+
+    /**
+     * The {@link ShardCacheView ShardCacheView} that holds the shards started by {@link #reshard(int, Collection)}.
+     * <br>This is {@code null} if no resharding is in progress.
+     */
+    protected volatile ShardCacheViewImpl pendingShards;
 
     /**
      * This can be used to check if the ShardManager is shutting down.
@@ -146,6 +157,16 @@ public class DefaultShardManager implements ShardManager
      */
     protected final ChunkingFilter chunkingFilter;
 
+    /**
+     * {@link CrossShardIndex} shared by all shards, used to resolve entities without iterating every shard.
+     */
+    protected final CrossShardIndex crossShardIndex = new CrossShardIndex();
+
+    /**
+     * {@link SharedUserCache} used by all shards, or {@code null} if every shard uses its own user instances.
+     */
+    protected final SharedUserCache sharedUserCache;
+
     public DefaultShardManager(@Nonnull String token)
     {
         this(token, null);
@@ -173,6 +194,9 @@ public class DefaultShardManager implements ShardManager
         this.chunkingFilter = chunkingFilter == null ? ChunkingFilter.ALL : chunkingFilter;
         this.executor = createExecutor(this.threadingConfig.getThreadFactory());
         this.shutdownHook = this.metaConfig.isUseShutdownHook() ? new Thread(this::shutdown, "JDA Shutdown Hook") : null;
+        this.sharedUserCache = this.sessionConfig.getShardingFlags().contains(ShardingConfigFlag.SHARED_USER_CACHE)
+            ? new SharedUserCache(() -> getShardCache().stream())
+            : null;
 
         synchronized (queue)
         {
@@ -206,6 +230,9 @@ public class DefaultShardManager implements ShardManager
         ShardManager.super.addEventListener(listeners);
         for (Object o : listeners)
             eventConfig.addEventListener(o);
+        ShardCacheViewImpl pending = this.pendingShards;
+        if (pending != null)
+            pending.forEach(jda -> jda.addEventListener(listeners));
     }
 
     @Override
@@ -214,6 +241,9 @@ public class DefaultShardManager implements ShardManager
         ShardManager.super.removeEventListener(listeners);
         for (Object o : listeners)
             eventConfig.removeEventListener(o);
+        ShardCacheViewImpl pending = this.pendingShards;
+        if (pending != null)
+            pending.forEach(jda -> jda.removeEventListener(listeners));
     }
 
     @Override
@@ -221,6 +251,15 @@ public class DefaultShardManager implements ShardManager
     {
         ShardManager.super.addEventListeners(eventListenerProvider);
         eventConfig.addEventListenerProvider(eventListenerProvider);
+        ShardCacheViewImpl pending = this.pendingShards;
+        if (pending != null)
+        {
+            pending.forEach(jda ->
+            {
+                Object listener = eventListenerProvider.apply(jda.getShardInfo().getShardId());
+                if (listener != null) jda.addEventListener(listener);
+            });
+        }
     }
 
     @Override
@@ -249,6 +288,117 @@ public class DefaultShardManager implements ShardManager
         return shard == null ? null : shard.getGuildById(id);
     }
 
+    @Nonnull
+    @Override
+    public SnowflakeCacheView<User> getUserCache()
+    {
+        if (sharedUserCache != null)
+            return sharedUserCache;
+        return ShardManager.super.getUserCache();
+    }
+
+    @Override
+    public User getUserById(long id)
+    {
+        if (sharedUserCache != null)
+            return sharedUserCache.getElementById(id);
+        int shardId = crossShardIndex.getShardForUser(id);
+        JDA shard = shardId < 0 ? null : this.getShardById(shardId);
+        User user = shard == null ? null : shard.getUserById(id);
+        if (user != null)
+            return user;
+
+        // The shard that loaded the user last might have dropped it, while other shards still have it cached
+        user = ShardManager.super.getUserById(id);
+        if (user != null)
+            crossShardIndex.putUser(id, user.getJDA().getShardInfo().getShardId());
+        return user;
+    }
+
+    @Override
+    public GuildChannel getGuildChannelById(long id)
+    {
+        return getGuildEntityById(id, JDA::getGuildChannelById, GuildChannel::getGuild);
+    }
+
+    @Override
+    public TextChannel getTextChannelById(long id)
+    {
+        return getGuildEntityById(id, JDA::getTextChannelById, TextChannel::getGuild);
+    }
+
+    @Override
+    public VoiceChannel getVoiceChannelById(long id)
+    {
+        return getGuildEntityById(id, JDA::getVoiceChannelById, VoiceChannel::getGuild);
+    }
+
+    @Override
+    public StoreChannel getStoreChannelById(long id)
+    {
+        return getGuildEntityById(id, JDA::getStoreChannelById, StoreChannel::getGuild);
+    }
+
+    @Override
+    public Category getCategoryById(long id)
+    {
+        return getGuildEntityById(id, JDA::getCategoryById, Category::getGuild);
+    }
+
+    @Override
+    public Role getRoleById(long id)
+    {
+        return getGuildEntityById(id, JDA::getRoleById, Role::getGuild);
+    }
+
+    @Override
+    public Emote getEmoteById(long id)
+    {
+        return getGuildEntityById(id, JDA::getEmoteById, Emote::getGuild);
+    }
+
+    /**
+     * Resolves the shard responsible for the guild of the provided channel, role, or emote id.
+     *
+     * @param  id
+     *         The entity id
+     *
+     * @return The shard, or null if the entity is unknown
+     */
+    @Nullable
+    protected JDA getShardForGuildEntity(long id)
+    {
+        long guildId = crossShardIndex.getGuildForEntity(id);
+        if (guildId == 0)
+            return null;
+        return this.getShardById(MiscUtil.getShardForGuild(guildId, getShardsTotal()));
+    }
+
+    @Nullable
+    protected <T> T getGuildEntityById(long id, BiFunction<? super JDA, Long, ? extends T> getter, Function<? super T, ? extends Guild> guildGetter)
+    {
+        JDA shard = getShardForGuildEntity(id);
+        T entity = shard == null ? null : getter.apply(shard, id);
+        if (entity != null)
+            return entity;
+
+        // The index can miss entities, for instance when a guild moved to another shard after resharding
+        for (JDA jda : this.shards)
+        {
+            if (jda == shard)
+                continue;
+            entity = getter.apply(jda, id);
+            if (entity != null)
+            {
+                Guild guild = guildGetter.apply(entity);
+                if (guild != null)
+                    crossShardIndex.putGuildEntity(id, guild.getIdLong());
+                return entity;
+            }
+        }
+        return null;
+    }
+
     @Nonnull
     @Override
     public ShardCacheView getShardCache()
@@ -303,12 +453,7 @@ public class DefaultShardManager implements ShardManager
 
         JDA jda = this.shards.remove(shardId);
         if (jda != null)
-        {
-            if (shardingConfig.isUseShutdownNow())
-                jda.shutdownNow();
-            else
-                jda.shutdown();
-        }
+            shutdownInstance(jda);
 
         enqueueShard(shardId);
     }
@@ -323,6 +468,160 @@ public class DefaultShardManager implements ShardManager
               .forEach(this::restart);
     }
 
+    /**
+     * Changes the shard total of this ShardManager without taking the current shards offline.
+     * <br>This is equivalent to {@code reshard(shardsTotal, null)}.
+     *
+     * @param  shardsTotal
+     *         The new shard total
+     *
+     * @throws IllegalArgumentException
+     *         If the shard total is not positive
+     * @throws IllegalStateException
+     *         If the ShardManager is not logged in, shutdown, or already resharding
+     *
+     * @return {@link CompletableFuture} which completes once the new shards have replaced the old ones
+     *
+     * @see    #reshard(int, Collection)
+     */
+    @Nonnull
+    public CompletableFuture<Void> reshard(int shardsTotal)
+    {
+        return reshard(shardsTotal, null);
+    }
+
+    /**
+     * Changes the shard total of this ShardManager without taking the current shards offline.
+     *
+     * <p>The new set of shards is started in the background while the current shards keep receiving and dispatching events.
+     * Events of the new shards are suspended until every one of them has finished loading its guilds.
+     * Suspended events are dropped, not queued, since the current shards dispatch the same events in the meantime.
+     * This also applies to events fired by interacting with the new shards directly, for instance
+     * through the {@link JDA} of an entity received from them, before the swap.
+     * Once all new shards are ready, the {@link #getShardCache() shard cache} is replaced with the new shards,
+     * their events are enabled, and the previous shards are shut down. Since both sets of shards are connected
+     * during the swap, listeners might receive a few events twice but will not miss any.
+     *
+     * <p>Listeners are not notified of the {@link net.dv8tion.jda.api.events.ReadyEvent ReadyEvent} or
+     * {@link net.dv8tion.jda.api.events.guild.GuildReadyEvent GuildReadyEvents} of the new shards,
+     * as the guilds were already available through the previous shards.
+     * Restarting shards while resharding is not supported.
+     *
+     * <p>If any new shard fails to start, all new shards are shut down and the current shards are kept.
+     * If this ShardManager is shut down while resharding, the returned future fails and the new shards are shut down as well.
+     *
+     * @param  shardsTotal
+     *         The new shard total
+     * @param  shardIds
+     *         The shard ids to start for the new shard total, or {@code null} to start all shards
+     *
+     * @throws IllegalArgumentException
+     *         If the shard total is not positive or one of the shard ids is out of range
+     * @throws IllegalStateException
+     *         If the ShardManager is not logged in, shutdown, or already resharding
+     *
+     * @return {@link CompletableFuture} which completes once the new shards have replaced the old ones
+     */
+    @Nonnull
+    public synchronized CompletableFuture<Void> reshard(int shardsTotal, @Nullable Collection<Integer> shardIds)
+    {
+        Checks.positive(shardsTotal, "Shard total");
+        Checks.check(!shutdown.get(), "ShardManager is already shutdown!");
+        Checks.check(this.shards != null, "ShardManager has not been logged in yet!");
+        Checks.check(this.pendingShards == null, "ShardManager is already resharding!");
+
+        final int[] ids = shardIds == null
+            ? IntStream.range(0, shardsTotal).toArray()
+            : shardIds.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+        for (int shardId : ids)
+            Checks.check(shardId >= 0 && shardId < shardsTotal, "Shard id %d is out of range for shard total %d", shardId, shardsTotal);
+
+        final ShardCacheViewImpl pending = new ShardCacheViewImpl(ids.length);
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        this.pendingShards = pending;
+        Thread thread = new Thread(() -> runResharding(pending, ids, shardsTotal, future), "DefaultShardManager Resharding");
+        thread.setPriority(Thread.NORM_PRIORITY + 1);
+        thread.start();
+        return future;
+    }
+
+    protected void runResharding(ShardCacheViewImpl pending, int[] shardIds, int shardsTotal, CompletableFuture<Void> future)
+    {
+        try
+        {
+            LOG.info("Resharding to {} shards, starting {} new shards in the background", shardsTotal, shardIds.length);
+            for (int shardId : shardIds)
+            {
+                if (shutdown.get())
+                    throw new IllegalStateException("ShardManager was shutdown while resharding");
+                JDAImpl jda = buildInstance(shardId, shardsTotal, true);
+                // shutdown() iterates the pending shards with the same lock, a shard added after that has to be shut down here
+                synchronized (queue)
+                {
+                    if (shutdown.get())
+                    {
+                        shutdownInstance(jda);
+                        throw new IllegalStateException("ShardManager was shutdown while resharding");
+                    }
+                    try (UnlockHook hook = pending.writeLock())
+                    {
+                        pending.getMap().put(shardId, jda);
+                    }
+                }
+            }
+
+            for (JDA jda : pending.asList())
+                jda.awaitReady();
+
+            swapShards(pending, shardsTotal);
+            LOG.info("Resharding to {} shards completed", shardsTotal);
+            future.complete(null);
+        }
+        catch (Throwable e)
+        {
+            LOG.error("Resharding failed, shutting down new shards", e);
+            this.pendingShards = null;
+            try
+            {
+                pending.forEach(this::shutdownInstance);
+            }
+            finally
+            {
+                future.completeExceptionally(e);
+            }
+            if (e instanceof Error)
+                throw (Error) e;
+        }
+    }
+
+    protected void swapShards(ShardCacheViewImpl replacement, int shardsTotal)
+    {
+        ShardCacheViewImpl previous;
+        synchronized (queue)
+        {
+            if (shutdown.get())
+                throw new IllegalStateException("ShardManager was shutdown while resharding");
+            previous = this.shards;
+            shardingConfig.setShardsTotal(shardsTotal);
+            this.shards = replacement;
+            this.pendingShards = null;
+            queue.clear(); // queued shard ids belong to the previous shard total
+        }
+
+        // Enable the new shards before the old ones go offline, this way we don't miss any events
+        replacement.forEach(jda -> ((JDAImpl) jda).setEventsSuspended(false));
+        previous.forEach(this::shutdownInstance);
+    }
+
+    private void shutdownInstance(JDA jda)
+    {
+        // the shard releases its shared users itself, once it stopped handling events
+        if (shardingConfig.isUseShutdownNow())
+            jda.shutdownNow();
+        else
+            jda.shutdown();
+    }
+
     @Override
     public void shutdown()
     {
@@ -346,15 +645,15 @@ public class DefaultShardManager implements ShardManager
             executor.execute(() -> {
                 synchronized (queue) // this makes sure we also get shards that were starting when shutdown is called
                 {
-                    this.shards.forEach(jda ->
-                    {
-                        if (shardingConfig.isUseShutdownNow())
-                            jda.shutdownNow();
-                        else
-                            jda.shutdown();
-                    });
+                    this.shards.forEach(this::shutdownInstance);
                     queue.clear();
+                    // shards of a resharding which are built after this are shut down by runResharding
+                    ShardCacheViewImpl pending = this.pendingShards;
+                    if (pending != null)
+                        pending.forEach(this::shutdownInstance);
                 }
+                shutdownSharedPool(threadingConfig.getRateLimitPoolProvider());
+                shutdownSharedPool(threadingConfig.getGatewayPoolProvider());
                 this.executor.shutdown();
             });
         }
@@ -364,17 +663,24 @@ public class DefaultShardManager implements ShardManager
         }
     }
 
+    private void shutdownSharedPool(ThreadPoolProvider<?> provider)
+    {
+        // only shut down the pools created by the builder, pools provided by the user are shut down by the user
+        if (!(provider instanceof SharedThreadPoolProvider) || !((SharedThreadPoolProvider) provider).managed)
+            return;
+        SharedThreadPoolProvider pool = (SharedThreadPoolProvider) provider;
+        if (shardingConfig.isUseShutdownNow())
+            pool.shutdown();
+        else
+            pool.awaitShutdown(1, TimeUnit.MINUTES); // shards finish their pending requests first
+    }
+
     @Override
     public void shutdown(final int shardId)
     {
         final JDA jda = this.shards.remove(shardId);
         if (jda != null)
-        {
-            if (shardingConfig.isUseShutdownNow())
-                jda.shutdownNow();
-            else
-                jda.shutdown();
-        }
+            shutdownInstance(jda);
     }
 
     @Override
@@ -473,6 +779,27 @@ public class DefaultShardManager implements ShardManager
     }
 
     protected JDAImpl buildInstance(final int shardId) throws LoginException
+    {
+        return buildInstance(shardId, -1, false);
+    }
+
+    /**
+     * Creates and logs in a new shard.
+     *
+     * @param  shardId
+     *         The shard id
+     * @param  shardsTotal
+     *         The shard total for this shard, or {@code -1} to use {@link #getShardsTotal()}
+     * @param  suspendEvents
+     *         Whether events of this shard should not be dispatched to the listeners,
+     *         until {@link JDAImpl#setEventsSuspended(boolean)} is used
+     *
+     * @throws LoginException
+     *         If the token is invalid
+     *
+     * @return The new shard
+     */
+    protected JDAImpl buildInstance(final int shardId, int shardsTotal, boolean suspendEvents) throws LoginException
     {
         OkHttpClient httpClient = sessionConfig.getHttpClient();
         if (httpClient == null)
@@ -510,10 +837,13 @@ public class DefaultShardManager implements ShardManager
         threadingConfig.setGatewayPool(gatewayPool, shutdownGatewayPool);
         threadingConfig.setCallbackPool(callbackPool, shutdownCallbackPool);
         threadingConfig.setEventPool(eventPool, shutdownEventPool);
+        threadingConfig.setPartitionedEventPool(this.threadingConfig.getPartitionedEventPool());
+        threadingConfig.setEventBackpressure(this.threadingConfig.getEventBackpressure());
         threadingConfig.setAudioPool(audioPool, shutdownAudioPool);
         MetaConfig metaConfig = new MetaConfig(this.metaConfig.getMaxBufferSize(), this.metaConfig.getContextMap(shardId), this.metaConfig.getCacheFlags(), this.sessionConfig.getFlags());
         final JDAImpl jda = new JDAImpl(authConfig, sessionConfig, threadingConfig, metaConfig);
         jda.setMemberCachePolicy(shardingConfig.getMemberCachePolicy());
+        jda.setSnapshotDirectory(shardingConfig.getSnapshotDirectory());
         threadingConfig.init(jda::getIdentifierString);
         // We can only do member chunking with the GUILD_MEMBERS intent
         if ((shardingConfig.getIntents() & GatewayIntent.GUILD_MEMBERS.getRawValue()) == 0)
@@ -522,6 +852,8 @@ public class DefaultShardManager implements ShardManager
             jda.setChunkingFilter(chunkingFilter);
 
         jda.setShardManager(this);
+        jda.setCrossShardIndex(crossShardIndex);
+        jda.setSharedUserCache(sharedUserCache);
 
         if (eventConfig.getEventManagerProvider() != null)
             jda.setEventManager(this.eventConfig.getEventManagerProvider().apply(shardId));
@@ -573,7 +905,7 @@ public class DefaultShardManager implements ShardManager
             }
         }
 
-        final JDA.ShardInfo shardInfo = new JDA.ShardInfo(shardId, getShardsTotal());
+        final JDA.ShardInfo shardInfo = new JDA.ShardInfo(shardId, shardsTotal == -1 ? getShardsTotal() : shardsTotal);
 
         // Initialize SelfUser instance before logging in
         SelfUser selfUser = getShardCache().applyStream(
@@ -588,6 +920,7 @@ public class DefaultShardManager implements ShardManager
             selfUser = SelfUserImpl.copyOf((SelfUserImpl) selfUser, jda);
 
         jda.setSelfUser(selfUser);
+        jda.setEventsSuspended(suspendEvents);
         jda.setStatus(JDA.Status.INITIALIZED); //This is already set by JDA internally, but this is to make sure the listeners catch it.
 
         final int shardTotal = jda.login(this.gatewayURL, shardInfo, this.metaConfig.getCompression(), false, shardingConfig.getIntents(), this.metaConfig.getEncoding());
@@ -23,7 +23,9 @@ import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.OnlineStatus;
 import net.dv8tion.jda.api.audio.factory.IAudioSendFactory;
 import net.dv8tion.jda.api.entities.Activity;
+import net.dv8tion.jda.api.hooks.EventBackpressure;
 import net.dv8tion.jda.api.hooks.IEventManager;
+import net.dv8tion.jda.api.hooks.PartitionedEventExecutor;
 import net.dv8tion.jda.api.hooks.VoiceDispatchInterceptor;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.requests.RestAction;
@@ -43,6 +45,7 @@ import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.security.auth.login.LoginException;
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.IntFunction;
@@ -85,6 +88,8 @@ public class  DefaultShardManagerBuilder
     protected ThreadPoolProvider<? extends ScheduledExecutorService> gatewayPoolProvider = null;
     protected ThreadPoolProvider<? extends ExecutorService> callbackPoolProvider = null;
     protected ThreadPoolProvider<? extends ExecutorService> eventPoolProvider = null;
+    protected PartitionedEventExecutor partitionedEventPool = null;
+    protected EventBackpressure eventBackpressure = null;
     protected ThreadPoolProvider<? extends ScheduledExecutorService> audioPoolProvider = null;
     protected Collection<Integer> shards = null;
     protected OkHttpClient.Builder httpClientBuilder = null;
@@ -94,6 +99,7 @@ public class  DefaultShardManagerBuilder
     protected ThreadFactory threadFactory = null;
     protected ChunkingFilter chunkingFilter;
     protected MemberCachePolicy memberCachePolicy = MemberCachePolicy.ALL;
+    protected File snapshotDirectory;
 
     private DefaultShardManagerBuilder(@Nullable String token, int intents)
     {
@@ -1030,6 +1036,82 @@ public class  DefaultShardManagerBuilder
         return this;
     }
 
+    /**
+     * Whether voice connections should use a non-blocking {@link java.nio.channels.DatagramChannel DatagramChannel}
+     * instead of a blocking {@link java.net.DatagramSocket DatagramSocket}.
+     * <br><b>Default</b>: {@code false}
+     *
+     * <p>With the blocking socket, every voice connection that receives audio uses its own thread.
+     * When enabled, all connections are served by a few selector threads shared by the entire JVM,
+     * which read packets into pooled direct buffers. Receive handlers are then called on these shared threads
+     * and should not block.
+     *
+     * <p>The {@link net.dv8tion.jda.api.audio.factory.IPacketProvider#getUdpSocket() socket} provided to
+     * {@link net.dv8tion.jda.api.audio.factory.IAudioSendSystem send systems} cannot be used to send packets in this mode,
+     * custom send systems have to use {@link net.dv8tion.jda.api.audio.factory.IPacketProvider#getUdpChannel()} instead.
+     * The send systems provided by JDA support both modes.
+     *
+     * @param  enable
+     *         True, to use the non-blocking transport for voice connections
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public DefaultShardManagerBuilder setNioAudioEnabled(boolean enable)
+    {
+        return setFlag(ConfigFlag.NIO_AUDIO, enable);
+    }
+
+    /**
+     * Whether received audio should be decoded on a pool of decoder threads shared by the entire JVM.
+     * <br><b>Default</b>: {@code false}
+     *
+     * <p>By default, every packet is decrypted and decoded on the thread receiving packets for the voice connection.
+     * When enabled, that thread only decrypts packets and passes them to {@link net.dv8tion.jda.api.audio.AudioReceiveHandler#handleEncodedAudio(net.dv8tion.jda.api.audio.OpusPacket) handleEncodedAudio},
+     * the decoding for {@link net.dv8tion.jda.api.audio.AudioReceiveHandler#handleUserAudio(net.dv8tion.jda.api.audio.UserAudio) user}
+     * and {@link net.dv8tion.jda.api.audio.AudioReceiveHandler#handleCombinedAudio(net.dv8tion.jda.api.audio.CombinedAudio) combined} audio
+     * is distributed over the pool. All packets of one speaker are decoded by the same thread and stay in order.
+     * <br>This is useful for connections with many simultaneous speakers. {@code handleUserAudio} is then called on the decoder threads.
+     *
+     * @param  enable
+     *         True, to decode received audio on the shared decoder pool
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public DefaultShardManagerBuilder setAudioDecodePoolEnabled(boolean enable)
+    {
+        return setFlag(ConfigFlag.AUDIO_DECODE_POOL, enable);
+    }
+
+    /**
+     * Whether all voice connections should send and receive through a single UDP socket shared by the entire JVM.
+     * <br><b>Default</b>: {@code false}
+     *
+     * <p>By default, every voice connection opens its own socket and performs its own IP discovery.
+     * When enabled, all connections use one non-blocking socket, received packets are routed to the connection
+     * by the address of the voice server and the SSRC of the speaker. The external address of the socket is only
+     * discovered once per voice server, which saves the round trips when many connections reconnect at once.
+     * <br>This uses the same selector threads as {@link #setNioAudioEnabled(boolean) the non-blocking transport}
+     * and has the same requirements for custom send systems.
+     *
+     * @param  enable
+     *         True, to share one UDP socket between all voice connections
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public DefaultShardManagerBuilder setSharedVoiceSocketEnabled(boolean enable)
+    {
+        return setFlag(ConfigFlag.SHARED_VOICE_SOCKET, enable);
+    }
+
     /**
      * Sets whether or not JDA should try to reconnect if a connection-error is encountered.
      * <br>This will use an incremental reconnect (timeouts are increased each time an attempt fails).
@@ -1615,6 +1697,55 @@ public class  DefaultShardManagerBuilder
         return this;
     }
 
+    /**
+     * Sets the {@link PartitionedEventExecutor} that should be used by the event proxy to schedule events.
+     * <br>The same executor is shared by all shards. Events with the same partition key are handled in order, while events of different partitions are handled in parallel.
+     * When this is set, the {@link #setEventPoolProvider(ThreadPoolProvider) event pool} is not used.
+     *
+     * <p>The executor of the partitioned pool will not be shutdown automatically when JDA is shutdown.
+     *
+     * @param  executor
+     *         The partitioned executor for the event proxy, or null to use the event pool
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @see    PartitionedEventExecutor
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public DefaultShardManagerBuilder setPartitionedEventPool(@Nullable PartitionedEventExecutor executor)
+    {
+        this.partitionedEventPool = executor;
+        return this;
+    }
+
+    /**
+     * Sets the {@link EventBackpressure} used to shed events while the event pool is overloaded.
+     * <br>Once the amount of pending events reaches the queue limit, events are dropped or coalesced according to
+     * the policy of their type. This prevents slow listeners from building up an unbounded backlog.
+     *
+     * <p>This only applies when an {@link #setEventPool(ExecutorService) event pool} or
+     * {@link #setPartitionedEventPool(PartitionedEventExecutor) partitioned event pool} is used.
+     *
+     * <p>Default: {@code null}, all events are handled
+     *
+     * @param  backpressure
+     *         The backpressure policy, or null to handle all events
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @see    EventBackpressure#createDefault(int)
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public DefaultShardManagerBuilder setEventBackpressure(@Nullable EventBackpressure backpressure)
+    {
+        this.eventBackpressure = backpressure;
+        return this;
+    }
+
     /**
      * Sets the {@link ScheduledExecutorService ScheduledExecutorService} used by
      * the audio WebSocket connection. Used for sending keepalives and closing the connection.
@@ -1678,6 +1809,44 @@ public class  DefaultShardManagerBuilder
         return this;
     }
 
+    /**
+     * Lets all shards share the same rate-limit and gateway thread pools, instead of creating dedicated pools for each shard.
+     * <br>This will override the rate-limit and gateway pool providers.
+     *
+     * <p>Every shard gets a fair share of the pools, a single busy shard cannot block the other shards.
+     * To monitor the queue depth of each shard, create the {@link SharedThreadPoolProvider} instances yourself
+     * and use {@link #setRateLimitPoolProvider(ThreadPoolProvider)} and {@link #setGatewayPoolProvider(ThreadPoolProvider)} instead.
+     * Pools created by this method are shut down by {@link ShardManager#shutdown()}, while pools provided that way
+     * have to be shut down by the caller.
+     *
+     * <p>Default: Dedicated pools per shard, see {@link #setRateLimitPool(ScheduledExecutorService)} and {@link #setGatewayPool(ScheduledExecutorService)}
+     *
+     * @param  rateLimitPoolSize
+     *         The amount of threads used by all shards to execute requests
+     * @param  gatewayPoolSize
+     *         The amount of threads used by all shards to send gateway messages and heartbeats
+     *
+     * @throws IllegalArgumentException
+     *         If either pool size is not positive
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @see    SharedThreadPoolProvider
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public DefaultShardManagerBuilder setSharedThreadPools(int rateLimitPoolSize, int gatewayPoolSize)
+    {
+        // Each shard used to have 5 rate-limit threads and 1 gateway thread, keep that as the per shard limit
+        SharedThreadPoolProvider rateLimitPool = new SharedThreadPoolProvider("RateLimit", rateLimitPoolSize, 5);
+        SharedThreadPoolProvider gatewayPool = new SharedThreadPoolProvider("Gateway", gatewayPoolSize, 1);
+        rateLimitPool.managed = true;
+        gatewayPool.managed = true;
+        setRateLimitPoolProvider(rateLimitPool);
+        return setGatewayPoolProvider(gatewayPool);
+    }
+
     /**
      * Sets the maximum amount of time that JDA will back off to wait when attempting to reconnect the MainWebsocket.
      * <br>Provided value must be 32 or greater.
@@ -1877,6 +2046,39 @@ public class  DefaultShardManagerBuilder
         return setFlag(ShardingConfigFlag.SHUTDOWN_NOW, useShutdownNow);
     }
 
+    /**
+     * Whether all shards should share the same {@link net.dv8tion.jda.api.entities.User User} instances.
+     * <br><b>Default</b>: {@code false}
+     *
+     * <p>By default, every shard creates its own user instance for each user it can see,
+     * which means users in guilds of multiple shards are stored and updated multiple times.
+     * When enabled, shards reuse the instance of another shard and a user is only removed from memory
+     * once no shard has it cached anymore.
+     *
+     * <p>This changes the behavior of some user methods:
+     * <ul>
+     *     <li>{@link net.dv8tion.jda.api.entities.User#getJDA() User.getJDA()} returns one of the shards that currently
+     *         have this user cached. This can be a different shard between two calls, once the previous shard released the user.</li>
+     *     <li>{@link net.dv8tion.jda.api.entities.User#getMutualGuilds() User.getMutualGuilds()} returns the mutual guilds
+     *         of all shards, instead of only the guilds of the shard that created the user.</li>
+     * </ul>
+     *
+     * <p>This also allows {@link ShardManager#getUserCache()} and {@link ShardManager#getUserById(long)}
+     * to use a single cache instead of checking every shard, and the cache never contains duplicates.
+     *
+     * @param  enable
+     *         True, to share user instances between shards
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public DefaultShardManagerBuilder setSharedUserCache(boolean enable)
+    {
+        return setFlag(ShardingConfigFlag.SHARED_USER_CACHE, enable);
+    }
+
     /**
      * Sets the {@link com.neovisionaries.ws.client.WebSocketFactory WebSocketFactory} that will be used by JDA's websocket client.
      * This can be used to set things such as connection timeout and proxy.
@@ -1917,6 +2119,85 @@ public class  DefaultShardManagerBuilder
         return this;
     }
 
+    /**
+     * Whether members should be built while the member chunks of a guild are received.
+     * <br><b>Default</b>: {@code false}
+     *
+     * <p>By default, the payload of every member is kept until the guild finished chunking, and all members are built at once.
+     * When enabled, members are built as soon as their chunk arrives and only the built members are kept,
+     * which greatly reduces the memory used while large guilds are chunking.
+     * The guild is still only added to the cache once all of its members were received,
+     * so the {@link net.dv8tion.jda.api.events.guild.GuildReadyEvent GuildReadyEvent} is not affected.
+     *
+     * @param  enable
+     *         True, to build members while chunking
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @see    #setChunkingFilter(ChunkingFilter)
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public DefaultShardManagerBuilder setStreamingGuildSetupEnabled(boolean enable)
+    {
+        return setFlag(ConfigFlag.STREAMING_GUILD_SETUP, enable);
+    }
+
+    /**
+     * Directory used to store a snapshot of the member cache on shutdown.
+     * <br><b>Default</b>: {@code null}
+     *
+     * <p>When a directory is set, the members of all chunked guilds are written to one file per shard in this directory
+     * when the session is shut down with {@link ShardManager#shutdown()}. On the next start, guilds which would require chunking
+     * are restored from this snapshot instead, which makes them available without waiting for their member chunks.
+     * The snapshot is only used for the first session and only if it was created for the same account and shard,
+     * snapshots older than 12 hours are ignored.
+     *
+     * <p>The restored members are reconciled with member chunks which are requested after all other chunk requests.
+     * Changes to members which happened while offline fire the usual update events and members which left are removed
+     * from the cache without an event.
+     *
+     * @param  directory
+     *         The directory for the snapshot files, or null to disable snapshots
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @see    #setChunkingFilter(ChunkingFilter)
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public DefaultShardManagerBuilder setSnapshotDirectory(@Nullable File directory)
+    {
+        this.snapshotDirectory = directory;
+        return this;
+    }
+
+    /**
+     * Whether the member cache of each guild should keep indexes for name and role lookups.
+     * <br><b>Default</b>: {@code false}
+     *
+     * <p>When enabled, every guild keeps a sorted index of the user names and nicknames of its members,
+     * and an index of the members of each role. Lookups such as {@link net.dv8tion.jda.api.entities.Guild#getMembersByName(String, boolean) Guild.getMembersByName(...)},
+     * {@link net.dv8tion.jda.api.entities.Guild#getMembersWithRoles(net.dv8tion.jda.api.entities.Role...) Guild.getMembersWithRoles(...)}, and
+     * {@link net.dv8tion.jda.api.utils.cache.MemberCacheView#getElementsByPrefix(String, int) MemberCacheView.getElementsByPrefix(...)}
+     * then no longer have to check every cached member, at the cost of additional memory and slightly slower member updates.
+     * This is useful for large guilds with frequent lookups, such as autocomplete of member names.
+     *
+     * @param  enable
+     *         True, to index the member cache
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    public DefaultShardManagerBuilder setMemberIndexEnabled(boolean enable)
+    {
+        return setFlag(ConfigFlag.MEMBER_INDEX, enable);
+    }
+
     /**
      * Enable typing and presence update events.
      * <br>These events cover the majority of traffic happening on the gateway and thus cause a lot
@@ -2284,6 +2565,7 @@ public class  DefaultShardManagerBuilder
         checkIntents();
         boolean useShutdownNow = shardingFlags.contains(ShardingConfigFlag.SHUTDOWN_NOW);
         final ShardingConfig shardingConfig = new ShardingConfig(shardsTotal, useShutdownNow, intents, memberCachePolicy);
+        shardingConfig.setSnapshotDirectory(snapshotDirectory);
         final EventConfig eventConfig = new EventConfig(eventManagerProvider);
         listeners.forEach(eventConfig::addEventListener);
         listenerProviders.forEach(eventConfig::addEventListenerProvider);
@@ -2292,6 +2574,8 @@ public class  DefaultShardManagerBuilder
         presenceConfig.setStatusProvider(statusProvider);
         presenceConfig.setIdleProvider(idleProvider);
         final ThreadingProviderConfig threadingConfig = new ThreadingProviderConfig(rateLimitPoolProvider, gatewayPoolProvider, callbackPoolProvider, eventPoolProvider, audioPoolProvider, threadFactory);
+        threadingConfig.setPartitionedEventPool(partitionedEventPool);
+        threadingConfig.setEventBackpressure(eventBackpressure);
         final ShardingSessionConfig sessionConfig = new ShardingSessionConfig(sessionController, voiceDispatchInterceptor, httpClient, httpClientBuilder, wsFactory, audioSendFactory, flags, shardingFlags, maxReconnectDelay, largeThreshold);
         final ShardingMetaConfig metaConfig = new ShardingMetaConfig(maxBufferSize, contextProvider, cacheFlags, flags, compression, encoding);
         final DefaultShardManager manager = new DefaultShardManager(this.token, this.shards, shardingConfig, eventConfig, presenceConfig, threadingConfig, sessionConfig, metaConfig, chunkingFilter);
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.sharding;
+
+import net.dv8tion.jda.internal.utils.Checks;
+import net.dv8tion.jda.internal.utils.concurrent.SharedSchedulerLane;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ThreadPoolProvider} which lets all shards share one small work-stealing pool instead of
+ * creating dedicated threads for every shard.
+ *
+ * <p>Each shard receives its own {@link ScheduledExecutorService} lane on top of the shared pool.
+ * A lane runs at most {@code parallelism} tasks of its shard concurrently and yields to the other shards after
+ * {@code quantum} tasks, which means one busy shard cannot monopolize the pool.
+ * Delayed tasks of all lanes are handled by a single timer thread.
+ *
+ * <p>Shutting down a shard only shuts down its lane, which is removed from this provider once its tasks are done.
+ * The shared pool has to be shutdown with {@link #shutdown()}
+ * once it is no longer needed, its threads are daemon threads and do not prevent the JVM from exiting.
+ * Pools created by {@link DefaultShardManagerBuilder#setSharedThreadPools(int, int)} are owned by the shard manager instead,
+ * and are shut down together with it.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * SharedThreadPoolProvider rateLimitPool = new SharedThreadPoolProvider("RateLimit", 16, 5);
+ * SharedThreadPoolProvider gatewayPool = new SharedThreadPoolProvider("Gateway", 4, 1);
+ * DefaultShardManagerBuilder.createDefault(token)
+ *     .setRateLimitPoolProvider(rateLimitPool)
+ *     .setGatewayPoolProvider(gatewayPool)
+ *     .build();
+ * }</pre>
+ *
+ * @see DefaultShardManagerBuilder#setSharedThreadPools(int, int)
+ *
+ * @since 4.3.0
+ */
+public class SharedThreadPoolProvider implements ThreadPoolProvider<ScheduledExecutorService>
+{
+    /** The default amount of tasks a lane runs before yielding to other shards */
+    public static final int DEFAULT_QUANTUM = 16;
+
+    protected final ForkJoinPool workers;
+    protected final ScheduledThreadPoolExecutor timer;
+    protected final int parallelism;
+    protected final int quantum;
+    protected final Map<Integer, SharedSchedulerLane> lanes = new ConcurrentHashMap<>();
+    // true if the pool was created by DefaultShardManagerBuilder#setSharedThreadPools and belongs to the shard manager
+    boolean managed;
+
+    /**
+     * Creates a new shared pool.
+     *
+     * @param  name
+     *         The base name of the threads
+     * @param  poolSize
+     *         The amount of worker threads shared by all shards
+     * @param  parallelism
+     *         The maximum amount of tasks of a single shard that may run at the same time
+     *
+     * @throws IllegalArgumentException
+     *         If the name is null or any of the sizes is not positive
+     */
+    public SharedThreadPoolProvider(@Nonnull String name, int poolSize, int parallelism)
+    {
+        this(name, poolSize, parallelism, DEFAULT_QUANTUM);
+    }
+
+    /**
+     * Creates a new shared pool.
+     *
+     * @param  name
+     *         The base name of the threads
+     * @param  poolSize
+     *         The amount of worker threads shared by all shards
+     * @param  parallelism
+     *         The maximum amount of tasks of a single shard that may run at the same time
+     * @param  quantum
+     *         The amount of tasks a shard may run before it yields to the other shards
+     *
+     * @throws IllegalArgumentException
+     *         If the name is null or any of the sizes is not positive
+     */
+    public SharedThreadPoolProvider(@Nonnull String name, int poolSize, int parallelism, int quantum)
+    {
+        Checks.notNull(name, "Name");
+        Checks.positive(poolSize, "Pool size");
+        Checks.positive(parallelism, "Parallelism");
+        Checks.positive(quantum, "Quantum");
+        AtomicLong count = new AtomicLong(1);
+        this.workers = new ForkJoinPool(poolSize, pool ->
+        {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("JDA Shared " + name + "-Worker " + count.getAndIncrement());
+            return thread;
+        }, null, true);
+        this.timer = new ScheduledThreadPoolExecutor(1, r ->
+        {
+            Thread thread = new Thread(r, "JDA Shared " + name + "-Timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.parallelism = parallelism;
+        this.quantum = quantum;
+    }
+
+    @Nonnull
+    @Override
+    public ScheduledExecutorService provide(int shardId)
+    {
+        return lanes.compute(shardId, (id, lane) ->
+            lane == null || lane.isShutdown()
+                ? new SharedSchedulerLane(workers, timer, parallelism, quantum, (terminated) -> lanes.remove(id, terminated))
+                : lane
+        );
+    }
+
+    /**
+     * Always true, since shutting down a shard only closes the lane of that shard and not the shared pool.
+     *
+     * @param  shardId
+     *         The current shard id
+     *
+     * @return True
+     */
+    @Override
+    public boolean shouldShutdownAutomatically(int shardId)
+    {
+        return true;
+    }
+
+    /**
+     * The amount of due tasks of the provided shard which are waiting for a worker thread.
+     *
+     * @param  shardId
+     *         The shard id
+     *
+     * @return The queue depth, or 0 if no lane exists for that shard
+     */
+    public int getQueueDepth(int shardId)
+    {
+        SharedSchedulerLane lane = lanes.get(shardId);
+        return lane == null ? 0 : lane.getQueueSize();
+    }
+
+    /**
+     * The amount of delayed and periodic tasks of the provided shard which are not due yet.
+     *
+     * @param  shardId
+     *         The shard id
+     *
+     * @return The amount of scheduled tasks, or 0 if no lane exists for that shard
+     */
+    public int getScheduledCount(int shardId)
+    {
+        SharedSchedulerLane lane = lanes.get(shardId);
+        return lane == null ? 0 : lane.getDelayedSize();
+    }
+
+    /**
+     * The queue depth of every shard that currently uses this pool.
+     *
+     * @return Immutable map from shard id to queue depth
+     *
+     * @see    #getQueueDepth(int)
+     */
+    @Nonnull
+    public Map<Integer, Integer> getQueueDepths()
+    {
+        Map<Integer, Integer> depths = new HashMap<>();
+        lanes.forEach((shardId, lane) -> depths.put(shardId, lane.getQueueSize()));
+        return Collections.unmodifiableMap(depths);
+    }
+
+    /**
+     * The shared work-stealing pool used by all lanes.
+     *
+     * @return The {@link ForkJoinPool}
+     */
+    @Nonnull
+    public ForkJoinPool getSharedPool()
+    {
+        return workers;
+    }
+
+    // Waits for the lanes of the shards to terminate, shards finish their queued tasks before their lane terminates
+    void awaitShutdown(long timeout, TimeUnit unit)
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try
+        {
+            for (SharedSchedulerLane lane : lanes.values())
+            {
+                if (!lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+                    break;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        shutdown();
+    }
+
+    /**
+     * Shuts down the shared pool and every lane.
+     * <br>Shards which still use this provider will fail to execute any further tasks.
+     */
+    public void shutdown()
+    {
+        lanes.values().forEach(SharedSchedulerLane::shutdownNow);
+        lanes.clear();
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+}
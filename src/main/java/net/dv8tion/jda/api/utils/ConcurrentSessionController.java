@@ -16,17 +16,7 @@
 
 package net.dv8tion.jda.api.utils;
 
-import com.neovisionaries.ws.client.OpeningHandshakeException;
-import net.dv8tion.jda.api.JDA;
-import net.dv8tion.jda.api.exceptions.ErrorResponseException;
-import net.dv8tion.jda.internal.utils.Helpers;
-
 import javax.annotation.Nonnull;
-import java.io.IOException;
-import java.net.UnknownHostException;
-import java.util.NoSuchElementException;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -82,98 +72,24 @@ public class ConcurrentSessionController extends SessionControllerAdapter implem
         return worker;
     }
 
-    private static class Worker implements Runnable
+    private static class Worker extends SessionWorker
     {
-        private final Queue<SessionConnectNode> queue = new ConcurrentLinkedQueue<>();
-        private final int id;
-        private Thread thread;
-
         public Worker(int id)
         {
-            this.id = id;
-        }
-
-        public synchronized void start()
-        {
-            if (thread == null)
-            {
-                thread = new Thread(this, "ConcurrentSessionController-Worker-" + id);
-                log.debug("Running worker");
-                thread.start();
-            }
-        }
-
-        public synchronized void stop()
-        {
-            thread = null;
-            if (!queue.isEmpty())
-                start();
-        }
-
-        public void enqueue(SessionConnectNode node)
-        {
-            log.trace("Appending node to queue {}", node.getShardInfo());
-            queue.add(node);
-            start();
-        }
-
-        public void dequeue(SessionConnectNode node)
-        {
-            log.trace("Removing node from queue {}", node.getShardInfo());
-            queue.remove(node);
+            super("ConcurrentSessionController", id);
         }
 
         @Override
-        public void run()
+        protected long acquire()
         {
-            try
-            {
-                while (!queue.isEmpty())
-                {
-                    processQueue();
-                    // We always sleep here because its possible that we get a new session request before the rate limit expires
-                    TimeUnit.SECONDS.sleep(SessionController.IDENTIFY_DELAY);
-                }
-            }
-            catch (InterruptedException ex)
-            {
-                log.error("Worker failed to process queue", ex);
-            }
-            finally
-            {
-                stop();
-            }
+            return 0;
         }
 
-        private void processQueue() throws InterruptedException
+        @Override
+        protected void release() throws InterruptedException
         {
-            SessionConnectNode node = null;
-            try
-            {
-                node = queue.remove();
-                log.debug("Running connect node for shard {}", node.getShardInfo());
-                node.run(false); // we don't use isLast anymore because it can be a problem with many reconnecting shards
-            }
-            catch (NoSuchElementException ignored) {/* This means the node was removed before we started it */}
-            catch (InterruptedException e)
-            {
-                queue.add(node);
-                throw e;
-            }
-            catch (IllegalStateException | ErrorResponseException e)
-            {
-                if (Helpers.hasCause(e, OpeningHandshakeException.class))
-                    log.error("Failed opening handshake, appending to queue. Message: {}", e.getMessage());
-                else if (e instanceof ErrorResponseException && e.getCause() instanceof IOException) { /* This is already logged by the Requester */ }
-                else if (Helpers.hasCause(e, UnknownHostException.class))
-                    log.error("DNS resolution failed: {}", e.getMessage());
-                else if (e.getCause() != null && !JDA.Status.RECONNECT_QUEUED.name().equals(e.getCause().getMessage()))
-                    log.error("Failed to establish connection for a node, appending to queue", e);
-                else
-                    log.error("Unexpected exception when running connect node", e);
-                if (node != null)
-                    queue.add(node);
-            }
+            // We always sleep here because its possible that we get a new session request before the rate limit expires
+            TimeUnit.SECONDS.sleep(SessionController.IDENTIFY_DELAY);
         }
     }
 }
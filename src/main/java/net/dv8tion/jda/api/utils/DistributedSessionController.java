@@ -0,0 +1,364 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.utils;
+
+import gnu.trove.map.TIntLongMap;
+import gnu.trove.map.hash.TIntLongHashMap;
+import net.dv8tion.jda.internal.utils.Checks;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of {@link SessionController} which coordinates the IDENTIFY rate-limit between
+ * multiple processes, for instance a cluster of shard managers running in separate JVMs.
+ *
+ * <p>Just like the {@link ConcurrentSessionController} this uses the {@link #setConcurrency(int)} hook to
+ * split shards into buckets using {@code shard_id % concurrency}. Before a shard of a bucket is allowed to identify,
+ * the worker of that bucket has to acquire the lease for the bucket from the configured {@link IdentifyLock}.
+ * A lease automatically expires after the configured lease time, which means a process that crashed while holding
+ * a lease cannot block the other processes for longer than the rate-limit window.
+ *
+ * <p>All processes of a cluster must use the same shard total and the same concurrency level,
+ * otherwise the buckets do not line up and the rate-limit is not respected.
+ *
+ * <h2>Example</h2>
+ * <pre><code>
+ * IdentifyLock lock = new DistributedSessionController.FileIdentifyLock(Paths.get("/mnt/shared/identify"));
+ * DefaultShardManagerBuilder builder = DefaultShardManagerBuilder.createDefault(BOT_TOKEN);
+ * builder.setSessionController(new DistributedSessionController(lock));
+ * builder.setShardsTotal(128);
+ * builder.setShards(0, 63); // the other node uses setShards(64, 127)
+ * builder.build();
+ * </code></pre>
+ *
+ * @since 4.3.0
+ */
+public class DistributedSessionController extends SessionControllerAdapter implements SessionController
+{
+    protected final IdentifyLock identifyLock;
+    protected final long leaseTime;
+    private Worker[] workers = new Worker[1];
+
+    /**
+     * Creates a new DistributedSessionController which uses the provided {@link IdentifyLock}
+     * and a lease time of {@link #IDENTIFY_DELAY} seconds.
+     *
+     * @param  identifyLock
+     *         The lock backend shared by all processes of the cluster
+     *
+     * @throws IllegalArgumentException
+     *         If the provided lock is null
+     */
+    public DistributedSessionController(@Nonnull IdentifyLock identifyLock)
+    {
+        this(identifyLock, IDENTIFY_DELAY, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a new DistributedSessionController which uses the provided {@link IdentifyLock}.
+     *
+     * @param  identifyLock
+     *         The lock backend shared by all processes of the cluster
+     * @param  leaseTime
+     *         The time a bucket stays locked after a shard has identified
+     * @param  unit
+     *         The {@link TimeUnit} of the lease time
+     *
+     * @throws IllegalArgumentException
+     *         If the provided lock or unit is null, or the lease time is not positive
+     */
+    public DistributedSessionController(@Nonnull IdentifyLock identifyLock, long leaseTime, @Nonnull TimeUnit unit)
+    {
+        Checks.notNull(identifyLock, "IdentifyLock");
+        Checks.notNull(unit, "TimeUnit");
+        Checks.positive(leaseTime, "Lease time");
+        this.identifyLock = identifyLock;
+        this.leaseTime = unit.toMillis(leaseTime);
+    }
+
+    /**
+     * The {@link IdentifyLock} used to coordinate the buckets.
+     *
+     * @return The IdentifyLock
+     */
+    @Nonnull
+    public IdentifyLock getIdentifyLock()
+    {
+        return identifyLock;
+    }
+
+    @Override
+    public synchronized void setConcurrency(int level)
+    {
+        // assertions are ignored at runtime by default, this is a sanity check
+        assert level > 0 && level < Integer.MAX_VALUE;
+        workers = new Worker[level];
+    }
+
+    @Override
+    public void appendSession(@Nonnull SessionConnectNode node)
+    {
+        getWorker(node).enqueue(node);
+    }
+
+    @Override
+    public void removeSession(@Nonnull SessionConnectNode node)
+    {
+        getWorker(node).dequeue(node);
+    }
+
+    private synchronized Worker getWorker(SessionConnectNode node)
+    {
+        int i = node.getShardInfo().getShardId() % workers.length;
+        Worker worker = workers[i];
+        if (worker == null)
+        {
+            log.debug("Creating new distributed worker handle for bucket {}", i);
+            workers[i] = worker = new Worker(i);
+        }
+        return worker;
+    }
+
+    /**
+     * Backend used by {@link DistributedSessionController} to coordinate the identify buckets across processes.
+     * <br>Implementations must be safe to use from multiple threads.
+     *
+     * <p>A lease is a timestamp for each bucket, until which no other shard of the same bucket is allowed to identify.
+     * Acquiring a lease must be atomic across all participating processes.
+     * Implementations could use a shared file system ({@link FileIdentifyLock}), a database, or a key-value store
+     * with atomic compare-and-set operations.
+     */
+    public interface IdentifyLock
+    {
+        /**
+         * Attempts to acquire the lease of the provided bucket.
+         * <br>This succeeds if the current lease of that bucket has expired,
+         * in which case the bucket is locked for the provided lease time.
+         *
+         * @param  bucket
+         *         The bucket id ({@code shard_id % concurrency})
+         * @param  leaseTime
+         *         The time in milliseconds to lock the bucket for
+         *
+         * @throws IOException
+         *         If the backend could not be reached
+         *
+         * @return {@code 0} if the lease was acquired,
+         *         otherwise the time in milliseconds until the current lease expires
+         */
+        long tryAcquire(int bucket, long leaseTime) throws IOException;
+
+        /**
+         * Extends the lease of the provided bucket to expire in {@code leaseTime} milliseconds.
+         * <br>This is called after the shard has sent its IDENTIFY, since connecting might take longer than the lease itself.
+         * Implementations must never shorten an existing lease.
+         *
+         * @param  bucket
+         *         The bucket id ({@code shard_id % concurrency})
+         * @param  leaseTime
+         *         The time in milliseconds to lock the bucket for, starting now
+         *
+         * @throws IOException
+         *         If the backend could not be reached
+         */
+        void renew(int bucket, long leaseTime) throws IOException;
+    }
+
+    /**
+     * In-memory {@link IdentifyLock}.
+     * <br>This can only coordinate shard managers inside the same JVM and is mostly useful for testing.
+     */
+    public static class LocalIdentifyLock implements IdentifyLock
+    {
+        private final TIntLongMap leases = new TIntLongHashMap();
+
+        @Override
+        public synchronized long tryAcquire(int bucket, long leaseTime)
+        {
+            long now = System.currentTimeMillis();
+            long expiration = leases.get(bucket);
+            if (expiration > now)
+                return expiration - now;
+            leases.put(bucket, now + leaseTime);
+            return 0;
+        }
+
+        @Override
+        public synchronized void renew(int bucket, long leaseTime)
+        {
+            leases.put(bucket, Math.max(leases.get(bucket), System.currentTimeMillis() + leaseTime));
+        }
+    }
+
+    /**
+     * File based {@link IdentifyLock}.
+     * <br>Uses one file per bucket in the provided directory, which holds the expiration timestamp of the current lease.
+     * The file is guarded by an exclusive {@link FileLock} while the lease is checked or updated.
+     *
+     * <p>To coordinate multiple machines the directory has to be on a shared file system that supports
+     * file locks (such as NFSv4) and the system clocks of the machines have to be synchronized.
+     */
+    public static class FileIdentifyLock implements IdentifyLock
+    {
+        /** Time in milliseconds to wait before retrying when the lock file is held by this JVM */
+        protected static final long LOCAL_CONTENTION_DELAY = 50;
+
+        protected final Path directory;
+
+        /**
+         * Creates a new FileIdentifyLock in the provided directory.
+         * <br>The directory is created if it does not exist yet.
+         *
+         * @param  directory
+         *         The directory for the lock files
+         *
+         * @throws IllegalArgumentException
+         *         If null is provided
+         * @throws UncheckedIOException
+         *         If the directory could not be created
+         */
+        public FileIdentifyLock(@Nonnull Path directory)
+        {
+            Checks.notNull(directory, "Directory");
+            this.directory = directory;
+            try
+            {
+                Files.createDirectories(directory);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public long tryAcquire(int bucket, long leaseTime) throws IOException
+        {
+            try (FileChannel channel = open(bucket); FileLock ignored = channel.lock())
+            {
+                long now = System.currentTimeMillis();
+                long expiration = read(channel);
+                if (expiration > now)
+                    return expiration - now;
+                write(channel, now + leaseTime);
+                return 0;
+            }
+            catch (OverlappingFileLockException e)
+            {
+                // Another controller in this JVM is currently holding the file lock
+                return LOCAL_CONTENTION_DELAY;
+            }
+        }
+
+        @Override
+        public void renew(int bucket, long leaseTime) throws IOException
+        {
+            while (true)
+            {
+                try (FileChannel channel = open(bucket); FileLock ignored = channel.lock())
+                {
+                    write(channel, Math.max(read(channel), System.currentTimeMillis() + leaseTime));
+                    return;
+                }
+                catch (OverlappingFileLockException e)
+                {
+                    try
+                    {
+                        Thread.sleep(LOCAL_CONTENTION_DELAY);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while renewing lease", ex);
+                    }
+                }
+            }
+        }
+
+        protected FileChannel open(int bucket) throws IOException
+        {
+            Path file = directory.resolve("identify-" + bucket + ".lock");
+            return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        private static long read(FileChannel channel) throws IOException
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer, buffer.position()) < 0)
+                    return 0; // empty file means the bucket was never locked
+            }
+            buffer.flip();
+            return buffer.getLong();
+        }
+
+        private static void write(FileChannel channel, long expiration) throws IOException
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            buffer.putLong(expiration).flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer, buffer.position());
+            channel.force(false);
+        }
+    }
+
+    private class Worker extends SessionWorker
+    {
+        public Worker(int id)
+        {
+            super("DistributedSessionController", id);
+        }
+
+        @Override
+        protected long acquire()
+        {
+            try
+            {
+                return identifyLock.tryAcquire(id, leaseTime);
+            }
+            catch (IOException e)
+            {
+                log.error("Failed to acquire identify lease for bucket {}, retrying in {} ms", id, leaseTime, e);
+                return leaseTime;
+            }
+        }
+
+        @Override
+        protected void release()
+        {
+            try
+            {
+                identifyLock.renew(id, leaseTime);
+            }
+            catch (IOException e)
+            {
+                log.error("Failed to renew identify lease for bucket {}", id, e);
+            }
+        }
+    }
+}
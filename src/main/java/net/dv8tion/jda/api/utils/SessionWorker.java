@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.utils;
+
+import com.neovisionaries.ws.client.OpeningHandshakeException;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.utils.SessionController.SessionConnectNode;
+import net.dv8tion.jda.internal.utils.Helpers;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static net.dv8tion.jda.api.utils.SessionControllerAdapter.log;
+
+/**
+ * Queue of one identify bucket, used by {@link ConcurrentSessionController} and {@link DistributedSessionController}.
+ * <br>The worker runs one thread while its queue is not empty and connects one node at a time.
+ * Implementations decide when the bucket may identify through {@link #acquire()} and {@link #release()}.
+ */
+abstract class SessionWorker implements Runnable
+{
+    protected final Queue<SessionConnectNode> queue = new ConcurrentLinkedQueue<>();
+    protected final int id;
+    private final String name;
+    private Thread thread;
+
+    SessionWorker(String name, int id)
+    {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * Called before the next node is connected.
+     *
+     * @return {@code 0} if the next node may identify, otherwise the time in milliseconds to wait before trying again
+     */
+    protected abstract long acquire();
+
+    /**
+     * Called after a node has been run, even if it failed to connect.
+     *
+     * @throws InterruptedException
+     *         If the thread was interrupted while backing off
+     */
+    protected abstract void release() throws InterruptedException;
+
+    public synchronized void start()
+    {
+        if (thread == null)
+        {
+            thread = new Thread(this, name + "-Worker-" + id);
+            log.debug("Running worker");
+            thread.start();
+        }
+    }
+
+    public synchronized void stop()
+    {
+        thread = null;
+        if (!queue.isEmpty())
+            start();
+    }
+
+    public void enqueue(SessionConnectNode node)
+    {
+        log.trace("Appending node to queue {}", node.getShardInfo());
+        queue.add(node);
+        start();
+    }
+
+    public void dequeue(SessionConnectNode node)
+    {
+        log.trace("Removing node from queue {}", node.getShardInfo());
+        queue.remove(node);
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (!queue.isEmpty())
+            {
+                long backoff = acquire();
+                if (backoff > 0)
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                else
+                    processQueue();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            log.error("Worker failed to process queue", ex);
+        }
+        finally
+        {
+            stop();
+        }
+    }
+
+    private void processQueue() throws InterruptedException
+    {
+        SessionConnectNode node = queue.poll();
+        if (node == null)
+            return; // This means the node was removed before we started it
+        try
+        {
+            log.debug("Running connect node for shard {}", node.getShardInfo());
+            node.run(false); // we don't use isLast anymore because it can be a problem with many reconnecting shards
+        }
+        catch (InterruptedException e)
+        {
+            queue.add(node);
+            throw e;
+        }
+        catch (IllegalStateException | ErrorResponseException e)
+        {
+            if (Helpers.hasCause(e, OpeningHandshakeException.class))
+                log.error("Failed opening handshake, appending to queue. Message: {}", e.getMessage());
+            else if (e instanceof ErrorResponseException && e.getCause() instanceof IOException) { /* This is already logged by the Requester */ }
+            else if (Helpers.hasCause(e, UnknownHostException.class))
+                log.error("DNS resolution failed: {}", e.getMessage());
+            else if (e.getCause() != null && !JDA.Status.RECONNECT_QUEUED.name().equals(e.getCause().getMessage()))
+                log.error("Failed to establish connection for a node, appending to queue", e);
+            else
+                log.error("Unexpected exception when running connect node", e);
+            queue.add(node);
+        }
+        release();
+    }
+}
@@ -19,11 +19,14 @@ package net.dv8tion.jda.api.utils.cache;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.utils.MiscUtil;
+import net.dv8tion.jda.internal.utils.Checks;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * {@link net.dv8tion.jda.api.utils.cache.CacheView CacheView} implementation
@@ -162,4 +165,38 @@ public interface MemberCacheView extends SnowflakeCacheView<Member>
      */
     @Nonnull
     List<Member> getElementsWithRoles(@Nonnull Collection<Role> roles);
+
+    /**
+     * Creates an immutable list of members whose user name or nickname starts with the given prefix, ignoring case.
+     * <br>This is useful to suggest members while a name is typed.
+     *
+     * <p>When the member index is enabled, the members are ordered by the matched name
+     * and the lookup does not have to check every member.
+     * Otherwise, the order is unspecified.
+     *
+     * @param  prefix
+     *         The prefix of the name
+     * @param  limit
+     *         The maximum amount of members to return
+     *
+     * @throws java.lang.IllegalArgumentException
+     *         If the prefix is null or empty, or the limit is not positive
+     *
+     * @return Immutable list of members with a matching name
+     *
+     * @since  4.3.0
+     */
+    @Nonnull
+    default List<Member> getElementsByPrefix(@Nonnull String prefix, int limit)
+    {
+        Checks.notEmpty(prefix, "Prefix");
+        Checks.positive(limit, "Limit");
+        return Collections.unmodifiableList(applyStream(stream ->
+            stream.filter(member -> {
+                String nickname = member.getNickname();
+                return member.getUser().getName().regionMatches(true, 0, prefix, 0, prefix.length())
+                    || (nickname != null && nickname.regionMatches(true, 0, prefix, 0, prefix.length()));
+            }).limit(limit).collect(Collectors.toList())
+        ));
+    }
 }
@@ -56,6 +56,7 @@ import net.dv8tion.jda.internal.entities.EntityBuilder;
 import net.dv8tion.jda.internal.entities.UserImpl;
 import net.dv8tion.jda.internal.handle.EventCache;
 import net.dv8tion.jda.internal.handle.GuildSetupController;
+import net.dv8tion.jda.internal.handle.SnapshotCache;
 import net.dv8tion.jda.internal.hooks.EventManagerProxy;
 import net.dv8tion.jda.internal.managers.AudioManagerImpl;
 import net.dv8tion.jda.internal.managers.DirectAudioControllerImpl;
@@ -70,6 +71,8 @@ import net.dv8tion.jda.internal.utils.Helpers;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import net.dv8tion.jda.internal.utils.UnlockHook;
 import net.dv8tion.jda.internal.utils.cache.AbstractCacheView;
+import net.dv8tion.jda.internal.utils.cache.CrossShardIndex;
+import net.dv8tion.jda.internal.utils.cache.SharedUserCache;
 import net.dv8tion.jda.internal.utils.cache.SnowflakeCacheViewImpl;
 import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
 import net.dv8tion.jda.internal.utils.config.MetaConfig;
@@ -80,12 +83,16 @@ import org.slf4j.Logger;
 import org.slf4j.MDC;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.security.auth.login.LoginException;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class JDAImpl implements JDA
@@ -130,7 +137,10 @@ public class JDAImpl implements JDA
 
     protected String clientId = null,  requiredScopes = "bot";
     protected ShardManager shardManager = null;
+    protected CrossShardIndex crossShardIndex = null;
+    protected SharedUserCache sharedUserCache = null;
     protected MemberCachePolicy memberCachePolicy = MemberCachePolicy.ALL;
+    protected File snapshotDirectory;
 
     public JDAImpl(AuthorizationConfig authConfig)
     {
@@ -152,7 +162,7 @@ public class JDAImpl implements JDA
         this.guildSetupController = new GuildSetupController(this);
         this.audioController = new DirectAudioControllerImpl(this);
         this.eventCache = new EventCache();
-        this.eventManager = new EventManagerProxy(new InterfacedEventManager(), this.threadConfig.getEventPool());
+        this.eventManager = new EventManagerProxy(new InterfacedEventManager(), this.threadConfig.getEventPool(), this.threadConfig.getPartitionedEventPool(), this.threadConfig.getEventBackpressure());
     }
 
     public void handleEvent(@Nonnull GenericEvent event)
@@ -160,6 +170,16 @@ public class JDAImpl implements JDA
         eventManager.handle(event);
     }
 
+    public void handleEvent(@Nonnull GenericEvent event, @Nonnull Consumer<? super GenericEvent> handler)
+    {
+        eventManager.dispatch(event, handler);
+    }
+
+    public void setEventsSuspended(boolean suspended)
+    {
+        eventManager.setSuspended(suspended);
+    }
+
     public boolean isRawEvents()
     {
         return sessionConfig.isRawEvents();
@@ -170,6 +190,31 @@ public class JDAImpl implements JDA
         return sessionConfig.isRelativeRateLimit();
     }
 
+    public boolean isNioAudio()
+    {
+        return sessionConfig.isNioAudio();
+    }
+
+    public boolean isAudioDecodePool()
+    {
+        return sessionConfig.isAudioDecodePool();
+    }
+
+    public boolean isSharedVoiceSocket()
+    {
+        return sessionConfig.isSharedVoiceSocket();
+    }
+
+    public boolean isStreamingGuildSetup()
+    {
+        return sessionConfig.isStreamingGuildSetup();
+    }
+
+    public boolean isMemberIndex()
+    {
+        return sessionConfig.isMemberIndex();
+    }
+
     public boolean isCacheFlagSet(CacheFlag flag)
     {
         return metaConfig.getCacheFlags().contains(flag);
@@ -229,6 +274,17 @@ public class JDAImpl implements JDA
         this.memberCachePolicy = policy;
     }
 
+    @Nullable
+    public File getSnapshotDirectory()
+    {
+        return snapshotDirectory;
+    }
+
+    public void setSnapshotDirectory(@Nullable File directory)
+    {
+        this.snapshotDirectory = directory;
+    }
+
     public SessionController getSessionController()
     {
         return sessionConfig.getSessionController();
@@ -720,6 +776,9 @@ public class JDAImpl implements JDA
         if (status == Status.SHUTDOWN || status == Status.SHUTTING_DOWN)
             return;
 
+        // only a complete cache is worth restoring
+        if (snapshotDirectory != null && status == Status.CONNECTED)
+            writeSnapshot();
         setStatus(Status.SHUTTING_DOWN);
         shutdownInternals();
 
@@ -753,6 +812,9 @@ public class JDAImpl implements JDA
             catch (Exception ignored) {}
         }
 
+        // no more events are handled at this point, releasing earlier could release a user twice
+        if (sharedUserCache != null)
+            sharedUserCache.releaseAll(this);
         setStatus(Status.SHUTDOWN);
     }
 
@@ -763,6 +825,21 @@ public class JDAImpl implements JDA
         threadConfig.shutdownRequester();
     }
 
+    private void writeSnapshot()
+    {
+        File file = SnapshotCache.getFile(snapshotDirectory, getShardInfo());
+        try
+        {
+            long start = System.currentTimeMillis();
+            SnapshotCache.write(this, file);
+            LOG.debug("Wrote cache snapshot to {} in {} ms", file, System.currentTimeMillis() - start);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            LOG.error("Failed to write cache snapshot to {}", file, e);
+        }
+    }
+
     private void closeAudioConnections()
     {
         getAudioManagerCache()
@@ -1020,6 +1097,28 @@ public class JDAImpl implements JDA
         return shardManager;
     }
 
+    public void setCrossShardIndex(CrossShardIndex crossShardIndex)
+    {
+        this.crossShardIndex = crossShardIndex;
+    }
+
+    @Nullable
+    public CrossShardIndex getCrossShardIndex()
+    {
+        return crossShardIndex;
+    }
+
+    public void setSharedUserCache(SharedUserCache sharedUserCache)
+    {
+        this.sharedUserCache = sharedUserCache;
+    }
+
+    @Nullable
+    public SharedUserCache getSharedUserCache()
+    {
+        return sharedUserCache;
+    }
+
     public EntityBuilder getEntityBuilder()
     {
         return entityBuilder;
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio;
+
+import net.dv8tion.jda.internal.utils.IOUtil;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * AES-256-GCM cipher for the {@link AudioEncryption#AEAD_AES256_GCM aead_aes256_gcm} voice encryption mode.
+ * <br>This uses the JCE implementation, which is backed by AES-NI and carry-less multiplication intrinsics on most x86 CPUs.
+ *
+ * <p>The 12 byte IV is a 4 byte big endian counter followed by 8 zero bytes,
+ * the counter is appended to every packet just like the nonce of {@link AudioEncryption#XSALSA20_POLY1305_LITE}.
+ * Instances are not thread-safe.
+ */
+public class AesGcmCipher
+{
+    public static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    public static final int TAG_LENGTH = 16;
+    public static final int NONCE_LENGTH = 4;
+    public static final int IV_LENGTH = 12;
+
+    private static volatile Boolean supported;
+
+    private final SecretKeySpec key;
+    private final Cipher cipher;
+    private final byte[] iv = new byte[IV_LENGTH];
+
+    public AesGcmCipher(byte[] secretKey)
+    {
+        this.key = new SecretKeySpec(secretKey, "AES");
+        try
+        {
+            this.cipher = Cipher.getInstance(TRANSFORMATION);
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException("AES-GCM is not supported by this JVM", e);
+        }
+    }
+
+    /**
+     * Whether this JVM provides AES-GCM with 256 bit keys.
+     *
+     * @return True, if this mode can be used
+     */
+    public static boolean isSupported()
+    {
+        if (supported == null)
+        {
+            boolean result;
+            try
+            {
+                Cipher.getInstance(TRANSFORMATION);
+                result = Cipher.getMaxAllowedKeyLength("AES") >= 256;
+            }
+            catch (GeneralSecurityException e)
+            {
+                result = false;
+            }
+            supported = result;
+        }
+        return supported;
+    }
+
+    /**
+     * Encrypts len bytes at off in place and appends the authentication tag.
+     *
+     * @param  buffer
+     *         The buffer, must have room for {@link #TAG_LENGTH} bytes after the message
+     * @param  aadOffset
+     *         The offset of the additional authenticated data (the RTP header)
+     * @param  aadLength
+     *         The length of the additional authenticated data
+     * @param  offset
+     *         The offset of the message
+     * @param  length
+     *         The length of the message
+     * @param  nonce
+     *         The nonce counter of this packet
+     *
+     * @return The length of the encrypted message including the tag
+     */
+    public int seal(byte[] buffer, int aadOffset, int aadLength, int offset, int length, int nonce)
+    {
+        try
+        {
+            init(Cipher.ENCRYPT_MODE, nonce);
+            cipher.updateAAD(buffer, aadOffset, aadLength);
+            return cipher.doFinal(buffer, offset, length, buffer, offset);
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException("Failed to encrypt audio packet", e);
+        }
+    }
+
+    /**
+     * Authenticates and decrypts len bytes at off in place.
+     *
+     * @param  buffer
+     *         The buffer
+     * @param  aadOffset
+     *         The offset of the additional authenticated data (the RTP header)
+     * @param  aadLength
+     *         The length of the additional authenticated data
+     * @param  offset
+     *         The offset of the encrypted message, including the tag
+     * @param  length
+     *         The length of the encrypted message, including the tag
+     * @param  nonce
+     *         The nonce counter of this packet
+     *
+     * @return The length of the decrypted message, or -1 if authentication failed
+     */
+    public int open(byte[] buffer, int aadOffset, int aadLength, int offset, int length, int nonce)
+    {
+        if (length < TAG_LENGTH)
+            return -1;
+        try
+        {
+            init(Cipher.DECRYPT_MODE, nonce);
+            cipher.updateAAD(buffer, aadOffset, aadLength);
+            return cipher.doFinal(buffer, offset, length, buffer, offset);
+        }
+        catch (AEADBadTagException e)
+        {
+            return -1;
+        }
+        catch (GeneralSecurityException e)
+        {
+            AudioConnection.LOG.debug("Failed to decrypt audio packet", e);
+            return -1;
+        }
+    }
+
+    private void init(int mode, int nonce) throws GeneralSecurityException
+    {
+        IOUtil.setIntBigEndian(iv, 0, nonce);
+        cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+    }
+}
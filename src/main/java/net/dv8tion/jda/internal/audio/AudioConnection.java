@@ -18,11 +18,9 @@ package net.dv8tion.jda.internal.audio;
 
 import com.iwebpp.crypto.TweetNaclFast;
 import com.neovisionaries.ws.client.WebSocket;
-import com.sun.jna.ptr.PointerByReference;
+import gnu.trove.TCollections;
 import gnu.trove.map.TIntLongMap;
-import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntLongHashMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
 import net.dv8tion.jda.api.audio.*;
 import net.dv8tion.jda.api.audio.factory.IAudioSendFactory;
 import net.dv8tion.jda.api.audio.factory.IAudioSendSystem;
@@ -38,14 +36,13 @@ import net.dv8tion.jda.internal.managers.AudioManagerImpl;
 import net.dv8tion.jda.internal.utils.IOUtil;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import org.slf4j.Logger;
-import tomp2p.opuswrapper.Opus;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.net.*;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
-import java.nio.ShortBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -57,23 +54,35 @@ public class AudioConnection
     public static final long MAX_UINT_32 = 4294967295L;
 
     private static final int NOT_SPEAKING = 0;
+    private static final int STATISTICS_INTERVAL = 50; // packets, about one second of speech
     private static final ByteBuffer silenceBytes = ByteBuffer.wrap(new byte[] {(byte)0xF8, (byte)0xFF, (byte)0xFE});
-    private static boolean printedError = false;
 
     protected volatile DatagramSocket udpSocket;
-
-    private final TIntLongMap ssrcMap = new TIntLongHashMap();
-    private final TIntObjectMap<Decoder> opusDecoders = new TIntObjectHashMap<>();
-    private final HashMap<User, Queue<AudioData>> combinedQueue = new HashMap<>();
+    protected volatile DatagramChannel udpChannel; // only set when using the non-blocking transport, udpSocket is its adapter
+
+    // updated by the websocket thread, while the receiving thread looks up the speakers and creates their decoders
+    private final TIntLongMap ssrcMap = TCollections.synchronizedMap(new TIntLongHashMap());
+    private final Map<Integer, Decoder> opusDecoders = new ConcurrentHashMap<>();
+    // polled by the jitter release task, while the receiving thread adds buffers
+    private final Map<Integer, JitterBuffer> jitterBuffers = new ConcurrentHashMap<>();
+    private final Map<User, Queue<AudioData>> combinedQueue = new ConcurrentHashMap<>();
     private final String threadIdentifier;
     private final AudioWebSocket webSocket;
     private final JDAImpl api;
 
     private VoiceChannel channel;
-    private PointerByReference opusEncoder;
+    private Encoder opusEncoder;
     private ScheduledExecutorService combinedAudioExecutor;
+    private ScheduledFuture<?> jitterReleaseTask;
     private IAudioSendSystem sendSystem;
     private Thread receiveThread;
+    private volatile VoiceSelector.Registration receiveRegistration;
+    private volatile SharedVoiceSocket.Registration sharedRegistration;
+    // Decryption state of the receiving thread, only one thread receives at a time
+    private final byte[] receiveNonce = new byte[TweetNaclFast.SecretBox.nonceLength];
+    private TweetNaclFast.SecretBox receiveBoxer;
+    private AesGcmCipher receiveCipher;
+    private byte[] receiveKey;
     private long queueTimeout;
     private boolean sentSilenceOnConnect = false;
     private int speakingDelay = 10;
@@ -182,6 +191,16 @@ public class AudioConnection
             receiveThread.interrupt();
             receiveThread = null;
         }
+        if (receiveRegistration != null)
+        {
+            receiveRegistration.cancel();
+            receiveRegistration = null;
+        }
+        if (sharedRegistration != null)
+        {
+            sharedRegistration.cancel();
+            sharedRegistration = null;
+        }
         if (combinedAudioExecutor != null)
         {
             combinedAudioExecutor.shutdownNow();
@@ -189,12 +208,13 @@ public class AudioConnection
         }
         if (opusEncoder != null)
         {
-            Opus.INSTANCE.opus_encoder_destroy(opusEncoder);
+            opusEncoder.close();
             opusEncoder = null;
         }
 
-        opusDecoders.valueCollection().forEach(Decoder::close);
-        opusDecoders.clear();
+        closeDecoders();
+        jitterBuffers.clear();
+        stopJitterRelease();
     }
 
     public WebSocket getWebSocket()
@@ -204,6 +224,14 @@ public class AudioConnection
 
     /* Used by AudioWebSocket */
 
+    protected void closeUdpSocket()
+    {
+        // the shared socket stays open for the other connections
+        DatagramSocket socket = udpSocket;
+        if (socket != null && !SharedVoiceSocket.isShared(udpChannel))
+            socket.close();
+    }
+
     protected void prepareReady()
     {
         Thread readyThread = new Thread(() ->
@@ -261,6 +289,10 @@ public class AudioConnection
         });
         if (!modified)
             return;
+        SharedVoiceSocket.Registration registration = sharedRegistration;
+        if (registration != null)
+            registration.removeSSRC(ssrcRef.get());
+        jitterBuffers.remove(ssrcRef.get());
         final Decoder decoder = opusDecoders.remove(ssrcRef.get());
         if (decoder != null) // cleanup decoder
             decoder.close();
@@ -268,9 +300,9 @@ public class AudioConnection
 
     protected void updateUserSSRC(int ssrc, long userId)
     {
-        if (ssrcMap.containsKey(ssrc))
+        long previousId = ssrcMap.putIfAbsent(ssrc, userId);
+        if (previousId != ssrcMap.getNoEntryValue())
         {
-            long previousId = ssrcMap.get(ssrc);
             if (previousId != userId)
             {
                 //Different User already existed with this ssrc. What should we do? Just replace? Probably should nuke the old opusDecoder.
@@ -281,11 +313,13 @@ public class AudioConnection
         }
         else
         {
-            ssrcMap.put(ssrc, userId);
+            SharedVoiceSocket.Registration registration = sharedRegistration;
+            if (registration != null)
+                addSharedSSRC(registration, ssrc);
 
             //Only create a decoder if we are actively handling received audio.
-            if (receiveThread != null && AudioNatives.ensureOpus())
-                opusDecoders.put(ssrc, new Decoder(ssrc));
+            if (isReceiving() && AudioNatives.ensureOpus())
+                opusDecoders.computeIfAbsent(ssrc, Decoder::new);
         }
     }
 
@@ -296,7 +330,7 @@ public class AudioConnection
         if (udpSocket != null && !udpSocket.isClosed() && sendHandler != null && sendSystem == null)
         {
             IAudioSendFactory factory = getJDA().getAudioSendFactory();
-            sendSystem = factory.createSendSystem(new PacketProvider(new TweetNaclFast.SecretBox(webSocket.getSecretKey())));
+            sendSystem = factory.createSendSystem(new PacketProvider());
             sendSystem.setContextMap(getJDA().getContextMap());
             sendSystem.start();
         }
@@ -307,7 +341,7 @@ public class AudioConnection
 
             if (opusEncoder != null)
             {
-                Opus.INSTANCE.opus_encoder_destroy(opusEncoder);
+                opusEncoder.close();
                 opusEncoder = null;
             }
         }
@@ -315,14 +349,22 @@ public class AudioConnection
 
     private synchronized void setupReceiveSystem()
     {
-        if (udpSocket != null && !udpSocket.isClosed() && receiveHandler != null && receiveThread == null)
+        boolean receiving = isReceiving();
+        if (udpSocket != null && !udpSocket.isClosed() && receiveHandler != null && !receiving)
         {
             setupReceiveThread();
         }
-        else if (receiveHandler == null && receiveThread != null)
+        else if (receiveHandler == null && receiving)
         {
-            receiveThread.interrupt();
+            if (receiveThread != null)
+                receiveThread.interrupt();
+            if (receiveRegistration != null)
+                receiveRegistration.cancel();
+            if (sharedRegistration != null)
+                sharedRegistration.cancel();
             receiveThread = null;
+            receiveRegistration = null;
+            sharedRegistration = null;
 
             if (combinedAudioExecutor != null)
             {
@@ -330,8 +372,9 @@ public class AudioConnection
                 combinedAudioExecutor = null;
             }
 
-            opusDecoders.valueCollection().forEach(Decoder::close);
-            opusDecoders.clear();
+            closeDecoders();
+            jitterBuffers.clear();
+            stopJitterRelease();
         }
         else if (receiveHandler != null && !receiveHandler.canReceiveCombined() && combinedAudioExecutor != null)
         {
@@ -340,9 +383,57 @@ public class AudioConnection
         }
     }
 
+    private void closeDecoders()
+    {
+        // remove before closing, the receiving thread might create new decoders concurrently
+        for (Iterator<Decoder> it = opusDecoders.values().iterator(); it.hasNext();)
+        {
+            Decoder decoder = it.next();
+            it.remove();
+            decoder.close();
+        }
+    }
+
+    private void addSharedSSRC(SharedVoiceSocket.Registration registration, int ssrc)
+    {
+        if (registration.addSSRC(ssrc))
+            return;
+        // Another account of this JVM receives the same user, the packets of both connections have the same SSRC.
+        // Reconnect with a dedicated socket, the close happens on another thread since we might hold the lock of this connection.
+        LOG.debug("SSRC {} is already received by another connection on the shared voice socket, reconnecting with a dedicated socket", ssrc);
+        registration.cancel();
+        ((AudioManagerImpl) channel.getGuild().getAudioManager()).setDedicatedVoiceSocket(true);
+        getJDA().getAudioLifeCyclePool().execute(() ->
+        {
+            getJDA().setContext();
+            webSocket.close(ConnectionStatus.ERROR_CANNOT_RESUME);
+        });
+    }
+
+    private boolean isReceiving()
+    {
+        return receiveThread != null || receiveRegistration != null || sharedRegistration != null;
+    }
+
     private synchronized void setupReceiveThread()
     {
-        if (receiveThread == null)
+        if (SharedVoiceSocket.isShared(udpChannel))
+        {
+            if (sharedRegistration == null)
+            {
+                SharedVoiceSocket.Registration registration = SharedVoiceSocket.getInstance().register(webSocket.getAddress(), this::handleReceivedBuffer);
+                sharedRegistration = registration;
+                // users which started speaking before we started receiving
+                for (int ssrc : ssrcMap.keys())
+                    addSharedSSRC(registration, ssrc);
+            }
+        }
+        else if (udpChannel != null)
+        {
+            if (receiveRegistration == null)
+                receiveRegistration = VoiceSelector.getInstance().register(udpChannel, this::handleReceivedBuffer);
+        }
+        else if (receiveThread == null)
         {
             receiveThread = new Thread(() ->
             {
@@ -355,90 +446,21 @@ public class AudioConnection
                 {
                     LOG.error("Couldn't set SO_TIMEOUT for UDP socket", e);
                 }
+                // packets are decrypted in place and owned by the AudioPacket, so each packet is copied out of the receive buffer once
+                DatagramPacket receivedPacket = new DatagramPacket(new byte[1920], 1920);
                 while (!udpSocket.isClosed() && !Thread.currentThread().isInterrupted())
                 {
-                    DatagramPacket receivedPacket = new DatagramPacket(new byte[1920], 1920);
+                    receivedPacket.setLength(1920);
                     try
                     {
                         udpSocket.receive(receivedPacket);
 
-                        boolean shouldDecode = receiveHandler != null && (receiveHandler.canReceiveUser() || receiveHandler.canReceiveCombined());
-                        boolean canReceive = receiveHandler != null && (receiveHandler.canReceiveUser() || receiveHandler.canReceiveCombined() || receiveHandler.canReceiveEncoded());
-                        if (canReceive && webSocket.getSecretKey() != null)
-                        {
-                            if (!couldReceive)
-                            {
-                                couldReceive = true;
-                                sendSilentPackets();
-                            }
-                            AudioPacket decryptedPacket = AudioPacket.decryptAudioPacket(webSocket.encryption, receivedPacket, webSocket.getSecretKey());
-                            if (decryptedPacket == null)
-                                continue;
-
-                            int ssrc = decryptedPacket.getSSRC();
-                            final long userId = ssrcMap.get(ssrc);
-                            Decoder decoder = opusDecoders.get(ssrc);
-                            if (userId == ssrcMap.getNoEntryValue())
-                            {
-                                ByteBuffer audio = decryptedPacket.getEncodedAudio();
-
-                                //If the bytes are silence, then this was caused by a User joining the voice channel,
-                                // and as such, we haven't yet received information to pair the SSRC with the UserId.
-                                if (!audio.equals(silenceBytes))
-                                    LOG.debug("Received audio data with an unknown SSRC id. Ignoring");
-
-                                continue;
-                            }
-                            if (decoder == null)
-                            {
-                                if (AudioNatives.ensureOpus())
-                                {
-                                    opusDecoders.put(ssrc, decoder = new Decoder(ssrc));
-                                }
-                                else if (!receiveHandler.canReceiveEncoded())
-                                {
-                                    LOG.error("Unable to decode audio due to missing opus binaries!");
-                                    break;
-                                }
-                            }
-                            OpusPacket opusPacket = new OpusPacket(decryptedPacket, userId, decoder);
-                            if (receiveHandler.canReceiveEncoded())
-                                receiveHandler.handleEncodedAudio(opusPacket);
-                            if (!shouldDecode || !opusPacket.canDecode())
-                                continue;
-
-                            User user = getJDA().getUserById(userId);
-                            if (user == null)
-                            {
-                                LOG.warn("Received audio data with a known SSRC, but the userId associate with the SSRC is unknown to JDA!");
-                                continue;
-                            }
-                            short[] decodedAudio = opusPacket.decode();
-                            //If decodedAudio is null, then the Opus decode failed, so throw away the packet.
-                            if (decodedAudio == null)
-                            {
-                                //decoder error logged in method
-                                continue;
-                            }
-                            if (receiveHandler.canReceiveUser())
-                            {
-                                receiveHandler.handleUserAudio(new UserAudio(user, decodedAudio));
-                            }
-                            if (receiveHandler.canReceiveCombined() && receiveHandler.includeUserInCombinedAudio(user))
-                            {
-                                Queue<AudioData> queue = combinedQueue.get(user);
-                                if (queue == null)
-                                {
-                                    queue = new ConcurrentLinkedQueue<>();
-                                    combinedQueue.put(user, queue);
-                                }
-                                queue.add(new AudioData(decodedAudio));
-                            }
-                        }
-                        else if (couldReceive)
+                        if (checkCanReceive())
                         {
-                            couldReceive = false;
-                            sendSilentPackets();
+                            int length = receivedPacket.getLength();
+                            AudioPacket decryptedPacket = decryptPacket(Arrays.copyOf(receivedPacket.getData(), length), length);
+                            if (decryptedPacket != null && !handleAudioPacket(decryptedPacket))
+                                break;
                         }
                     }
                     catch (SocketTimeoutException e)
@@ -474,6 +496,233 @@ public class AudioConnection
         }
     }
 
+    private void handleReceivedBuffer(ByteBuffer buffer)
+    {
+        if (!checkCanReceive())
+            return;
+        // the only copy of the packet, it is decrypted in place and its audio is handed over to the AudioPacket
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        AudioPacket decryptedPacket = decryptPacket(data, data.length);
+        if (decryptedPacket != null && !handleAudioPacket(decryptedPacket))
+        {
+            VoiceSelector.Registration registration = receiveRegistration;
+            if (registration != null)
+                registration.cancel();
+            SharedVoiceSocket.Registration shared = sharedRegistration;
+            if (shared != null)
+                shared.cancel();
+        }
+    }
+
+    private AudioPacket decryptPacket(byte[] data, int length)
+    {
+        byte[] secretKey = webSocket.getSecretKey();
+        AudioEncryption encryption = webSocket.encryption;
+        if (receiveKey != secretKey)
+        {
+            receiveBoxer = null;
+            receiveCipher = null;
+            receiveKey = secretKey;
+        }
+
+        if (encryption == AudioEncryption.AEAD_AES256_GCM)
+        {
+            if (receiveCipher == null)
+                receiveCipher = new AesGcmCipher(secretKey);
+            return AudioPacket.decryptAudioPacket(data, length, receiveCipher);
+        }
+
+        if (receiveBoxer == null)
+            receiveBoxer = new TweetNaclFast.SecretBox(secretKey);
+        return AudioPacket.decryptAudioPacket(encryption, data, length, receiveBoxer, receiveNonce);
+    }
+
+    private boolean checkCanReceive()
+    {
+        boolean canReceive = receiveHandler != null && (receiveHandler.canReceiveUser() || receiveHandler.canReceiveCombined() || receiveHandler.canReceiveEncoded());
+        if (canReceive && webSocket.getSecretKey() != null)
+        {
+            if (!couldReceive)
+            {
+                couldReceive = true;
+                sendSilentPackets();
+            }
+            return true;
+        }
+        else if (couldReceive)
+        {
+            couldReceive = false;
+            sendSilentPackets();
+        }
+        return false;
+    }
+
+    // returns false if we are unable to receive any further audio
+    private boolean handleAudioPacket(AudioPacket decryptedPacket)
+    {
+        boolean shouldDecode = receiveHandler != null && (receiveHandler.canReceiveUser() || receiveHandler.canReceiveCombined());
+        int ssrc = decryptedPacket.getSSRC();
+        final long userId = ssrcMap.get(ssrc);
+        Decoder decoder = opusDecoders.get(ssrc);
+        if (userId == ssrcMap.getNoEntryValue())
+        {
+            ByteBuffer audio = decryptedPacket.getEncodedAudio();
+
+            //If the bytes are silence, then this was caused by a User joining the voice channel,
+            // and as such, we haven't yet received information to pair the SSRC with the UserId.
+            if (!audio.equals(silenceBytes))
+                LOG.debug("Received audio data with an unknown SSRC id. Ignoring");
+
+            return true;
+        }
+        if (decoder == null)
+        {
+            if (AudioNatives.ensureOpus())
+            {
+                decoder = opusDecoders.computeIfAbsent(ssrc, Decoder::new);
+            }
+            else if (!receiveHandler.canReceiveEncoded())
+            {
+                LOG.error("Unable to decode audio due to missing opus binaries!");
+                return false;
+            }
+        }
+        OpusPacket opusPacket = new OpusPacket(decryptedPacket, userId, decoder);
+        if (receiveHandler.canReceiveEncoded())
+            receiveHandler.handleEncodedAudio(opusPacket);
+        if (!shouldDecode || decoder == null)
+            return true;
+
+        User user = getJDA().getUserById(userId);
+        if (user == null)
+        {
+            LOG.warn("Received audio data with a known SSRC, but the userId associate with the SSRC is unknown to JDA!");
+            return true;
+        }
+
+        long arrival = System.nanoTime();
+        JitterBuffer jitterBuffer = null;
+        int depth = receiveHandler.getJitterBufferDepth();
+        if (depth > 0)
+        {
+            jitterBuffer = jitterBuffers.get(ssrc);
+            if (jitterBuffer == null)
+            {
+                jitterBuffers.put(ssrc, jitterBuffer = new JitterBuffer(decoder, depth));
+                startJitterRelease();
+            }
+        }
+        else if (!jitterBuffers.isEmpty())
+        {
+            jitterBuffers.remove(ssrc);
+        }
+
+        if (getJDA().isAudioDecodePool())
+        {
+            final JitterBuffer buffer = jitterBuffer;
+            AudioDecodePool.getInstance().execute(ssrc, () ->
+            {
+                getJDA().setContext();
+                decodePacket(user, opusPacket, buffer, depth, arrival);
+            });
+        }
+        else
+        {
+            decodePacket(user, opusPacket, jitterBuffer, depth, arrival);
+        }
+        return true;
+    }
+
+    // Called on the receiving thread or on the decoder pool lane of the SSRC
+    private void decodePacket(User user, OpusPacket opusPacket, JitterBuffer jitterBuffer, int depth, long arrival)
+    {
+        if (jitterBuffer != null)
+        {
+            // the buffer is owned by the thread that decodes for this SSRC
+            jitterBuffer.setMaxDepth(depth);
+            jitterBuffer.push(opusPacket, arrival, (audio) -> handleDecodedAudio(user, audio));
+            AudioReceiveHandler receiveHandler = this.receiveHandler;
+            if (receiveHandler != null && jitterBuffer.getPacketsReceived() % STATISTICS_INTERVAL == 0)
+                receiveHandler.handleReceiveStatistics(user, jitterBuffer.getStatistics());
+            return;
+        }
+
+        if (!opusPacket.canDecode())
+            return;
+        short[] decodedAudio = opusPacket.decode();
+        //If decodedAudio is null, then the Opus decode failed, so throw away the packet.
+        if (decodedAudio == null)
+        {
+            //decoder error logged in method
+            return;
+        }
+        handleDecodedAudio(user, decodedAudio);
+    }
+
+    private synchronized void startJitterRelease()
+    {
+        if (jitterReleaseTask != null)
+            return;
+        try
+        {
+            jitterReleaseTask = getJDA().getAudioLifeCyclePool().scheduleAtFixedRate(this::releaseJitterBuffers,
+                OpusPacket.OPUS_FRAME_TIME_AMOUNT, OpusPacket.OPUS_FRAME_TIME_AMOUNT, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e)
+        {
+            LOG.debug("Could not start releasing jitter buffers, the audio pool is shut down", e);
+        }
+    }
+
+    private synchronized void stopJitterRelease()
+    {
+        if (jitterReleaseTask == null)
+            return;
+        jitterReleaseTask.cancel(false);
+        jitterReleaseTask = null;
+    }
+
+    // Releases the frames held back for a missing packet, when the speaker does not send any further packets
+    private void releaseJitterBuffers()
+    {
+        boolean decodePool = getJDA().isAudioDecodePool();
+        jitterBuffers.forEach((ssrc, buffer) ->
+        {
+            if (!buffer.isWaiting())
+                return;
+            // decode on the lane of the SSRC, so the frames are not handled before the ones still queued there
+            if (decodePool)
+            {
+                AudioDecodePool.getInstance().execute(ssrc, () ->
+                {
+                    getJDA().setContext();
+                    buffer.poll(System.nanoTime());
+                });
+            }
+            else
+            {
+                buffer.poll(System.nanoTime());
+            }
+        });
+    }
+
+    private void handleDecodedAudio(User user, short[] decodedAudio)
+    {
+        AudioReceiveHandler receiveHandler = this.receiveHandler;
+        if (receiveHandler == null)
+            return;
+        if (receiveHandler.canReceiveUser())
+        {
+            receiveHandler.handleUserAudio(new UserAudio(user, decodedAudio));
+        }
+        if (receiveHandler.canReceiveCombined() && receiveHandler.includeUserInCombinedAudio(user))
+        {
+            Queue<AudioData> queue = combinedQueue.computeIfAbsent(user, (k) -> new ConcurrentLinkedQueue<>());
+            queue.add(new AudioData(decodedAudio));
+        }
+    }
+
     private synchronized void setupCombinedExecutor()
     {
         if (combinedAudioExecutor == null)
@@ -490,24 +739,19 @@ public class AudioConnection
                 });
                 return t;
             });
+            final AudioMixer mixer = new AudioMixer();
             combinedAudioExecutor.scheduleAtFixedRate(() ->
             {
                 getJDA().setContext();
                 try
                 {
-                    List<User> users = new LinkedList<>();
-                    List<short[]> audioParts = new LinkedList<>();
                     if (receiveHandler != null && receiveHandler.canReceiveCombined())
                     {
                         long currentTime = System.currentTimeMillis();
                         for (Map.Entry<User, Queue<AudioData>> entry : combinedQueue.entrySet())
                         {
-                            User user = entry.getKey();
                             Queue<AudioData> queue = entry.getValue();
 
-                            if (queue.isEmpty())
-                                continue;
-
                             AudioData audioData = queue.poll();
                             //Make sure the audio packet is younger than 100ms
                             while (audioData != null && currentTime - audioData.time > queueTimeout)
@@ -516,81 +760,23 @@ public class AudioConnection
                             }
 
                             //If none of the audio packets were younger than 100ms, then there is nothing to add.
-                            if (audioData == null)
-                            {
-                                continue;
-                            }
-                            users.add(user);
-                            audioParts.add(audioData.data);
+                            if (audioData != null)
+                                mixer.add(entry.getKey(), audioData.data);
                         }
 
-                        if (!audioParts.isEmpty())
-                        {
-                            int audioLength = audioParts.stream().mapToInt(it -> it.length).max().getAsInt();
-                            short[] mix = new short[1920];  //960 PCM samples for each channel
-                            int sample;
-                            for (int i = 0; i < audioLength; i++)
-                            {
-                                sample = 0;
-                                for (Iterator<short[]> iterator = audioParts.iterator(); iterator.hasNext(); )
-                                {
-                                    short[] audio = iterator.next();
-                                    if (i < audio.length)
-                                        sample += audio[i];
-                                    else
-                                        iterator.remove();
-                                }
-                                if (sample > Short.MAX_VALUE)
-                                    mix[i] = Short.MAX_VALUE;
-                                else if (sample < Short.MIN_VALUE)
-                                    mix[i] = Short.MIN_VALUE;
-                                else
-                                    mix[i] = (short) sample;
-                            }
-                            receiveHandler.handleCombinedAudio(new CombinedAudio(users, mix));
-                        }
-                        else
-                        {
-                            //No audio to mix, provide 20 MS of silence. (960 PCM samples for each channel)
-                            receiveHandler.handleCombinedAudio(new CombinedAudio(Collections.emptyList(), new short[1920]));
-                        }
+                        //Provides 20 MS of silence if there was no audio to mix. (960 PCM samples for each channel)
+                        receiveHandler.handleCombinedAudio(mixer.mix());
                     }
                 }
                 catch (Exception e)
                 {
                     LOG.error("There was some unexpected exception in the combinedAudioExecutor!", e);
+                    mixer.reset();
                 }
             }, 0, 20, TimeUnit.MILLISECONDS);
         }
     }
 
-    private ByteBuffer encodeToOpus(ByteBuffer rawAudio)
-    {
-        ShortBuffer nonEncodedBuffer = ShortBuffer.allocate(rawAudio.remaining() / 2);
-        ByteBuffer encoded = ByteBuffer.allocate(4096);
-        for (int i = rawAudio.position(); i < rawAudio.limit(); i += 2)
-        {
-            int firstByte =  (0x000000FF & rawAudio.get(i));      //Promotes to int and handles the fact that it was unsigned.
-            int secondByte = (0x000000FF & rawAudio.get(i + 1));
-
-            //Combines the 2 bytes into a short. Opus deals with unsigned shorts, not bytes.
-            short toShort = (short) ((firstByte << 8) | secondByte);
-
-            nonEncodedBuffer.put(toShort);
-        }
-        ((Buffer) nonEncodedBuffer).flip();
-
-        int result = Opus.INSTANCE.opus_encode(opusEncoder, nonEncodedBuffer, OpusPacket.OPUS_FRAME_SIZE, encoded, encoded.capacity());
-        if (result <= 0)
-        {
-            LOG.error("Received error code from opus_encode(...): {}", result);
-            return null;
-        }
-
-        ((Buffer) encoded).position(0).limit(result);
-        return encoded;
-    }
-
     private void setSpeaking(int raw)
     {
         this.speaking = raw != 0;
@@ -617,17 +803,12 @@ public class AudioConnection
     {
         private char seq = 0;           //Sequence of audio packets. Used to determine the order of the packets.
         private int timestamp = 0;      //Used to sync up our packets within the same timeframe of other people talking.
+        private byte[] key;
         private TweetNaclFast.SecretBox boxer;
-        private long nonce = 0;
+        private AesGcmCipher cipher;
         private ByteBuffer buffer = ByteBuffer.allocate(512);
-        private ByteBuffer encryptionBuffer = ByteBuffer.allocate(512);
         private final byte[] nonceBuffer = new byte[TweetNaclFast.SecretBox.nonceLength];
 
-        public PacketProvider(TweetNaclFast.SecretBox boxer)
-        {
-            this.boxer = boxer;
-        }
-
         @Nonnull
         @Override
         public String getIdentifier()
@@ -649,6 +830,13 @@ public class AudioConnection
             return udpSocket;
         }
 
+        @Nullable
+        @Override
+        public DatagramChannel getUdpChannel()
+        {
+            return udpChannel;
+        }
+
         @Nonnull
         @Override
         public InetSocketAddress getSocketAddress()
@@ -741,22 +929,11 @@ public class AudioConnection
         {
             if (opusEncoder == null)
             {
-                if (!AudioNatives.ensureOpus())
-                {
-                    if (!printedError)
-                        LOG.error("Unable to process PCM audio without opus binaries!");
-                    printedError = true;
+                opusEncoder = Encoder.create();
+                if (opusEncoder == null)
                     return null;
-                }
-                IntBuffer error = IntBuffer.allocate(1);
-                opusEncoder = Opus.INSTANCE.opus_encoder_create(OpusPacket.OPUS_SAMPLE_RATE, OpusPacket.OPUS_CHANNEL_COUNT, Opus.OPUS_APPLICATION_AUDIO, error);
-                if (error.get() != Opus.OPUS_OK && opusEncoder == null)
-                {
-                    LOG.error("Received error status from opus_encoder_create(...): {}", error.get());
-                    return null;
-                }
             }
-            return encodeToOpus(rawAudio);
+            return opusEncoder.encode(rawAudio);
         }
 
         private DatagramPacket getDatagramPacket(ByteBuffer b)
@@ -769,19 +946,34 @@ public class AudioConnection
 
         private ByteBuffer getPacketData(ByteBuffer rawAudio)
         {
-            ensureEncryptionBuffer(rawAudio);
-            AudioPacket packet = new AudioPacket(encryptionBuffer, seq, timestamp, webSocket.getSSRC(), rawAudio);
+            byte[] secretKey = webSocket.getSecretKey();
+            if (key != secretKey)
+            {
+                boxer = null;
+                cipher = null;
+                key = secretKey;
+            }
+
+            long nonce;
             int nlen;
             switch (webSocket.encryption)
             {
+                case AEAD_AES256_GCM:
+                    // the counter is kept by the websocket, a new provider must not start over with the same key
+                    nonce = webSocket.nextNonce();
+                    if (nonce < 0)
+                        return null;
+                    if (cipher == null)
+                        cipher = new AesGcmCipher(secretKey);
+                    return buffer = AudioPacket.encryptAudioPacket(cipher, buffer, seq, timestamp, webSocket.getSSRC(), rawAudio, (int) nonce);
                 case XSALSA20_POLY1305:
                     nlen = 0;
                     break;
                 case XSALSA20_POLY1305_LITE:
-                    if (nonce >= MAX_UINT_32)
-                        loadNextNonce(nonce = 0);
-                    else
-                        loadNextNonce(++nonce);
+                    nonce = webSocket.nextNonce();
+                    if (nonce < 0)
+                        return null;
+                    loadNextNonce(nonce);
                     nlen = 4;
                     break;
                 case XSALSA20_POLY1305_SUFFIX:
@@ -791,16 +983,9 @@ public class AudioConnection
                 default:
                     throw new IllegalStateException("Encryption mode [" + webSocket.encryption + "] is not supported!");
             }
-            return buffer = packet.asEncryptedPacket(boxer, buffer, nonceBuffer, nlen);
-        }
-
-        private void ensureEncryptionBuffer(ByteBuffer data)
-        {
-            ((Buffer) encryptionBuffer).clear();
-            int currentCapacity = encryptionBuffer.remaining();
-            int requiredCapacity = AudioPacket.RTP_HEADER_BYTE_LENGTH + data.remaining();
-            if (currentCapacity < requiredCapacity)
-                encryptionBuffer = ByteBuffer.allocate(requiredCapacity);
+            if (boxer == null)
+                boxer = new TweetNaclFast.SecretBox(secretKey);
+            return buffer = AudioPacket.encryptAudioPacket(boxer, buffer, seq, timestamp, webSocket.getSSRC(), rawAudio, nonceBuffer, nlen);
         }
 
         private void loadNextNonce(long nonce)
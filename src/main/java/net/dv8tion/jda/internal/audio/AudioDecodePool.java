@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes received audio on a few threads shared by all voice connections of this JVM.
+ *
+ * <p>Every SSRC is assigned to one lane, which is a single thread with its own queue.
+ * Tasks of one SSRC are therefore executed in submission order and never concurrently,
+ * which keeps the opus decoder and jitter buffer of a speaker confined to one thread at a time.
+ * If a lane falls too far behind, new tasks are dropped instead of blocking the receiving thread.
+ */
+public class AudioDecodePool
+{
+    /** Pending frames per lane, each frame is 20ms of audio of one speaker */
+    private static final int LANE_CAPACITY = 1024;
+
+    private static AudioDecodePool instance;
+
+    private final Lane[] lanes;
+    private final AtomicLong dropped = new AtomicLong();
+
+    protected AudioDecodePool(int threads)
+    {
+        this.lanes = new Lane[threads];
+        for (int i = 0; i < threads; i++)
+            lanes[i] = new Lane(i + 1);
+    }
+
+    /**
+     * The decoder pool shared by all voice connections of this JVM.
+     * <br>Its daemon threads are started on the first call.
+     *
+     * @return The shared AudioDecodePool
+     */
+    public static synchronized AudioDecodePool getInstance()
+    {
+        if (instance == null)
+        {
+            int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+            instance = new AudioDecodePool(threads);
+        }
+        return instance;
+    }
+
+    /**
+     * Executes the task on the lane of the provided SSRC.
+     *
+     * @param  ssrc
+     *         The SSRC of the speaker
+     * @param  task
+     *         The decoding task
+     *
+     * @return True, if the task was queued. False if the lane was full and the task was dropped.
+     */
+    public boolean execute(int ssrc, Runnable task)
+    {
+        Lane lane = lanes[Math.floorMod(ssrc, lanes.length)];
+        if (lane.queue.offer(task))
+            return true;
+        if (dropped.getAndIncrement() % 1000 == 0)
+            AudioConnection.LOG.warn("Audio decoding is falling behind, dropped {} frames so far", dropped.get());
+        return false;
+    }
+
+    /**
+     * The amount of tasks dropped because their lane was full.
+     *
+     * @return The amount of dropped tasks
+     */
+    public long getDroppedTasks()
+    {
+        return dropped.get();
+    }
+
+    private static class Lane implements Runnable
+    {
+        private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(LANE_CAPACITY);
+
+        private Lane(int id)
+        {
+            Thread thread = new Thread(this, "JDA Audio Decoder " + id);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                Runnable task;
+                try
+                {
+                    task = queue.take();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+
+                try
+                {
+                    task.run();
+                }
+                catch (Exception e)
+                {
+                    AudioConnection.LOG.error("There was some random exception while decoding audio", e);
+                }
+            }
+        }
+    }
+}
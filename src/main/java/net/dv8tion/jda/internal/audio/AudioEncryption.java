@@ -20,8 +20,10 @@ import net.dv8tion.jda.api.utils.data.DataArray;
 
 public enum AudioEncryption
 {
-    // these are ordered by priority, lite > suffix > normal
+    // these are ordered by priority, aes-gcm > lite > suffix > normal
+    // we prefer aes-gcm because the JCE implementation is hardware accelerated on most CPUs
     // we prefer lite because it uses only 4 bytes for its nonce while the others use 24 bytes
+    AEAD_AES256_GCM,
     XSALSA20_POLY1305_LITE,
     XSALSA20_POLY1305_SUFFIX,
     XSALSA20_POLY1305;
@@ -47,6 +49,8 @@ public enum AudioEncryption
             {
                 String name = String.valueOf(o).toUpperCase();
                 AudioEncryption e = valueOf(name);
+                if (e == AEAD_AES256_GCM && !AesGcmCipher.isSupported())
+                    continue;
                 if (encryption == null || e.ordinal() < encryption.ordinal())
                     encryption = e;
             }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio;
+
+import net.dv8tion.jda.api.audio.CombinedAudio;
+import net.dv8tion.jda.api.entities.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Mixes the decoded audio of multiple users into one {@link CombinedAudio} frame.
+ *
+ * <p>The samples are summed into a reused {@code int[]} accumulator with plain counted loops, which the JIT can unroll and vectorize,
+ * and are clamped to the 16 bit range afterwards. The parts of a frame are collected in reused arrays,
+ * so the only allocation per mixed frame is the result itself. Silent frames share one preallocated instance.
+ *
+ * <p>Instances are not thread-safe, each connection uses its own mixer on the combined audio thread.
+ */
+public class AudioMixer
+{
+    /** 960 PCM samples for each channel */
+    public static final int FRAME_SIZE = 1920;
+
+    private static final short[] SILENCE_FRAME = new short[FRAME_SIZE];
+    private static final CombinedAudio SILENCE = new CombinedAudio(Collections.emptyList(), SILENCE_FRAME);
+
+    private final List<User> users = new ArrayList<>();
+    private short[][] parts = new short[8][];
+    private int[] accumulator = new int[FRAME_SIZE];
+    private int partCount;
+    private int length;
+
+    /**
+     * Adds the audio of a user to the current frame.
+     *
+     * @param user
+     *        The user who provided the audio
+     * @param audio
+     *        The decoded PCM samples, this array is not modified
+     */
+    public void add(User user, short[] audio)
+    {
+        if (partCount == parts.length)
+            parts = Arrays.copyOf(parts, partCount * 2);
+        parts[partCount++] = audio;
+        users.add(user);
+        length = Math.max(length, audio.length);
+    }
+
+    /**
+     * Whether no audio was added to the current frame.
+     *
+     * @return True, if the current frame is silent
+     */
+    public boolean isEmpty()
+    {
+        return partCount == 0;
+    }
+
+    /**
+     * Mixes all audio added since the last call and resets this mixer.
+     *
+     * @return The mixed frame, or a shared silent frame if no audio was added
+     */
+    public CombinedAudio mix()
+    {
+        if (partCount == 0)
+            return SILENCE;
+
+        short[] mix = new short[Math.max(FRAME_SIZE, length)];
+        if (accumulator.length < length)
+            accumulator = new int[length];
+        int[] acc = accumulator;
+
+        // Assigning the first part avoids clearing the accumulator
+        short[] first = parts[0];
+        int filled = first.length;
+        for (int i = 0; i < filled; i++)
+            acc[i] = first[i];
+        if (filled < length)
+            Arrays.fill(acc, filled, length, 0);
+
+        for (int p = 1; p < partCount; p++)
+        {
+            short[] audio = parts[p];
+            int n = audio.length;
+            for (int i = 0; i < n; i++)
+                acc[i] += audio[i];
+        }
+
+        // Saturate instead of wrapping around, which would be audible as loud clicks
+        for (int i = 0; i < length; i++)
+            mix[i] = (short) Math.min(Short.MAX_VALUE, Math.max(Short.MIN_VALUE, acc[i]));
+
+        CombinedAudio combined = new CombinedAudio(new ArrayList<>(users), mix);
+        reset();
+        return combined;
+    }
+
+    /**
+     * Discards all audio added to the current frame.
+     */
+    public void reset()
+    {
+        Arrays.fill(parts, 0, partCount, null);
+        partCount = 0;
+        length = 0;
+        users.clear();
+    }
+}
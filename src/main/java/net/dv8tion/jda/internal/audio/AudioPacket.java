@@ -80,23 +80,29 @@ public class AudioPacket
         this.ssrc = buffer.getInt(SSRC_INDEX);
         this.type = buffer.get(PT_INDEX);
 
-        final byte profile = buffer.get(0);
         final byte[] data = buffer.array();
-        final boolean hasExtension = (profile & 0x10) != 0; // extension bit is at 000X
-        final byte cc = (byte) (profile & 0x0f);            // CSRC count - we ignore this for now
-        final int csrcLength = cc * 4;                      // defines count of 4-byte words
-        // it seems as if extensions only exist without a csrc list being present
-        final short extension = hasExtension ? IOUtil.getShortBigEndian(data, RTP_HEADER_BYTE_LENGTH + csrcLength) : 0;
-
-        int offset = RTP_HEADER_BYTE_LENGTH + csrcLength;
-        if (hasExtension && extension == RTP_DISCORD_EXTENSION)
-            offset = getPayloadOffset(data, csrcLength);
+        int offset = getPayloadOffset(data, RTP_HEADER_BYTE_LENGTH, data.length);
 
         this.encodedAudio = ByteBuffer.allocate(data.length - offset);
         this.encodedAudio.put(data, offset, encodedAudio.capacity());
         ((Buffer) this.encodedAudio).flip();
     }
 
+    // Used for decrypted packets, the header is at the start of the data followed by the decrypted payload at some offset
+    private AudioPacket(byte[] data, int payloadOffset, int payloadLength)
+    {
+        // The packet takes ownership of the data, the audio is a slice of it instead of a copy
+        this.rawPacket = Arrays.copyOf(data, RTP_HEADER_BYTE_LENGTH);
+        this.seq = (char) IOUtil.getShortBigEndian(data, SEQ_INDEX);
+        this.timestamp = IOUtil.getIntBigEndian(data, TIMESTAMP_INDEX);
+        this.ssrc = IOUtil.getIntBigEndian(data, SSRC_INDEX);
+        this.type = data[PT_INDEX];
+
+        int end = payloadOffset + payloadLength;
+        int offset = getPayloadOffset(data, payloadOffset, end);
+        this.encodedAudio = ByteBuffer.wrap(data, offset, end - offset).slice();
+    }
+
     public AudioPacket(ByteBuffer buffer, char seq, int timestamp, int ssrc, ByteBuffer encodedAudio)
     {
         this.seq = seq;
@@ -107,19 +113,29 @@ public class AudioPacket
         this.rawPacket = generateRawPacket(buffer, seq, timestamp, ssrc, encodedAudio);
     }
 
-    private int getPayloadOffset(byte[] data, int csrcLength)
+    // base is the index where the data following the 12 byte RTP header starts
+    private static int getPayloadOffset(byte[] data, int base, int end)
     {
+        final byte profile = data[0];
+        final boolean hasExtension = (profile & 0x10) != 0; // extension bit is at 000X
+        final byte cc = (byte) (profile & 0x0f);            // CSRC count - we ignore this for now
+        final int csrcLength = cc * 4;                      // defines count of 4-byte words
+
+        int offset = base + csrcLength;
+        // it seems as if extensions only exist without a csrc list being present
+        if (!hasExtension || offset + 4 > end || IOUtil.getShortBigEndian(data, offset) != RTP_DISCORD_EXTENSION)
+            return Math.min(offset, end);
+
         // headerLength defines number of 4-byte words in the extension
-        final short headerLength = IOUtil.getShortBigEndian(data, RTP_HEADER_BYTE_LENGTH + 2 + csrcLength);
-        int i = RTP_HEADER_BYTE_LENGTH // RTP header = 12 bytes
-                + 4                    // header which defines a profile and length each 2-bytes = 4 bytes
-                + csrcLength           // length of CSRC list (this seems to be always 0 when an extension exists)
-                + headerLength * 4;    // number of 4-byte words in extension = len * 4 bytes
+        final int headerLength = IOUtil.getShortBigEndian(data, offset + 2) & 0xFFFF;
+        int i = offset             // RTP header and CSRC list (this seems to be always empty when an extension exists)
+                + 4                // header which defines a profile and length each 2-bytes = 4 bytes
+                + headerLength * 4; // number of 4-byte words in extension = len * 4 bytes
 
         // strip excess 0 bytes
-        while (data[i] == 0)
+        while (i < end && data[i] == 0)
             i++;
-        return i;
+        return Math.min(i, end);
     }
 
     @SuppressWarnings("unused")
@@ -162,26 +178,55 @@ public class AudioPacket
         return timestamp;
     }
 
-    protected ByteBuffer asEncryptedPacket(TweetNaclFast.SecretBox boxer, ByteBuffer buffer, byte[] nonce, int nlen)
+    /**
+     * Writes the encrypted RTP packet for the provided audio into the buffer.
+     * <br>The audio is encrypted in place inside the buffer, which means this does not allocate unless the buffer is too small.
+     *
+     * @param  boxer
+     *         The SecretBox used for encryption, must not be used concurrently
+     * @param  buffer
+     *         The buffer to reuse, or null
+     * @param  seq
+     *         The sequence number
+     * @param  timestamp
+     *         The RTP timestamp
+     * @param  ssrc
+     *         Our SSRC
+     * @param  encodedAudio
+     *         The opus audio, its position is not changed
+     * @param  nonce
+     *         The 24 byte nonce. If nlen is 0, the RTP header is used as nonce and copied into this array.
+     * @param  nlen
+     *         The amount of nonce bytes which are appended to the packet
+     *
+     * @return The buffer containing the packet, this is a new buffer if the provided buffer was too small
+     */
+    protected static ByteBuffer encryptAudioPacket(TweetNaclFast.SecretBox boxer, ByteBuffer buffer, char seq, int timestamp, int ssrc, ByteBuffer encodedAudio, byte[] nonce, int nlen)
     {
-        //Xsalsa20's Nonce is 24 bytes long, however RTP (and consequently Discord)'s nonce is a different length
-        // so we need to create a 24 byte array, and copy the nonce into it.
-        // we will leave the extra bytes as nulls. (Java sets non-populated bytes as 0).
-        byte[] extendedNonce = nonce;
-        if (nlen == 0) // this means the header is the nonce!
-            extendedNonce = getNoncePadded();
+        final int length = encodedAudio.remaining();
+        final int capacity = RTP_HEADER_BYTE_LENGTH + TweetNaclFast.SecretBox.overheadLength + length + nlen;
+        if (buffer == null || buffer.capacity() < capacity)
+            buffer = ByteBuffer.allocate(capacity);
+        ((Buffer) buffer).clear();
 
-        //Create our SecretBox encoder with the secretKey provided by Discord.
-        byte[] array = encodedAudio.array();
-        int offset = encodedAudio.arrayOffset() + encodedAudio.position();
-        int length = encodedAudio.remaining();
-        byte[] encryptedAudio = boxer.box(array, offset, length, extendedNonce);
+        buffer.put(RTP_VERSION_PAD_EXTEND);
+        buffer.put(RTP_PAYLOAD_TYPE);
+        buffer.putChar(seq);
+        buffer.putInt(timestamp);
+        buffer.putInt(ssrc);
+        ((Buffer) buffer).position(RTP_HEADER_BYTE_LENGTH + TweetNaclFast.SecretBox.overheadLength);
+        buffer.put(encodedAudio.duplicate());
 
-        ((Buffer) buffer).clear();
-        int capacity = RTP_HEADER_BYTE_LENGTH + encryptedAudio.length + nlen;
-        if (capacity > buffer.remaining())
-            buffer = ByteBuffer.allocate(capacity);
-        populateBuffer(seq, timestamp, ssrc, ByteBuffer.wrap(encryptedAudio), buffer);
+        final byte[] array = buffer.array();
+        final int offset = buffer.arrayOffset();
+        if (nlen == 0) // this means the header is the nonce!
+        {
+            //Xsalsa20's Nonce is 24 bytes long, however RTP (and consequently Discord)'s nonce is a different length
+            // so we need to copy the nonce into a 24 byte array and leave the extra bytes as nulls.
+            System.arraycopy(array, offset, nonce, 0, RTP_HEADER_BYTE_LENGTH);
+            Arrays.fill(nonce, RTP_HEADER_BYTE_LENGTH, nonce.length, (byte) 0);
+        }
+        boxer.sealInPlace(array, offset + RTP_HEADER_BYTE_LENGTH, length, nonce);
         if (nlen > 0) // this means we append the nonce to the payload
             buffer.put(nonce, 0, nlen);
 
@@ -189,66 +234,138 @@ public class AudioPacket
         return buffer;
     }
 
-    protected static AudioPacket decryptAudioPacket(AudioEncryption encryption, DatagramPacket packet, byte[] secretKey)
+    /**
+     * Writes the packet for the provided audio into the buffer, encrypted with {@link AudioEncryption#AEAD_AES256_GCM}.
+     * <br>The RTP header is authenticated and the nonce counter is appended to the packet.
+     *
+     * @param  cipher
+     *         The cipher used for encryption, must not be used concurrently
+     * @param  buffer
+     *         The buffer to reuse, or null
+     * @param  seq
+     *         The sequence number
+     * @param  timestamp
+     *         The RTP timestamp
+     * @param  ssrc
+     *         Our SSRC
+     * @param  encodedAudio
+     *         The opus audio, its position is not changed
+     * @param  nonce
+     *         The nonce counter
+     *
+     * @return The buffer containing the packet, this is a new buffer if the provided buffer was too small
+     */
+    protected static ByteBuffer encryptAudioPacket(AesGcmCipher cipher, ByteBuffer buffer, char seq, int timestamp, int ssrc, ByteBuffer encodedAudio, int nonce)
+    {
+        final int length = encodedAudio.remaining();
+        final int capacity = RTP_HEADER_BYTE_LENGTH + length + AesGcmCipher.TAG_LENGTH + AesGcmCipher.NONCE_LENGTH;
+        if (buffer == null || buffer.capacity() < capacity)
+            buffer = ByteBuffer.allocate(capacity);
+        ((Buffer) buffer).clear();
+
+        buffer.put(RTP_VERSION_PAD_EXTEND);
+        buffer.put(RTP_PAYLOAD_TYPE);
+        buffer.putChar(seq);
+        buffer.putInt(timestamp);
+        buffer.putInt(ssrc);
+        buffer.put(encodedAudio.duplicate());
+
+        final int offset = buffer.arrayOffset();
+        final int sealed = cipher.seal(buffer.array(), offset, RTP_HEADER_BYTE_LENGTH, offset + RTP_HEADER_BYTE_LENGTH, length, nonce);
+        ((Buffer) buffer).position(RTP_HEADER_BYTE_LENGTH + sealed);
+        buffer.putInt(nonce);
+
+        ((Buffer) buffer).flip();
+        return buffer;
+    }
+
+    /**
+     * Decrypts a received packet, which uses {@link AudioEncryption#AEAD_AES256_GCM}, in place.
+     *
+     * @param  data
+     *         The received packet, starting at index 0. This array is modified by decryption
+     *         and owned by the returned packet, it must not be reused.
+     * @param  length
+     *         The length of the packet
+     * @param  cipher
+     *         The cipher used for decryption, must not be used concurrently
+     *
+     * @return The decrypted packet, or null if the packet could not be decrypted
+     */
+    protected static AudioPacket decryptAudioPacket(byte[] data, int length, AesGcmCipher cipher)
     {
-        TweetNaclFast.SecretBox boxer = new TweetNaclFast.SecretBox(secretKey);
-        AudioPacket encryptedPacket = new AudioPacket(packet);
-        if (encryptedPacket.type != RTP_PAYLOAD_TYPE)
+        final int boxLength = length - RTP_HEADER_BYTE_LENGTH - AesGcmCipher.NONCE_LENGTH;
+        if (boxLength < 0 || data[PT_INDEX] != RTP_PAYLOAD_TYPE)
             return null;
 
-        byte[] extendedNonce;
-        byte[] rawPacket = encryptedPacket.getRawPacket();
-        switch (encryption)
+        final int nonce = IOUtil.getIntBigEndian(data, length - AesGcmCipher.NONCE_LENGTH);
+        final int audioLength = cipher.open(data, 0, RTP_HEADER_BYTE_LENGTH, RTP_HEADER_BYTE_LENGTH, boxLength, nonce);
+        if (audioLength < 0)
         {
-            case XSALSA20_POLY1305:
-                extendedNonce = encryptedPacket.getNoncePadded();
-                break;
-            case XSALSA20_POLY1305_SUFFIX:
-                extendedNonce = new byte[TweetNaclFast.SecretBox.nonceLength];
-                System.arraycopy(rawPacket, rawPacket.length - extendedNonce.length, extendedNonce, 0, extendedNonce.length);
-                break;
-            case XSALSA20_POLY1305_LITE:
-                extendedNonce = new byte[TweetNaclFast.SecretBox.nonceLength];
-                System.arraycopy(rawPacket, rawPacket.length - 4, extendedNonce, 0, 4);
-                break;
-            default:
-                AudioConnection.LOG.debug("Failed to decrypt audio packet, unsupported encryption mode!");
-                return null;
+            AudioConnection.LOG.trace("Failed to decrypt audio packet");
+            return null;
         }
 
-        ByteBuffer encodedAudio = encryptedPacket.encodedAudio;
-        int length = encodedAudio.remaining();
-        int offset = encodedAudio.arrayOffset() + encodedAudio.position();
+        return new AudioPacket(data, RTP_HEADER_BYTE_LENGTH, audioLength);
+    }
+
+    /**
+     * Decrypts a received packet in place.
+     * <br>The audio of the returned packet is not copied, the only allocation is its header.
+     *
+     * @param  encryption
+     *         The encryption mode
+     * @param  data
+     *         The received packet, starting at index 0. This array is modified by decryption
+     *         and owned by the returned packet, it must not be reused.
+     * @param  length
+     *         The length of the packet
+     * @param  boxer
+     *         The SecretBox used for decryption, must not be used concurrently
+     * @param  nonce
+     *         24 byte array to use for the nonce
+     *
+     * @return The decrypted packet, or null if the packet could not be decrypted
+     */
+    protected static AudioPacket decryptAudioPacket(AudioEncryption encryption, byte[] data, int length, TweetNaclFast.SecretBox boxer, byte[] nonce)
+    {
+        if (length < RTP_HEADER_BYTE_LENGTH || data[PT_INDEX] != RTP_PAYLOAD_TYPE)
+            return null;
+
+        final int offset = getPayloadOffset(data, RTP_HEADER_BYTE_LENGTH, length);
+        int boxLength = length - offset;
         switch (encryption)
         {
             case XSALSA20_POLY1305:
-//                length = encodedAudio.remaining();
-                break;
-            case XSALSA20_POLY1305_LITE:
-                length -= 4;
+                System.arraycopy(data, 0, nonce, 0, RTP_HEADER_BYTE_LENGTH);
+                Arrays.fill(nonce, RTP_HEADER_BYTE_LENGTH, nonce.length, (byte) 0);
                 break;
             case XSALSA20_POLY1305_SUFFIX:
-                length -= TweetNaclFast.SecretBox.nonceLength;
+                boxLength -= TweetNaclFast.SecretBox.nonceLength;
+                if (boxLength < 0)
+                    return null;
+                System.arraycopy(data, length - nonce.length, nonce, 0, nonce.length);
+                break;
+            case XSALSA20_POLY1305_LITE:
+                boxLength -= 4;
+                if (boxLength < 0)
+                    return null;
+                System.arraycopy(data, length - 4, nonce, 0, 4);
+                Arrays.fill(nonce, 4, nonce.length, (byte) 0);
                 break;
             default:
                 AudioConnection.LOG.debug("Failed to decrypt audio packet, unsupported encryption mode!");
                 return null;
         }
 
-        final byte[] decryptedAudio = boxer.open(encodedAudio.array(), offset, length, extendedNonce);
-        if (decryptedAudio == null)
+        final int audioLength = boxer.openInPlace(data, offset, boxLength, nonce);
+        if (audioLength < 0)
         {
             AudioConnection.LOG.trace("Failed to decrypt audio packet");
             return null;
         }
-        final byte[] decryptedRawPacket = new byte[RTP_HEADER_BYTE_LENGTH + decryptedAudio.length];
-
-        //first 12 bytes of rawPacket are the RTP header
-        //the rest is the audio data we just decrypted
-        System.arraycopy(encryptedPacket.rawPacket, 0, decryptedRawPacket, 0, RTP_HEADER_BYTE_LENGTH);
-        System.arraycopy(decryptedAudio, 0, decryptedRawPacket, RTP_HEADER_BYTE_LENGTH, decryptedAudio.length);
 
-        return new AudioPacket(decryptedRawPacket);
+        return new AudioPacket(data, offset + TweetNaclFast.SecretBox.overheadLength, audioLength);
     }
 
     private static byte[] generateRawPacket(ByteBuffer buffer, char seq, int timestamp, int ssrc, ByteBuffer data)
@@ -38,7 +38,9 @@ import org.slf4j.Logger;
 import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
@@ -70,7 +72,10 @@ class AudioWebSocket extends WebSocketAdapter
     private boolean reconnecting = false;
     private boolean shouldReconnect;
     private int ssrc;
-    private byte[] secretKey;
+    private volatile byte[] secretKey;
+    // nonce counter of the secret key, a nonce must never be used twice with the same key
+    private long sendNonce;
+    private boolean renegotiating;
     private Future<?> keepAliveHandle;
     private InetSocketAddress address;
 
@@ -155,8 +160,12 @@ class AudioWebSocket extends WebSocketAdapter
             shutdown = true;
             stopKeepAlive();
 
-            if (audioConnection.udpSocket != null)
-                audioConnection.udpSocket.close();
+            if (address != null && SharedVoiceSocket.isShared(audioConnection.udpChannel) && isConnectionFailure(status))
+            {
+                // the cached external address of the shared socket might be the reason, discover it again on reconnect
+                SharedVoiceSocket.getInstance().invalidate(address);
+            }
+            audioConnection.closeUdpSocket();
             if (socket != null)
                 socket.sendClose();
 
@@ -236,6 +245,39 @@ class AudioWebSocket extends WebSocketAdapter
         return secretKey;
     }
 
+    private synchronized void setSecretKey(byte[] key)
+    {
+        // the same key might be sent again, its counter must continue where it stopped
+        if (Arrays.equals(secretKey, key))
+            return;
+        sendNonce = 0;
+        secretKey = key;
+    }
+
+    /**
+     * The next nonce for a packet encrypted with the current secret key.
+     * <br>The counter belongs to the key and is shared by every send system of this connection.
+     * Once all 32 bit nonces of the key are used, a new session with a new key is negotiated.
+     *
+     * @return The nonce, or -1 if no nonce is left for the current key
+     */
+    protected synchronized long nextNonce()
+    {
+        if (sendNonce < AudioConnection.MAX_UINT_32)
+            return ++sendNonce;
+        if (!renegotiating)
+        {
+            renegotiating = true;
+            LOG.debug("Exhausted the nonces of the secret key, reconnecting to negotiate a new key");
+            keepAlivePool.execute(() ->
+            {
+                getJDA().setContext();
+                close(ConnectionStatus.ERROR_CANNOT_RESUME);
+            });
+        }
+        return -1;
+    }
+
     protected int getSSRC()
     {
         return ssrc;
@@ -463,9 +505,10 @@ class AudioWebSocket extends WebSocketAdapter
                 //secret_key is an array of 32 ints that are less than 256, so they are bytes.
                 DataArray keyArray = contentAll.getObject("d").getArray("secret_key");
 
-                secretKey = new byte[DISCORD_SECRET_KEY_LENGTH];
+                byte[] key = new byte[DISCORD_SECRET_KEY_LENGTH];
                 for (int i = 0; i < keyArray.length(); i++)
-                    secretKey[i] = (byte) keyArray.getInt(i);
+                    key[i] = (byte) keyArray.getInt(i);
+                setSecretKey(key);
 
                 LOG.debug("Audio connection has finished connecting!");
                 ready = true;
@@ -571,6 +614,19 @@ class AudioWebSocket extends WebSocketAdapter
         });
     }
 
+    private static boolean isConnectionFailure(ConnectionStatus status)
+    {
+        switch (status)
+        {
+            case ERROR_LOST_CONNECTION:
+            case ERROR_UDP_UNABLE_TO_CONNECT:
+            case ERROR_CONNECTION_TIMEOUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     private InetSocketAddress handleUdpDiscovery(InetSocketAddress address, int ssrc)
     {
         //We will now send a packet to discord to punch a port hole in the NAT wall.
@@ -578,10 +634,33 @@ class AudioWebSocket extends WebSocketAdapter
         try
         {
             //First close existing socket from possible previous attempts
-            if (audioConnection.udpSocket != null)
-                audioConnection.udpSocket.close();
+            audioConnection.closeUdpSocket();
+            AudioManagerImpl manager = (AudioManagerImpl) guild.getAudioManager();
+            if (getJDA().isSharedVoiceSocket() && !manager.isDedicatedVoiceSocket())
+            {
+                // the shared socket only sends a discovery packet if the external address for this server is not known yet
+                SharedVoiceSocket sharedSocket = SharedVoiceSocket.getInstance();
+                audioConnection.udpChannel = sharedSocket.getChannel();
+                audioConnection.udpSocket = sharedSocket.getChannel().socket();
+                InetSocketAddress external = sharedSocket.discover(address, ssrc, 1000);
+                if (external != null)
+                    this.address = address;
+                return external;
+            }
             //Create new UDP socket for communication
-            audioConnection.udpSocket = new DatagramSocket();
+            DatagramChannel channel = null;
+            if (getJDA().isNioAudio())
+            {
+                // the adapter of the channel works like a normal socket as long as the channel is in blocking mode
+                channel = DatagramChannel.open();
+                audioConnection.udpChannel = channel;
+                audioConnection.udpSocket = channel.socket();
+            }
+            else
+            {
+                audioConnection.udpChannel = null;
+                audioConnection.udpSocket = new DatagramSocket();
+            }
 
             //Create a byte array of length 70 containing our ssrc.
             ByteBuffer buffer = ByteBuffer.allocate(70);    //70 taken from documentation
@@ -623,6 +702,8 @@ class AudioWebSocket extends WebSocketAdapter
             // We AND it with 0xFFFF to ensure that it isn't sign extended
             int ourPort = (int) IOUtil.getShortBigEndian(received, received.length - 2) & 0xFFFF;
             this.address = address;
+            if (channel != null)
+                channel.configureBlocking(false);
             return new InetSocketAddress(ourIP, ourPort);
         }
         catch (IOException e)
@@ -667,8 +748,16 @@ class AudioWebSocket extends WebSocketAdapter
             {
                 try
                 {
-                    DatagramPacket keepAlivePacket = new DatagramPacket(UDP_KEEP_ALIVE, UDP_KEEP_ALIVE.length, address);
-                    audioConnection.udpSocket.send(keepAlivePacket);
+                    DatagramChannel channel = audioConnection.udpChannel;
+                    if (channel != null)
+                    {
+                        channel.send(ByteBuffer.wrap(UDP_KEEP_ALIVE), address);
+                    }
+                    else
+                    {
+                        DatagramPacket keepAlivePacket = new DatagramPacket(UDP_KEEP_ALIVE, UDP_KEEP_ALIVE.length, address);
+                        audioConnection.udpSocket.send(keepAlivePacket);
+                    }
                 }
                 catch (NoRouteToHostException e)
                 {
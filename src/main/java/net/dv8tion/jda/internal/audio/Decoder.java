@@ -56,8 +56,11 @@ public class Decoder
         return newSeq > lastSeq + 1;
     }
 
-    public short[] decodeFromOpus(AudioPacket decryptedPacket)
+    // synchronized with close(), queued decoding tasks may still run after the connection was closed
+    public synchronized short[] decodeFromOpus(AudioPacket decryptedPacket)
     {
+        if (opusDecoder == null)
+            return null;
         int result;
         ShortBuffer decoded = ShortBuffer.allocate(4096);
         if (decryptedPacket == null)    //Flag for packet-loss
@@ -80,6 +83,31 @@ public class Decoder
             result = Opus.INSTANCE.opus_decode(opusDecoder, buf, buf.length, decoded, OpusPacket.OPUS_FRAME_SIZE, 0);
         }
 
+        return toAudio(result, decoded);
+    }
+
+    /**
+     * Recovers a lost frame from the forward error correction data of the packet that followed it.
+     * <br>If the packet carries no such data, opus conceals the loss instead.
+     *
+     * @param  nextPacket
+     *         The opus audio of the packet following the lost packet
+     *
+     * @return The recovered audio, or null if decoding failed or the decoder was closed
+     */
+    public synchronized short[] decodeFec(byte[] nextPacket)
+    {
+        if (opusDecoder == null)
+            return null;
+        ShortBuffer decoded = ShortBuffer.allocate(4096);
+        int result = Opus.INSTANCE.opus_decode(opusDecoder, nextPacket, nextPacket.length, decoded, OpusPacket.OPUS_FRAME_SIZE, 1);
+        lastSeq = (char) -1;
+        lastTimestamp = -1;
+        return toAudio(result, decoded);
+    }
+
+    private short[] toAudio(int result, ShortBuffer decoded)
+    {
         //If we get a result that is less than 0, then there was an error. Return null as a signifier.
         if (result < 0)
         {
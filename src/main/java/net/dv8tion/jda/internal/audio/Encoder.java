@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio;
+
+import com.sun.jna.ptr.PointerByReference;
+import net.dv8tion.jda.api.audio.AudioNatives;
+import net.dv8tion.jda.api.audio.OpusPacket;
+import tomp2p.opuswrapper.Opus;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Class that wraps functionality around the Opus encoder.
+ * <br>The PCM and opus buffers are reused for every frame, instances must not be used concurrently.
+ */
+public class Encoder
+{
+    private static boolean printedError = false;
+
+    protected final ShortBuffer pcm = ShortBuffer.allocate(OpusPacket.OPUS_FRAME_SIZE * OpusPacket.OPUS_CHANNEL_COUNT);
+    protected final ByteBuffer encoded = ByteBuffer.allocate(4096);
+    protected PointerByReference opusEncoder;
+
+    /**
+     * Creates a new encoder, if the opus binaries are available.
+     *
+     * @return The encoder, or null if opus could not be loaded or the encoder could not be created
+     */
+    public static Encoder create()
+    {
+        if (!AudioNatives.ensureOpus())
+        {
+            if (!printedError)
+                AudioConnection.LOG.error("Unable to process PCM audio without opus binaries!");
+            printedError = true;
+            return null;
+        }
+
+        IntBuffer error = IntBuffer.allocate(1);
+        PointerByReference opusEncoder = Opus.INSTANCE.opus_encoder_create(OpusPacket.OPUS_SAMPLE_RATE, OpusPacket.OPUS_CHANNEL_COUNT, Opus.OPUS_APPLICATION_AUDIO, error);
+        if (error.get() != Opus.OPUS_OK && opusEncoder == null)
+        {
+            AudioConnection.LOG.error("Received error status from opus_encoder_create(...): {}", error.get());
+            return null;
+        }
+        return new Encoder(opusEncoder);
+    }
+
+    protected Encoder(PointerByReference opusEncoder)
+    {
+        this.opusEncoder = opusEncoder;
+    }
+
+    /**
+     * Encodes 20ms of {@link net.dv8tion.jda.api.audio.AudioSendHandler#INPUT_FORMAT PCM audio}.
+     * <br>The returned buffer is overwritten by the next call.
+     *
+     * @param  rawAudio
+     *         The PCM audio, its position is not changed
+     *
+     * @return The opus frame, or null if encoding failed
+     */
+    public synchronized ByteBuffer encode(ByteBuffer rawAudio)
+    {
+        if (opusEncoder == null)
+            return null;
+
+        ((Buffer) pcm).clear();
+        int end = Math.min(rawAudio.limit(), rawAudio.position() + pcm.capacity() * 2);
+        for (int i = rawAudio.position(); i + 1 < end; i += 2)
+        {
+            int firstByte =  (0x000000FF & rawAudio.get(i));      //Promotes to int and handles the fact that it was unsigned.
+            int secondByte = (0x000000FF & rawAudio.get(i + 1));
+
+            //Combines the 2 bytes into a short. Opus deals with unsigned shorts, not bytes.
+            pcm.put((short) ((firstByte << 8) | secondByte));
+        }
+        ((Buffer) pcm).flip();
+
+        ((Buffer) encoded).clear();
+        int result = Opus.INSTANCE.opus_encode(opusEncoder, pcm, OpusPacket.OPUS_FRAME_SIZE, encoded, encoded.capacity());
+        if (result <= 0)
+        {
+            AudioConnection.LOG.error("Received error code from opus_encode(...): {}", result);
+            return null;
+        }
+
+        ((Buffer) encoded).position(0).limit(result);
+        return encoded;
+    }
+
+    public synchronized void close()
+    {
+        if (opusEncoder != null)
+        {
+            Opus.INSTANCE.opus_encoder_destroy(opusEncoder);
+            opusEncoder = null;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio;
+
+import net.dv8tion.jda.api.audio.OpusPacket;
+import net.dv8tion.jda.api.audio.ReceiveStatistics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Restores the sequence order of the packets received for one SSRC before they are decoded.
+ *
+ * <p>Packets which continue the sequence are decoded immediately. When a packet is missing, the following packets
+ * are held back until the gap is filled or until more frames are waiting than the current target depth.
+ * The target depth adapts to the measured interarrival jitter and never exceeds the configured maximum.
+ * Frames that never arrived are recovered from the forward error correction data of the next packet if it is
+ * already buffered, otherwise they are replaced by opus packet loss concealment.
+ *
+ * <p>When the speaker stops sending packets, the frames behind a gap would never be released by {@link #push(OpusPacket, long, Consumer) push}.
+ * The connection therefore calls {@link #poll(long)} periodically, which gives up on the gap once the frames behind it
+ * waited for the duration of the target depth.
+ *
+ * <p>Packets are pushed by the thread which decodes the packets of the SSRC, which is either the thread receiving
+ * packets for the connection or the lane of the SSRC in the {@link AudioDecodePool}. Polling can happen on any thread,
+ * so all methods are synchronized.
+ */
+public class JitterBuffer
+{
+    /** The highest supported depth in frames */
+    public static final int MAX_DEPTH = 32;
+
+    // must be a power of two larger than MAX_DEPTH
+    private static final int CAPACITY = 64;
+    private static final int MASK = CAPACITY - 1;
+    // RTP timestamp units per millisecond
+    private static final int SAMPLES_PER_MS = OpusPacket.OPUS_SAMPLE_RATE / 1000;
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(OpusPacket.OPUS_FRAME_TIME_AMOUNT);
+
+    private final OpusPacket[] slots = new OpusPacket[CAPACITY];
+    private final Decoder decoder;
+    private final int ssrc;
+
+    private int maxDepth;
+    private int targetDepth = 1;
+    private int nextSeq = -1;
+    private int highestSeq;
+    private int buffered;
+    private Consumer<short[]> handler;
+    private boolean waiting;
+    private long waitingSince;
+
+    private long received, lost, late, duplicated, reordered, concealed, recovered;
+    private double jitter; // in timestamp units
+    private long lastTransit;
+    private boolean hasTransit;
+
+    public JitterBuffer(Decoder decoder, int maxDepth)
+    {
+        this.decoder = decoder;
+        this.ssrc = decoder.ssrc;
+        setMaxDepth(maxDepth);
+    }
+
+    public synchronized void setMaxDepth(int maxDepth)
+    {
+        this.maxDepth = Math.max(1, Math.min(MAX_DEPTH, maxDepth));
+        this.targetDepth = Math.min(targetDepth, this.maxDepth);
+    }
+
+    public synchronized long getPacketsReceived()
+    {
+        return received;
+    }
+
+    /**
+     * Whether frames are held back because of a missing packet.
+     *
+     * @return True, if a following {@link #poll(long)} might release frames
+     */
+    public synchronized boolean isWaiting()
+    {
+        return waiting;
+    }
+
+    /**
+     * Adds a received packet and passes every frame that is ready to the handler, in sequence order.
+     *
+     * @param packet
+     *        The received packet
+     * @param arrivalNanos
+     *        The {@link System#nanoTime()} at which the packet arrived
+     * @param handler
+     *        The handler for decoded frames
+     */
+    public synchronized void push(OpusPacket packet, long arrivalNanos, Consumer<short[]> handler)
+    {
+        this.handler = handler;
+        received++;
+        updateJitter(packet.getTimestamp(), arrivalNanos);
+
+        int seq = packet.getSequence();
+        if (nextSeq < 0)
+        {
+            nextSeq = seq;
+            highestSeq = seq;
+        }
+
+        int offset = distance(nextSeq, seq);
+        if (offset < 0)
+        {
+            if (offset >= -CAPACITY)
+            {
+                // The frame was already decoded or concealed
+                late++;
+                return;
+            }
+            offset = CAPACITY; // the sender restarted its sequence
+        }
+        if (offset >= CAPACITY)
+        {
+            // Too far ahead to wait for the gap, drain what we have and continue at this packet
+            release(0, arrivalNanos);
+            nextSeq = seq;
+            highestSeq = seq;
+        }
+
+        int index = seq & MASK;
+        if (slots[index] != null)
+        {
+            duplicated++;
+            return;
+        }
+        if (distance(highestSeq, seq) < 0)
+            reordered++;
+        else
+            highestSeq = seq;
+
+        slots[index] = packet;
+        buffered++;
+        release(targetDepth, arrivalNanos);
+    }
+
+    /**
+     * Releases the frames held back for a missing packet, if they already waited for the duration of the target depth.
+     * <br>The frames are passed to the handler of the last {@link #push(OpusPacket, long, Consumer) push}.
+     *
+     * @param nowNanos
+     *        The current {@link System#nanoTime()}
+     */
+    public synchronized void poll(long nowNanos)
+    {
+        if (waiting && nowNanos - waitingSince >= targetDepth * FRAME_NANOS)
+            release(0, nowNanos);
+    }
+
+    /**
+     * Snapshot of the statistics of this buffer.
+     *
+     * @return {@link ReceiveStatistics}
+     */
+    public synchronized ReceiveStatistics getStatistics()
+    {
+        return new ReceiveStatistics(ssrc, received, lost, late, duplicated, reordered, concealed, recovered,
+            jitter / SAMPLES_PER_MS, targetDepth);
+    }
+
+    private void release(int depth, long nowNanos)
+    {
+        while (buffered > 0)
+        {
+            int index = nextSeq & MASK;
+            OpusPacket packet = slots[index];
+            if (packet == null && distance(nextSeq, highestSeq) <= depth)
+            {
+                // wait for the missing packet
+                if (!waiting)
+                {
+                    waiting = true;
+                    waitingSince = nowNanos;
+                }
+                return;
+            }
+            waiting = false;
+
+            short[] audio;
+            if (packet != null)
+            {
+                slots[index] = null;
+                buffered--;
+                audio = packet.canDecode() ? packet.decode() : null;
+            }
+            else
+            {
+                lost++;
+                OpusPacket next = slots[(index + 1) & MASK];
+                if (next != null)
+                {
+                    recovered++;
+                    audio = decoder.decodeFec(next.getOpusAudio());
+                }
+                else
+                {
+                    concealed++;
+                    audio = decoder.decodeFromOpus(null);
+                }
+            }
+
+            nextSeq = (nextSeq + 1) & 0xFFFF;
+            if (audio != null)
+                handler.accept(audio);
+        }
+    }
+
+    private void updateJitter(int timestamp, long arrivalNanos)
+    {
+        // RFC 3550 A.8, the transit time is compared in RTP timestamp units
+        long arrival = arrivalNanos / 1000 * SAMPLES_PER_MS / 1000;
+        long transit = arrival - (timestamp & 0xFFFFFFFFL);
+        if (hasTransit)
+        {
+            long d = Math.abs(transit - lastTransit);
+            if (d < Integer.MAX_VALUE) // ignore timestamp wrap around
+                jitter += (d - jitter) / 16.0;
+        }
+        lastTransit = transit;
+        hasTransit = true;
+
+        // Hold back twice the jitter, rounded up to whole frames
+        int depth = (int) Math.ceil(2 * jitter / OpusPacket.OPUS_FRAME_SIZE);
+        targetDepth = Math.max(1, Math.min(maxDepth, depth));
+    }
+
+    // signed difference of two 16 bit sequence numbers
+    private static int distance(int from, int to)
+    {
+        return (short) (to - from);
+    }
+}
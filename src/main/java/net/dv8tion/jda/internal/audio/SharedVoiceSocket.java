@@ -0,0 +1,325 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.dv8tion.jda.internal.utils.IOUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking UDP socket shared by all voice connections of this JVM.
+ *
+ * <p>Received packets are routed by the address of the voice server and the SSRC in the RTP header.
+ * Every connection registers the SSRCs of the users in its channel. The voice server assigns each speaker
+ * one SSRC, so connections of multiple accounts to the same channel would receive the same SSRCs.
+ * Packets of such connections cannot be told apart, the second connection to register an SSRC is rejected
+ * and has to use a dedicated socket instead.
+ * The external address of the socket is discovered once per voice server and reused by later connections
+ * for {@link #EXTERNAL_ADDRESS_TTL}, or until a connection to that server failed.
+ *
+ * <p>Packets are only routed once the SSRC of their user was announced with the SPEAKING op of the voice gateway.
+ * Packets which arrive before that are dropped, the first few milliseconds of audio of a user who just started speaking
+ * are lost. The decoder handles these like any other lost packets.
+ */
+public class SharedVoiceSocket
+{
+    /** The packet type of IP discovery responses */
+    private static final int DISCOVERY_RESPONSE = 2;
+    private static final int DISCOVERY_LENGTH = 70;
+    /** The time a discovered external address is reused, NAT mappings of the socket can change */
+    public static final long EXTERNAL_ADDRESS_TTL = TimeUnit.MINUTES.toMillis(10);
+
+    private static SharedVoiceSocket instance;
+
+    private final DatagramChannel channel;
+    private final Map<SocketAddress, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    protected SharedVoiceSocket() throws IOException
+    {
+        this.channel = DatagramChannel.open();
+        channel.bind(null);
+        channel.configureBlocking(false);
+        VoiceSelector.getInstance().register(channel, this::handlePacket);
+    }
+
+    /**
+     * The socket shared by all voice connections of this JVM.
+     * <br>The socket is opened on the first call and never closed.
+     *
+     * @return The shared SharedVoiceSocket
+     */
+    public static synchronized SharedVoiceSocket getInstance()
+    {
+        if (instance == null)
+        {
+            try
+            {
+                instance = new SharedVoiceSocket();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to open shared voice socket", e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Whether the provided channel is the shared socket, which must not be closed by a connection.
+     *
+     * @param  channel
+     *         The channel to check
+     *
+     * @return True, if this is the channel of the shared socket
+     */
+    public static synchronized boolean isShared(DatagramChannel channel)
+    {
+        return channel != null && instance != null && instance.channel == channel;
+    }
+
+    public DatagramChannel getChannel()
+    {
+        return channel;
+    }
+
+    /**
+     * Discovers the external address of this socket as seen by the provided voice server.
+     * <br>The result is cached for {@link #EXTERNAL_ADDRESS_TTL}, concurrent requests for the same server share one discovery packet.
+     *
+     * @param  server
+     *         The address of the voice server
+     * @param  ssrc
+     *         The SSRC of the connection
+     * @param  timeout
+     *         The time to wait for the response, in milliseconds
+     *
+     * @throws IOException
+     *         If the discovery packet could not be sent
+     *
+     * @return The external address, or null if the server did not respond in time
+     */
+    public InetSocketAddress discover(InetSocketAddress server, int ssrc, long timeout) throws IOException
+    {
+        Endpoint endpoint = endpoints.computeIfAbsent(server, (k) -> new Endpoint());
+        CompletableFuture<InetSocketAddress> discovery;
+        boolean send;
+        synchronized (endpoint)
+        {
+            if (endpoint.external != null && System.currentTimeMillis() - endpoint.discoveryTime < EXTERNAL_ADDRESS_TTL)
+                return endpoint.external;
+            send = endpoint.discovery == null;
+            if (send)
+                endpoint.discovery = new CompletableFuture<>();
+            discovery = endpoint.discovery;
+        }
+
+        if (send)
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(DISCOVERY_LENGTH);
+            buffer.putShort((short) 1);
+            buffer.putShort((short) DISCOVERY_LENGTH);
+            buffer.putInt(ssrc);
+            ((Buffer) buffer).rewind();
+            VoiceSelector.getInstance().send(channel, buffer, server);
+        }
+
+        try
+        {
+            return discovery.get(timeout, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException | ExecutionException e)
+        {
+            synchronized (endpoint)
+            {
+                // allow the next attempt to send a new packet
+                if (endpoint.discovery == discovery)
+                    endpoint.discovery = null;
+            }
+            return null;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Drops the cached external address for the provided voice server.
+     * <br>This is used when a connection to the server failed, the next connection discovers the address again.
+     *
+     * @param server
+     *        The address of the voice server
+     */
+    public void invalidate(InetSocketAddress server)
+    {
+        Endpoint endpoint = endpoints.get(server);
+        if (endpoint == null)
+            return;
+        synchronized (endpoint)
+        {
+            endpoint.external = null;
+        }
+    }
+
+    /**
+     * Starts routing packets of the provided voice server to the handler.
+     * <br>Only packets with an SSRC {@link Registration#addSSRC(int) added} to the registration are passed on,
+     * packets of other SSRCs are dropped.
+     *
+     * @param  server
+     *         The address of the voice server
+     * @param  handler
+     *         The handler, called on the selector thread with a buffer positioned at the start of the packet
+     *
+     * @return {@link Registration} used to update the SSRCs and to stop receiving
+     */
+    public Registration register(InetSocketAddress server, Consumer<ByteBuffer> handler)
+    {
+        return new Registration(endpoints.computeIfAbsent(server, (k) -> new Endpoint()), handler);
+    }
+
+    // Called on the selector thread of the channel
+    private void handlePacket(SocketAddress source, ByteBuffer packet)
+    {
+        Endpoint endpoint = endpoints.get(source);
+        if (endpoint == null)
+            return;
+
+        int length = packet.remaining();
+        int start = packet.position();
+        if (length == DISCOVERY_LENGTH && packet.getShort(start) == DISCOVERY_RESPONSE)
+        {
+            endpoint.completeDiscovery(packet);
+            return;
+        }
+        if (length < 12)
+            return;
+
+        int ssrc = packet.getInt(start + 8);
+        Registration registration = endpoint.routes.get(ssrc);
+        if (registration != null && !registration.cancelled)
+            registration.handler.accept(packet);
+    }
+
+    public static class Registration
+    {
+        private final Endpoint endpoint;
+        private final Consumer<ByteBuffer> handler;
+        private volatile boolean cancelled;
+
+        private Registration(Endpoint endpoint, Consumer<ByteBuffer> handler)
+        {
+            this.endpoint = endpoint;
+            this.handler = handler;
+        }
+
+        /**
+         * Routes packets with this SSRC to the handler of this registration.
+         *
+         * @param  ssrc
+         *         The SSRC of a user in the channel
+         *
+         * @return False, if another registration already receives this SSRC from the same voice server
+         */
+        public boolean addSSRC(int ssrc)
+        {
+            return cancelled || endpoint.addRoute(ssrc, this);
+        }
+
+        /**
+         * Stops routing packets with this SSRC to the handler of this registration.
+         *
+         * @param ssrc
+         *        The SSRC of a user that left the channel
+         */
+        public void removeSSRC(int ssrc)
+        {
+            endpoint.updateRoutes((routes) ->
+            {
+                if (routes.get(ssrc) == this)
+                    routes.remove(ssrc);
+            });
+        }
+
+        /**
+         * Stops routing packets to this registration. This does not close the socket.
+         */
+        public void cancel()
+        {
+            cancelled = true;
+            endpoint.updateRoutes((routes) -> routes.retainEntries((ssrc, registration) -> registration != this));
+        }
+    }
+
+    private static class Endpoint
+    {
+        // copy on write, read for every packet by the selector thread
+        private volatile TIntObjectMap<Registration> routes = new TIntObjectHashMap<>();
+        private InetSocketAddress external;
+        private long discoveryTime;
+        private CompletableFuture<InetSocketAddress> discovery;
+
+        private synchronized boolean addRoute(int ssrc, Registration registration)
+        {
+            Registration current = routes.get(ssrc);
+            if (current != null && current != registration && !current.cancelled)
+                return false;
+            updateRoutes((routes) -> routes.put(ssrc, registration));
+            return true;
+        }
+
+        private synchronized void updateRoutes(Consumer<TIntObjectMap<Registration>> update)
+        {
+            TIntObjectMap<Registration> copy = new TIntObjectHashMap<>(routes);
+            update.accept(copy);
+            routes = copy;
+        }
+
+        private void completeDiscovery(ByteBuffer packet)
+        {
+            byte[] received = new byte[DISCOVERY_LENGTH];
+            packet.duplicate().get(received);
+            // same format as the discovery of a connection with its own socket, see AudioWebSocket
+            String ip = new String(received, 4, received.length - 6).trim();
+            int port = IOUtil.getShortBigEndian(received, received.length - 2) & 0xFFFF;
+            InetSocketAddress address = new InetSocketAddress(ip, port);
+
+            CompletableFuture<InetSocketAddress> discovery;
+            synchronized (this)
+            {
+                external = address;
+                discoveryTime = System.currentTimeMillis();
+                discovery = this.discovery;
+                this.discovery = null;
+            }
+            if (discovery != null)
+                discovery.complete(address);
+        }
+    }
+}
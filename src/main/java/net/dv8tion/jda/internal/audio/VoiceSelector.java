@@ -0,0 +1,304 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio;
+
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking UDP transport shared by all voice connections which use {@link java.nio.channels.DatagramChannel DatagramChannels}.
+ *
+ * <p>Channels are distributed over a small amount of selector threads. Each thread reads every datagram into
+ * its own direct buffer and passes it to the handler of the channel, which has to process or copy the data before returning.
+ * Packets are sent through pooled direct buffers, this avoids the temporary direct buffer the JDK would otherwise
+ * cache for every sending thread.
+ */
+public class VoiceSelector
+{
+    public static final Logger LOG = JDALogger.getLog(VoiceSelector.class);
+
+    /** Large enough for any voice packet, the old receive loop used the same size */
+    public static final int PACKET_SIZE = 1920;
+    /** The maximum amount of datagrams read from one channel before the other channels of the selector get their turn */
+    private static final int MAX_READS_PER_KEY = 16;
+    private static final int MAX_POOLED_BUFFERS = 256;
+
+    private static VoiceSelector instance;
+
+    private final Loop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+
+    protected VoiceSelector(int threads) throws IOException
+    {
+        this.loops = new Loop[threads];
+        for (int i = 0; i < threads; i++)
+            loops[i] = new Loop(i + 1);
+    }
+
+    /**
+     * The selector shared by all voice connections of this JVM.
+     * <br>Its daemon threads are started on the first call.
+     *
+     * @return The shared VoiceSelector
+     */
+    public static synchronized VoiceSelector getInstance()
+    {
+        if (instance == null)
+        {
+            int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+            try
+            {
+                instance = new VoiceSelector(threads);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to open selector for voice connections", e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a non-blocking channel for reading.
+     * <br>The handler is called on a selector thread with a buffer positioned at the start of the datagram.
+     * The buffer is reused for the next datagram after the handler returns.
+     *
+     * @param  channel
+     *         The channel, must be in non-blocking mode
+     * @param  handler
+     *         The handler for received datagrams
+     *
+     * @return {@link Registration} which can be used to stop reading from this channel
+     */
+    public Registration register(DatagramChannel channel, Consumer<ByteBuffer> handler)
+    {
+        return register(channel, (source, buffer) -> handler.accept(buffer));
+    }
+
+    /**
+     * Registers a non-blocking channel for reading.
+     * <br>Same as {@link #register(DatagramChannel, Consumer)} but the handler also receives the sender of each datagram.
+     *
+     * @param  channel
+     *         The channel, must be in non-blocking mode
+     * @param  handler
+     *         The handler for received datagrams and their sender
+     *
+     * @return {@link Registration} which can be used to stop reading from this channel
+     */
+    public Registration register(DatagramChannel channel, BiConsumer<SocketAddress, ByteBuffer> handler)
+    {
+        Loop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        Registration registration = new Registration(loop, channel, handler);
+        loop.pending.add(registration::attach);
+        loop.selector.wakeup();
+        return registration;
+    }
+
+    /**
+     * Sends the remaining bytes of the provided buffer through a pooled direct buffer.
+     * <br>The position of the provided buffer is not changed.
+     *
+     * @param  channel
+     *         The channel to send from
+     * @param  packet
+     *         The packet to send
+     * @param  target
+     *         The receiver of the packet
+     *
+     * @throws IOException
+     *         If the channel failed to send the packet
+     *
+     * @return True, if the packet was sent. False if there was no room in the socket buffer.
+     */
+    public boolean send(DatagramChannel channel, ByteBuffer packet, SocketAddress target) throws IOException
+    {
+        ByteBuffer buffer = acquireBuffer(packet.remaining());
+        try
+        {
+            buffer.put(packet.duplicate());
+            ((Buffer) buffer).flip();
+            return channel.send(buffer, target) > 0;
+        }
+        finally
+        {
+            releaseBuffer(buffer);
+        }
+    }
+
+    protected ByteBuffer acquireBuffer(int size)
+    {
+        if (size > PACKET_SIZE)
+            return ByteBuffer.allocateDirect(size); // not pooled
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(PACKET_SIZE);
+        pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    protected void releaseBuffer(ByteBuffer buffer)
+    {
+        if (buffer.capacity() != PACKET_SIZE)
+            return;
+        if (pooledBuffers.incrementAndGet() > MAX_POOLED_BUFFERS)
+        {
+            pooledBuffers.decrementAndGet();
+            return;
+        }
+        ((Buffer) buffer).clear();
+        bufferPool.add(buffer);
+    }
+
+    public static class Registration
+    {
+        private final Loop loop;
+        private final DatagramChannel channel;
+        private final BiConsumer<SocketAddress, ByteBuffer> handler;
+        private volatile SelectionKey key;
+        private volatile boolean cancelled;
+
+        private Registration(Loop loop, DatagramChannel channel, BiConsumer<SocketAddress, ByteBuffer> handler)
+        {
+            this.loop = loop;
+            this.channel = channel;
+            this.handler = handler;
+        }
+
+        private void attach()
+        {
+            if (cancelled || !channel.isOpen())
+                return;
+            try
+            {
+                key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+            }
+            catch (ClosedChannelException ignored) {}
+        }
+
+        /**
+         * Stops reading from the channel. This does not close the channel.
+         */
+        public void cancel()
+        {
+            cancelled = true;
+            SelectionKey key = this.key;
+            if (key != null)
+            {
+                key.cancel();
+                loop.selector.wakeup(); // flush the cancelled key
+            }
+        }
+    }
+
+    private class Loop implements Runnable
+    {
+        private final Selector selector;
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(PACKET_SIZE);
+
+        private Loop(int id) throws IOException
+        {
+            this.selector = Selector.open();
+            Thread thread = new Thread(this, "JDA Voice Selector " + id);
+            thread.setDaemon(true);
+            thread.setPriority((Thread.NORM_PRIORITY + Thread.MAX_PRIORITY) / 2);
+            thread.start();
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                try
+                {
+                    selector.select();
+                    Runnable task;
+                    while ((task = pending.poll()) != null)
+                        task.run();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext())
+                    {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (key.isValid() && key.isReadable())
+                            read(key);
+                    }
+                }
+                catch (Throwable t)
+                {
+                    LOG.error("Uncaught exception in voice selector", t);
+                    if (t instanceof Error)
+                        throw (Error) t;
+                }
+            }
+        }
+
+        private void read(SelectionKey key)
+        {
+            Registration registration = (Registration) key.attachment();
+            DatagramChannel channel = registration.channel;
+            for (int i = 0; i < MAX_READS_PER_KEY && !registration.cancelled; i++)
+            {
+                ((Buffer) readBuffer).clear();
+                SocketAddress source;
+                try
+                {
+                    source = channel.receive(readBuffer);
+                    if (source == null)
+                        return;
+                }
+                catch (IOException e)
+                {
+                    // the channel was closed by the connection, it will be deregistered on the next select
+                    key.cancel();
+                    return;
+                }
+
+                ((Buffer) readBuffer).flip();
+                try
+                {
+                    registration.handler.accept(source, readBuffer);
+                }
+                catch (Exception e)
+                {
+                    AudioConnection.LOG.error("There was some random exception while handling udp packets", e);
+                }
+            }
+        }
+    }
+}
@@ -53,7 +53,9 @@ import net.dv8tion.jda.internal.JDAImpl;
 import net.dv8tion.jda.internal.handle.EventCache;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import net.dv8tion.jda.internal.utils.UnlockHook;
+import net.dv8tion.jda.internal.utils.cache.CrossShardIndex;
 import net.dv8tion.jda.internal.utils.cache.MemberCacheViewImpl;
+import net.dv8tion.jda.internal.utils.cache.SharedUserCache;
 import net.dv8tion.jda.internal.utils.cache.SnowflakeCacheViewImpl;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.map.CaseInsensitiveMap;
@@ -174,8 +176,28 @@ public class EntityBuilder
     }
 
     public GuildImpl createGuild(long guildId, DataObject guildJson, TLongObjectMap<DataObject> members, int memberCount)
+    {
+        return createGuild(new GuildImpl(getJDA(), guildId), guildJson, members, null, memberCount);
+    }
+
+    // Creates a guild with only its roles, which is not cached yet.
+    // This is used to build the members while the guild is chunking, see createGuild(GuildImpl, ...)
+    public GuildImpl createSetupGuild(long guildId, DataObject guildJson)
     {
         final GuildImpl guildObj = new GuildImpl(getJDA(), guildId);
+        createGuildRoles(guildObj, guildJson.getArray("roles"));
+        return guildObj;
+    }
+
+    // Completes a guild from createSetupGuild with the members that were built for it
+    public GuildImpl createGuild(GuildImpl guildObj, DataObject guildJson, TLongObjectMap<MemberImpl> members, int memberCount)
+    {
+        return createGuild(guildObj, guildJson, null, members, memberCount);
+    }
+
+    private GuildImpl createGuild(GuildImpl guildObj, DataObject guildJson, TLongObjectMap<DataObject> memberPayloads, TLongObjectMap<MemberImpl> members, int memberCount)
+    {
+        final long guildId = guildObj.getIdLong();
         final String name = guildJson.getString("name", "");
         final String iconId = guildJson.getString("icon", null);
         final String splashId = guildJson.getString("splash", null);
@@ -238,19 +260,7 @@ public class EntityBuilder
                          .collect(Collectors.toSet())
         ).orElse(Collections.emptySet()));
 
-        SnowflakeCacheViewImpl<Role> roleView = guildObj.getRolesView();
-        try (UnlockHook hook = roleView.writeLock())
-        {
-            TLongObjectMap<Role> map = roleView.getMap();
-            for (int i = 0; i < roleArray.length(); i++)
-            {
-                DataObject obj = roleArray.getObject(i);
-                Role role = createRole(guildObj, obj, guildId);
-                map.put(role.getIdLong(), role);
-                if (role.getIdLong() == guildObj.getIdLong())
-                    guildObj.setPublicRole(role);
-            }
-        }
+        createGuildRoles(guildObj, roleArray);
 
         for (int i = 0; i < channelArray.length(); i++)
         {
@@ -265,12 +275,29 @@ public class EntityBuilder
         {
             //Add members to cache when subscriptions are disabled when they appear here
             // this is done because we can still keep track of members in voice channels
-            for (DataObject memberJson : members.valueCollection())
+            if (memberPayloads != null)
             {
-                long userId = memberJson.getObject("user").getUnsignedLong("id");
-                DataObject voiceState = voiceStates.get(userId);
-                DataObject presence = presences.get(userId);
-                updateMemberCache(createMember(guildObj, memberJson, voiceState, presence));
+                for (DataObject memberJson : memberPayloads.valueCollection())
+                {
+                    long userId = memberJson.getObject("user").getUnsignedLong("id");
+                    DataObject voiceState = voiceStates.get(userId);
+                    DataObject presence = presences.get(userId);
+                    updateMemberCache(createMember(guildObj, memberJson, voiceState, presence));
+                }
+            }
+            else
+            {
+                // members which were built while chunking only lack the state which is sent with the guild
+                for (MemberImpl member : members.valueCollection())
+                {
+                    DataObject voiceState = voiceStates.get(member.getIdLong());
+                    DataObject presence = presences.get(member.getIdLong());
+                    if (voiceState != null && member.getVoiceState() != null)
+                        createVoiceState(guildObj, voiceState, member.getUser(), member);
+                    if (presence != null)
+                        createPresence(member, presence);
+                    updateMemberCache(member);
+                }
             }
         }
 
@@ -291,6 +318,23 @@ public class EntityBuilder
         return guildObj;
     }
 
+    private void createGuildRoles(GuildImpl guildObj, DataArray roleArray)
+    {
+        SnowflakeCacheViewImpl<Role> roleView = guildObj.getRolesView();
+        try (UnlockHook hook = roleView.writeLock())
+        {
+            TLongObjectMap<Role> map = roleView.getMap();
+            for (int i = 0; i < roleArray.length(); i++)
+            {
+                DataObject obj = roleArray.getObject(i);
+                Role role = createRole(guildObj, obj, guildObj.getIdLong());
+                map.put(role.getIdLong(), role);
+                if (role.getIdLong() == guildObj.getIdLong())
+                    guildObj.setPublicRole(role);
+            }
+        }
+    }
+
     private void createGuildChannel(GuildImpl guildObj, DataObject channelData)
     {
         final ChannelType channelType = ChannelType.fromId(channelData.getInt("type"));
@@ -324,6 +368,13 @@ public class EntityBuilder
         try (UnlockHook hook = userView.readLock())
         {
             userObj = (UserImpl) userView.getElementById(id);
+        }
+
+        if (userObj == null)
+        {
+            // Reuse the instance of another shard if possible, this will fire update events if anything changed
+            SharedUserCache sharedUsers = getJDA().getSharedUserCache();
+            userObj = sharedUsers == null ? null : (UserImpl) sharedUsers.getElementById(id);
             if (userObj == null)
             {
                 userObj = new UserImpl(id, getJDA());
@@ -352,20 +403,40 @@ public class EntityBuilder
 
     public void updateUser(UserImpl userObj, DataObject user)
     {
-        String oldName = userObj.getName();
         String newName = user.getString("username");
-        String oldDiscriminator = userObj.getDiscriminator();
         String newDiscriminator = user.get("discriminator").toString();
-        String oldAvatar = userObj.getAvatarId();
         String newAvatar = user.getString("avatar", null);
-        int oldFlags = userObj.getFlagsRaw();
         int newFlags = user.getInt("public_flags", 0);
+        String oldName, oldDiscriminator, oldAvatar;
+        int oldFlags;
+
+        // a shared user is updated by every shard that sees the change, only the first one should fire the events
+        synchronized (userObj)
+        {
+            oldName = userObj.getName();
+            oldDiscriminator = userObj.getDiscriminator();
+            oldAvatar = userObj.getAvatarId();
+            oldFlags = userObj.getFlagsRaw();
+            userObj.setName(newName);
+            userObj.setDiscriminator(newDiscriminator);
+            userObj.setAvatarId(newAvatar);
+            userObj.setFlags(newFlags);
+        }
 
         JDAImpl jda = getJDA();
         long responseNumber = jda.getResponseTotal();
         if (!oldName.equals(newName))
         {
-            userObj.setName(newName);
+            if (jda.isMemberIndex())
+            {
+                // the name index of every guild with this user is now outdated,
+                // a shared user also changed for the other shards which will not see a name change anymore
+                SharedUserCache sharedUsers = jda.getSharedUserCache();
+                if (sharedUsers == null)
+                    updateNameIndex(jda, userObj);
+                else
+                    sharedUsers.getShards().forEach(shard -> updateNameIndex(shard, userObj));
+            }
             jda.handleEvent(
                 new UserUpdateNameEvent(
                     jda, responseNumber,
@@ -374,7 +445,6 @@ public class EntityBuilder
 
         if (!oldDiscriminator.equals(newDiscriminator))
         {
-            userObj.setDiscriminator(newDiscriminator);
             jda.handleEvent(
                 new UserUpdateDiscriminatorEvent(
                     jda, responseNumber,
@@ -383,7 +453,6 @@ public class EntityBuilder
 
         if (!Objects.equals(oldAvatar, newAvatar))
         {
-            userObj.setAvatarId(newAvatar);
             jda.handleEvent(
                 new UserUpdateAvatarEvent(
                     jda, responseNumber,
@@ -392,7 +461,6 @@ public class EntityBuilder
 
         if (oldFlags != newFlags)
         {
-            userObj.setFlags(newFlags);
             jda.handleEvent(
                     new UserUpdateFlagsEvent(
                         jda, responseNumber,
@@ -400,6 +468,16 @@ public class EntityBuilder
         }
     }
 
+    private static void updateNameIndex(JDA jda, User user)
+    {
+        for (Guild guild : jda.getMutualGuilds(user))
+        {
+            Member member = guild.getMemberById(user.getIdLong());
+            if (member != null)
+                ((GuildImpl) guild).getMembersView().updateIndex(member);
+        }
+    }
+
     public boolean updateMemberCache(MemberImpl member)
     {
         return updateMemberCache(member, false);
@@ -415,11 +493,17 @@ public class EntityBuilder
             if (membersView.remove(member.getIdLong()) == null)
                 return false;
             LOG.trace("Unloading member {}", member);
-            if (user.getMutualGuilds().isEmpty())
+            if (getJDA().getMutualGuilds(user).isEmpty())
             {
                 // we no longer share any guilds/channels with this user so remove it from cache
-                user.setFake(true);
                 getJDA().getUsersView().remove(user.getIdLong());
+                SharedUserCache sharedUsers = getJDA().getSharedUserCache();
+                // only mark the user as fake once no other shard has it cached
+                if (sharedUsers == null || sharedUsers.release(user.getIdLong(), getJDA()))
+                    user.setFake(true);
+                CrossShardIndex index = getJDA().getCrossShardIndex();
+                if (index != null)
+                    index.removeUser(user.getIdLong(), getJDA().getShardInfo().getShardId());
             }
 
             GuildVoiceStateImpl voiceState = (GuildVoiceStateImpl) member.getVoiceState();
@@ -443,16 +527,27 @@ public class EntityBuilder
 
         if (getJDA().getUserById(user.getIdLong()) == null)
         {
+            SharedUserCache sharedUsers = getJDA().getSharedUserCache();
+            if (sharedUsers != null)
+            {
+                // another shard might have cached the user since it was created, the member must wrap the shared instance
+                user = sharedUsers.acquire(user, getJDA());
+                member.setUser(user);
+            }
             SnowflakeCacheViewImpl<User> usersView = getJDA().getUsersView();
             try (UnlockHook hook1 = usersView.writeLock())
             {
                 usersView.getMap().put(user.getIdLong(), user);
             }
+            CrossShardIndex index = getJDA().getCrossShardIndex();
+            if (index != null)
+                index.putUser(user.getIdLong(), getJDA().getShardInfo().getShardId());
         }
 
         try (UnlockHook hook = membersView.writeLock())
         {
             membersView.getMap().put(member.getIdLong(), member);
+            membersView.updateIndex(member);
             if (member.isOwner())
                 guild.setOwner(member);
         }
@@ -469,9 +564,13 @@ public class EntityBuilder
     }
 
     public MemberImpl createMember(GuildImpl guild, DataObject memberJson, DataObject voiceStateJson, DataObject presence)
+    {
+        return createMember(guild, createUser(memberJson.getObject("user")), memberJson, voiceStateJson, presence);
+    }
+
+    public MemberImpl createMember(GuildImpl guild, User user, DataObject memberJson, DataObject voiceStateJson, DataObject presence)
     {
         boolean playbackCache = false;
-        User user = createUser(memberJson.getObject("user"));
         DataArray roleArray = memberJson.getArray("roles");
         MemberImpl member = (MemberImpl) guild.getMember(user);
         if (member == null)
@@ -621,6 +720,7 @@ public class EntityBuilder
         }
 
         updateUser((UserImpl) member.getUser(), content.getObject("user"));
+        guild.getMembersView().updateIndex(member);
     }
 
     private void updateMemberRoles(MemberImpl member, List<Role> newRoles, long responseNumber)
@@ -825,7 +925,12 @@ public class EntityBuilder
         final User user = json.isNull("user") ? null : createUser(json.getObject("user"));
         EmoteImpl emoteObj = (EmoteImpl) guildObj.getEmoteById(emoteId);
         if (emoteObj == null)
+        {
             emoteObj = new EmoteImpl(emoteId, guildObj);
+            CrossShardIndex index = getJDA().getCrossShardIndex();
+            if (index != null)
+                index.putGuildEntity(emoteId, guildObj.getIdLong());
+        }
         Set<Role> roleSet = emoteObj.getRoleSet();
 
         roleSet.clear();
@@ -869,6 +974,9 @@ public class EntityBuilder
                 guildCategoryView.getMap().put(id, channel);
                 playbackCache = categoryView.getMap().put(id, channel) == null;
             }
+            CrossShardIndex index = getJDA().getCrossShardIndex();
+            if (index != null)
+                index.putGuildEntity(id, guild.getIdLong());
         }
 
         channel
@@ -906,6 +1014,9 @@ public class EntityBuilder
                 guildStoreView.getMap().put(id, channel);
                 playbackCache = storeView.getMap().put(id, channel) == null;
             }
+            CrossShardIndex index = getJDA().getCrossShardIndex();
+            if (index != null)
+                index.putGuildEntity(id, guild.getIdLong());
         }
 
         channel
@@ -945,6 +1056,9 @@ public class EntityBuilder
                 guildTextView.getMap().put(id, channel);
                 playbackCache = textView.getMap().put(id, channel) == null;
             }
+            CrossShardIndex index = getJDA().getCrossShardIndex();
+            if (index != null)
+                index.putGuildEntity(id, guildObj.getIdLong());
         }
 
         channel
@@ -991,6 +1105,9 @@ public class EntityBuilder
                 guildVoiceView.getMap().put(id, channel);
                 playbackCache = voiceView.getMap().put(id, channel) == null;
             }
+            CrossShardIndex index = getJDA().getCrossShardIndex();
+            if (index != null)
+                index.putGuildEntity(id, guild.getIdLong());
         }
 
         channel
@@ -1110,6 +1227,9 @@ public class EntityBuilder
                 role = new RoleImpl(id, guild);
                 playbackCache = roleView.getMap().put(id, role) == null;
             }
+            CrossShardIndex index = getJDA().getCrossShardIndex();
+            if (index != null)
+                index.putGuildEntity(id, guild.getIdLong());
         }
         final int color = roleJson.getInt("color");
         role.setName(roleJson.getString("name"))
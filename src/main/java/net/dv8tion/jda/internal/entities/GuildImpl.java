@@ -120,6 +120,8 @@ public class GuildImpl implements Guild
             memberPresences = new CacheView.SimpleCacheView<>(MemberPresenceImpl.class, null);
         else
             memberPresences = null;
+        if (api.isMemberIndex())
+            memberCache.enableIndex();
     }
 
     @Nonnull
@@ -1021,7 +1023,10 @@ public class GuildImpl implements Guild
         task.onSuccess((members) -> {
             try (UnlockHook hook = memberCache.writeLock())
             {
-                members.forEach((it) -> memberCache.getMap().put(it.getIdLong(), it));
+                members.forEach((it) -> {
+                    memberCache.getMap().put(it.getIdLong(), it);
+                    memberCache.updateIndex(it);
+                });
             }
             future.complete(null);
         });
@@ -1052,6 +1057,29 @@ public class GuildImpl implements Guild
         return new GatewayTask<>(handler, () -> handler.cancel(false));
     }
 
+    @Nonnull
+    @Override
+    public Task<Void> loadMemberChunks(@Nonnull Predicate<? super List<Member>> callback)
+    {
+        Checks.notNull(callback, "Callback");
+        if (!getJDA().isIntent(GatewayIntent.GUILD_MEMBERS))
+            throw new IllegalStateException("Cannot use loadMemberChunks without GatewayIntent.GUILD_MEMBERS!");
+        if (isLoaded())
+        {
+            callback.test(memberCache.asList());
+            return new GatewayTask<>(CompletableFuture.completedFuture(null), () -> {});
+        }
+
+        MemberChunkManager chunkManager = getJDA().getClient().getChunkManager();
+        boolean includePresences = getJDA().isIntent(GatewayIntent.GUILD_PRESENCES);
+        CompletableFuture<Void> handler = chunkManager.streamGuild(this, includePresences, (last, list) -> callback.test(list));
+        handler.exceptionally(ex -> {
+            WebSocketClient.LOG.error("Encountered exception trying to handle member chunk response", ex);
+            return null;
+        });
+        return new GatewayTask<>(handler, () -> handler.cancel(false));
+    }
+
     // Helper function for deferred cache access
     private Member getMember(long id, boolean update, JDAImpl jda)
     {
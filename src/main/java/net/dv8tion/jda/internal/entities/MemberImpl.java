@@ -50,7 +50,8 @@ public class MemberImpl implements Member
 
     public MemberImpl(GuildImpl guild, User user)
     {
-        this.api = (JDAImpl) user.getJDA();
+        // shared users can be bound to another shard, the member always belongs to the shard of its guild
+        this.api = guild.getJDA();
         this.guild = guild;
         this.user = user;
         this.joinDate = 0;
@@ -343,6 +344,12 @@ public class MemberImpl implements Member
         return user.getIdLong();
     }
 
+    public MemberImpl setUser(User user)
+    {
+        this.user = user;
+        return this;
+    }
+
     public MemberImpl setNickname(String nickname)
     {
         this.nickname = nickname;
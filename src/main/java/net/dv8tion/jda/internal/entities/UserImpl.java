@@ -27,25 +27,25 @@ import net.dv8tion.jda.internal.requests.DeferredRestAction;
 import net.dv8tion.jda.internal.requests.RestActionImpl;
 import net.dv8tion.jda.internal.requests.Route;
 import net.dv8tion.jda.internal.utils.Helpers;
+import net.dv8tion.jda.internal.utils.cache.SharedUserCache;
 
 import javax.annotation.Nonnull;
-import java.util.EnumSet;
-import java.util.FormattableFlags;
-import java.util.Formatter;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 public class UserImpl extends UserById implements User
 {
-    protected final JDAImpl api;
-
-    protected short discriminator;
-    protected String name;
-    protected String avatarId;
-    protected long privateChannel = 0L;
-    protected boolean bot;
-    protected boolean system;
-    protected boolean fake = false;
-    protected int flags;
+    // with a shared user cache the same instance is updated by the threads of several shards
+    protected volatile JDAImpl api;
+
+    protected volatile short discriminator;
+    protected volatile String name;
+    protected volatile String avatarId;
+    protected volatile long privateChannel = 0L;
+    protected volatile boolean bot;
+    protected volatile boolean system;
+    protected volatile boolean fake = false;
+    protected volatile int flags;
 
     public UserImpl(long id, JDAImpl api)
     {
@@ -121,7 +121,13 @@ public class UserImpl extends UserById implements User
     @Override
     public List<Guild> getMutualGuilds()
     {
-        return getJDA().getMutualGuilds(this);
+        SharedUserCache sharedUsers = api.getSharedUserCache();
+        if (sharedUsers == null)
+            return getJDA().getMutualGuilds(this);
+        // a shared user is not bound to a single shard, so check the guilds of all shards
+        return Collections.unmodifiableList(sharedUsers.getShards()
+                .flatMap(jda -> jda.getMutualGuilds(this).stream())
+                .collect(Collectors.toList()));
     }
 
     @Override
@@ -164,6 +170,12 @@ public class UserImpl extends UserById implements User
 
     // -- Setters --
 
+    public UserImpl setJDA(JDAImpl api)
+    {
+        this.api = api;
+        return this;
+    }
+
     public UserImpl setName(String name)
     {
         this.name = name;
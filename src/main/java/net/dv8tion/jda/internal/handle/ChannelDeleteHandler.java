@@ -25,6 +25,7 @@ import net.dv8tion.jda.api.utils.data.DataObject;
 import net.dv8tion.jda.internal.JDAImpl;
 import net.dv8tion.jda.internal.entities.GuildImpl;
 import net.dv8tion.jda.internal.requests.WebSocketClient;
+import net.dv8tion.jda.internal.utils.cache.CrossShardIndex;
 import net.dv8tion.jda.internal.utils.cache.SnowflakeCacheViewImpl;
 
 public class ChannelDeleteHandler extends SocketHandler
@@ -49,6 +50,9 @@ public class ChannelDeleteHandler extends SocketHandler
 
         GuildImpl guild = (GuildImpl) getJDA().getGuildById(guildId);
         final long channelId = content.getLong("id");
+        CrossShardIndex index = getJDA().getCrossShardIndex();
+        if (index != null && type.isGuild())
+            index.removeGuildEntity(channelId);
 
         switch (type)
         {
@@ -29,6 +29,8 @@ import net.dv8tion.jda.internal.managers.AudioManagerImpl;
 import net.dv8tion.jda.internal.requests.WebSocketClient;
 import net.dv8tion.jda.internal.utils.UnlockHook;
 import net.dv8tion.jda.internal.utils.cache.AbstractCacheView;
+import net.dv8tion.jda.internal.utils.cache.CrossShardIndex;
+import net.dv8tion.jda.internal.utils.cache.SharedUserCache;
 import net.dv8tion.jda.internal.utils.cache.SnowflakeCacheViewImpl;
 
 public class GuildDeleteHandler extends SocketHandler
@@ -90,6 +92,17 @@ public class GuildDeleteHandler extends SocketHandler
                  .forEachUnordered(chan -> categoryView.getMap().remove(chan.getIdLong()));
         }
 
+        CrossShardIndex index = getJDA().getCrossShardIndex();
+        if (index != null)
+        {
+            guild.getStoreChannelCache().forEachUnordered(chan -> index.removeGuildEntity(chan.getIdLong()));
+            guild.getTextChannelCache().forEachUnordered(chan -> index.removeGuildEntity(chan.getIdLong()));
+            guild.getVoiceChannelCache().forEachUnordered(chan -> index.removeGuildEntity(chan.getIdLong()));
+            guild.getCategoryCache().forEachUnordered(chan -> index.removeGuildEntity(chan.getIdLong()));
+            guild.getRoleCache().forEachUnordered(role -> index.removeGuildEntity(role.getIdLong()));
+            guild.getEmoteCache().forEachUnordered(emote -> index.removeGuildEntity(emote.getIdLong()));
+        }
+
         // Clear audio connection
         getJDA().getClient().removeAudioConnection(id);
         final AbstractCacheView<AudioManager> audioManagerView = getJDA().getAudioManagersView();
@@ -107,6 +120,7 @@ public class GuildDeleteHandler extends SocketHandler
                 .forEach(g -> memberIds.removeAll(g.getMembersView().keySet()));
         // Remember, everything left in memberIds is removed from the userMap
         SnowflakeCacheViewImpl<User> userView = getJDA().getUsersView();
+        SharedUserCache sharedUsers = getJDA().getSharedUserCache();
         try (UnlockHook hook = userView.writeLock())
         {
             long selfId = getJDA().getSelfUser().getIdLong();
@@ -115,6 +129,10 @@ public class GuildDeleteHandler extends SocketHandler
                     return true; // don't remove selfUser from cache
                 userView.remove(memberId);
                 getJDA().getEventCache().clear(EventCache.Type.USER, memberId);
+                if (index != null)
+                    index.removeUser(memberId, getJDA().getShardInfo().getShardId());
+                if (sharedUsers != null)
+                    sharedUsers.release(memberId, getJDA());
                 return true;
             });
         }
@@ -30,6 +30,7 @@ import net.dv8tion.jda.internal.JDAImpl;
 import net.dv8tion.jda.internal.entities.EmoteImpl;
 import net.dv8tion.jda.internal.entities.GuildImpl;
 import net.dv8tion.jda.internal.utils.UnlockHook;
+import net.dv8tion.jda.internal.utils.cache.CrossShardIndex;
 import net.dv8tion.jda.internal.utils.cache.SnowflakeCacheViewImpl;
 import org.apache.commons.collections4.CollectionUtils;
 
@@ -61,6 +62,7 @@ public class GuildEmojisUpdateHandler extends SocketHandler
         DataArray array = content.getArray("emojis");
         List<Emote> oldEmotes, newEmotes;
         SnowflakeCacheViewImpl<Emote> emoteView = guild.getEmotesView();
+        CrossShardIndex index = getJDA().getCrossShardIndex();
         try (UnlockHook hook = emoteView.writeLock())
         {
             TLongObjectMap<Emote> emoteMap = emoteView.getMap();
@@ -77,6 +79,8 @@ public class GuildEmojisUpdateHandler extends SocketHandler
                 {
                     emote = new EmoteImpl(emoteId, guild);
                     newEmotes.add(emote);
+                    if (index != null)
+                        index.putGuildEntity(emoteId, guildId);
                 }
                 else
                 {
@@ -115,7 +119,11 @@ public class GuildEmojisUpdateHandler extends SocketHandler
                 handleReplace(oldEmote, emote);
             }
             for (Emote e : oldEmotes)
+            {
                 emoteMap.remove(e.getIdLong());
+                if (index != null)
+                    index.removeGuildEntity(e.getIdLong());
+            }
         }
         //cleanup old emotes that don't exist anymore
         for (Emote e : oldEmotes)
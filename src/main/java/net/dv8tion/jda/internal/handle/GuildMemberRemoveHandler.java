@@ -26,6 +26,8 @@ import net.dv8tion.jda.api.utils.data.DataObject;
 import net.dv8tion.jda.internal.JDAImpl;
 import net.dv8tion.jda.internal.entities.*;
 import net.dv8tion.jda.internal.utils.UnlockHook;
+import net.dv8tion.jda.internal.utils.cache.CrossShardIndex;
+import net.dv8tion.jda.internal.utils.cache.SharedUserCache;
 import net.dv8tion.jda.internal.utils.cache.SnowflakeCacheViewImpl;
 
 public class GuildMemberRemoveHandler extends SocketHandler
@@ -114,6 +116,12 @@ public class GuildMemberRemoveHandler extends SocketHandler
             {
                 userView.remove(userId);
                 getJDA().getEventCache().clear(EventCache.Type.USER, userId);
+                CrossShardIndex index = getJDA().getCrossShardIndex();
+                if (index != null)
+                    index.removeUser(userId, getJDA().getShardInfo().getShardId());
+                SharedUserCache sharedUsers = getJDA().getSharedUserCache();
+                if (sharedUsers != null)
+                    sharedUsers.release(userId, getJDA());
             }
         }
         // Cache dependent event
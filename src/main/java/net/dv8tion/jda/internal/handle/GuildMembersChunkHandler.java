@@ -58,6 +58,7 @@ public class GuildMembersChunkHandler extends SocketHandler
                 MemberImpl member = builder.createMember(guild, object, null, presence);
                 builder.updateMemberCache(member);
             }
+            getJDA().getGuildSetupController().onReconcileChunk(guild, content);
             return null;
         }
         getJDA().getGuildSetupController().onMemberChunk(guildId, content);
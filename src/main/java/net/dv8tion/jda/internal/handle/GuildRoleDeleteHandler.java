@@ -24,6 +24,7 @@ import net.dv8tion.jda.internal.entities.EmoteImpl;
 import net.dv8tion.jda.internal.entities.GuildImpl;
 import net.dv8tion.jda.internal.entities.MemberImpl;
 import net.dv8tion.jda.internal.requests.WebSocketClient;
+import net.dv8tion.jda.internal.utils.cache.CrossShardIndex;
 
 public class GuildRoleDeleteHandler extends SocketHandler
 {
@@ -49,6 +50,9 @@ public class GuildRoleDeleteHandler extends SocketHandler
 
         final long roleId = content.getLong("role_id");
         Role removedRole = guild.getRolesView().remove(roleId);
+        CrossShardIndex index = getJDA().getCrossShardIndex();
+        if (index != null)
+            index.removeGuildEntity(roleId);
         if (removedRole == null)
         {
             //getJDA().getEventCache().cache(EventCache.Type.ROLE, roleId, () -> handle(responseNumber, allContent));
@@ -62,6 +66,7 @@ public class GuildRoleDeleteHandler extends SocketHandler
             MemberImpl member = (MemberImpl) m;
             member.getRoleSet().remove(removedRole);
         });
+        guild.getMembersView().removeRoleIndex(roleId);
 
         for (Emote emote : guild.getEmoteCache())
         {
@@ -27,12 +27,19 @@ import net.dv8tion.jda.api.utils.MiscUtil;
 import net.dv8tion.jda.api.utils.data.DataArray;
 import net.dv8tion.jda.api.utils.data.DataObject;
 import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.EntityBuilder;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.entities.MemberImpl;
+import net.dv8tion.jda.internal.entities.UserImpl;
+import net.dv8tion.jda.internal.requests.ChunkRequestScheduler;
 import net.dv8tion.jda.internal.requests.MemberChunkManager;
 import net.dv8tion.jda.internal.requests.WebSocketClient;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import org.slf4j.Logger;
 
 import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
@@ -52,6 +59,12 @@ public class GuildSetupController
     private final TLongObjectMap<GuildSetupNode> setupNodes = new TLongObjectHashMap<>();
     private final TLongSet chunkingGuilds = new TLongHashSet();
     private final TLongSet unavailableGuilds = new TLongHashSet();
+    // Users of members which were built by streaming nodes, before they are added to the user cache
+    private final TLongObjectMap<UserImpl> setupUsers = new TLongObjectHashMap<>();
+    // Members restored from the snapshot which were not confirmed by a member chunk yet
+    private final TLongObjectMap<TLongSet> reconcilingGuilds = new TLongObjectHashMap<>();
+    private SnapshotCache snapshot;
+    private boolean snapshotLoaded;
 
     // TODO: Rewrite this incompleteCount system to just rely on the state of each node
     private int incompleteCount = 0;
@@ -112,6 +125,7 @@ public class GuildSetupController
             if (timeoutHandle != null)
                 timeoutHandle.cancel(false);
             timeoutHandle = null;
+            snapshot = null; // guilds which become available later are chunked as usual
             client.ready();
         }
         else if (incompleteCount <= timeoutThreshold)
@@ -128,6 +142,47 @@ public class GuildSetupController
         return count != 0;
     }
 
+    public void loadSnapshot(long selfUserId)
+    {
+        File directory = api.getSnapshotDirectory();
+        // the snapshot is only used for the first session, later sessions can rely on the existing cache
+        if (directory == null || snapshotLoaded)
+            return;
+        snapshotLoaded = true;
+        File file = SnapshotCache.getFile(directory, api.getShardInfo());
+        if (!file.exists())
+            return;
+        try
+        {
+            long start = System.currentTimeMillis();
+            SnapshotCache cache = SnapshotCache.read(file);
+            if (cache == null)
+            {
+                log.warn("Ignoring cache snapshot {} with unsupported format", file);
+            }
+            else if (cache.getSelfUserId() != selfUserId)
+            {
+                log.warn("Ignoring cache snapshot {} which was created for a different account", file);
+            }
+            else if (cache.isExpired())
+            {
+                log.info("Ignoring cache snapshot {} which was created {} minutes ago", file,
+                    TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - cache.getTimeCreated()));
+            }
+            else
+            {
+                snapshot = cache;
+                log.info("Loaded cache snapshot with {} guilds in {} ms, created {} seconds ago",
+                    cache.size(), System.currentTimeMillis() - start,
+                    TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - cache.getTimeCreated()));
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            log.error("Failed to read cache snapshot {}", file, e);
+        }
+    }
+
     public void onReady(long id, DataObject obj)
     {
         log.trace("Adding id to setup cache {}", id);
@@ -269,6 +324,30 @@ public class GuildSetupController
         return isLocked(id) || isUnavailable(id);
     }
 
+    public void onReconcileChunk(GuildImpl guild, DataObject chunk)
+    {
+        long id = guild.getIdLong();
+        TLongSet staleMembers = reconcilingGuilds.get(id);
+        if (staleMembers == null)
+            return;
+        DataArray members = chunk.getArray("members");
+        for (int i = 0; i < members.length(); i++)
+            staleMembers.remove(members.getObject(i).getObject("user").getUnsignedLong("id"));
+        if (!MemberChunkManager.isLastChunk(chunk))
+            return;
+
+        // members which are not part of the chunks left the guild while we were offline
+        reconcilingGuilds.remove(id);
+        EntityBuilder builder = api.getEntityBuilder();
+        staleMembers.forEach(userId -> {
+            MemberImpl member = (MemberImpl) guild.getMemberById(userId);
+            if (member != null)
+                builder.updateMemberCache(member, true);
+            return true;
+        });
+        log.debug("Reconciled snapshot of guild {}, removed {} members", id, staleMembers.size());
+    }
+
     public void cacheEvent(long guildId, DataObject event)
     {
         GuildSetupNode node = setupNodes.get(guildId);
@@ -283,6 +362,9 @@ public class GuildSetupController
         setupNodes.clear();
         chunkingGuilds.clear();
         unavailableGuilds.clear();
+        setupUsers.clear();
+        reconcilingGuilds.clear();
+        snapshot = null;
         incompleteCount = 0;
         close();
     }
@@ -306,6 +388,22 @@ public class GuildSetupController
         return false;
     }
 
+    @Nullable
+    UserImpl getSetupUser(long userId)
+    {
+        return setupUsers.get(userId);
+    }
+
+    void addSetupUser(UserImpl user)
+    {
+        setupUsers.put(user.getIdLong(), user);
+    }
+
+    void removeSetupUser(long userId)
+    {
+        setupUsers.remove(userId);
+    }
+
     public TLongSet getUnavailableGuilds()
     {
         return unavailableGuilds;
@@ -338,6 +436,26 @@ public class GuildSetupController
 
     // Chunking
 
+    @Nullable
+    DataArray removeSnapshot(long id)
+    {
+        return snapshot == null ? null : snapshot.remove(id);
+    }
+
+    void reconcileSnapshot(long id, TLongSet memberIds, int memberCount)
+    {
+        log.debug("Restored {} members of guild {} from snapshot, requesting chunks to reconcile", memberIds.size(), id);
+        reconcilingGuilds.put(id, memberIds);
+        getJDA().getClient().sendChunkRequest(
+            DataObject.empty()
+                .put("guild_id", id)
+                .put("query", "")
+                .put("limit", 0),
+            ChunkRequestScheduler.PRIORITY_RECONCILE,
+            memberCount
+        );
+    }
+
     int getIncompleteCount()
     {
         return incompleteCount;
@@ -348,24 +466,35 @@ public class GuildSetupController
         return chunkingGuilds.size();
     }
 
-    void sendChunkRequest(Object obj)
+    void sendChunkRequest(long id)
     {
-        log.debug("Sending chunking requests for {} guilds", obj instanceof DataArray ? ((DataArray) obj).length() : 1);
+        GuildSetupNode node = setupNodes.get(id);
+        int memberCount = node == null ? 0 : node.getExpectedMemberCount();
+        // guilds the bot just joined or that already receive events are likely to be used soon
+        boolean active = node != null && (node.isJoin() || node.hasCachedEvents());
+        log.debug("Sending chunking request for guild {} with {} members", id, memberCount);
 
         getJDA().getClient().sendChunkRequest(
             DataObject.empty()
-                .put("guild_id", obj)
+                .put("guild_id", id)
                 .put("query", "")
-                .put("limit", 0)
+                .put("limit", 0),
+            active ? ChunkRequestScheduler.PRIORITY_ACTIVE : ChunkRequestScheduler.PRIORITY_SETUP,
+            memberCount
         );
     }
 
     private void tryChunking()
     {
+        if (chunkingGuilds.isEmpty())
+            return;
         chunkingGuilds.forEach((id) -> {
             sendChunkRequest(id);
             return true;
         });
+        ChunkRequestScheduler scheduler = getJDA().getClient().getChunkScheduler();
+        log.debug("Queued chunking requests for {} guilds, pending requests: {} estimated time: {} seconds",
+            chunkingGuilds.size(), scheduler.size(), scheduler.getEstimatedTime(TimeUnit.SECONDS));
         chunkingGuilds.clear();
     }
 
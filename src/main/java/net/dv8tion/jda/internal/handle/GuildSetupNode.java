@@ -33,7 +33,10 @@ import net.dv8tion.jda.api.managers.AudioManager;
 import net.dv8tion.jda.api.utils.data.DataArray;
 import net.dv8tion.jda.api.utils.data.DataObject;
 import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.EntityBuilder;
 import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.entities.MemberImpl;
+import net.dv8tion.jda.internal.entities.UserImpl;
 import net.dv8tion.jda.internal.managers.AudioManagerImpl;
 import net.dv8tion.jda.internal.utils.UnlockHook;
 import net.dv8tion.jda.internal.utils.cache.AbstractCacheView;
@@ -50,6 +53,9 @@ public class GuildSetupNode
     private final List<DataObject> cachedEvents = new LinkedList<>();
     private TLongObjectMap<DataObject> members;
     private TLongSet removedMembers;
+    // used instead of the member payloads when members are built while chunking
+    private GuildImpl streamedGuild;
+    private TLongObjectMap<MemberImpl> streamedMembers;
     private DataObject partialGuild;
     private int expectedMemberCount = 1;
     boolean requestedChunk;
@@ -94,7 +100,7 @@ public class GuildSetupNode
 
     public int getCurrentMemberCount()
     {
-        TLongHashSet knownMembers = new TLongHashSet(members.keySet());
+        TLongHashSet knownMembers = new TLongHashSet(isStreaming() ? streamedMembers.keySet() : members.keySet());
         knownMembers.removeAll(removedMembers);
         return knownMembers.size();
     }
@@ -119,8 +125,15 @@ public class GuildSetupNode
         return requestedChunk;
     }
 
+    public boolean hasCachedEvents()
+    {
+        return !cachedEvents.isEmpty();
+    }
+
     public boolean containsMember(long userId)
     {
+        if (isStreaming())
+            return streamedMembers.containsKey(userId);
         if (members == null || members.isEmpty())
             return false;
         return members.containsKey(userId);
@@ -179,6 +192,7 @@ public class GuildSetupNode
         expectedMemberCount = 1;
         partialGuild = null;
         requestedChunk = false;
+        stopStreaming();
         if (members != null)
             members.clear();
         if (removedMembers != null)
@@ -249,11 +263,17 @@ public class GuildSetupNode
         for (int index = 0; index < arr.length(); index++)
         {
             DataObject obj = arr.getObject(index);
+            if (isStreaming())
+            {
+                streamMember(obj);
+                continue;
+            }
             long id = obj.getObject("user").getLong("id");
             members.put(id, obj);
         }
 
-        if (last || members.size() >= expectedMemberCount || !getController().getJDA().chunkGuild(id))
+        int size = isStreaming() ? streamedMembers.size() : members.size();
+        if (last || size >= expectedMemberCount || !getController().getJDA().chunkGuild(id))
         {
             completeSetup();
             return false;
@@ -267,7 +287,10 @@ public class GuildSetupNode
             return;
         expectedMemberCount++;
         long userId = member.getObject("user").getLong("id");
-        members.put(userId, member);
+        if (isStreaming())
+            streamMember(member);
+        else
+            members.put(userId, member);
         removedMembers.remove(userId);
     }
 
@@ -277,17 +300,26 @@ public class GuildSetupNode
             return;
         expectedMemberCount--;
         long userId = member.getObject("user").getLong("id");
-        members.remove(userId);
+        if (isStreaming())
+            streamedMembers.remove(userId);
+        else
+            members.remove(userId);
         removedMembers.add(userId);
         EventCache eventCache = getController().getJDA().getEventCache();
         if (!getController().containsMember(userId, this)) // if no other setup node contains this userId we clear it here
+        {
             eventCache.clear(EventCache.Type.USER, userId);
+            getController().removeSetupUser(userId);
+        }
     }
 
     void cacheEvent(DataObject event)
     {
         GuildSetupController.log.trace("Caching {} event during init. GuildId: {}", event.getString("t"), id);
         cachedEvents.add(event);
+        // a guild which receives events is in use, its members should be requested before idle guilds
+        if (cachedEvents.size() == 1 && status == GuildSetupController.Status.CHUNKING)
+            getController().getJDA().getClient().promoteChunkRequest(id);
         //Check if more than 2000 events cached - suspicious
         // Print warning every 1000 events
         int cacheSize = cachedEvents.size();
@@ -346,16 +378,43 @@ public class GuildSetupNode
                     eventCache.clear(EventCache.Type.USER, userId);
             }
         }
+
+        if (isStreaming())
+        {
+            for (TLongIterator it = streamedMembers.keySet().iterator(); it.hasNext();)
+            {
+                long userId = it.next();
+                if (!getController().containsMember(userId, this))
+                    eventCache.clear(EventCache.Type.USER, userId);
+            }
+            stopStreaming();
+        }
     }
 
     private void completeSetup()
     {
         updateStatus(GuildSetupController.Status.BUILDING);
         JDAImpl api = getController().getJDA();
-        for (TLongIterator it = removedMembers.iterator(); it.hasNext(); )
-            members.remove(it.next());
-        removedMembers.clear();
-        GuildImpl guild = api.getEntityBuilder().createGuild(id, partialGuild, members, expectedMemberCount);
+        GuildImpl guild;
+        if (isStreaming())
+        {
+            for (TLongIterator it = removedMembers.iterator(); it.hasNext(); )
+                streamedMembers.remove(it.next());
+            removedMembers.clear();
+            guild = api.getEntityBuilder().createGuild(streamedGuild, partialGuild, streamedMembers, expectedMemberCount);
+            // the users are cached now, other nodes will find them in the user cache
+            for (TLongIterator it = streamedMembers.keySet().iterator(); it.hasNext(); )
+                getController().removeSetupUser(it.next());
+            streamedMembers = null;
+            streamedGuild = null;
+        }
+        else
+        {
+            for (TLongIterator it = removedMembers.iterator(); it.hasNext(); )
+                members.remove(it.next());
+            removedMembers.clear();
+            guild = api.getEntityBuilder().createGuild(id, partialGuild, members, expectedMemberCount);
+        }
         updateAudioManagerReference(guild);
         switch (type)
         {
@@ -383,16 +442,33 @@ public class GuildSetupNode
 
     private void ensureMembers()
     {
+        JDAImpl api = getController().getJDA();
         expectedMemberCount = partialGuild.getInt("member_count");
-        members = new TLongObjectHashMap<>(expectedMemberCount);
         removedMembers = new TLongHashSet();
+        stopStreaming();
+        if (api.isStreamingGuildSetup() && api.chunkGuild(id))
+        {
+            members = new TLongObjectHashMap<>();
+            streamedMembers = new TLongObjectHashMap<>(expectedMemberCount);
+            streamedGuild = api.getEntityBuilder().createSetupGuild(id, partialGuild);
+        }
+        else
+        {
+            members = new TLongObjectHashMap<>(expectedMemberCount);
+        }
         DataArray memberArray = partialGuild.getArray("members");
-        if (!getController().getJDA().chunkGuild(id))
+        if (!api.chunkGuild(id))
         {
             handleMemberChunk(true, memberArray);
         }
         else if (memberArray.length() < expectedMemberCount && !requestedChunk)
         {
+            DataArray snapshot = getController().removeSnapshot(id);
+            if (snapshot != null)
+            {
+                restoreSnapshot(snapshot, memberArray);
+                return;
+            }
             updateStatus(GuildSetupController.Status.CHUNKING);
             getController().addGuildForChunking(id, isJoin());
             requestedChunk = true;
@@ -406,14 +482,83 @@ public class GuildSetupNode
             GuildSetupController.log.trace(
                 "Received suspicious members with a guild payload. Attempting to chunk. " +
                 "member_count: {} members: {} actual_members: {} guild_id: {}",
-                expectedMemberCount, memberArray.length(), members.size(), id);
+                expectedMemberCount, memberArray.length(), isStreaming() ? streamedMembers.size() : members.size(), id);
             members.clear();
+            if (isStreaming())
+                clearStreamedMembers();
             updateStatus(GuildSetupController.Status.CHUNKING);
             getController().addGuildForChunking(id, isJoin());
             requestedChunk = true;
         }
     }
 
+    private void restoreSnapshot(DataArray snapshot, DataArray memberArray)
+    {
+        TLongSet restored = new TLongHashSet(snapshot.length());
+        for (int index = 0; index < snapshot.length(); index++)
+        {
+            DataObject obj = snapshot.getObject(index);
+            long userId = obj.getObject("user").getUnsignedLong("id");
+            restored.add(userId);
+            if (isStreaming())
+                streamMember(obj);
+            else
+                members.put(userId, obj);
+        }
+        // the members of the guild payload are more recent than the snapshot
+        handleMemberChunk(true, memberArray);
+        getController().reconcileSnapshot(id, restored, expectedMemberCount);
+    }
+
+    private boolean isStreaming()
+    {
+        return streamedMembers != null;
+    }
+
+    private void streamMember(DataObject memberJson)
+    {
+        JDAImpl api = getController().getJDA();
+        EntityBuilder builder = api.getEntityBuilder();
+        DataObject userJson = memberJson.getObject("user");
+        long userId = userJson.getUnsignedLong("id");
+        // members of other guilds which are still chunking must share the same user instance
+        UserImpl user = getController().getSetupUser(userId);
+        if (user == null)
+        {
+            user = builder.createUser(userJson);
+            if (api.getUsersView().get(userId) == null)
+                getController().addSetupUser(user);
+        }
+        else
+        {
+            builder.updateUser(user, userJson);
+        }
+
+        // the guild has no cached members, this always builds a new member which replaces a previous chunk
+        MemberImpl member = builder.createMember(streamedGuild, user, memberJson, null, null);
+        streamedMembers.put(userId, member);
+    }
+
+    private void clearStreamedMembers()
+    {
+        if (!isStreaming())
+            return;
+        for (TLongIterator it = streamedMembers.keySet().iterator(); it.hasNext(); )
+        {
+            long userId = it.next();
+            if (!getController().containsMember(userId, this))
+                getController().removeSetupUser(userId);
+        }
+        streamedMembers.clear();
+    }
+
+    private void stopStreaming()
+    {
+        clearStreamedMembers();
+        streamedMembers = null;
+        streamedGuild = null;
+    }
+
     private void updateAudioManagerReference(GuildImpl guild)
     {
         JDAImpl api = getController().getJDA();
@@ -58,6 +58,7 @@ public class ReadyHandler extends SocketHandler
         );
 
         builder.createSelfUser(selfJson);
+        getJDA().getGuildSetupController().loadSnapshot(selfJson.getUnsignedLong("id"));
         if (getJDA().getGuildSetupController().setIncompleteCount(distinctGuilds.size()))
         {
             distinctGuilds.forEachEntry((id, guild) ->
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.handle;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.MemberImpl;
+import net.dv8tion.jda.internal.entities.UserImpl;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.slf4j.Logger;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Members of the chunked guilds of one shard, stored on disk on shutdown.
+ * <br>The members are restored as member payloads in the format of the gateway,
+ * which allows the guild setup to skip chunking on the next start.
+ *
+ * <p>Only the encoded members of each guild are kept in memory, they are decoded once the guild is restored.
+ */
+public class SnapshotCache
+{
+    /** Snapshots older than this are ignored, since most of their members would need to be updated anyway */
+    public static final long MAX_AGE = TimeUnit.HOURS.toMillis(12);
+
+    private static final Logger LOG = JDALogger.getLog(SnapshotCache.class);
+    private static final int MAGIC = 0x4A444153; // JDAS
+    private static final int VERSION = 2;
+
+    private final long selfUserId;
+    private final long timeCreated;
+    private final TLongObjectMap<byte[]> guilds;
+
+    private SnapshotCache(long selfUserId, long timeCreated, TLongObjectMap<byte[]> guilds)
+    {
+        this.selfUserId = selfUserId;
+        this.timeCreated = timeCreated;
+        this.guilds = guilds;
+    }
+
+    public static File getFile(File directory, JDA.ShardInfo shardInfo)
+    {
+        return new File(directory, "shard-" + shardInfo.getShardId() + "-" + shardInfo.getShardTotal() + ".snapshot");
+    }
+
+    public long getSelfUserId()
+    {
+        return selfUserId;
+    }
+
+    public long getTimeCreated()
+    {
+        return timeCreated;
+    }
+
+    public int size()
+    {
+        return guilds.size();
+    }
+
+    public boolean isExpired()
+    {
+        return System.currentTimeMillis() - timeCreated > MAX_AGE;
+    }
+
+    // Decodes the member payloads of the guild, each guild can only be restored once
+    @Nullable
+    public DataArray remove(long guildId)
+    {
+        byte[] encoded = guilds.remove(guildId);
+        if (encoded == null)
+            return null;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded)))
+        {
+            int size = in.readInt();
+            DataArray members = DataArray.empty();
+            for (int i = 0; i < size; i++)
+                members.add(readMember(in));
+            return members;
+        }
+        catch (IOException e)
+        {
+            LOG.error("Failed to decode the snapshot of guild {}", guildId, e);
+            return null;
+        }
+    }
+
+    public static void write(JDAImpl api, File file) throws IOException
+    {
+        List<Guild> guilds = api.getGuildCache().applyStream(stream ->
+            stream.filter(guild -> api.chunkGuild(guild.getIdLong())).collect(Collectors.toList()));
+        write(file, api.getSelfUser().getIdLong(), guilds);
+    }
+
+    public static void write(File file, long selfUserId, Collection<? extends Guild> guilds) throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            Files.createDirectories(parent.toPath());
+        // write to a temporary file first, a crash while writing must not destroy the previous snapshot
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(selfUserId);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(guilds.size());
+
+            // every guild is prefixed with its length, which allows reading it without decoding the members
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream guildOut = new DataOutputStream(buffer);
+            for (Guild guild : guilds)
+            {
+                List<Member> members = guild.getMemberCache().asList();
+                buffer.reset();
+                guildOut.writeInt(members.size());
+                for (Member member : members)
+                    writeMember(guildOut, (MemberImpl) member);
+                out.writeLong(guild.getIdLong());
+                out.writeInt(buffer.size());
+                buffer.writeTo(out);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads the snapshot file.
+     * <br>The members of expired snapshots are not read at all, the returned snapshot is then empty.
+     *
+     * @param  file
+     *         The snapshot file
+     *
+     * @throws IOException
+     *         If the file could not be read
+     *
+     * @return The snapshot, or null if the file uses an unsupported format
+     */
+    @Nullable
+    public static SnapshotCache read(File file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+            long selfUserId = in.readLong();
+            long timeCreated = in.readLong();
+            TLongObjectMap<byte[]> guilds = new TLongObjectHashMap<>();
+            SnapshotCache cache = new SnapshotCache(selfUserId, timeCreated, guilds);
+            if (cache.isExpired())
+                return cache;
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                long guildId = in.readLong();
+                byte[] encoded = new byte[in.readInt()];
+                in.readFully(encoded);
+                guilds.put(guildId, encoded);
+            }
+            return cache;
+        }
+    }
+
+    private static void writeMember(DataOutputStream out, MemberImpl member) throws IOException
+    {
+        UserImpl user = (UserImpl) member.getUser();
+        out.writeLong(user.getIdLong());
+        out.writeUTF(user.getName());
+        out.writeUTF(user.getDiscriminator());
+        writeNullable(out, user.getAvatarId());
+        out.writeBoolean(user.isBot());
+        out.writeInt(user.getFlagsRaw());
+
+        writeNullable(out, member.getNickname());
+        out.writeLong(member.hasTimeJoined() ? member.getTimeJoined().toInstant().toEpochMilli() : 0);
+        out.writeLong(member.getBoostDateRaw());
+        out.writeBoolean(member.isPending());
+        Set<Role> roles = member.getRoleSet();
+        out.writeInt(roles.size());
+        for (Role role : roles)
+            out.writeLong(role.getIdLong());
+    }
+
+    private static DataObject readMember(DataInputStream in) throws IOException
+    {
+        DataObject user = DataObject.empty()
+            .put("id", Long.toUnsignedString(in.readLong()))
+            .put("username", in.readUTF())
+            .put("discriminator", in.readUTF())
+            .put("avatar", readNullable(in))
+            .put("bot", in.readBoolean())
+            .put("public_flags", in.readInt());
+
+        DataObject member = DataObject.empty()
+            .put("user", user)
+            .put("nick", readNullable(in))
+            .put("joined_at", toTimestamp(in.readLong()))
+            .put("premium_since", toTimestamp(in.readLong()))
+            .put("pending", in.readBoolean());
+        int count = in.readInt();
+        DataArray roles = DataArray.empty();
+        for (int i = 0; i < count; i++)
+            roles.add(Long.toUnsignedString(in.readLong()));
+        return member.put("roles", roles);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static String toTimestamp(long epoch)
+    {
+        if (epoch == 0)
+            return null;
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epoch), ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+}
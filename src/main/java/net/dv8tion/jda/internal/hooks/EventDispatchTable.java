@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.hooks;
+
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.internal.JDAImpl;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Dispatch table which maps each concrete event class to the flattened array of handlers for that class.
+ *
+ * <p>The handlers of an event class are collected the first time it is dispatched and updated on every
+ * registration, dispatching is a single map lookup followed by direct calls.
+ * Handlers are ordered by registration of their listener.
+ *
+ * <p>The invoker factories are cached per table, so the classes of listeners are not retained after the manager is gone.
+ */
+public abstract class EventDispatchTable
+{
+    private static final Handler[] EMPTY = new Handler[0];
+    private static final MethodHandle NO_FACTORY = MethodHandles.constant(Object.class, null);
+
+    private final ConcurrentMap<Method, MethodHandle> invokerFactories = new ConcurrentHashMap<>();
+    private final List<Object> listeners = new CopyOnWriteArrayList<>();
+    private final Map<Class<?>, Handler[]> table = new ConcurrentHashMap<>();
+
+    /**
+     * Collects the handlers of the listener for the provided event class, in the order they should be called.
+     *
+     * @param listener
+     *        The listener
+     * @param eventClass
+     *        The concrete class of the event
+     * @param handlers
+     *        The list to add the handlers to
+     */
+    protected abstract void collect(Object listener, Class<?> eventClass, List<Handler> handlers);
+
+    public List<Object> getListeners()
+    {
+        return listeners;
+    }
+
+    public synchronized void register(Object listener)
+    {
+        listeners.add(listener);
+        List<Handler> handlers = new ArrayList<>();
+        table.replaceAll((eventClass, current) ->
+        {
+            handlers.clear();
+            collect(listener, eventClass, handlers);
+            if (handlers.isEmpty())
+                return current;
+            Handler[] updated = new Handler[current.length + handlers.size()];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            for (int i = 0; i < handlers.size(); i++)
+                updated[current.length + i] = handlers.get(i);
+            return updated;
+        });
+    }
+
+    public synchronized boolean unregister(Object listener)
+    {
+        if (!listeners.remove(listener))
+            return false;
+        table.replaceAll((eventClass, current) -> build(eventClass));
+        return true;
+    }
+
+    public void dispatch(GenericEvent event)
+    {
+        Class<?> eventClass = event.getClass();
+        Handler[] handlers = table.get(eventClass);
+        if (handlers == null)
+        {
+            // build under the lock so a concurrent registration can't be missed
+            synchronized (this)
+            {
+                handlers = table.computeIfAbsent(eventClass, this::build);
+            }
+        }
+
+        for (Handler handler : handlers)
+        {
+            try
+            {
+                handler.invoker.accept(event);
+            }
+            catch (Throwable throwable)
+            {
+                JDAImpl.LOG.error("One of the EventListeners had an uncaught exception", throwable);
+                if (throwable instanceof Error)
+                    throw (Error) throwable;
+            }
+        }
+    }
+
+    private Handler[] build(Class<?> eventClass)
+    {
+        List<Handler> handlers = new ArrayList<>();
+        for (Object listener : listeners)
+            collect(listener, eventClass, handlers);
+        return handlers.isEmpty() ? EMPTY : handlers.toArray(EMPTY);
+    }
+
+    /**
+     * Creates a direct invoker for a method with a single event parameter.
+     * <br>Accessible methods are bound through a generated class, which the JIT can inline like a normal call.
+     * Other methods, and methods of classes which are not visible to the class loader of JDA, fall back to a {@link MethodHandle}.
+     *
+     * @param  method
+     *         The method to invoke
+     * @param  target
+     *         The receiver of the call, ignored for static methods
+     *
+     * @throws IllegalArgumentException
+     *         If the method cannot be accessed
+     *
+     * @return The invoker
+     */
+    @SuppressWarnings("unchecked")
+    public Consumer<GenericEvent> createInvoker(Method method, Object target)
+    {
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        try
+        {
+            MethodHandle factory = invokerFactories.computeIfAbsent(method, EventDispatchTable::createFactory);
+            if (factory != NO_FACTORY)
+                return isStatic ? (Consumer<GenericEvent>) factory.invoke() : (Consumer<GenericEvent>) factory.invoke(target);
+
+            method.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            if (!isStatic)
+                handle = handle.bindTo(target);
+            MethodHandle invoker = handle.asType(MethodType.methodType(void.class, GenericEvent.class));
+            return (event) ->
+            {
+                try
+                {
+                    invoker.invokeExact(event);
+                }
+                catch (RuntimeException | Error e)
+                {
+                    throw e;
+                }
+                catch (Throwable e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+        catch (RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            throw new IllegalArgumentException("Cannot access event method " + method, e);
+        }
+    }
+
+    /**
+     * Removes the cached invoker factories of the provided methods, called when no listener uses them anymore.
+     *
+     * @param methods
+     *        The methods
+     */
+    public void removeInvokers(Method... methods)
+    {
+        for (Method method : methods)
+            invokerFactories.remove(method);
+    }
+
+    // Returns NO_FACTORY if the method has to be called through a method handle
+    private static MethodHandle createFactory(Method method)
+    {
+        // the generated class is defined in this package, it can only call methods which are visible from everywhere
+        for (Class<?> type = method.getDeclaringClass(); type != null; type = type.getEnclosingClass())
+        {
+            if (!Modifier.isPublic(type.getModifiers()))
+                return NO_FACTORY;
+        }
+        if (!Modifier.isPublic(method.getModifiers()))
+            return NO_FACTORY;
+        // the generated class resolves the listener and event class through the class loader of JDA,
+        // listeners loaded by a child class loader would fail with a NoClassDefFoundError
+        if (!isVisible(method.getDeclaringClass()) || !isVisible(method.getParameterTypes()[0]))
+            return NO_FACTORY;
+
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        try
+        {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle implementation = lookup.unreflect(method);
+            MethodType factoryType = isStatic
+                    ? MethodType.methodType(Consumer.class)
+                    : MethodType.methodType(Consumer.class, method.getDeclaringClass());
+            CallSite site = LambdaMetafactory.metafactory(lookup, "accept", factoryType,
+                    MethodType.methodType(void.class, Object.class), implementation,
+                    MethodType.methodType(void.class, method.getParameterTypes()[0]));
+            return site.getTarget();
+        }
+        catch (IllegalAccessException | LambdaConversionException | LinkageError e)
+        {
+            return NO_FACTORY;
+        }
+    }
+
+    private static boolean isVisible(Class<?> type)
+    {
+        try
+        {
+            return Class.forName(type.getName(), false, EventDispatchTable.class.getClassLoader()) == type;
+        }
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            return false;
+        }
+    }
+
+    public static final class Handler
+    {
+        private final Object listener;
+        private final Consumer<GenericEvent> invoker;
+
+        public Handler(Object listener, Consumer<GenericEvent> invoker)
+        {
+            this.listener = listener;
+            this.invoker = invoker;
+        }
+
+        public Object getListener()
+        {
+            return listener;
+        }
+    }
+}
@@ -17,24 +17,47 @@
 package net.dv8tion.jda.internal.hooks;
 
 import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.EventBackpressure;
 import net.dv8tion.jda.api.hooks.IEventManager;
 import net.dv8tion.jda.api.hooks.InterfacedEventManager;
+import net.dv8tion.jda.api.hooks.PartitionedEventExecutor;
 import net.dv8tion.jda.internal.JDAImpl;
 
 import javax.annotation.Nonnull;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
 public class EventManagerProxy implements IEventManager
 {
     private final ExecutorService executor;
+    private final PartitionedEventExecutor partitionedExecutor;
+    private final EventBackpressure backpressure;
     private IEventManager subject;
+    private volatile boolean suspended;
 
     public EventManagerProxy(IEventManager subject, ExecutorService executor)
+    {
+        this(subject, executor, null, null);
+    }
+
+    public EventManagerProxy(IEventManager subject, ExecutorService executor, PartitionedEventExecutor partitionedExecutor, EventBackpressure backpressure)
     {
         this.subject = subject;
         this.executor = executor;
+        this.partitionedExecutor = partitionedExecutor;
+        this.backpressure = backpressure;
+    }
+
+    public PartitionedEventExecutor getPartitionedExecutor()
+    {
+        return partitionedExecutor;
+    }
+
+    public EventBackpressure getBackpressure()
+    {
+        return backpressure;
     }
 
     public void setSubject(IEventManager subject)
@@ -47,6 +70,16 @@ public class EventManagerProxy implements IEventManager
         return subject;
     }
 
+    public void setSuspended(boolean suspended)
+    {
+        this.suspended = suspended;
+    }
+
+    public boolean isSuspended()
+    {
+        return suspended;
+    }
+
     @Override
     public void register(@Nonnull Object listener)
     {
@@ -62,17 +95,51 @@ public class EventManagerProxy implements IEventManager
     @Override
     public void handle(@Nonnull GenericEvent event)
     {
+        dispatch(event, subject::handle);
+    }
+
+    /**
+     * Runs the provided handler for the event on the event pool, just like {@link #handle(GenericEvent)} does for the subject.
+     *
+     * @param event
+     *        The event, which determines the lane of a partitioned event pool
+     * @param handler
+     *        The handler to run for the event
+     */
+    public void dispatch(@Nonnull GenericEvent event, @Nonnull Consumer<? super GenericEvent> handler)
+    {
+        // suspended instances are warming up in the background and must not be visible to listeners yet
+        if (suspended)
+            return;
+        boolean async = partitionedExecutor != null || (executor != null && !executor.isShutdown());
+        if (!async)
+        {
+            handleInternally(event, handler);
+            return;
+        }
+
+        Runnable task = backpressure == null
+            ? () -> handleInternally(event, handler)
+            : backpressure.submit(event, (e) -> handleInternally(e, handler));
+        if (task == null)
+            return; // shed by the backpressure policy
         try
         {
-            if (executor != null && !executor.isShutdown())
-                executor.execute(() -> handleInternally(event));
-            else
-                handleInternally(event);
+            if (partitionedExecutor == null)
+                executor.execute(task);
+            else if (backpressure == null)
+                partitionedExecutor.execute(event, task);
+            // shed the event instead of waiting for a full lane, only kept events may wait for the lane
+            else if (!partitionedExecutor.offer(event, task) && !backpressure.discard(task))
+                partitionedExecutor.execute(event, task);
         }
         catch (RejectedExecutionException ex)
         {
+            // running low priority events on the gateway thread would only delay the heartbeats further
+            if (backpressure != null && backpressure.discard(task))
+                return;
             JDAImpl.LOG.warn("Event-Pool rejected event execution! Running on handling thread instead...");
-            handleInternally(event);
+            task.run();
         }
         catch (Exception ex)
         {
@@ -80,12 +147,12 @@ public class EventManagerProxy implements IEventManager
         }
     }
 
-    private void handleInternally(@Nonnull GenericEvent event)
+    private void handleInternally(@Nonnull GenericEvent event, @Nonnull Consumer<? super GenericEvent> handler)
     {
         // don't allow mere exceptions to obstruct the socket handler
         try
         {
-            subject.handle(event);
+            handler.accept(event);
         }
         catch (RuntimeException e)
         {
@@ -51,6 +51,8 @@ public class AudioManagerImpl implements AudioManager
     protected AudioReceiveHandler receiveHandler;
     protected long queueTimeout = 100;
     protected boolean shouldReconnect = true;
+    // set when the shared voice socket cannot be used, because another account receives the same users
+    protected volatile boolean dedicatedVoiceSocket = false;
 
     protected boolean selfMuted = false;
     protected boolean selfDeafened = false;
@@ -68,6 +70,16 @@ public class AudioManagerImpl implements AudioManager
         return audioConnection;
     }
 
+    public boolean isDedicatedVoiceSocket()
+    {
+        return dedicatedVoiceSocket;
+    }
+
+    public void setDedicatedVoiceSocket(boolean dedicatedVoiceSocket)
+    {
+        this.dedicatedVoiceSocket = dedicatedVoiceSocket;
+    }
+
     @Override
     public void openAudioConnection(VoiceChannel channel)
     {
@@ -119,6 +131,8 @@ public class AudioManagerImpl implements AudioManager
     @Override
     public void closeAudioConnection()
     {
+        // the next connection may be to another channel, try the shared voice socket again
+        dedicatedVoiceSocket = false;
         getJDA().getAudioLifeCyclePool().execute(() -> {
             getJDA().setContext();
             closeAudioConnection(ConnectionStatus.NOT_CONNECTED);
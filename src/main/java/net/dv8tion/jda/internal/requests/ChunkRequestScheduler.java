@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.requests;
+
+import net.dv8tion.jda.api.utils.data.DataObject;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Queue of the member chunk requests of one gateway connection.
+ *
+ * <p>Requests are sent in order of priority: requests made by the user come first, then guilds
+ * which already received events during setup, then all other guilds by ascending member count.
+ * Guilds restored from a {@link net.dv8tion.jda.internal.handle.SnapshotCache SnapshotCache} are reconciled last.
+ * Small guilds complete their setup first, which gets most guilds ready as early as possible.
+ *
+ * <p>Chunk requests may only use {@link #CHUNK_BUDGET} of the 120 messages per minute the gateway accepts,
+ * the rest is kept for presence updates, voice state updates, and heartbeats.
+ * The budget is counted in the rate limit window of the {@link WebSocketClient}, which is passed as its reset time.
+ */
+public class ChunkRequestScheduler
+{
+    /** Amount of chunk requests sent per rate limit window */
+    public static final int CHUNK_BUDGET = 100;
+    /** Delay between two messages of the sending thread */
+    public static final long SEND_INTERVAL = 10;
+    /** Length of the rate limit window of the gateway */
+    public static final long WINDOW = TimeUnit.MINUTES.toMillis(1);
+
+    public static final int PRIORITY_REQUESTED = 0;
+    public static final int PRIORITY_ACTIVE = 1;
+    public static final int PRIORITY_SETUP = 2;
+    public static final int PRIORITY_RECONCILE = 3;
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(
+        Comparator.<Entry>comparingInt(entry -> entry.priority)
+                  .thenComparingInt(entry -> entry.memberCount)
+                  .thenComparingLong(entry -> entry.sequence));
+    private long sequence;
+    private long windowReset;
+    private int sentInWindow;
+    private long sentTotal;
+
+    public synchronized void add(DataObject request)
+    {
+        add(request, PRIORITY_REQUESTED, 0);
+    }
+
+    public synchronized void add(DataObject request, int priority, int memberCount)
+    {
+        queue.add(new Entry(request, priority, memberCount, sequence++));
+    }
+
+    // Moves the pending request of a guild to the active priority
+    public synchronized void promote(long guildId)
+    {
+        Entry entry = null;
+        for (Entry it : queue)
+        {
+            if (it.priority > PRIORITY_ACTIVE && it.isGuild(guildId))
+            {
+                entry = it;
+                break;
+            }
+        }
+        if (entry == null)
+            return;
+        queue.remove(entry);
+        queue.add(new Entry(entry.request, PRIORITY_ACTIVE, entry.memberCount, entry.sequence));
+    }
+
+    public synchronized DataObject peek()
+    {
+        Entry entry = queue.peek();
+        return entry == null ? null : entry.request;
+    }
+
+    public synchronized void remove(DataObject request)
+    {
+        queue.removeIf(entry -> entry.request == request);
+    }
+
+    public synchronized void removeIf(Predicate<DataObject> filter)
+    {
+        queue.removeIf(entry -> filter.test(entry.request));
+    }
+
+    public synchronized void clear()
+    {
+        queue.clear();
+    }
+
+    public synchronized int size()
+    {
+        return queue.size();
+    }
+
+    public synchronized boolean isEmpty()
+    {
+        return queue.isEmpty();
+    }
+
+    // Whether another chunk request can be sent in the current rate limit window of the client
+    public synchronized boolean hasBudget(long now, long clientWindowReset)
+    {
+        // the client starts a new window once the current one is over, which resets the budget as well
+        return clientWindowReset != windowReset || now >= windowReset || sentInWindow < CHUNK_BUDGET;
+    }
+
+    // The time at which the budget is restored
+    public synchronized long getBudgetReset()
+    {
+        return windowReset;
+    }
+
+    // Counts a sent request, the reset time identifies the window of the client it was sent in
+    public synchronized void onSent(long clientWindowReset)
+    {
+        if (clientWindowReset != windowReset)
+        {
+            windowReset = clientWindowReset;
+            sentInWindow = 0;
+        }
+        sentInWindow++;
+        sentTotal++;
+    }
+
+    public synchronized long getSentTotal()
+    {
+        return sentTotal;
+    }
+
+    // Estimated time until all pending requests are sent
+    public synchronized long getEstimatedTime(TimeUnit unit)
+    {
+        long now = System.currentTimeMillis();
+        int pending = queue.size();
+        int available = now >= windowReset ? CHUNK_BUDGET : CHUNK_BUDGET - sentInWindow;
+        long millis;
+        if (pending <= available)
+        {
+            millis = pending * SEND_INTERVAL;
+        }
+        else
+        {
+            int remaining = pending - available;
+            long firstReset = now >= windowReset ? WINDOW : windowReset - now;
+            long windows = (remaining - 1) / CHUNK_BUDGET;
+            millis = firstReset + windows * WINDOW + ((remaining - 1) % CHUNK_BUDGET + 1) * SEND_INTERVAL;
+        }
+        return unit.convert(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private static class Entry
+    {
+        private final DataObject request;
+        private final int priority;
+        private final int memberCount;
+        private final long sequence;
+
+        private Entry(DataObject request, int priority, int memberCount, long sequence)
+        {
+            this.request = request;
+            this.priority = priority;
+            this.memberCount = memberCount;
+            this.sequence = sequence;
+        }
+
+        private boolean isGuild(long guildId)
+        {
+            return request.getUnsignedLong("guild_id", 0) == guildId;
+        }
+    }
+}
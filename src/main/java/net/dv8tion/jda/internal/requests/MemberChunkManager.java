@@ -31,6 +31,7 @@ import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
 
 public class MemberChunkManager
 {
@@ -70,6 +71,12 @@ public class MemberChunkManager
     }
 
     public CompletableFuture<Void> chunkGuild(GuildImpl guild, boolean presence, BiConsumer<Boolean, List<Member>> handler)
+    {
+        return streamGuild(guild, presence, asPredicate(handler));
+    }
+
+    // The handler returns false to stop the request, the remaining chunks are still received but their members are not built
+    public CompletableFuture<Void> streamGuild(GuildImpl guild, boolean presence, BiPredicate<Boolean, List<Member>> handler)
     {
         init();
         DataObject request = DataObject.empty()
@@ -91,7 +98,7 @@ public class MemberChunkManager
                 .put("limit", Math.min(100, Math.max(1, limit)))
                 .put("query", query);
 
-        ChunkRequest chunkRequest = new ChunkRequest(handler, guild, request);
+        ChunkRequest chunkRequest = new ChunkRequest(asPredicate(handler), guild, request);
         makeRequest(chunkRequest);
         return chunkRequest;
     }
@@ -104,38 +111,27 @@ public class MemberChunkManager
                 .put("presences", presence)
                 .put("user_ids", userIds);
 
-        ChunkRequest chunkRequest = new ChunkRequest(handler, guild, request);
+        ChunkRequest chunkRequest = new ChunkRequest(asPredicate(handler), guild, request);
         makeRequest(chunkRequest);
         return chunkRequest;
     }
 
     public boolean handleChunk(long guildId, DataObject response)
     {
-        return MiscUtil.locked(lock, () -> {
-            String nonce = response.getString("nonce", null);
-            if (nonce == null || nonce.isEmpty())
-                return false;
-            long key = Long.parseLong(nonce);
-            ChunkRequest request = requests.get(key);
-            if (request == null)
-                return false;
-
-            boolean lastChunk = isLastChunk(response);
-            request.handleChunk(lastChunk, response);
-            if (lastChunk || request.isCancelled())
-            {
-                requests.remove(key);
-                request.complete(null);
-            }
-            return true;
-        });
-    }
+        String nonce = response.getString("nonce", null);
+        if (nonce == null || nonce.isEmpty())
+            return false;
+        long key = Long.parseLong(nonce);
+        boolean lastChunk = isLastChunk(response);
+        ChunkRequest request = MiscUtil.locked(lock, () -> lastChunk ? requests.remove(key) : requests.get(key));
+        if (request == null)
+            return false;
 
-    public void cancelRequest(ChunkRequest request)
-    {
-        MiscUtil.locked(lock, () -> {
-            requests.remove(request.nonce);
-        });
+        // the handler runs user code, it must not block other requests
+        request.handleChunk(lastChunk, response);
+        if (lastChunk)
+            request.complete(null);
+        return true;
     }
 
     private void makeRequest(ChunkRequest request)
@@ -151,15 +147,23 @@ public class MemberChunkManager
         client.sendChunkRequest(request);
     }
 
+    private static BiPredicate<Boolean, List<Member>> asPredicate(BiConsumer<Boolean, List<Member>> handler)
+    {
+        return (last, list) -> {
+            handler.accept(last, list);
+            return true;
+        };
+    }
+
     private class ChunkRequest extends CompletableFuture<Void>
     {
-        private final BiConsumer<Boolean, List<Member>> handler;
+        private final BiPredicate<Boolean, List<Member>> handler;
         private final GuildImpl guild;
         private final DataObject request;
         private final long nonce;
         private long startTime;
 
-        public ChunkRequest(BiConsumer<Boolean, List<Member>> handler, GuildImpl guild, DataObject request)
+        public ChunkRequest(BiPredicate<Boolean, List<Member>> handler, GuildImpl guild, DataObject request)
         {
             this.handler = handler;
             this.guild = guild;
@@ -194,13 +198,13 @@ public class MemberChunkManager
             DataArray memberArray = chunk.getArray("members");
             TLongObjectMap<DataObject> presences = chunk.optArray("presences").map(it ->
                 builder.convertToUserMap(o -> o.getObject("user").getUnsignedLong("id"), it)
-            ).orElseGet(TLongObjectHashMap::new);
+            ).orElse(null);
             List<Member> collect = new ArrayList<>(memberArray.length());
             for (int i = 0; i < memberArray.length(); i++)
             {
                 DataObject json = memberArray.getObject(i);
                 long userId = json.getObject("user").getUnsignedLong("id");
-                DataObject presence = presences.get(userId);
+                DataObject presence = presences == null ? null : presences.get(userId);
                 MemberImpl member = builder.createMember(guild, json, null, presence);
                 builder.updateMemberCache(member);
                 collect.add(member);
@@ -210,10 +214,13 @@ public class MemberChunkManager
 
         public void handleChunk(boolean last, DataObject chunk)
         {
+            // the remaining chunks of cancelled or stopped requests are dropped
+            if (isDone())
+                return;
             try
             {
-                if (!isDone())
-                    handler.accept(last, toMembers(chunk));
+                if (!handler.test(last, toMembers(chunk)))
+                    complete(null);
             }
             catch (Throwable ex)
             {
@@ -226,8 +233,8 @@ public class MemberChunkManager
         @Override
         public boolean cancel(boolean mayInterruptIfRunning)
         {
+            // the request stays registered until it times out, chunks which are already on their way are dropped
             client.cancelChunkRequest(getNonce());
-            cancelRequest(this);
             return super.cancel(mayInterruptIfRunning);
         }
     }
@@ -244,7 +251,7 @@ public class MemberChunkManager
                         request.completeExceptionally(new TimeoutException());
                     return true;
                 });
-                requests.valueCollection().removeIf(ChunkRequest::isDone);
+                requests.valueCollection().removeIf(request -> request.isDone() && request.getAge() > MAX_CHUNK_AGE);
             });
         }
     }
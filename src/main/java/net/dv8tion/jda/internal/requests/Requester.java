@@ -24,6 +24,7 @@ import net.dv8tion.jda.internal.JDAImpl;
 import net.dv8tion.jda.internal.requests.ratelimit.BotRateLimiter;
 import net.dv8tion.jda.internal.utils.Helpers;
 import net.dv8tion.jda.internal.utils.JDALogger;
+import net.dv8tion.jda.internal.utils.concurrent.SharedSchedulerLane;
 import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
 import okhttp3.Call;
 import okhttp3.MediaType;
@@ -199,7 +200,8 @@ public class Requester
                     return null;
 
                 Call call = httpClient.newCall(request);
-                lastResponse = call.execute();
+                // the rate limit pool may be shared between shards, let it compensate for the blocked thread
+                lastResponse = SharedSchedulerLane.managedBlock(call::execute);
                 responses[attempt] = lastResponse;
                 String cfRay = lastResponse.header("CF-RAY");
                 if (cfRay != null)
@@ -45,6 +45,8 @@ import net.dv8tion.jda.internal.utils.IOUtil;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import net.dv8tion.jda.internal.utils.UnlockHook;
 import net.dv8tion.jda.internal.utils.cache.AbstractCacheView;
+import net.dv8tion.jda.internal.utils.cache.CrossShardIndex;
+import net.dv8tion.jda.internal.utils.cache.SharedUserCache;
 import net.dv8tion.jda.internal.utils.compress.Decompressor;
 import net.dv8tion.jda.internal.utils.compress.ZlibDecompressor;
 import org.slf4j.Logger;
@@ -104,7 +106,7 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
     protected long identifyTime = 0;
 
     protected final TLongObjectMap<ConnectionRequest> queuedAudioConnections = MiscUtil.newLongMap();
-    protected final Queue<DataObject> chunkSyncQueue = new ConcurrentLinkedQueue<>();
+    protected final ChunkRequestScheduler chunkSyncQueue = new ChunkRequestScheduler();
     protected final Queue<DataObject> ratelimitQueue = new ConcurrentLinkedQueue<>();
 
     protected volatile long ratelimitResetTime;
@@ -246,6 +248,21 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         locked("Interrupted while trying to add chunk request", () -> chunkSyncQueue.add(request));
     }
 
+    public void sendChunkRequest(DataObject request, int priority, int memberCount)
+    {
+        locked("Interrupted while trying to add chunk request", () -> chunkSyncQueue.add(request, priority, memberCount));
+    }
+
+    public void promoteChunkRequest(long guildId)
+    {
+        locked("Interrupted while trying to promote chunk request", () -> chunkSyncQueue.promote(guildId));
+    }
+
+    public ChunkRequestScheduler getChunkScheduler()
+    {
+        return chunkSyncQueue;
+    }
+
     protected boolean send(DataObject message, boolean skipQueue)
     {
         if (!connected)
@@ -751,8 +768,14 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         api.getStoreChannelsView().clear();
         api.getCategoriesView().clear();
         api.getGuildsView().clear();
+        SharedUserCache sharedUsers = api.getSharedUserCache();
+        if (sharedUsers != null)
+            sharedUsers.releaseAll(api);
         api.getUsersView().clear();
         api.getPrivateChannelsView().clear();
+        CrossShardIndex index = api.getCrossShardIndex();
+        if (index != null)
+            index.clearShard(api.getShardInfo().getShardId(), api.getShardInfo().getShardTotal());
         api.getEventCache().clear();
         api.getGuildSetupController().clearCache();
         chunkManager.clear();
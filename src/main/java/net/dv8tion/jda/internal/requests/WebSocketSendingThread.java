@@ -42,7 +42,7 @@ class WebSocketSendingThread implements Runnable
     private final WebSocketClient client;
     private final JDAImpl api;
     private final ReentrantLock queueLock;
-    private final Queue<DataObject> chunkQueue;
+    private final ChunkRequestScheduler chunkQueue;
     private final Queue<DataObject> ratelimitQueue;
     private final TLongObjectMap<ConnectionRequest> queuedAudioConnections;
     private final ScheduledExecutorService executor;
@@ -87,14 +87,16 @@ class WebSocketSendingThread implements Runnable
     {
         if (shutdown)
             return;
-        handle = executor.schedule(this, 10, TimeUnit.MILLISECONDS);
+        handle = executor.schedule(this, ChunkRequestScheduler.SEND_INTERVAL, TimeUnit.MILLISECONDS);
     }
 
     private void scheduleRateLimit()
     {
         if (shutdown)
             return;
-        handle = executor.schedule(this, 1, TimeUnit.MINUTES);
+        // wait for the current window to reset, instead of a full minute after hitting the limit
+        long delay = Math.max(ChunkRequestScheduler.SEND_INTERVAL, client.ratelimitResetTime - System.currentTimeMillis());
+        handle = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -122,7 +124,9 @@ class WebSocketSendingThread implements Runnable
                 return;
             }
 
-            chunkRequest = chunkQueue.peek();
+            // chunk requests have a separate budget, so presence and voice updates are not delayed by a chunking burst
+            if (chunkQueue.hasBudget(System.currentTimeMillis(), client.ratelimitResetTime))
+                chunkRequest = chunkQueue.peek();
             if (chunkRequest != null)
                 handleChunkSync(chunkRequest);
             else if (audioRequest != null)
@@ -192,7 +196,10 @@ class WebSocketSendingThread implements Runnable
         );
 
         if (success)
-            chunkQueue.remove();
+        {
+            chunkQueue.remove(chunkOrSyncRequest);
+            chunkQueue.onSent(client.ratelimitResetTime);
+        }
     }
 
     private void handleAudioRequest(ConnectionRequest audioRequest)
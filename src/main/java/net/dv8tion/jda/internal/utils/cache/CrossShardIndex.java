@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.utils.cache;
+
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import net.dv8tion.jda.api.utils.MiscUtil;
+import net.dv8tion.jda.internal.utils.UnlockHook;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index shared by all shards of a {@link net.dv8tion.jda.api.sharding.DefaultShardManager DefaultShardManager}
+ * to resolve entities without iterating the cache of every shard.
+ *
+ * <p>Guild entities (channels, roles, and emotes) are mapped to the id of their guild,
+ * the shard of the guild can then be computed with {@link net.dv8tion.jda.api.utils.MiscUtil#getShardForGuild(long, int)}.
+ * These mappings are maintained by the entity builder and the handlers which remove entities.
+ *
+ * <p>Users are mapped to the last shard that loaded them.
+ * Since users can be cached by multiple shards at once, this mapping is only a hint and has to be verified on lookup.
+ *
+ * <p>All shards write to this index while loading their guilds, so the ids are split into stripes with their own lock.
+ */
+public class CrossShardIndex
+{
+    private static final int STRIPES = 32;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public CrossShardIndex()
+    {
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe();
+    }
+
+    /**
+     * Maps a channel, role, or emote id to the guild it belongs to.
+     *
+     * @param id
+     *        The entity id
+     * @param guildId
+     *        The guild id
+     */
+    public void putGuildEntity(long id, long guildId)
+    {
+        Stripe stripe = getStripe(id);
+        try (UnlockHook hook = stripe.writeLock())
+        {
+            stripe.guildEntities.put(id, guildId);
+        }
+    }
+
+    public void removeGuildEntity(long id)
+    {
+        Stripe stripe = getStripe(id);
+        try (UnlockHook hook = stripe.writeLock())
+        {
+            stripe.guildEntities.remove(id);
+        }
+    }
+
+    /**
+     * The guild id for the provided channel, role, or emote id.
+     *
+     * @param  id
+     *         The entity id
+     *
+     * @return The guild id, or 0 if the entity is unknown
+     */
+    public long getGuildForEntity(long id)
+    {
+        Stripe stripe = getStripe(id);
+        try (UnlockHook hook = stripe.readLock())
+        {
+            return stripe.guildEntities.get(id);
+        }
+    }
+
+    public void putUser(long userId, int shardId)
+    {
+        Stripe stripe = getStripe(userId);
+        try (UnlockHook hook = stripe.writeLock())
+        {
+            stripe.users.put(userId, shardId);
+        }
+    }
+
+    /**
+     * The shard which last loaded the provided user.
+     *
+     * @param  userId
+     *         The user id
+     *
+     * @return The shard id, or -1 if the user is unknown
+     */
+    public int getShardForUser(long userId)
+    {
+        Stripe stripe = getStripe(userId);
+        try (UnlockHook hook = stripe.readLock())
+        {
+            return stripe.users.get(userId);
+        }
+    }
+
+    public void removeUser(long userId, int shardId)
+    {
+        Stripe stripe = getStripe(userId);
+        try (UnlockHook hook = stripe.writeLock())
+        {
+            // Only remove the hint if it points to this shard, another shard might still have this user cached
+            if (stripe.users.get(userId) == shardId)
+                stripe.users.remove(userId);
+        }
+    }
+
+    /**
+     * Removes all users and guild entities of the provided shard.
+     * <br>This is used when the shard is invalidated and drops its entire cache.
+     *
+     * @param shardId
+     *        The shard id
+     * @param shardTotal
+     *        The shard total, used to compute the shard of each guild
+     */
+    public void clearShard(int shardId, int shardTotal)
+    {
+        for (Stripe stripe : stripes)
+        {
+            try (UnlockHook hook = stripe.writeLock())
+            {
+                stripe.users.retainEntries((userId, shard) -> shard != shardId);
+                stripe.guildEntities.retainEntries((id, guildId) -> MiscUtil.getShardForGuild(guildId, shardTotal) != shardId);
+            }
+        }
+    }
+
+    private Stripe getStripe(long id)
+    {
+        // the low bits of a snowflake are a per-process increment, so mix in the timestamp bits as well
+        int hash = (int) (id ^ (id >>> 32));
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return stripes[hash & (STRIPES - 1)];
+    }
+
+    private static class Stripe
+    {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final TLongLongMap guildEntities = new TLongLongHashMap();
+        private final TLongIntMap users = new TLongIntHashMap(16, 0.5f, 0, -1);
+
+        private UnlockHook readLock()
+        {
+            ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+            readLock.lock();
+            return new UnlockHook(readLock);
+        }
+
+        private UnlockHook writeLock()
+        {
+            ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+            writeLock.lock();
+            return new UnlockHook(writeLock);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.utils.cache.MemberCacheView;
 import net.dv8tion.jda.internal.utils.Checks;
+import net.dv8tion.jda.internal.utils.UnlockHook;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -27,11 +28,77 @@ import java.util.*;
 
 public class MemberCacheViewImpl extends SnowflakeCacheViewImpl<Member> implements MemberCacheView
 {
+    private volatile MemberIndex index;
+
     public MemberCacheViewImpl()
     {
         super(Member.class, Member::getEffectiveName);
     }
 
+    public void enableIndex()
+    {
+        try (UnlockHook hook = writeLock())
+        {
+            if (index != null)
+                return;
+            MemberIndex index = new MemberIndex();
+            elements.forEachValue(member -> {
+                index.add(member);
+                return true;
+            });
+            this.index = index;
+        }
+    }
+
+    public boolean isIndexed()
+    {
+        return index != null;
+    }
+
+    // Updates the indexes after the name, nickname, or roles of a cached member changed
+    public void updateIndex(Member member)
+    {
+        if (index == null)
+            return;
+        try (UnlockHook hook = writeLock())
+        {
+            if (elements.get(member.getIdLong()) == member)
+                index.add(member);
+        }
+    }
+
+    public void removeRoleIndex(long roleId)
+    {
+        if (index == null)
+            return;
+        try (UnlockHook hook = writeLock())
+        {
+            index.removeRole(roleId);
+        }
+    }
+
+    @Override
+    public Member remove(long id)
+    {
+        try (UnlockHook hook = writeLock())
+        {
+            if (index != null)
+                index.remove(id);
+            return super.remove(id);
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        try (UnlockHook hook = writeLock())
+        {
+            if (index != null)
+                index.clear();
+            super.clear();
+        }
+    }
+
     @Override
     public Member getElementById(long id)
     {
@@ -46,6 +113,18 @@ public class MemberCacheViewImpl extends SnowflakeCacheViewImpl<Member> implemen
         if (isEmpty())
             return Collections.emptyList();
         List<Member> members = new ArrayList<>();
+        if (index != null)
+        {
+            try (UnlockHook hook = readLock())
+            {
+                for (Member member : index.getByName(name))
+                {
+                    if (equals(ignoreCase, member.getUser().getName(), name))
+                        members.add(member);
+                }
+            }
+            return Collections.unmodifiableList(members);
+        }
         forEach(member ->
         {
             final String nick = member.getUser().getName();
@@ -62,6 +141,19 @@ public class MemberCacheViewImpl extends SnowflakeCacheViewImpl<Member> implemen
         if (isEmpty())
             return Collections.emptyList();
         List<Member> members = new ArrayList<>();
+        if (index != null && name != null)
+        {
+            try (UnlockHook hook = readLock())
+            {
+                for (Member member : index.getByName(name))
+                {
+                    String nick = member.getNickname();
+                    if (nick != null && equals(ignoreCase, nick, name))
+                        members.add(member);
+                }
+            }
+            return Collections.unmodifiableList(members);
+        }
         forEach(member ->
         {
             final String nick = member.getNickname();
@@ -78,6 +170,39 @@ public class MemberCacheViewImpl extends SnowflakeCacheViewImpl<Member> implemen
         return Collections.unmodifiableList(members);
     }
 
+    @Nonnull
+    @Override
+    public List<Member> getElementsByName(@Nonnull String name, boolean ignoreCase)
+    {
+        if (index == null)
+            return Collections.unmodifiableList(super.getElementsByName(name, ignoreCase));
+        Checks.notEmpty(name, "Name");
+        List<Member> members = new ArrayList<>();
+        try (UnlockHook hook = readLock())
+        {
+            for (Member member : index.getByName(name))
+            {
+                if (equals(ignoreCase, member.getEffectiveName(), name))
+                    members.add(member);
+            }
+        }
+        return Collections.unmodifiableList(members);
+    }
+
+    @Nonnull
+    @Override
+    public List<Member> getElementsByPrefix(@Nonnull String prefix, int limit)
+    {
+        if (index == null)
+            return MemberCacheView.super.getElementsByPrefix(prefix, limit);
+        Checks.notEmpty(prefix, "Prefix");
+        Checks.positive(limit, "Limit");
+        try (UnlockHook hook = readLock())
+        {
+            return Collections.unmodifiableList(index.getByPrefix(prefix, limit));
+        }
+    }
+
     @Nonnull
     @Override
     public List<Member> getElementsWithRoles(@Nonnull Role... roles)
@@ -93,12 +218,31 @@ public class MemberCacheViewImpl extends SnowflakeCacheViewImpl<Member> implemen
         Checks.noneNull(roles, "Roles");
         if (isEmpty())
             return Collections.emptyList();
+        if (index != null && !roles.isEmpty())
+        {
+            try (UnlockHook hook = readLock())
+            {
+                // start with the smallest role and check the other roles for each of its members
+                List<Set<Member>> sets = new ArrayList<>(roles.size());
+                for (Role role : roles)
+                    sets.add(index.getByRole(role.getIdLong()));
+                sets.sort(Comparator.comparingInt(Set::size));
+                List<Member> members = new ArrayList<>();
+                for (Member member : sets.get(0))
+                {
+                    // the roles of the member are checked again, the index only narrows down the candidates
+                    if (sets.stream().allMatch(set -> set.contains(member)) && member.getRoles().containsAll(roles))
+                        members.add(member);
+                }
+                return Collections.unmodifiableList(members);
+            }
+        }
         List<Member> members = new ArrayList<>();
         forEach(member ->
         {
             if (member.getRoles().containsAll(roles))
                 members.add(member);
         });
-        return members;
+        return Collections.unmodifiableList(members);
     }
 }
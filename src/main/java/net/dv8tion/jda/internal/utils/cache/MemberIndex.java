@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.utils.cache;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+
+import java.util.*;
+
+// Secondary indexes of a MemberCacheViewImpl, guarded by the lock of the view
+class MemberIndex
+{
+    // user names and nicknames, the comparator matches String#equalsIgnoreCase
+    private final TreeMap<String, Set<Member>> names = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final TLongObjectMap<Set<Member>> roles = new TLongObjectHashMap<>();
+    // the indexed state of each member, which is required to remove outdated keys
+    private final TLongObjectMap<Entry> entries = new TLongObjectHashMap<>();
+
+    void add(Member member)
+    {
+        remove(member.getIdLong());
+        List<Role> memberRoles = member.getRoles();
+        long[] roleIds = new long[memberRoles.size()];
+        for (int i = 0; i < roleIds.length; i++)
+            roleIds[i] = memberRoles.get(i).getIdLong();
+        Entry entry = new Entry(member, member.getUser().getName(), member.getNickname(), roleIds);
+        entries.put(member.getIdLong(), entry);
+
+        names.computeIfAbsent(entry.username, k -> new HashSet<>()).add(member);
+        if (entry.nickname != null)
+            names.computeIfAbsent(entry.nickname, k -> new HashSet<>()).add(member);
+        for (long roleId : roleIds)
+        {
+            Set<Member> set = roles.get(roleId);
+            if (set == null)
+                roles.put(roleId, set = new HashSet<>());
+            set.add(member);
+        }
+    }
+
+    void remove(long id)
+    {
+        Entry entry = entries.remove(id);
+        if (entry == null)
+            return;
+        removeName(entry.username, entry.member);
+        if (entry.nickname != null)
+            removeName(entry.nickname, entry.member);
+        for (long roleId : entry.roles)
+        {
+            Set<Member> set = roles.get(roleId);
+            if (set == null)
+                continue;
+            set.remove(entry.member);
+            if (set.isEmpty())
+                roles.remove(roleId);
+        }
+    }
+
+    void removeRole(long roleId)
+    {
+        roles.remove(roleId);
+    }
+
+    void clear()
+    {
+        names.clear();
+        roles.clear();
+        entries.clear();
+    }
+
+    // Members with a user name or nickname equal to the name, ignoring case
+    Set<Member> getByName(String name)
+    {
+        return names.getOrDefault(name, Collections.emptySet());
+    }
+
+    // Members with a user name or nickname starting with the prefix, ignoring case, ordered by name
+    List<Member> getByPrefix(String prefix, int limit)
+    {
+        Set<Member> result = new LinkedHashSet<>();
+        SortedMap<String, Set<Member>> range = names.subMap(prefix, prefix + Character.MAX_VALUE);
+        for (Set<Member> members : range.values())
+        {
+            for (Member member : members)
+            {
+                // skip members whose name changed since they were indexed
+                if (!startsWith(member.getUser().getName(), prefix) && !startsWith(member.getNickname(), prefix))
+                    continue;
+                result.add(member);
+                if (result.size() >= limit)
+                    return new ArrayList<>(result);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    Set<Member> getByRole(long roleId)
+    {
+        Set<Member> set = roles.get(roleId);
+        return set == null ? Collections.emptySet() : set;
+    }
+
+    private static boolean startsWith(String name, String prefix)
+    {
+        return name != null && name.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private void removeName(String name, Member member)
+    {
+        Set<Member> set = names.get(name);
+        if (set == null)
+            return;
+        set.remove(member);
+        if (set.isEmpty())
+            names.remove(name);
+    }
+
+    private static class Entry
+    {
+        private final Member member;
+        private final String username;
+        private final String nickname;
+        private final long[] roles;
+
+        private Entry(Member member, String username, String nickname, long[] roles)
+        {
+            this.member = member;
+            this.username = username;
+            this.nickname = nickname;
+            this.roles = roles;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.utils.cache;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TLongSet;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.UserImpl;
+import net.dv8tion.jda.internal.utils.UnlockHook;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * User cache shared by all shards of a {@link net.dv8tion.jda.api.sharding.DefaultShardManager DefaultShardManager}.
+ *
+ * <p>Every shard still has its own user cache, but all of them hold the same {@link UserImpl} instance for an account.
+ * This cache tracks which shards currently hold each user and evicts the user once the last shard released it.
+ * A shared user is bound to one of the shards holding it, which is replaced when that shard releases the user.
+ * This means {@link User#getJDA()} can return a different shard between two calls.
+ */
+public class SharedUserCache extends SnowflakeCacheViewImpl<User>
+{
+    // the shards holding each user, most users are only held by one or two shards
+    protected final TLongObjectMap<JDAImpl[]> holders = new TLongObjectHashMap<>();
+    protected final Supplier<? extends Stream<? extends JDA>> shards;
+
+    public SharedUserCache(Supplier<? extends Stream<? extends JDA>> shards)
+    {
+        super(User.class, User::getName);
+        this.shards = shards;
+    }
+
+    /**
+     * The shards of the shard manager, which can hold the shared users.
+     *
+     * @return Stream of the shards
+     */
+    public Stream<? extends JDA> getShards()
+    {
+        return shards.get();
+    }
+
+    /**
+     * The number of shards currently holding the user with the provided id.
+     *
+     * @param  id
+     *         The user id
+     *
+     * @return The number of shards holding the user
+     */
+    public int getReferenceCount(long id)
+    {
+        try (UnlockHook hook = readLock())
+        {
+            JDAImpl[] current = holders.get(id);
+            return current == null ? 0 : current.length;
+        }
+    }
+
+    /**
+     * Adds a reference from the provided shard to the user.
+     * <br>If another shard already holds a user with the same id, that instance is returned instead.
+     *
+     * @param  user
+     *         The user to add
+     * @param  shard
+     *         The shard which caches the user
+     *
+     * @return The shared user instance
+     */
+    public UserImpl acquire(UserImpl user, JDAImpl shard)
+    {
+        final long id = user.getIdLong();
+        try (UnlockHook hook = writeLock())
+        {
+            UserImpl current = (UserImpl) elements.get(id);
+            if (current == null)
+                elements.put(id, current = user);
+            JDAImpl[] held = holders.get(id);
+            if (held == null)
+            {
+                holders.put(id, new JDAImpl[] { shard });
+            }
+            else if (indexOf(held, shard) < 0)
+            {
+                held = Arrays.copyOf(held, held.length + 1);
+                held[held.length - 1] = shard;
+                holders.put(id, held);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Removes the reference of the provided shard to the user.
+     * <br>If the user was bound to that shard, it is bound to one of the remaining shards instead.
+     *
+     * @param  id
+     *         The user id
+     * @param  shard
+     *         The shard which released the user
+     *
+     * @return True, if this was the last reference and the user has been evicted
+     */
+    public boolean release(long id, JDAImpl shard)
+    {
+        try (UnlockHook hook = writeLock())
+        {
+            UserImpl user = (UserImpl) elements.get(id);
+            if (user == null)
+                return true;
+            JDAImpl[] held = holders.get(id);
+            int index = held == null ? -1 : indexOf(held, shard);
+            if (index < 0)
+                return held == null;
+            if (held.length == 1)
+            {
+                holders.remove(id);
+                elements.remove(id);
+                return true;
+            }
+
+            JDAImpl[] remaining = new JDAImpl[held.length - 1];
+            System.arraycopy(held, 0, remaining, 0, index);
+            System.arraycopy(held, index + 1, remaining, index, remaining.length - index);
+            holders.put(id, remaining);
+            if (user.getJDA() == shard)
+                user.setJDA(remaining[0]);
+            return false;
+        }
+    }
+
+    /**
+     * Releases every user currently cached by the provided shard.
+     * <br>This is used when a shard is invalidated or shut down, after it stopped handling events.
+     *
+     * @param shard
+     *        The shard
+     */
+    public void releaseAll(JDAImpl shard)
+    {
+        TLongSet ids = shard.getUsersView().keySet();
+        if (ids.isEmpty())
+            return;
+        long selfId = shard.getSelfUser().getIdLong();
+        ids.forEach(id -> {
+            if (id != selfId) // the self user is never shared
+                release(id, shard);
+            return true;
+        });
+    }
+
+    private static int indexOf(JDAImpl[] held, JDAImpl shard)
+    {
+        for (int i = 0; i < held.length; i++)
+        {
+            if (held[i] == shard)
+                return i;
+        }
+        return -1;
+    }
+}
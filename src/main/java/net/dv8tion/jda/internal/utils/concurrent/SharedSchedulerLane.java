@@ -0,0 +1,458 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.utils.concurrent;
+
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.slf4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A {@link ScheduledExecutorService} view of a thread pool that is shared between many shards.
+ *
+ * <p>Every lane has its own task queue. Tasks are executed by draining the queue on the shared executor,
+ * with at most {@code parallelism} concurrent drains per lane. A drain only runs {@code quantum} tasks
+ * before it yields, this way a busy lane cannot starve the other lanes of the pool.
+ * A worker of a {@link ForkJoinPool} would push the next drain to its own local queue and run it right away,
+ * so a yielding drain is resubmitted from the timer thread instead, which puts it behind the drains of the other lanes.
+ *
+ * <p>Tasks which block a worker, like HTTP requests, should use {@link #managedBlock(BlockingCall)}
+ * so the {@link ForkJoinPool} can add a thread while the worker is blocked.
+ *
+ * <p>Delayed tasks are armed on the shared timer and only enter the lane queue once they are due.
+ * Shutting down a lane never affects the shared executor or timer.
+ */
+public class SharedSchedulerLane extends AbstractExecutorService implements ScheduledExecutorService
+{
+    public static final Logger LOG = JDALogger.getLog(SharedSchedulerLane.class);
+
+    private static final int RUNNING = 0, SHUTDOWN = 1, STOP = 2;
+
+    private final Executor workers;
+    private final ScheduledExecutorService timer;
+    private final int parallelism;
+    private final int quantum;
+    private final Consumer<? super SharedSchedulerLane> onTermination;
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final Set<LaneTask<?>> delayed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicInteger activeDrains = new AtomicInteger();
+    private final CountDownLatch termination = new CountDownLatch(1);
+    private volatile int state = RUNNING;
+
+    public SharedSchedulerLane(@Nonnull Executor workers, @Nonnull ScheduledExecutorService timer, int parallelism, int quantum)
+    {
+        this(workers, timer, parallelism, quantum, null);
+    }
+
+    public SharedSchedulerLane(@Nonnull Executor workers, @Nonnull ScheduledExecutorService timer, int parallelism, int quantum,
+                               Consumer<? super SharedSchedulerLane> onTermination)
+    {
+        this.workers = workers;
+        this.timer = timer;
+        this.parallelism = parallelism;
+        this.quantum = quantum;
+        this.onTermination = onTermination;
+    }
+
+    /**
+     * Runs a blocking call. If the current thread is a worker of a {@link ForkJoinPool},
+     * the pool may start a spare thread while this one is blocked, so the other lanes keep running.
+     *
+     * @param  call
+     *         The blocking call
+     * @param  <T>
+     *         The result type
+     * @param  <E>
+     *         The exception thrown by the call
+     *
+     * @throws E
+     *         If the call failed
+     *
+     * @return The result of the call
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, E extends Exception> T managedBlock(BlockingCall<T, E> call) throws E
+    {
+        if (!ForkJoinTask.inForkJoinPool())
+            return call.call();
+
+        CallBlocker<T> blocker = new CallBlocker<>(call);
+        try
+        {
+            ForkJoinPool.managedBlock(blocker);
+        }
+        catch (InterruptedException e)
+        {
+            // only thrown by ManagedBlocker#block, which never throws it here
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        if (blocker.error instanceof RuntimeException)
+            throw (RuntimeException) blocker.error;
+        if (blocker.error != null)
+            throw (E) blocker.error;
+        return blocker.result;
+    }
+
+    /**
+     * The amount of tasks that are due and waiting for a worker.
+     *
+     * @return The queue depth
+     */
+    public int getQueueSize()
+    {
+        return queueSize.get();
+    }
+
+    /**
+     * The amount of delayed or periodic tasks that are not due yet.
+     *
+     * @return The amount of delayed tasks
+     */
+    public int getDelayedSize()
+    {
+        return delayed.size();
+    }
+
+    @Override
+    public void execute(@Nonnull Runnable command)
+    {
+        if (state != RUNNING)
+            throw new RejectedExecutionException("Lane has been shutdown");
+        enqueue(command);
+    }
+
+    private void enqueue(Runnable command)
+    {
+        queue.add(command);
+        queueSize.incrementAndGet();
+        scheduleDrain();
+    }
+
+    private void scheduleDrain()
+    {
+        while (true)
+        {
+            int active = activeDrains.get();
+            if (active >= parallelism || queue.isEmpty())
+                return;
+            if (!activeDrains.compareAndSet(active, active + 1))
+                continue;
+            try
+            {
+                workers.execute(this::drain);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                // the shared pool is gone, nothing will ever run this lane again
+                activeDrains.decrementAndGet();
+                LOG.error("Shared executor rejected lane drain, dropping {} tasks", shutdownNow().size(), ex);
+                return;
+            }
+        }
+    }
+
+    private void drain()
+    {
+        int executed = 0;
+        try
+        {
+            for (; executed < quantum && state != STOP; executed++)
+            {
+                Runnable task = queue.poll();
+                if (task == null)
+                    break;
+                queueSize.decrementAndGet();
+                try
+                {
+                    task.run();
+                }
+                catch (Throwable t)
+                {
+                    LOG.error("Uncaught exception in lane task", t);
+                    if (t instanceof Error)
+                        throw (Error) t;
+                }
+            }
+        }
+        finally
+        {
+            activeDrains.decrementAndGet();
+            if (executed == quantum && workers instanceof ForkJoinPool && ForkJoinTask.inForkJoinPool())
+                yieldDrain();
+            else
+                scheduleDrain();
+            tryTerminate();
+        }
+    }
+
+    // The timer thread is not a worker, its submission goes behind the drains of the other lanes
+    private void yieldDrain()
+    {
+        try
+        {
+            timer.execute(this::scheduleDrain);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            scheduleDrain();
+        }
+    }
+
+    private void tryTerminate()
+    {
+        if (state == RUNNING || termination.getCount() == 0)
+            return;
+        if (activeDrains.get() == 0 && queue.isEmpty() && delayed.isEmpty())
+        {
+            // before the count down, threads waiting for the termination see its effects
+            if (onTermination != null)
+                onTermination.accept(this);
+            termination.countDown();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public ScheduledFuture<?> schedule(@Nonnull Runnable command, long delay, @Nonnull TimeUnit unit)
+    {
+        return arm(new LaneTask<>(Executors.callable(command, null), triggerTime(delay, unit), 0));
+    }
+
+    @Nonnull
+    @Override
+    public <V> ScheduledFuture<V> schedule(@Nonnull Callable<V> callable, long delay, @Nonnull TimeUnit unit)
+    {
+        return arm(new LaneTask<>(callable, triggerTime(delay, unit), 0));
+    }
+
+    @Nonnull
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(@Nonnull Runnable command, long initialDelay, long period, @Nonnull TimeUnit unit)
+    {
+        if (period <= 0)
+            throw new IllegalArgumentException("Period must be positive");
+        return arm(new LaneTask<>(Executors.callable(command, null), triggerTime(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Nonnull
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(@Nonnull Runnable command, long initialDelay, long delay, @Nonnull TimeUnit unit)
+    {
+        if (delay <= 0)
+            throw new IllegalArgumentException("Delay must be positive");
+        return arm(new LaneTask<>(Executors.callable(command, null), triggerTime(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    private static long triggerTime(long delay, TimeUnit unit)
+    {
+        return System.nanoTime() + unit.toNanos(Math.max(delay, 0));
+    }
+
+    private <V> LaneTask<V> arm(LaneTask<V> task)
+    {
+        if (state != RUNNING)
+            throw new RejectedExecutionException("Lane has been shutdown");
+        delayed.add(task);
+        task.arm();
+        return task;
+    }
+
+    @Override
+    public void shutdown()
+    {
+        if (state == RUNNING)
+            state = SHUTDOWN;
+        // Like ScheduledThreadPoolExecutor, delayed tasks still run after shutdown but periodic tasks are cancelled
+        for (LaneTask<?> task : delayed)
+        {
+            if (task.isPeriodic())
+                task.cancel(false);
+        }
+        tryTerminate();
+    }
+
+    @Nonnull
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        state = STOP;
+        List<Runnable> remaining = new ArrayList<>();
+        for (LaneTask<?> task : delayed)
+        {
+            if (task.cancel(false))
+                remaining.add(task);
+        }
+        Runnable task;
+        while ((task = queue.poll()) != null)
+        {
+            queueSize.decrementAndGet();
+            remaining.add(task);
+        }
+        tryTerminate();
+        return remaining;
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        return state != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        return termination.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException
+    {
+        return termination.await(timeout, unit);
+    }
+
+    /**
+     * A call which blocks the current thread.
+     *
+     * @param <T>
+     *        The result type
+     * @param <E>
+     *        The exception thrown by the call
+     */
+    @FunctionalInterface
+    public interface BlockingCall<T, E extends Exception>
+    {
+        T call() throws E;
+    }
+
+    private static class CallBlocker<T> implements ForkJoinPool.ManagedBlocker
+    {
+        private final BlockingCall<T, ?> call;
+        private boolean done;
+        private T result;
+        private Exception error;
+
+        private CallBlocker(BlockingCall<T, ?> call)
+        {
+            this.call = call;
+        }
+
+        @Override
+        public boolean block()
+        {
+            try
+            {
+                result = call.call();
+            }
+            catch (Exception e)
+            {
+                error = e;
+            }
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable()
+        {
+            return done;
+        }
+    }
+
+    private class LaneTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V>
+    {
+        // positive for fixed rate, negative for fixed delay, 0 for one-shot tasks
+        private final long period;
+        private volatile long time;
+        private volatile ScheduledFuture<?> timerHandle;
+
+        private LaneTask(Callable<V> callable, long time, long period)
+        {
+            super(callable);
+            this.time = time;
+            this.period = period;
+        }
+
+        private void arm()
+        {
+            timerHandle = timer.schedule(() -> {
+                if (state != STOP && !isDone())
+                    enqueue(this);
+            }, time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean isPeriodic()
+        {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay(@Nonnull TimeUnit unit)
+        {
+            return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(@Nonnull Delayed other)
+        {
+            if (other == this)
+                return 0;
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public void run()
+        {
+            if (!isPeriodic())
+            {
+                super.run();
+                delayed.remove(this);
+            }
+            else if (state == RUNNING && runAndReset())
+            {
+                time = period > 0 ? time + period : System.nanoTime() - period;
+                arm();
+            }
+            else
+            {
+                cancel(false);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            ScheduledFuture<?> handle = timerHandle;
+            if (handle != null)
+                handle.cancel(false);
+            delayed.remove(this);
+            tryTerminate();
+            return cancelled;
+        }
+    }
+}
@@ -113,6 +113,31 @@ public class SessionConfig
         return flags.contains(ConfigFlag.USE_RELATIVE_RATELIMIT);
     }
 
+    public boolean isNioAudio()
+    {
+        return flags.contains(ConfigFlag.NIO_AUDIO);
+    }
+
+    public boolean isAudioDecodePool()
+    {
+        return flags.contains(ConfigFlag.AUDIO_DECODE_POOL);
+    }
+
+    public boolean isSharedVoiceSocket()
+    {
+        return flags.contains(ConfigFlag.SHARED_VOICE_SOCKET);
+    }
+
+    public boolean isStreamingGuildSetup()
+    {
+        return flags.contains(ConfigFlag.STREAMING_GUILD_SETUP);
+    }
+
+    public boolean isMemberIndex()
+    {
+        return flags.contains(ConfigFlag.MEMBER_INDEX);
+    }
+
     public int getMaxReconnectDelay()
     {
         return maxReconnectDelay;
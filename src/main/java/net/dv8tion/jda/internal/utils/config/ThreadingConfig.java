@@ -16,7 +16,10 @@
 
 package net.dv8tion.jda.internal.utils.config;
 
+import net.dv8tion.jda.api.hooks.EventBackpressure;
+import net.dv8tion.jda.api.hooks.PartitionedEventExecutor;
 import net.dv8tion.jda.internal.utils.concurrent.CountingThreadFactory;
+import net.dv8tion.jda.internal.utils.concurrent.SharedSchedulerLane;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -32,6 +35,8 @@ public class ThreadingConfig
     private ExecutorService callbackPool;
     private ExecutorService eventPool;
     private ScheduledExecutorService audioPool;
+    private PartitionedEventExecutor partitionedEventPool;
+    private EventBackpressure eventBackpressure;
 
     private boolean shutdownRateLimitPool;
     private boolean shutdownGatewayPool;
@@ -79,6 +84,16 @@ public class ThreadingConfig
         this.shutdownAudioPool = shutdown;
     }
 
+    public void setPartitionedEventPool(@Nullable PartitionedEventExecutor executor)
+    {
+        this.partitionedEventPool = executor;
+    }
+
+    public void setEventBackpressure(@Nullable EventBackpressure backpressure)
+    {
+        this.eventBackpressure = backpressure;
+    }
+
     public void init(@Nonnull Supplier<String> identifier)
     {
         if (this.rateLimitPool == null)
@@ -105,8 +120,9 @@ public class ThreadingConfig
                 executor.setKeepAliveTime(5L, TimeUnit.SECONDS);
                 executor.allowCoreThreadTimeOut(true);
             }
-            else
+            else if (!(rateLimitPool instanceof SharedSchedulerLane))
             {
+                // lanes don't own any threads, they are closed by shutdownRequester once all requests are done
                 rateLimitPool.shutdown();
             }
         }
@@ -156,6 +172,18 @@ public class ThreadingConfig
         return eventPool;
     }
 
+    @Nullable
+    public PartitionedEventExecutor getPartitionedEventPool()
+    {
+        return partitionedEventPool;
+    }
+
+    @Nullable
+    public EventBackpressure getEventBackpressure()
+    {
+        return eventBackpressure;
+    }
+
     @Nullable
     public ScheduledExecutorService getAudioPool(@Nonnull Supplier<String> identifier)
     {
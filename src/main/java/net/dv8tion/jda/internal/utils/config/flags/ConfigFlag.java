@@ -26,7 +26,12 @@ public enum ConfigFlag
     BULK_DELETE_SPLIT(true),
     SHUTDOWN_HOOK(true),
     MDC_CONTEXT(true),
-    AUTO_RECONNECT(true);
+    AUTO_RECONNECT(true),
+    NIO_AUDIO,
+    AUDIO_DECODE_POOL,
+    SHARED_VOICE_SOCKET,
+    STREAMING_GUILD_SETUP,
+    MEMBER_INDEX;
 
     private final boolean isDefault;
 
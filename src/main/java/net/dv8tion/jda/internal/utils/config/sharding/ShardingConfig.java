@@ -20,12 +20,15 @@ import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.utils.MemberCachePolicy;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
 
 public class ShardingConfig
 {
-    private int shardsTotal;
+    private volatile int shardsTotal;
     private int intents;
     private MemberCachePolicy memberCachePolicy;
+    private File snapshotDirectory;
     private final boolean useShutdownNow;
 
     public ShardingConfig(int shardsTotal, boolean useShutdownNow, int intents, MemberCachePolicy memberCachePolicy)
@@ -56,6 +59,17 @@ public class ShardingConfig
         return memberCachePolicy;
     }
 
+    public void setSnapshotDirectory(@Nullable File snapshotDirectory)
+    {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    @Nullable
+    public File getSnapshotDirectory()
+    {
+        return snapshotDirectory;
+    }
+
     public boolean isUseShutdownNow()
     {
         return useShutdownNow;
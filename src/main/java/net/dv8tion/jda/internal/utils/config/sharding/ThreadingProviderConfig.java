@@ -16,6 +16,8 @@
 
 package net.dv8tion.jda.internal.utils.config.sharding;
 
+import net.dv8tion.jda.api.hooks.EventBackpressure;
+import net.dv8tion.jda.api.hooks.PartitionedEventExecutor;
 import net.dv8tion.jda.api.sharding.ThreadPoolProvider;
 
 import javax.annotation.Nonnull;
@@ -32,6 +34,8 @@ public class ThreadingProviderConfig
     private final ThreadPoolProvider<? extends ExecutorService> eventPoolProvider;
     private final ThreadPoolProvider<? extends ScheduledExecutorService> audioPoolProvider;
     private final ThreadFactory threadFactory;
+    private PartitionedEventExecutor partitionedEventPool;
+    private EventBackpressure eventBackpressure;
 
     public ThreadingProviderConfig(
             @Nullable ThreadPoolProvider<? extends ScheduledExecutorService> rateLimitPoolProvider,
@@ -85,6 +89,28 @@ public class ThreadingProviderConfig
         return audioPoolProvider;
     }
 
+    public void setPartitionedEventPool(@Nullable PartitionedEventExecutor partitionedEventPool)
+    {
+        this.partitionedEventPool = partitionedEventPool;
+    }
+
+    public void setEventBackpressure(@Nullable EventBackpressure eventBackpressure)
+    {
+        this.eventBackpressure = eventBackpressure;
+    }
+
+    @Nullable
+    public PartitionedEventExecutor getPartitionedEventPool()
+    {
+        return partitionedEventPool;
+    }
+
+    @Nullable
+    public EventBackpressure getEventBackpressure()
+    {
+        return eventBackpressure;
+    }
+
     @Nonnull
     public static ThreadingProviderConfig getDefault()
     {
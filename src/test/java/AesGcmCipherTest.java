@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.internal.audio.AesGcmCipher;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class AesGcmCipherTest
+{
+    // Test cases 13 and 14 of "The Galois/Counter Mode of Operation (GCM)", McGrew and Viega
+    // the all zero IV is the IV of nonce 0
+    private static final byte[] KEY = new byte[32];
+    private static final byte[] TAG_13 = hex("530f8afbc74536b9a963b4f1c4cb738b");
+    private static final byte[] CIPHERTEXT_14 = hex("cea7403d4d606b6e074ec5d3baf39d18");
+    private static final byte[] TAG_14 = hex("d0d1c8a799996bf0265b98b5d48ab919");
+
+    @BeforeEach
+    public void checkSupported()
+    {
+        Assumptions.assumeTrue(AesGcmCipher.isSupported(), "AES-256-GCM is not available");
+    }
+
+    @Test
+    public void testEmptyMessage()
+    {
+        byte[] buffer = new byte[AesGcmCipher.TAG_LENGTH];
+        int length = new AesGcmCipher(KEY).seal(buffer, 0, 0, 0, 0, 0);
+        Assertions.assertEquals(AesGcmCipher.TAG_LENGTH, length);
+        Assertions.assertArrayEquals(TAG_13, buffer);
+    }
+
+    @Test
+    public void testSealAtOffset()
+    {
+        // the message is encrypted in place after a header, just like an RTP packet
+        int offset = 12;
+        byte[] buffer = new byte[offset + 16 + AesGcmCipher.TAG_LENGTH];
+        int length = new AesGcmCipher(KEY).seal(buffer, 0, 0, offset, 16, 0);
+        Assertions.assertEquals(16 + AesGcmCipher.TAG_LENGTH, length);
+        Assertions.assertArrayEquals(CIPHERTEXT_14, Arrays.copyOfRange(buffer, offset, offset + 16));
+        Assertions.assertArrayEquals(TAG_14, Arrays.copyOfRange(buffer, offset + 16, buffer.length));
+    }
+
+    @Test
+    public void testOpenReference()
+    {
+        byte[] buffer = new byte[32];
+        System.arraycopy(CIPHERTEXT_14, 0, buffer, 0, 16);
+        System.arraycopy(TAG_14, 0, buffer, 16, 16);
+        Assertions.assertEquals(16, new AesGcmCipher(KEY).open(buffer, 0, 0, 0, 32, 0));
+        Assertions.assertArrayEquals(new byte[16], Arrays.copyOf(buffer, 16));
+    }
+
+    @Test
+    public void testAuthentication()
+    {
+        AesGcmCipher cipher = new AesGcmCipher(KEY);
+        byte[] packet = new byte[12 + 8 + AesGcmCipher.TAG_LENGTH];
+        for (int i = 0; i < 20; i++)
+            packet[i] = (byte) i;
+        int length = cipher.seal(packet, 0, 12, 12, 8, 42);
+
+        Assertions.assertEquals(-1, cipher.open(packet.clone(), 0, 12, 12, length, 43), "Wrong nonce was accepted");
+        byte[] header = packet.clone();
+        header[0] ^= 1;
+        Assertions.assertEquals(-1, cipher.open(header, 0, 12, 12, length, 42), "Modified header was accepted");
+        byte[] tag = packet.clone();
+        tag[tag.length - 1] ^= 1;
+        Assertions.assertEquals(-1, cipher.open(tag, 0, 12, 12, length, 42), "Modified tag was accepted");
+
+        Assertions.assertEquals(8, cipher.open(packet, 0, 12, 12, length, 42));
+        for (int i = 0; i < 20; i++)
+            Assertions.assertEquals((byte) i, packet[i]);
+    }
+
+    private static byte[] hex(String hex)
+    {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        return bytes;
+    }
+}
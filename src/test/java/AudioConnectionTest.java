@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.audio.AudioNatives;
+import net.dv8tion.jda.api.audio.AudioReceiveHandler;
+import net.dv8tion.jda.api.audio.UserAudio;
+import net.dv8tion.jda.internal.utils.config.flags.ConfigFlag;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class AudioConnectionTest
+{
+    // 20ms of opus silence
+    private static final byte[] OPUS_FRAME = {(byte) 0xF8, (byte) 0xFF, (byte) 0xFE};
+    private static final int FRAMES = 10;
+    private static final long TIMEOUT = 10000;
+
+    @Test
+    public void testLite() throws Exception
+    {
+        testMode("xsalsa20_poly1305_lite", EnumSet.noneOf(ConfigFlag.class));
+    }
+
+    @Test
+    public void testSuffix() throws Exception
+    {
+        testMode("xsalsa20_poly1305_suffix", EnumSet.of(ConfigFlag.SHARED_VOICE_SOCKET));
+    }
+
+    @Test
+    public void testAesGcm() throws Exception
+    {
+        testMode("aead_aes256_gcm", EnumSet.of(ConfigFlag.NIO_AUDIO, ConfigFlag.AUDIO_DECODE_POOL));
+    }
+
+    private void testMode(String mode, EnumSet<ConfigFlag> flags) throws Exception
+    {
+        // without opus the connections only send, received audio can not be decoded
+        boolean receive = AudioNatives.ensureOpus();
+        try (FakeVoiceServer server = new FakeVoiceServer(mode))
+        {
+            VoiceLoadHarness harness = new VoiceLoadHarness(server, flags, null);
+            List<FrameSink> sinks = new ArrayList<>();
+            Map<Integer, Long> speakers = new HashMap<>();
+            try
+            {
+                for (int i = 0; i < 2; i++)
+                {
+                    FrameSink sink = receive ? new FrameSink() : null;
+                    if (sink != null)
+                        sinks.add(sink);
+                    harness.connect(new VoiceLoadHarness.FrameSource(false), sink);
+                }
+                Assertions.assertTrue(harness.awaitConnected(TIMEOUT), "Connections did not finish the handshake");
+                Collection<FakeVoiceServer.Session> sessions = server.getSessions().values();
+                await(() -> sessions.size() == 2 && sessions.stream().allMatch(s -> s.isSpeaking() && s.hasAddress()), "No audio was received");
+
+                if (receive)
+                {
+                    // every session receives another user, the packets go to the address the session sends from
+                    for (FakeVoiceServer.Session session : sessions)
+                    {
+                        long userId = 100 + session.getSSRC();
+                        harness.addUser(userId);
+                        server.sendSpeaking(session, 1000 + session.getSSRC(), userId);
+                        speakers.put(session.getSSRC(), userId);
+                    }
+
+                    // packets which arrive before the speaking update are dropped, so keep sending until enough were decoded
+                    long deadline = System.currentTimeMillis() + TIMEOUT;
+                    for (char seq = 0; !sinks.stream().allMatch(sink -> sink.frames.get() >= FRAMES); seq++)
+                    {
+                        Assertions.assertTrue(System.currentTimeMillis() < deadline, "Received audio was not decoded");
+                        for (FakeVoiceServer.Session session : sessions)
+                            server.sendAudio(session, 1000 + session.getSSRC(), seq, OPUS_FRAME);
+                        Thread.sleep(20);
+                    }
+                }
+            }
+            finally
+            {
+                harness.shutdown();
+            }
+
+            Collection<FakeVoiceServer.Session> sessions = server.getSessions().values();
+            Assertions.assertEquals(2, sessions.size());
+            for (FakeVoiceServer.Session session : sessions)
+            {
+                Assertions.assertEquals(mode, session.getMode());
+                Assertions.assertTrue(session.getPacketsReceived() > 0, "No audio was received");
+                Assertions.assertEquals(0, session.getDecryptFailures());
+            }
+
+            // every connection decoded the audio of exactly the user speaking in its session
+            Set<Long> received = new HashSet<>();
+            for (FrameSink sink : sinks)
+            {
+                Assertions.assertEquals(1, sink.users.size(), "Connection received audio of other sessions");
+                received.addAll(sink.users);
+                Assertions.assertEquals(0, sink.malformed.get(), "Decoded frames have the wrong size");
+            }
+            if (receive)
+                Assertions.assertEquals(new HashSet<>(speakers.values()), received);
+            Assertions.assertEquals(Collections.emptyList(), server.getErrors());
+        }
+    }
+
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean())
+        {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, message);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class FrameSink implements AudioReceiveHandler
+    {
+        private final Set<Long> users = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger frames = new AtomicInteger();
+        private final AtomicInteger malformed = new AtomicInteger();
+
+        @Override
+        public boolean canReceiveUser()
+        {
+            return true;
+        }
+
+        @Override
+        public int getJitterBufferDepth()
+        {
+            return 3;
+        }
+
+        @Override
+        public void handleUserAudio(@Nonnull UserAudio userAudio)
+        {
+            users.add(userAudio.getUser().getIdLong());
+            // 20ms of 48kHz stereo audio
+            if (userAudio.getAudioData(1.0).length != 3840)
+                malformed.incrementAndGet();
+            frames.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.audio.AudioNatives;
+import net.dv8tion.jda.api.audio.AudioSendHandler;
+import net.dv8tion.jda.api.audio.BufferedAudioSendHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class BufferedAudioSendHandlerTest
+{
+    private BufferedAudioSendHandler handler;
+
+    @AfterEach
+    public void cleanup()
+    {
+        if (handler != null)
+            handler.close();
+    }
+
+    @Test
+    public void testOrder() throws Exception
+    {
+        handler = new BufferedAudioSendHandler(new CountingSource(true, 100), 4);
+        for (int i = 0; i < 100; i++)
+        {
+            ByteBuffer frame = next();
+            Assertions.assertEquals(4, frame.remaining());
+            Assertions.assertEquals(i, frame.getInt(frame.position()), "Frames were reordered");
+            Assertions.assertTrue(handler.getBufferedFrames() <= 5, "Buffered more frames than allowed");
+        }
+        awaitCondition(() -> !handler.canProvide());
+        Assertions.assertNull(handler.provide20MsAudio());
+        Assertions.assertTrue(handler.isOpus());
+    }
+
+    @Test
+    public void testBufferLimit() throws Exception
+    {
+        CountingSource source = new CountingSource(true, Integer.MAX_VALUE);
+        handler = new BufferedAudioSendHandler(source, 8);
+        handler.canProvide();
+        // one more frame than requested is kept for the frame that is still read by the sending thread
+        awaitCondition(() -> handler.getBufferedFrames() == 9);
+        Thread.sleep(50);
+        Assertions.assertEquals(9, source.provided.get(), "Producer did not stop at the buffer limit");
+
+        Assertions.assertEquals(0, handler.provide20MsAudio().getInt(0));
+        Assertions.assertEquals(8, handler.getBufferedFrames(), "Frame in use was counted as buffered");
+        // the next poll releases the frame, which the producer fills again
+        Assertions.assertTrue(handler.canProvide());
+        awaitCondition(() -> source.provided.get() == 10);
+        awaitCondition(() -> handler.getBufferedFrames() == 9);
+    }
+
+    @Test
+    public void testEncodePcm() throws Exception
+    {
+        Assumptions.assumeTrue(AudioNatives.ensureOpus(), "Opus is not available");
+        handler = new BufferedAudioSendHandler(new CountingSource(false, 10), 2);
+        for (int i = 0; i < 10; i++)
+        {
+            ByteBuffer frame = next();
+            Assertions.assertTrue(frame.hasRemaining(), "Encoded frame is empty");
+            Assertions.assertTrue(frame.remaining() < 3840, "PCM audio was not encoded");
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception
+    {
+        CountingSource source = new CountingSource(true, Integer.MAX_VALUE);
+        handler = new BufferedAudioSendHandler(source, 2);
+        next();
+        handler.close();
+        Assertions.assertFalse(handler.canProvide());
+
+        // the producer stops polling the source
+        Thread.sleep(20);
+        int provided = source.provided.get();
+        Thread.sleep(50);
+        Assertions.assertEquals(provided, source.provided.get());
+    }
+
+    private ByteBuffer next() throws InterruptedException
+    {
+        awaitCondition(handler::canProvide);
+        ByteBuffer frame = handler.provide20MsAudio();
+        Assertions.assertNotNull(frame);
+        return frame;
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean())
+        {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "Condition was not met in time");
+            Thread.sleep(1);
+        }
+    }
+
+    private static class CountingSource implements AudioSendHandler
+    {
+        private final boolean opus;
+        private final int frames;
+        private final AtomicInteger provided = new AtomicInteger();
+
+        private CountingSource(boolean opus, int frames)
+        {
+            this.opus = opus;
+            this.frames = frames;
+        }
+
+        @Override
+        public boolean canProvide()
+        {
+            return provided.get() < frames;
+        }
+
+        @Override
+        public ByteBuffer provide20MsAudio()
+        {
+            int index = provided.getAndIncrement();
+            if (opus)
+            {
+                ByteBuffer frame = ByteBuffer.allocate(4).putInt(index);
+                ((Buffer) frame).flip();
+                return frame;
+            }
+            // 440Hz sine wave, 48kHz stereo 16 bit big endian
+            ByteBuffer pcm = ByteBuffer.allocate(3840);
+            for (int i = 0; i < 960; i++)
+            {
+                short sample = (short) (Math.sin(2 * Math.PI * 440 * (index * 960 + i) / 48000) * 8000);
+                pcm.putShort(sample).putShort(sample);
+            }
+            ((Buffer) pcm).flip();
+            return pcm;
+        }
+
+        @Override
+        public boolean isOpus()
+        {
+            return opus;
+        }
+    }
+}
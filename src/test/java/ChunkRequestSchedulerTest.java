@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.requests.ChunkRequestScheduler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ChunkRequestSchedulerTest
+{
+    @Test
+    public void testPriorityOrder()
+    {
+        ChunkRequestScheduler scheduler = new ChunkRequestScheduler();
+        scheduler.add(request(1), ChunkRequestScheduler.PRIORITY_RECONCILE, 10);
+        scheduler.add(request(2), ChunkRequestScheduler.PRIORITY_SETUP, 5000);
+        scheduler.add(request(3), ChunkRequestScheduler.PRIORITY_SETUP, 100);
+        scheduler.add(request(4), ChunkRequestScheduler.PRIORITY_SETUP, 100);
+        scheduler.add(request(5), ChunkRequestScheduler.PRIORITY_SETUP, 2000);
+        scheduler.add(request(6));
+
+        // guild 5 received an event and is moved in front of the other guilds in setup
+        scheduler.promote(5);
+        Assertions.assertEquals(Arrays.asList(6L, 5L, 3L, 4L, 2L, 1L), drain(scheduler));
+    }
+
+    @Test
+    public void testBudgetFollowsClientWindow()
+    {
+        ChunkRequestScheduler scheduler = new ChunkRequestScheduler();
+        long now = System.currentTimeMillis();
+        long reset = now + 30000;
+        Assertions.assertTrue(scheduler.hasBudget(now, reset));
+        for (int i = 0; i < ChunkRequestScheduler.CHUNK_BUDGET; i++)
+            scheduler.onSent(reset);
+        Assertions.assertFalse(scheduler.hasBudget(now, reset));
+
+        // a new window of the client restores the budget, even before the old one would have ended
+        Assertions.assertTrue(scheduler.hasBudget(now, now + ChunkRequestScheduler.WINDOW));
+        Assertions.assertTrue(scheduler.hasBudget(reset, reset));
+        scheduler.onSent(now + ChunkRequestScheduler.WINDOW);
+        Assertions.assertEquals(ChunkRequestScheduler.CHUNK_BUDGET + 1, scheduler.getSentTotal());
+        Assertions.assertTrue(scheduler.hasBudget(now, now + ChunkRequestScheduler.WINDOW));
+    }
+
+    @Test
+    public void testEstimatedTime()
+    {
+        ChunkRequestScheduler scheduler = new ChunkRequestScheduler();
+        Assertions.assertEquals(0, scheduler.getEstimatedTime(TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 50; i++)
+            scheduler.add(request(i));
+        Assertions.assertEquals(50 * ChunkRequestScheduler.SEND_INTERVAL, scheduler.getEstimatedTime(TimeUnit.MILLISECONDS));
+
+        // the requests beyond the budget of the first window are sent after the next reset
+        for (int i = 50; i < 150; i++)
+            scheduler.add(request(i));
+        Assertions.assertEquals(ChunkRequestScheduler.WINDOW + 50 * ChunkRequestScheduler.SEND_INTERVAL, scheduler.getEstimatedTime(TimeUnit.MILLISECONDS));
+
+        // with the budget of the current window used up, all requests wait for its reset
+        long reset = System.currentTimeMillis() + 20000;
+        for (int i = 0; i < ChunkRequestScheduler.CHUNK_BUDGET; i++)
+            scheduler.onSent(reset);
+        long estimate = scheduler.getEstimatedTime(TimeUnit.MILLISECONDS);
+        long expected = 20000 + ChunkRequestScheduler.WINDOW + 50 * ChunkRequestScheduler.SEND_INTERVAL;
+        Assertions.assertTrue(estimate <= expected && estimate > expected - 1000, "Unexpected estimate " + estimate);
+    }
+
+    private static List<Long> drain(ChunkRequestScheduler scheduler)
+    {
+        List<Long> order = new ArrayList<>();
+        DataObject request;
+        while ((request = scheduler.peek()) != null)
+        {
+            order.add(request.getUnsignedLong("guild_id"));
+            scheduler.remove(request);
+        }
+        return order;
+    }
+
+    private static DataObject request(long guildId)
+    {
+        return DataObject.empty().put("guild_id", Long.toUnsignedString(guildId)).put("limit", 0).put("query", "");
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.ShutdownEvent;
+import net.dv8tion.jda.api.events.UpdateEvent;
+import net.dv8tion.jda.api.hooks.CoalescingEventManager;
+import net.dv8tion.jda.api.hooks.IEventManager;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.ThreadingConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class CoalescingEventManagerTest
+{
+    private ScheduledExecutorService scheduler;
+    private RecordingEventManager delegate;
+
+    @BeforeEach
+    public void setup()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        delegate = new RecordingEventManager();
+    }
+
+    @AfterEach
+    public void cleanup()
+    {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testFirstUpdateIsNotDelayed()
+    {
+        CoalescingEventManager manager = create(1, TimeUnit.HOURS);
+        ValueEvent event = new ValueEvent(null, "a", "old", "new");
+        manager.handle(event);
+        Assertions.assertEquals(Collections.singletonList(event), delegate.events);
+        Assertions.assertEquals(0, manager.getPendingEvents());
+    }
+
+    @Test
+    public void testMergeBurst() throws Exception
+    {
+        CoalescingEventManager manager = create(100, TimeUnit.MILLISECONDS);
+        manager.handle(new ValueEvent(null, "a", "0", "1"));
+        manager.handle(new ValueEvent(null, "a", "1", "2"));
+        manager.handle(new ValueEvent(null, "a", "2", "3"));
+        manager.handle(new ValueEvent(null, "b", "0", "1"));
+        Assertions.assertEquals(2, delegate.events.size(), "Only the first update of each entity is handled immediately");
+        Assertions.assertEquals(1, manager.getPendingEvents());
+        Assertions.assertEquals(1, manager.getMergedEvents());
+
+        awaitEvents(3);
+        ValueEvent merged = (ValueEvent) delegate.events.get(2);
+        Assertions.assertEquals("a", merged.getEntity());
+        Assertions.assertEquals("1", merged.getOldValue());
+        Assertions.assertEquals("3", merged.getNewValue());
+        Assertions.assertEquals(0, manager.getPendingEvents());
+    }
+
+    @Test
+    public void testDiscardRevertedUpdate()
+    {
+        CoalescingEventManager manager = create(1, TimeUnit.HOURS);
+        manager.handle(new ValueEvent(null, "a", "0", "1"));
+        manager.handle(new ValueEvent(null, "a", "1", "2"));
+        manager.handle(new ValueEvent(null, "a", "2", "1"));
+        manager.flush();
+        Assertions.assertEquals(1, delegate.events.size());
+        Assertions.assertEquals(1, manager.getDiscardedEvents());
+    }
+
+    @Test
+    public void testFlushOnShutdown()
+    {
+        JDAImpl api = new JDAImpl(new AuthorizationConfig("token"));
+        CoalescingEventManager manager = create(1, TimeUnit.HOURS);
+        manager.handle(new ValueEvent(null, "a", "0", "1"));
+        ValueEvent pending = new ValueEvent(null, "a", "1", "2");
+        manager.handle(pending);
+        ShutdownEvent shutdown = new ShutdownEvent(api, OffsetDateTime.now(), 1000);
+        manager.handle(shutdown);
+
+        // the pending event is handled first, and the next update opens a new window
+        Assertions.assertSame(pending, delegate.events.get(1));
+        Assertions.assertSame(shutdown, delegate.events.get(2));
+        ValueEvent next = new ValueEvent(null, "a", "2", "3");
+        manager.handle(next);
+        Assertions.assertSame(next, delegate.events.get(3));
+    }
+
+    @Test
+    public void testMergedEventUsesEventPool() throws Exception
+    {
+        ExecutorService pool = Executors.newSingleThreadExecutor((r) -> new Thread(r, "EventPool"));
+        try
+        {
+            ThreadingConfig config = new ThreadingConfig();
+            config.setEventPool(pool, false);
+            JDAImpl api = new JDAImpl(new AuthorizationConfig("token"), null, config, null);
+            CoalescingEventManager manager = create(50, TimeUnit.MILLISECONDS);
+            manager.handle(new ValueEvent(api, "a", "0", "1"));
+            manager.handle(new ValueEvent(api, "a", "1", "2"));
+
+            awaitEvents(2);
+            Assertions.assertEquals("EventPool", delegate.threads.get(1));
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    private CoalescingEventManager create(long window, TimeUnit unit)
+    {
+        CoalescingEventManager manager = new CoalescingEventManager(delegate, scheduler, window, unit);
+        manager.setMergeFunction(ValueEvent.class, (first, last) ->
+            new ValueEvent(last.api, last.entity, first.oldValue, last.newValue));
+        return manager;
+    }
+
+    private void awaitEvents(int count) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delegate.events.size() < count)
+        {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "Merged event was not fired");
+            Thread.sleep(5);
+        }
+    }
+
+    private static class RecordingEventManager implements IEventManager
+    {
+        private final List<GenericEvent> events = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void register(@Nonnull Object listener) {}
+
+        @Override
+        public void unregister(@Nonnull Object listener) {}
+
+        @Override
+        public void handle(@Nonnull GenericEvent event)
+        {
+            threads.add(Thread.currentThread().getName());
+            events.add(event);
+        }
+
+        @Nonnull
+        @Override
+        public List<Object> getRegisteredListeners()
+        {
+            return Collections.emptyList();
+        }
+    }
+
+    private static class ValueEvent implements UpdateEvent<String, String>
+    {
+        private final JDA api;
+        private final String entity, oldValue, newValue;
+
+        private ValueEvent(JDA api, String entity, String oldValue, String newValue)
+        {
+            this.api = api;
+            this.entity = entity;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        @Nonnull
+        @Override
+        public String getPropertyIdentifier()
+        {
+            return "value";
+        }
+
+        @Nonnull
+        @Override
+        public String getEntity()
+        {
+            return entity;
+        }
+
+        @Override
+        public String getOldValue()
+        {
+            return oldValue;
+        }
+
+        @Override
+        public String getNewValue()
+        {
+            return newValue;
+        }
+
+        @Nonnull
+        @Override
+        public JDA getJDA()
+        {
+            return api;
+        }
+
+        @Override
+        public long getResponseNumber()
+        {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.internal.utils.cache.CrossShardIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CrossShardIndexTest
+{
+    // the guild ids for shard 0 and 1 of 2 shards
+    private static final long GUILD_0 = 2L << 22;
+    private static final long GUILD_1 = 3L << 22;
+
+    @Test
+    public void testGuildEntities()
+    {
+        CrossShardIndex index = new CrossShardIndex();
+        index.putGuildEntity(10, GUILD_0);
+        index.putGuildEntity(11, GUILD_1);
+        Assertions.assertEquals(GUILD_0, index.getGuildForEntity(10));
+        Assertions.assertEquals(GUILD_1, index.getGuildForEntity(11));
+        Assertions.assertEquals(0, index.getGuildForEntity(12));
+
+        index.removeGuildEntity(10);
+        Assertions.assertEquals(0, index.getGuildForEntity(10));
+    }
+
+    @Test
+    public void testUserHint()
+    {
+        CrossShardIndex index = new CrossShardIndex();
+        Assertions.assertEquals(-1, index.getShardForUser(1));
+        index.putUser(1, 0);
+        index.putUser(1, 1);
+        Assertions.assertEquals(1, index.getShardForUser(1));
+
+        // only the shard the hint points to can remove it
+        index.removeUser(1, 0);
+        Assertions.assertEquals(1, index.getShardForUser(1));
+        index.removeUser(1, 1);
+        Assertions.assertEquals(-1, index.getShardForUser(1));
+    }
+
+    @Test
+    public void testClearShard()
+    {
+        CrossShardIndex index = new CrossShardIndex();
+        for (long id = 1; id <= 100; id++)
+        {
+            index.putGuildEntity(id, id % 2 == 0 ? GUILD_0 : GUILD_1);
+            index.putUser(id << 22, (int) (id % 2));
+        }
+
+        index.clearShard(0, 2);
+        for (long id = 1; id <= 100; id++)
+        {
+            boolean shard0 = id % 2 == 0;
+            Assertions.assertEquals(shard0 ? 0 : GUILD_1, index.getGuildForEntity(id));
+            Assertions.assertEquals(shard0 ? -1 : 1, index.getShardForUser(id << 22));
+        }
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception
+    {
+        CrossShardIndex index = new CrossShardIndex();
+        List<Thread> threads = new ArrayList<>();
+        for (int shard = 0; shard < 4; shard++)
+        {
+            int shardId = shard;
+            Thread thread = new Thread(() -> {
+                for (long i = 0; i < 10000; i++)
+                {
+                    long id = (i << 22) | shardId;
+                    index.putUser(id, shardId);
+                    index.putGuildEntity(id, shardId + 1);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        for (int shard = 0; shard < 4; shard++)
+        {
+            for (long i = 0; i < 10000; i++)
+            {
+                long id = (i << 22) | shard;
+                Assertions.assertEquals(shard, index.getShardForUser(id));
+                Assertions.assertEquals(shard + 1, index.getGuildForEntity(id));
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.EventBackpressure;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventBackpressureTest
+{
+    private EventBackpressure backpressure;
+    private List<GenericEvent> handled;
+
+    @BeforeEach
+    public void setup()
+    {
+        backpressure = new EventBackpressure(4)
+            .setPolicy(DropEvent.class, EventBackpressure.Policy.DROP)
+            .setPolicy(CoalesceEvent.class, EventBackpressure.Policy.COALESCE);
+        handled = new ArrayList<>();
+    }
+
+    @Test
+    public void testOverloadAndRecovery()
+    {
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            tasks.add(submit(new KeepEvent()));
+        Assertions.assertFalse(backpressure.isOverloaded());
+        Assertions.assertNotNull(submit(new DropEvent()), "Events are only shed while overloaded");
+
+        tasks.add(submit(new KeepEvent()));
+        Assertions.assertTrue(backpressure.isOverloaded());
+        Assertions.assertEquals(1, backpressure.getOverloadCount());
+        Assertions.assertEquals(5, backpressure.getPendingEvents());
+        Assertions.assertNull(submit(new DropEvent()));
+        Assertions.assertEquals(1, backpressure.getDroppedEvents());
+        Assertions.assertNotNull(submit(new KeepEvent()), "Kept events must never be shed");
+
+        // the pool recovers once the pending events fell to half the limit
+        tasks.get(0).run();
+        tasks.get(1).run();
+        tasks.get(2).run();
+        Assertions.assertTrue(backpressure.isOverloaded());
+        tasks.get(3).run();
+        Assertions.assertFalse(backpressure.isOverloaded());
+        Assertions.assertNotNull(submit(new DropEvent()));
+        Assertions.assertEquals(1, backpressure.getOverloadCount());
+        Assertions.assertEquals(6, backpressure.getMaxPendingEvents());
+    }
+
+    @Test
+    public void testCoalesce()
+    {
+        for (int i = 0; i < 4; i++)
+            submit(new KeepEvent());
+        Assertions.assertTrue(backpressure.isOverloaded());
+
+        CoalesceEvent first = new CoalesceEvent();
+        CoalesceEvent second = new CoalesceEvent();
+        CoalesceEvent third = new CoalesceEvent();
+        Runnable task = submit(first);
+        Assertions.assertNotNull(task);
+        Assertions.assertNull(submit(second));
+        Assertions.assertNull(submit(third));
+        Assertions.assertEquals(2, backpressure.getCoalescedEvents());
+
+        // only the latest event is handled, by the task of the first one
+        task.run();
+        Assertions.assertEquals(1, handled.size());
+        Assertions.assertSame(third, handled.get(0));
+
+        // after the task started, the next event needs a new task
+        Assertions.assertNotNull(submit(new CoalesceEvent()));
+    }
+
+    @Test
+    public void testDiscard()
+    {
+        for (int i = 0; i < 4; i++)
+            submit(new KeepEvent());
+        Runnable keep = submit(new KeepEvent());
+        Runnable coalesce = submit(new CoalesceEvent());
+        Assertions.assertFalse(backpressure.discard(keep), "Kept events must be run by the caller");
+        Assertions.assertTrue(backpressure.discard(coalesce));
+        Assertions.assertEquals(5, backpressure.getPendingEvents());
+        coalesce.run();
+        Assertions.assertTrue(handled.isEmpty());
+    }
+
+    private Runnable submit(GenericEvent event)
+    {
+        return backpressure.submit(event, handled::add);
+    }
+
+    private static class KeepEvent implements GenericEvent
+    {
+        @Nonnull
+        @Override
+        public JDA getJDA()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getResponseNumber()
+        {
+            return 0;
+        }
+    }
+
+    private static class DropEvent extends KeepEvent {}
+
+    private static class CoalesceEvent extends KeepEvent {}
+}
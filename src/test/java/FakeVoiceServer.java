@@ -0,0 +1,702 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.iwebpp.crypto.TweetNaclFast;
+import com.neovisionaries.ws.client.WebSocketFactory;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.audio.AesGcmCipher;
+import net.dv8tion.jda.internal.audio.VoiceCode;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for a discord voice server, used to test and benchmark voice connections without network access.
+ *
+ * <p>The gateway is a minimal plain text WebSocket server which speaks the opcodes expected by AudioWebSocket:
+ * HELLO and READY after IDENTIFY, SESSION_DESCRIPTION with a random secret key after SELECT_PROTOCOL,
+ * heartbeat acknowledgements and RESUMED. The UDP endpoint answers IP discovery and decrypts every received
+ * RTP packet with the key of its session to record per-SSRC statistics.
+ * <br>Audio of other users can be sent to a session with {@link #sendSpeaking(Session, int, long)}
+ * and {@link #sendAudio(Session, int, char, byte[])}.
+ *
+ * <p>Unexpected exceptions of the server threads are recorded in {@link #getErrors()}.
+ *
+ * <p>JDA always connects with {@code wss://}, connections have to use {@link #createWebSocketFactory()}
+ * which hands out plain sockets instead of TLS sockets.
+ */
+public class FakeVoiceServer implements Closeable
+{
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int HEARTBEAT_INTERVAL = 5000;
+
+    private final ServerSocket gateway;
+    private final DatagramSocket udp;
+    private final List<String> modes;
+    private final AtomicInteger nextSsrc = new AtomicInteger(1);
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    /**
+     * Starts a server on the loopback interface.
+     *
+     * @param  modes
+     *         The encryption modes offered in READY, for example {@code "xsalsa20_poly1305_lite"}
+     *
+     * @throws IOException
+     *         If the sockets could not be opened
+     */
+    public FakeVoiceServer(String... modes) throws IOException
+    {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        this.modes = Arrays.asList(modes);
+        this.gateway = new ServerSocket(0, 512, loopback);
+        this.udp = new DatagramSocket(0, loopback);
+        this.udp.setReceiveBufferSize(4 * 1024 * 1024);
+        startThread("FakeVoiceServer Gateway", this::acceptLoop);
+        startThread("FakeVoiceServer UDP", this::udpLoop);
+    }
+
+    /**
+     * A WebSocketFactory which connects to {@code wss://} endpoints without TLS.
+     *
+     * @return The factory to configure the JDA session with
+     */
+    public static WebSocketFactory createWebSocketFactory()
+    {
+        return new WebSocketFactory()
+            .setSSLSocketFactory(new PlaintextSocketFactory())
+            .setVerifyHostname(false);
+    }
+
+    /**
+     * The endpoint to pass to the AudioConnection, without scheme.
+     *
+     * @return The endpoint
+     */
+    public String getEndpoint()
+    {
+        return "localhost:" + gateway.getLocalPort();
+    }
+
+    /**
+     * All sessions which completed the handshake, by SSRC.
+     *
+     * @return Unmodifiable view of the sessions
+     */
+    public Map<Integer, Session> getSessions()
+    {
+        return Collections.unmodifiableMap(sessions);
+    }
+
+    /**
+     * The unexpected exceptions thrown on the threads of this server.
+     *
+     * @return Copy of the recorded exceptions
+     */
+    public List<Throwable> getErrors()
+    {
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * Sends a USER_SPEAKING_UPDATE to the session, which pairs the SSRC with the user.
+     *
+     * @param  session
+     *         The receiving session
+     * @param  ssrc
+     *         The SSRC of the speaking user
+     * @param  userId
+     *         The id of the speaking user
+     *
+     * @throws IOException
+     *         If the message could not be sent
+     */
+    public void sendSpeaking(Session session, int ssrc, long userId) throws IOException
+    {
+        sendMessage(session.out, VoiceCode.USER_SPEAKING_UPDATE, DataObject.empty()
+            .put("ssrc", ssrc)
+            .put("user_id", userId)
+            .put("speaking", 1));
+    }
+
+    /**
+     * Sends one opus frame to the UDP address the session sends its audio from, encrypted with the mode of the session.
+     *
+     * @param  session
+     *         The receiving session, which must have sent audio before
+     * @param  ssrc
+     *         The SSRC of the speaking user
+     * @param  seq
+     *         The sequence of the packet, the timestamp is derived from it
+     * @param  opus
+     *         The opus frame
+     *
+     * @throws IOException
+     *         If the packet could not be sent
+     */
+    public void sendAudio(Session session, int ssrc, char seq, byte[] opus) throws IOException
+    {
+        byte[] packet = encrypt(session, ssrc, seq, opus);
+        udp.send(new DatagramPacket(packet, packet.length, session.address));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        for (Socket client : clients)
+            client.close();
+        gateway.close();
+        udp.close();
+    }
+
+    /* Gateway */
+
+    private void acceptLoop()
+    {
+        while (!closed)
+        {
+            try
+            {
+                Socket client = gateway.accept();
+                client.setTcpNoDelay(true);
+                clients.add(client);
+                startThread("FakeVoiceServer Client " + client.getPort(), () -> handleClient(client));
+            }
+            catch (IOException e)
+            {
+                if (!closed)
+                    errors.add(e);
+            }
+        }
+    }
+
+    private void handleClient(Socket client)
+    {
+        Session session = null;
+        try (Socket socket = client)
+        {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            handshake(in, out);
+
+            String message;
+            while ((message = readMessage(in, out)) != null)
+            {
+                DataObject payload = DataObject.fromJson(message);
+                session = handleMessage(session, payload, out);
+            }
+        }
+        catch (IOException | NoSuchAlgorithmException e)
+        {
+            if (!closed && !(e instanceof EOFException) && !(e instanceof SocketException))
+                errors.add(e);
+        }
+        catch (RuntimeException e)
+        {
+            errors.add(e);
+        }
+        finally
+        {
+            clients.remove(client);
+            if (session != null)
+                session.connected = false;
+        }
+    }
+
+    private Session handleMessage(Session session, DataObject payload, OutputStream out) throws IOException
+    {
+        switch (payload.getInt("op"))
+        {
+            case VoiceCode.IDENTIFY:
+            {
+                session = new Session(nextSsrc.getAndIncrement());
+                session.userId = payload.getObject("d").getLong("user_id");
+                session.out = out;
+                sendMessage(out, VoiceCode.HELLO, DataObject.empty().put("heartbeat_interval", HEARTBEAT_INTERVAL));
+                sendMessage(out, VoiceCode.READY, DataObject.empty()
+                    .put("ssrc", session.ssrc)
+                    .put("ip", udp.getLocalAddress().getHostAddress())
+                    .put("port", udp.getLocalPort())
+                    .put("modes", DataArray.fromCollection(modes)));
+                break;
+            }
+            case VoiceCode.SELECT_PROTOCOL:
+            {
+                session.mode = payload.getObject("d").getObject("data").getString("mode");
+                session.secretKey = new byte[32];
+                ThreadLocalRandom.current().nextBytes(session.secretKey);
+                session.connected = true;
+                sessions.put(session.ssrc, session);
+
+                DataArray key = DataArray.empty();
+                for (byte b : session.secretKey)
+                    key.add(b & 0xFF);
+                sendMessage(out, VoiceCode.SESSION_DESCRIPTION, DataObject.empty()
+                    .put("mode", session.mode)
+                    .put("secret_key", key));
+                break;
+            }
+            case VoiceCode.HEARTBEAT:
+            {
+                sendMessage(out, VoiceCode.HEARTBEAT_ACK, payload.getLong("d"));
+                break;
+            }
+            case VoiceCode.RESUME:
+            {
+                sendMessage(out, VoiceCode.RESUMED, null);
+                break;
+            }
+            case VoiceCode.USER_SPEAKING_UPDATE:
+            {
+                if (session != null)
+                    session.speaking = payload.getObject("d").getInt("speaking") != 0;
+                break;
+            }
+        }
+        return session;
+    }
+
+    private static void handshake(InputStream in, OutputStream out) throws IOException, NoSuchAlgorithmException
+    {
+        String key = null;
+        String line;
+        while (!(line = readLine(in)).isEmpty())
+        {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key"))
+                key = line.substring(colon + 1).trim();
+        }
+        if (key == null)
+            throw new IOException("Missing Sec-WebSocket-Key");
+
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+        String response = "HTTP/1.1 101 Switching Protocols\r\n" +
+            "Upgrade: websocket\r\n" +
+            "Connection: Upgrade\r\n" +
+            "Sec-WebSocket-Accept: " + Base64.getEncoder().encodeToString(digest) + "\r\n\r\n";
+        out.write(response.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException
+    {
+        StringBuilder builder = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n')
+        {
+            if (c < 0)
+                throw new EOFException();
+            if (c != '\r')
+                builder.append((char) c);
+        }
+        return builder.toString();
+    }
+
+    // Returns the next text message, or null if the client closed the connection
+    private static String readMessage(InputStream in, OutputStream out) throws IOException
+    {
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        DataInputStream data = new DataInputStream(in);
+        while (true)
+        {
+            int b0 = data.readUnsignedByte();
+            int b1 = data.readUnsignedByte();
+            boolean fin = (b0 & 0x80) != 0;
+            int opcode = b0 & 0x0F;
+            long length = b1 & 0x7F;
+            if (length == 126)
+                length = data.readUnsignedShort();
+            else if (length == 127)
+                length = data.readLong();
+
+            byte[] mask = new byte[4];
+            if ((b1 & 0x80) != 0)
+                data.readFully(mask);
+            byte[] payload = new byte[(int) length];
+            data.readFully(payload);
+            for (int i = 0; i < payload.length; i++)
+                payload[i] ^= mask[i & 3];
+
+            switch (opcode)
+            {
+                case 0x8: // close
+                    writeFrame(out, 0x8, payload);
+                    return null;
+                case 0x9: // ping
+                    writeFrame(out, 0xA, payload);
+                    continue;
+                case 0xA: // pong
+                    continue;
+                default:
+                    message.write(payload);
+                    if (fin)
+                        return new String(message.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    private static void sendMessage(OutputStream out, int op, Object d) throws IOException
+    {
+        String json = DataObject.empty().put("op", op).put("d", d).toString();
+        writeFrame(out, 0x1, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeFrame(OutputStream out, int opcode, byte[] payload) throws IOException
+    {
+        synchronized (out)
+        {
+            out.write(0x80 | opcode);
+            if (payload.length < 126)
+            {
+                out.write(payload.length);
+            }
+            else if (payload.length <= 0xFFFF)
+            {
+                out.write(126);
+                out.write(payload.length >>> 8);
+                out.write(payload.length);
+            }
+            else
+            {
+                out.write(127);
+                new DataOutputStream(out).writeLong(payload.length);
+            }
+            out.write(payload);
+            out.flush();
+        }
+    }
+
+    /* UDP */
+
+    private void udpLoop()
+    {
+        DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+        while (!closed)
+        {
+            try
+            {
+                packet.setLength(2048);
+                udp.receive(packet);
+                long arrival = System.nanoTime();
+                byte[] data = packet.getData();
+                int length = packet.getLength();
+
+                if (length == 70 && data[0] == 0 && data[1] == 1)
+                    answerDiscovery(packet);
+                else if (length > 12 && (data[0] & 0xC0) == 0x80)
+                    handleRtp(packet.getSocketAddress(), data, length, arrival);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                if (!closed)
+                    errors.add(e);
+            }
+        }
+    }
+
+    private void answerDiscovery(DatagramPacket request) throws IOException
+    {
+        InetSocketAddress sender = (InetSocketAddress) request.getSocketAddress();
+        ByteBuffer response = ByteBuffer.allocate(70);
+        response.putShort((short) 2);
+        response.putShort((short) 70);
+        // JDA reads the address starting at offset 4, the SSRC is left out so it does not end up in the parsed address
+        response.putInt(0);
+        response.put(sender.getAddress().getHostAddress().getBytes(StandardCharsets.US_ASCII));
+        response.putShort(68, (short) sender.getPort());
+        udp.send(new DatagramPacket(response.array(), 70, sender));
+    }
+
+    private void handleRtp(SocketAddress sender, byte[] data, int length, long arrival)
+    {
+        ByteBuffer header = ByteBuffer.wrap(data, 0, 12);
+        char seq = header.getChar(2);
+        int timestamp = header.getInt(4);
+        int ssrc = header.getInt(8);
+        Session session = sessions.get(ssrc);
+        if (session == null)
+            return;
+
+        session.address = sender;
+        int audioLength = decrypt(session, data, length);
+        session.record(seq, timestamp, arrival, audioLength);
+    }
+
+    // returns the length of the decrypted audio, or -1 if decryption failed
+    private static int decrypt(Session session, byte[] data, int length)
+    {
+        byte[] nonce = new byte[TweetNaclFast.SecretBox.nonceLength];
+        switch (session.mode)
+        {
+            case "aead_aes256_gcm":
+            {
+                if (session.cipher == null)
+                    session.cipher = new AesGcmCipher(session.secretKey);
+                int counter = ByteBuffer.wrap(data, length - 4, 4).getInt();
+                return session.cipher.open(data, 0, 12, 12, length - 16, counter);
+            }
+            case "xsalsa20_poly1305_lite":
+                System.arraycopy(data, length - 4, nonce, 0, 4);
+                length -= 4;
+                break;
+            case "xsalsa20_poly1305_suffix":
+                System.arraycopy(data, length - nonce.length, nonce, 0, nonce.length);
+                length -= nonce.length;
+                break;
+            default:
+                System.arraycopy(data, 0, nonce, 0, 12);
+        }
+        if (session.boxer == null)
+            session.boxer = new TweetNaclFast.SecretBox(session.secretKey);
+        return session.boxer.openInPlace(data, 12, length - 12, nonce);
+    }
+
+    private static byte[] encrypt(Session session, int ssrc, char seq, byte[] opus)
+    {
+        byte[] data = new byte[12 + 16 + opus.length + TweetNaclFast.SecretBox.nonceLength];
+        ByteBuffer header = ByteBuffer.wrap(data);
+        header.put((byte) 0x80).put((byte) 0x78).putChar(seq).putInt(seq * 960).putInt(ssrc);
+        synchronized (session)
+        {
+            int counter = session.sendCounter++;
+            if ("aead_aes256_gcm".equals(session.mode))
+            {
+                if (session.sendCipher == null)
+                    session.sendCipher = new AesGcmCipher(session.secretKey);
+                System.arraycopy(opus, 0, data, 12, opus.length);
+                int length = 12 + session.sendCipher.seal(data, 0, 12, 12, opus.length, counter);
+                ByteBuffer.wrap(data, length, 4).putInt(counter);
+                return Arrays.copyOf(data, length + 4);
+            }
+
+            byte[] nonce = new byte[TweetNaclFast.SecretBox.nonceLength];
+            int suffix = 0;
+            switch (session.mode)
+            {
+                case "xsalsa20_poly1305_lite":
+                    ByteBuffer.wrap(nonce).putInt(counter);
+                    suffix = 4;
+                    break;
+                case "xsalsa20_poly1305_suffix":
+                    ThreadLocalRandom.current().nextBytes(nonce);
+                    suffix = nonce.length;
+                    break;
+                default:
+                    System.arraycopy(data, 0, nonce, 0, 12);
+            }
+            if (session.sendBoxer == null)
+                session.sendBoxer = new TweetNaclFast.SecretBox(session.secretKey);
+            System.arraycopy(opus, 0, data, 12 + 16, opus.length);
+            int length = 12 + session.sendBoxer.sealInPlace(data, 12, opus.length, nonce);
+            System.arraycopy(nonce, 0, data, length, suffix);
+            return Arrays.copyOf(data, length + suffix);
+        }
+    }
+
+    private static void startThread(String name, Runnable task)
+    {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static class PlaintextSocketFactory extends SSLSocketFactory
+    {
+        @Override
+        public String[] getDefaultCipherSuites()
+        {
+            return new String[0];
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites()
+        {
+            return new String[0];
+        }
+
+        @Override
+        public Socket createSocket()
+        {
+            return new Socket();
+        }
+
+        @Override
+        public Socket createSocket(Socket s, String host, int port, boolean autoClose)
+        {
+            return s;
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException
+        {
+            return new Socket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException
+        {
+            return new Socket(host, port, localHost, localPort);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException
+        {
+            return new Socket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException
+        {
+            return new Socket(address, port, localAddress, localPort);
+        }
+    }
+
+    /**
+     * One voice session, identified by the SSRC assigned in READY.
+     * <br>The statistics are only updated by the UDP thread, the send state is guarded by the session.
+     */
+    public static class Session
+    {
+        private final int ssrc;
+        private volatile long userId;
+        private volatile String mode;
+        private volatile byte[] secretKey;
+        private volatile boolean connected;
+        private volatile boolean speaking;
+        private volatile OutputStream out;
+        private volatile SocketAddress address;
+        private TweetNaclFast.SecretBox boxer, sendBoxer;
+        private AesGcmCipher cipher, sendCipher;
+        private int sendCounter;
+
+        private volatile long packets, decryptFailures;
+        private int firstSeq = -1, highestSeq;
+        private long cycles;
+        private long lastArrival, lastTransit;
+        private double jitter; // in nanoseconds
+        private long maxInterval;
+
+        private Session(int ssrc)
+        {
+            this.ssrc = ssrc;
+        }
+
+        private void record(char seq, int timestamp, long arrival, int audioLength)
+        {
+            if (audioLength < 0)
+            {
+                decryptFailures++;
+                return;
+            }
+
+            if (firstSeq < 0)
+            {
+                firstSeq = highestSeq = seq;
+            }
+            else
+            {
+                int delta = (short) (seq - highestSeq);
+                if (delta > 0)
+                {
+                    if (seq < highestSeq)
+                        cycles += 0x10000;
+                    highestSeq = seq;
+                }
+
+                // RFC 3550 interarrival jitter, using nanoseconds instead of timestamp units
+                long transit = arrival - (timestamp & 0xFFFFFFFFL) * 1_000_000L / 48;
+                jitter += (Math.abs(transit - lastTransit) - jitter) / 16.0;
+                maxInterval = Math.max(maxInterval, arrival - lastArrival);
+            }
+            lastTransit = arrival - (timestamp & 0xFFFFFFFFL) * 1_000_000L / 48;
+            lastArrival = arrival;
+            packets++;
+        }
+
+        public int getSSRC()
+        {
+            return ssrc;
+        }
+
+        public long getUserId()
+        {
+            return userId;
+        }
+
+        public boolean hasAddress()
+        {
+            return address != null;
+        }
+
+        public String getMode()
+        {
+            return mode;
+        }
+
+        public boolean isConnected()
+        {
+            return connected;
+        }
+
+        public boolean isSpeaking()
+        {
+            return speaking;
+        }
+
+        public long getPacketsReceived()
+        {
+            return packets;
+        }
+
+        public long getDecryptFailures()
+        {
+            return decryptFailures;
+        }
+
+        public long getPacketsLost()
+        {
+            if (firstSeq < 0)
+                return 0;
+            long expected = cycles + highestSeq - firstSeq + 1;
+            return Math.max(0, expected - packets);
+        }
+
+        public double getJitterMillis()
+        {
+            return jitter / 1_000_000.0;
+        }
+
+        public double getMaxIntervalMillis()
+        {
+            return maxInterval / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.GatewayEncoding;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.ISnowflake;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.Compression;
+import net.dv8tion.jda.api.utils.ConcurrentSessionController;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.SelfUserImpl;
+import net.dv8tion.jda.internal.handle.GuildSetupController;
+import net.dv8tion.jda.internal.requests.WebSocketClient;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.SessionConfig;
+import net.dv8tion.jda.internal.utils.config.flags.ConfigFlag;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+public class GuildSetupStreamingTest
+{
+    private static final long GUILD = 100, OTHER_GUILD = 200;
+    private static final long ROLE = 1000;
+
+    @Test
+    public void testDuplicateChunkEntries()
+    {
+        List<String> cache = compare((controller) ->
+        {
+            controller.onCreate(GUILD, guild(GUILD, 3, member(10, "Alice", null)));
+            controller.onMemberChunk(GUILD, chunk(0, 2, member(10, "Alice", null), member(11, "Bob", null)));
+            // the second chunk repeats a member with an updated user and nickname
+            controller.onMemberChunk(GUILD, chunk(1, 2, member(11, "Bobby", "Bob", ROLE), member(12, "Carol", null)));
+        });
+        Assertions.assertEquals(Arrays.asList(
+            "guild 100 members 3",
+            "member 100/10 nick null roles []",
+            "member 100/11 nick Bob roles [1000]",
+            "member 100/12 nick null roles []",
+            "user 10 Alice",
+            "user 11 Bobby",
+            "user 12 Carol"), cache);
+    }
+
+    @Test
+    public void testMemberEventsWhileChunking()
+    {
+        List<String> cache = compare((controller) ->
+        {
+            controller.onCreate(GUILD, guild(GUILD, 4, member(10, "Alice", null)));
+            controller.onMemberChunk(GUILD, chunk(0, 2, member(10, "Alice", null), member(11, "Bob", null)));
+            Assertions.assertTrue(controller.onAddMember(GUILD, member(13, "Dave", "New")));
+            Assertions.assertTrue(controller.onRemoveMember(GUILD, DataObject.empty().put("user", user(11, "Bob"))));
+            // the chunks were requested before the member left and may still contain it
+            controller.onMemberChunk(GUILD, chunk(1, 2, member(11, "Bob", null), member(12, "Carol", null)));
+        });
+        Assertions.assertEquals(Arrays.asList(
+            "guild 100 members 4",
+            "member 100/10 nick null roles []",
+            "member 100/12 nick null roles []",
+            "member 100/13 nick New roles []",
+            "user 10 Alice",
+            "user 12 Carol",
+            "user 13 Dave"), cache);
+    }
+
+    @Test
+    public void testSharedUsers()
+    {
+        Consumer<GuildSetupController> setup = (controller) ->
+        {
+            controller.onCreate(GUILD, guild(GUILD, 3, member(10, "Alice", null)));
+            controller.onCreate(OTHER_GUILD, guild(OTHER_GUILD, 2, member(10, "Alice", null)));
+            controller.onMemberChunk(GUILD, chunk(0, 2, member(10, "Alice", null), member(20, "Old", null)));
+            controller.onMemberChunk(OTHER_GUILD, chunk(0, 2, member(20, "New", "Shared")));
+            controller.onMemberChunk(GUILD, chunk(1, 2, member(21, "Eve", null)));
+            controller.onMemberChunk(OTHER_GUILD, chunk(1, 2, member(10, "Alice", null)));
+        };
+        List<String> cache = compare(setup);
+        Assertions.assertEquals(Arrays.asList(
+            "guild 100 members 3",
+            "member 100/10 nick null roles []",
+            "member 100/20 nick null roles []",
+            "member 100/21 nick null roles []",
+            "guild 200 members 2",
+            "member 200/10 nick null roles []",
+            "member 200/20 nick Shared roles []",
+            "user 10 Alice",
+            "user 20 New",
+            "user 21 Eve"), cache);
+
+        // both guilds must reference the cached user, even though the members were built before it was cached
+        TestJDA api = setup(true, setup);
+        User user = api.getUserById(20);
+        Assertions.assertNotNull(user);
+        Assertions.assertSame(user, api.getGuildById(GUILD).getMemberById(20).getUser());
+        Assertions.assertSame(user, api.getGuildById(OTHER_GUILD).getMemberById(20).getUser());
+        Assertions.assertEquals(Arrays.asList(GUILD, OTHER_GUILD), api.testClient.chunkRequests);
+    }
+
+    private static List<String> compare(Consumer<GuildSetupController> setup)
+    {
+        List<String> buffered = describe(setup(false, setup));
+        List<String> streamed = describe(setup(true, setup));
+        Assertions.assertEquals(buffered, streamed, "Streaming setup built a different cache");
+        return streamed;
+    }
+
+    private static TestJDA setup(boolean streaming, Consumer<GuildSetupController> setup)
+    {
+        TestJDA api = new TestJDA(streaming);
+        setup.accept(api.getGuildSetupController());
+        Assertions.assertTrue(api.getGuildSetupController().getSetupNodes().isEmpty(), "Setup did not complete");
+        return api;
+    }
+
+    private static List<String> describe(JDAImpl api)
+    {
+        List<String> cache = new ArrayList<>();
+        for (Guild guild : sorted(api.getGuilds()))
+        {
+            cache.add("guild " + guild.getId() + " members " + guild.getMemberCount());
+            for (Member member : sorted(guild.getMembers()))
+            {
+                List<Long> roles = member.getRoles().stream().map(Role::getIdLong).sorted().collect(Collectors.toList());
+                Assertions.assertSame(api.getUserById(member.getIdLong()), member.getUser());
+                cache.add("member " + guild.getId() + "/" + member.getId() + " nick " + member.getNickname() + " roles " + roles);
+            }
+        }
+        for (User user : sorted(api.getUsers()))
+        {
+            if (!user.equals(api.getSelfUser()))
+                cache.add("user " + user.getId() + " " + user.getName());
+        }
+        return cache;
+    }
+
+    private static <T extends ISnowflake> List<T> sorted(List<T> list)
+    {
+        List<T> copy = new ArrayList<>(list);
+        copy.sort(Comparator.comparingLong(T::getIdLong));
+        return copy;
+    }
+
+    private static DataObject guild(long id, int memberCount, DataObject... members)
+    {
+        DataObject role = DataObject.empty()
+            .put("id", ROLE)
+            .put("name", "Role")
+            .put("position", 1)
+            .put("permissions", 0)
+            .put("color", 0)
+            .put("hoist", false)
+            .put("managed", false)
+            .put("mentionable", false);
+        return DataObject.empty()
+            .put("id", id)
+            .put("name", "Guild " + id)
+            .put("unavailable", false)
+            .put("member_count", memberCount)
+            .put("afk_timeout", 300)
+            .put("roles", DataArray.empty().add(role))
+            .put("channels", DataArray.empty())
+            .put("emojis", DataArray.empty())
+            .put("voice_states", DataArray.empty())
+            .put("members", DataArray.fromCollection(Arrays.asList(members)));
+    }
+
+    private static DataObject chunk(int index, int count, DataObject... members)
+    {
+        return DataObject.empty()
+            .put("chunk_index", index)
+            .put("chunk_count", count)
+            .put("members", DataArray.fromCollection(Arrays.asList(members)));
+    }
+
+    private static DataObject member(long id, String name, String nick, long... roles)
+    {
+        DataArray roleArray = DataArray.empty();
+        for (long role : roles)
+            roleArray.add(role);
+        return DataObject.empty()
+            .put("user", user(id, name))
+            .put("nick", nick)
+            .put("roles", roleArray)
+            .put("joined_at", "2021-01-01T00:00:00Z")
+            .put("premium_since", null)
+            .put("pending", false);
+    }
+
+    private static DataObject user(long id, String name)
+    {
+        return DataObject.empty()
+            .put("id", id)
+            .put("username", name)
+            .put("discriminator", "0001")
+            .put("avatar", null)
+            .put("bot", false)
+            .put("system", false);
+    }
+
+    private static class TestJDA extends JDAImpl
+    {
+        private final TestClient testClient;
+
+        private TestJDA(boolean streaming)
+        {
+            super(new AuthorizationConfig("token"), sessionConfig(streaming), null, null);
+            setSelfUser(new SelfUserImpl(1, this));
+            setChunkingFilter(ChunkingFilter.ALL);
+            client = testClient = new TestClient(this);
+        }
+
+        private static SessionConfig sessionConfig(boolean streaming)
+        {
+            EnumSet<ConfigFlag> flags = ConfigFlag.getDefault();
+            if (streaming)
+                flags.add(ConfigFlag.STREAMING_GUILD_SETUP);
+            // the client is never connected, it must not be queued to identify
+            ConcurrentSessionController controller = new ConcurrentSessionController()
+            {
+                @Override
+                public void appendSession(@Nonnull SessionConnectNode node) {}
+            };
+            return new SessionConfig(controller, null, null, null, flags, 900, 250);
+        }
+    }
+
+    private static class TestClient extends WebSocketClient
+    {
+        private final List<Long> chunkRequests = new ArrayList<>();
+
+        private TestClient(JDAImpl api)
+        {
+            super(api, Compression.NONE, GatewayIntent.getRaw(EnumSet.allOf(GatewayIntent.class)), GatewayEncoding.JSON);
+        }
+
+        @Override
+        public void sendChunkRequest(DataObject request, int priority, int memberCount)
+        {
+            chunkRequests.add(request.getLong("guild_id"));
+        }
+
+        @Override
+        public void ready() {}
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.utils.DistributedSessionController.FileIdentifyLock;
+import net.dv8tion.jda.api.utils.DistributedSessionController.IdentifyLock;
+import net.dv8tion.jda.api.utils.DistributedSessionController.LocalIdentifyLock;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class IdentifyLockTest
+{
+    @TempDir
+    public Path directory;
+
+    @Test
+    public void testLocalLeaseExpiry() throws Exception
+    {
+        testLeaseExpiry(new LocalIdentifyLock());
+    }
+
+    @Test
+    public void testLocalRenew() throws Exception
+    {
+        testRenew(new LocalIdentifyLock());
+    }
+
+    @Test
+    public void testFileLeaseExpiry() throws Exception
+    {
+        testLeaseExpiry(new FileIdentifyLock(directory));
+    }
+
+    @Test
+    public void testFileRenew() throws Exception
+    {
+        testRenew(new FileIdentifyLock(directory));
+    }
+
+    @Test
+    public void testFileShared() throws Exception
+    {
+        // two controllers on the same directory share the leases
+        Assertions.assertEquals(0, new FileIdentifyLock(directory).tryAcquire(0, 1000));
+        long remaining = new FileIdentifyLock(directory).tryAcquire(0, 1000);
+        Assertions.assertTrue(remaining > 0 && remaining <= 1000, "Lease was not shared: " + remaining);
+    }
+
+    @Test
+    public void testFileOverlappingLock() throws Exception
+    {
+        FileIdentifyLock lock = new FileIdentifyLock(directory);
+        CompletableFuture<Void> renew = new CompletableFuture<>();
+        try (FileChannel channel = FileChannel.open(directory.resolve("identify-0.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock())
+        {
+            // the file lock is held by this JVM, acquiring has to back off instead of failing
+            long backoff = lock.tryAcquire(0, 1000);
+            Assertions.assertTrue(backoff > 0 && backoff < 1000, "Did not back off for local contention: " + backoff);
+
+            // renewing retries until the file lock is released
+            new Thread(() ->
+            {
+                try
+                {
+                    lock.renew(0, 1000);
+                    renew.complete(null);
+                }
+                catch (Throwable e)
+                {
+                    renew.completeExceptionally(e);
+                }
+            }, "IdentifyLockTest-Renew").start();
+            Assertions.assertThrows(TimeoutException.class, () -> renew.get(200, TimeUnit.MILLISECONDS), "Renewed while the file was locked");
+        }
+
+        renew.get(5, TimeUnit.SECONDS);
+        long remaining = lock.tryAcquire(0, 1000);
+        Assertions.assertTrue(remaining > 0 && remaining <= 1000, "Renewed lease was lost: " + remaining);
+    }
+
+    private static void testLeaseExpiry(IdentifyLock lock) throws Exception
+    {
+        Assertions.assertEquals(0, lock.tryAcquire(0, 200));
+        long remaining = lock.tryAcquire(0, 200);
+        Assertions.assertTrue(remaining > 0 && remaining <= 200, "Lease was acquired twice: " + remaining);
+        Assertions.assertEquals(0, lock.tryAcquire(1, 200), "Buckets must not share leases");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((remaining = lock.tryAcquire(0, 200)) > 0)
+        {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "Lease did not expire");
+            Thread.sleep(remaining);
+        }
+        remaining = lock.tryAcquire(0, 200);
+        Assertions.assertTrue(remaining > 0, "Expired lease was not replaced");
+    }
+
+    private static void testRenew(IdentifyLock lock) throws Exception
+    {
+        Assertions.assertEquals(0, lock.tryAcquire(0, 2000));
+        // renewing must never shorten a lease
+        lock.renew(0, 10);
+        Thread.sleep(50);
+        Assertions.assertTrue(lock.tryAcquire(0, 2000) > 1000, "Renew shortened the lease");
+
+        // a renewed lease starts now
+        Assertions.assertEquals(0, lock.tryAcquire(1, 10));
+        lock.renew(1, 2000);
+        Thread.sleep(50);
+        Assertions.assertTrue(lock.tryAcquire(1, 10) > 1000, "Renew did not extend the lease");
+    }
+}
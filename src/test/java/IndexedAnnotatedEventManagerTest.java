@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.IndexedAnnotatedEventManager;
+import net.dv8tion.jda.api.hooks.SubscribeEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class IndexedAnnotatedEventManagerTest
+{
+    // shared with the listeners, which can't capture the test instance when they are loaded by another class loader
+    public static final List<String> RECEIVED = Collections.synchronizedList(new ArrayList<>());
+
+    private IndexedAnnotatedEventManager manager;
+
+    @BeforeEach
+    public void setup()
+    {
+        manager = new IndexedAnnotatedEventManager();
+        RECEIVED.clear();
+    }
+
+    @Test
+    public void testRegistrationOrder()
+    {
+        manager.register(new PublicListener("first"));
+        manager.register(new PrivateListener("second"));
+        manager.register(new PublicListener("third"));
+        manager.handle(new TestEvent());
+        // for every listener, the more specific event type is handled first
+        Assertions.assertEquals(Arrays.asList(
+            "first:test", "first:generic",
+            "second:test",
+            "third:test", "third:generic"), RECEIVED);
+    }
+
+    @Test
+    public void testStaticMethods()
+    {
+        // a class only binds its static methods, an instance binds both
+        manager.register(StaticListener.class);
+        manager.handle(new TestEvent());
+        Assertions.assertEquals(Collections.singletonList("static"), RECEIVED);
+
+        RECEIVED.clear();
+        StaticListener listener = new StaticListener();
+        manager.register(listener);
+        manager.handle(new TestEvent());
+        Assertions.assertEquals(3, RECEIVED.size());
+        Assertions.assertEquals("static", RECEIVED.get(0));
+        Assertions.assertTrue(RECEIVED.subList(1, 3).containsAll(Arrays.asList("instance", "static")));
+
+        RECEIVED.clear();
+        manager.unregister(StaticListener.class);
+        manager.handle(new TestEvent());
+        Assertions.assertEquals(2, RECEIVED.size());
+        Assertions.assertTrue(RECEIVED.containsAll(Arrays.asList("instance", "static")));
+    }
+
+    @Test
+    public void testUnregister()
+    {
+        PublicListener first = new PublicListener("first");
+        PublicListener second = new PublicListener("second");
+        manager.register(first);
+        manager.register(second);
+        manager.handle(new TestEvent());
+
+        RECEIVED.clear();
+        manager.unregister(first);
+        manager.handle(new TestEvent());
+        Assertions.assertEquals(Arrays.asList("second:test", "second:generic"), RECEIVED);
+        Assertions.assertEquals(Collections.singletonList(second), manager.getRegisteredListeners());
+
+        // registering again after the cache of the class was released
+        RECEIVED.clear();
+        manager.unregister(second);
+        manager.handle(new TestEvent());
+        Assertions.assertTrue(RECEIVED.isEmpty());
+        manager.register(first);
+        manager.handle(new TestEvent());
+        Assertions.assertEquals(Arrays.asList("first:test", "first:generic"), RECEIVED);
+    }
+
+    @Test
+    public void testExceptionSkipsOnlyMethod()
+    {
+        manager.register(new FailingListener());
+        manager.register(new PublicListener("next"));
+        manager.handle(new TestEvent());
+        Assertions.assertEquals(Arrays.asList("failing", "failing:generic", "next:test", "next:generic"), RECEIVED);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testChildClassLoader() throws Exception
+    {
+        // the listener class is not visible to the class loader of JDA, it has to be called through a method handle
+        ClassLoader loader = new ChildLoader(getClass().getClassLoader(), getClass().getName(), ChildListener.class.getName());
+        Class<?> type = loader.loadClass(ChildListener.class.getName());
+        Assertions.assertNotSame(ChildListener.class, type);
+        List<String> received = (List<String>) loader.loadClass(getClass().getName()).getField("RECEIVED").get(null);
+
+        manager.register(type.getConstructor().newInstance());
+        manager.handle(new TestEvent());
+        Assertions.assertEquals(Collections.singletonList("child"), received);
+    }
+
+    public static class TestEvent implements GenericEvent
+    {
+        @Nonnull
+        @Override
+        public JDA getJDA()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getResponseNumber()
+        {
+            return 0;
+        }
+    }
+
+    public static class PublicListener
+    {
+        private final String name;
+
+        public PublicListener(String name)
+        {
+            this.name = name;
+        }
+
+        @SubscribeEvent
+        public void onGeneric(GenericEvent event)
+        {
+            RECEIVED.add(name + ":generic");
+        }
+
+        @SubscribeEvent
+        public void onTest(TestEvent event)
+        {
+            RECEIVED.add(name + ":test");
+        }
+    }
+
+    public static class StaticListener
+    {
+        @SubscribeEvent
+        public void onTest(TestEvent event)
+        {
+            RECEIVED.add("instance");
+        }
+
+        @SubscribeEvent
+        public static void onStatic(TestEvent event)
+        {
+            RECEIVED.add("static");
+        }
+    }
+
+    private static class PrivateListener
+    {
+        private final String name;
+
+        private PrivateListener(String name)
+        {
+            this.name = name;
+        }
+
+        @SubscribeEvent
+        private void onTest(TestEvent event)
+        {
+            RECEIVED.add(name + ":test");
+        }
+    }
+
+    public static class FailingListener
+    {
+        @SubscribeEvent
+        public void onTest(TestEvent event)
+        {
+            RECEIVED.add("failing");
+            throw new IllegalStateException("Expected by the test");
+        }
+
+        @SubscribeEvent
+        public void onGeneric(GenericEvent event)
+        {
+            RECEIVED.add("failing:generic");
+        }
+    }
+
+    public static class ChildListener
+    {
+        @SubscribeEvent
+        public void onTest(TestEvent event)
+        {
+            RECEIVED.add("child");
+        }
+    }
+
+    // Defines its own copy of the provided classes and delegates everything else to the parent
+    private static class ChildLoader extends ClassLoader
+    {
+        private final List<String> names;
+
+        private ChildLoader(ClassLoader parent, String... names)
+        {
+            super(parent);
+            this.names = Arrays.asList(names);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+        {
+            if (!names.contains(name))
+                return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name))
+            {
+                Class<?> type = findLoadedClass(name);
+                if (type != null)
+                    return type;
+                try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class"))
+                {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = in.read(buffer)) > 0)
+                        bytes.write(buffer, 0, read);
+                    return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+                }
+                catch (IOException e)
+                {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+}
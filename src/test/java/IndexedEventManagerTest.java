@@ -0,0 +1,301 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.Event;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.ReconnectedEvent;
+import net.dv8tion.jda.api.events.ResumedEvent;
+import net.dv8tion.jda.api.events.UpdateEvent;
+import net.dv8tion.jda.api.events.guild.GenericGuildEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.guild.update.GenericGuildUpdateEvent;
+import net.dv8tion.jda.api.events.guild.update.GuildUpdateNameEvent;
+import net.dv8tion.jda.api.hooks.IEventManager;
+import net.dv8tion.jda.api.hooks.IndexedEventManager;
+import net.dv8tion.jda.api.hooks.InterfacedEventManager;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+// The InterfacedEventManager calls ListenerAdapter#onEvent, the IndexedEventManager has to call the same methods in the same order
+public class IndexedEventManagerTest
+{
+    private final List<String> received = new ArrayList<>();
+    private List<GenericEvent> events;
+
+    @BeforeEach
+    public void setup()
+    {
+        JDA api = new JDAImpl(new AuthorizationConfig("token"));
+        GuildImpl guild = new GuildImpl((JDAImpl) api, 1).setName("new");
+        events = Arrays.asList(
+            new GuildUpdateNameEvent(api, 0, guild, "old"),
+            new GuildLeaveEvent(api, 0, guild),
+            new CustomLeaveEvent(api, guild),
+            new ResumedEvent(api, 0),
+            new ReconnectedEvent(api, 0),
+            new CustomEvent(api));
+    }
+
+    @Test
+    public void testCallOrder()
+    {
+        List<String> calls = assertSameCalls((manager) -> manager.register(new RecordingListener("all", null)));
+        Assertions.assertTrue(calls.containsAll(Arrays.asList("all:update", "all:resume", "all:reconnected", "all:name", "all:leave")));
+        // ListenerAdapter#onEvent calls the generic methods first and then the specific ones, from the event class to its super classes
+        Assertions.assertEquals(Arrays.asList("event:GuildUpdateNameEvent", "all:generic", "all:update", "all:name", "all:guild-update", "all:guild"), calls.subList(0, 6));
+    }
+
+    @Test
+    public void testPartialOverrides()
+    {
+        assertSameCalls((manager) ->
+        {
+            manager.register(new DeprecatedListener());
+            manager.register(new GuildListener());
+            manager.register(new ListenerAdapter() {}); // overrides nothing
+        });
+    }
+
+    @Test
+    public void testExceptionSkipsRemainingMethods()
+    {
+        for (String method : Arrays.asList("generic", "update", "resume", "resumed", "reconnect", "guild", "guild-update", "name", "leave"))
+        {
+            assertSameCalls((manager) ->
+            {
+                manager.register(new RecordingListener("failing", method));
+                manager.register(new RecordingListener("next", null));
+            });
+        }
+    }
+
+    @Test
+    public void testErrorPropagates()
+    {
+        for (IEventManager manager : Arrays.asList(new InterfacedEventManager(), new IndexedEventManager()))
+        {
+            received.clear();
+            manager.register(new ErrorListener());
+            manager.register(new RecordingListener("next", null));
+            Assertions.assertThrows(AssertionError.class, () -> manager.handle(events.get(0)), "Error was not thrown by " + manager);
+            Assertions.assertEquals(Arrays.asList("error:generic"), received, "Listeners after an error were called by " + manager);
+        }
+    }
+
+    @Test
+    public void testRegisterAfterDispatch()
+    {
+        assertSameCalls((manager) ->
+        {
+            RecordingListener first = new RecordingListener("first", null);
+            manager.register(first);
+            dispatch(manager);
+            // the handlers of each event class are cached by now
+            manager.register(new RecordingListener("second", null));
+            manager.register(new GuildListener());
+            dispatch(manager);
+            manager.unregister(first);
+            dispatch(manager);
+            manager.register(first);
+            dispatch(manager);
+        });
+    }
+
+    private List<String> assertSameCalls(Consumer<IEventManager> scenario)
+    {
+        List<String> expected = record(new InterfacedEventManager(), scenario);
+        List<String> actual = record(new IndexedEventManager(), scenario);
+        Assertions.assertEquals(expected, actual);
+        return actual;
+    }
+
+    private List<String> record(IEventManager manager, Consumer<IEventManager> scenario)
+    {
+        received.clear();
+        scenario.accept(manager);
+        dispatch(manager);
+        return new ArrayList<>(received);
+    }
+
+    private void dispatch(IEventManager manager)
+    {
+        for (GenericEvent event : events)
+        {
+            received.add("event:" + event.getClass().getSimpleName());
+            manager.handle(event);
+        }
+    }
+
+    private class RecordingListener extends ListenerAdapter
+    {
+        private final String name;
+        private final String failOn;
+
+        private RecordingListener(String name, String failOn)
+        {
+            this.name = name;
+            this.failOn = failOn;
+        }
+
+        protected void record(String method)
+        {
+            received.add(name + ":" + method);
+            if (method.equals(failOn))
+                throw new IllegalStateException("Test exception in " + method);
+        }
+
+        @Override
+        public void onGenericEvent(@Nonnull GenericEvent event)
+        {
+            record("generic");
+        }
+
+        @Override
+        public void onGenericUpdate(@Nonnull UpdateEvent<?, ?> event)
+        {
+            record("update");
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onResume(@Nonnull ResumedEvent event)
+        {
+            record("resume");
+        }
+
+        @Override
+        public void onResumed(@Nonnull ResumedEvent event)
+        {
+            record("resumed");
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onReconnect(@Nonnull ReconnectedEvent event)
+        {
+            record("reconnect");
+        }
+
+        @Override
+        public void onReconnected(@Nonnull ReconnectedEvent event)
+        {
+            record("reconnected");
+        }
+
+        @Override
+        public void onGenericGuild(@Nonnull GenericGuildEvent event)
+        {
+            record("guild");
+        }
+
+        @Override
+        public void onGenericGuildUpdate(@Nonnull GenericGuildUpdateEvent event)
+        {
+            record("guild-update");
+        }
+
+        @Override
+        public void onGuildUpdateName(@Nonnull GuildUpdateNameEvent event)
+        {
+            record("name");
+        }
+
+        @Override
+        public void onGuildLeave(@Nonnull GuildLeaveEvent event)
+        {
+            record("leave");
+        }
+    }
+
+    // only uses the deprecated methods
+    private class DeprecatedListener extends ListenerAdapter
+    {
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onResume(@Nonnull ResumedEvent event)
+        {
+            received.add("deprecated:resume");
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onReconnect(@Nonnull ReconnectedEvent event)
+        {
+            received.add("deprecated:reconnect");
+        }
+    }
+
+    private class GuildListener extends ListenerAdapter
+    {
+        @Override
+        public void onGenericGuild(@Nonnull GenericGuildEvent event)
+        {
+            received.add("guild:guild");
+        }
+
+        @Override
+        public void onGuildLeave(@Nonnull GuildLeaveEvent event)
+        {
+            received.add("guild:leave");
+        }
+    }
+
+    private class ErrorListener extends ListenerAdapter
+    {
+        @Override
+        public void onGenericEvent(@Nonnull GenericEvent event)
+        {
+            received.add("error:generic");
+            throw new AssertionError("Test error");
+        }
+
+        @Override
+        public void onGuildUpdateName(@Nonnull GuildUpdateNameEvent event)
+        {
+            received.add("error:name");
+        }
+    }
+
+    // a subclass of a known event is handled by the methods of its super classes
+    private static class CustomLeaveEvent extends GuildLeaveEvent
+    {
+        private CustomLeaveEvent(JDA api, GuildImpl guild)
+        {
+            super(api, 0, guild);
+        }
+    }
+
+    // unknown to the ListenerAdapter, only onGenericEvent is called
+    private static class CustomEvent extends Event
+    {
+        private CustomEvent(JDA api)
+        {
+            super(api);
+        }
+    }
+}
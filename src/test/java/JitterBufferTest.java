@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.audio.AudioNatives;
+import net.dv8tion.jda.api.audio.OpusPacket;
+import net.dv8tion.jda.api.audio.ReceiveStatistics;
+import net.dv8tion.jda.internal.audio.AudioPacket;
+import net.dv8tion.jda.internal.audio.Decoder;
+import net.dv8tion.jda.internal.audio.JitterBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class JitterBufferTest
+{
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(OpusPacket.OPUS_FRAME_TIME_AMOUNT);
+
+    // the fake decoder returns one sample with the sequence of a decoded packet,
+    // no samples for a concealed frame and two samples for a recovered frame
+    private static final String PLC = "plc";
+    private static final String FEC = "fec";
+
+    private Decoder decoder;
+    private JitterBuffer buffer;
+    private List<String> frames;
+
+    @BeforeEach
+    public void setup()
+    {
+        // the decoder creates a native opus decoder, even though the fake never uses it
+        Assumptions.assumeTrue(AudioNatives.ensureOpus(), "Opus is not available");
+        decoder = new Decoder(1)
+        {
+            @Override
+            public synchronized short[] decodeFromOpus(AudioPacket packet)
+            {
+                return packet == null ? new short[0] : new short[] { (short) packet.getSequence() };
+            }
+
+            @Override
+            public synchronized short[] decodeFec(byte[] nextPacket)
+            {
+                return new short[] { 0, nextPacket[0] };
+            }
+        };
+        buffer = new JitterBuffer(decoder, 4);
+        frames = new ArrayList<>();
+    }
+
+    @Test
+    public void testInOrder()
+    {
+        push(0, 1, 2, 3);
+        Assertions.assertEquals(Arrays.asList("0", "1", "2", "3"), frames);
+        Assertions.assertFalse(buffer.isWaiting());
+    }
+
+    @Test
+    public void testReorder()
+    {
+        push(0, 2, 1, 3);
+        Assertions.assertEquals(Arrays.asList("0", "1", "2", "3"), frames);
+        ReceiveStatistics statistics = buffer.getStatistics();
+        Assertions.assertEquals(1, statistics.getPacketsReordered());
+        Assertions.assertEquals(0, statistics.getPacketsLost());
+    }
+
+    @Test
+    public void testForwardErrorCorrection()
+    {
+        // the frame of packet 1 is recovered from the packet that followed it
+        push(0, 2, 3);
+        Assertions.assertEquals(Arrays.asList("0", FEC + 2, "2", "3"), frames);
+        ReceiveStatistics statistics = buffer.getStatistics();
+        Assertions.assertEquals(1, statistics.getPacketsLost());
+        Assertions.assertEquals(1, statistics.getFramesRecovered());
+    }
+
+    @Test
+    public void testPacketLossConcealment()
+    {
+        // packet 2 is not buffered yet when packet 1 is given up, so that frame can only be concealed
+        push(0, 3, 4);
+        Assertions.assertEquals(Arrays.asList("0", PLC, FEC + 3, "3", "4"), frames);
+        ReceiveStatistics statistics = buffer.getStatistics();
+        Assertions.assertEquals(2, statistics.getPacketsLost());
+        Assertions.assertEquals(1, statistics.getFramesConcealed());
+        Assertions.assertEquals(1, statistics.getFramesRecovered());
+    }
+
+    @Test
+    public void testSequenceWrap()
+    {
+        push(65534, 0, 65535, 1);
+        Assertions.assertEquals(Arrays.asList("65534", "65535", "0", "1"), frames);
+        Assertions.assertEquals(0, buffer.getStatistics().getPacketsLost());
+    }
+
+    @Test
+    public void testLateAndDuplicate()
+    {
+        push(0, 1, 3);
+        push(0); // already decoded
+        push(3); // still buffered
+        ReceiveStatistics statistics = buffer.getStatistics();
+        Assertions.assertEquals(1, statistics.getPacketsLate());
+        Assertions.assertEquals(1, statistics.getPacketsDuplicated());
+    }
+
+    @Test
+    public void testPollReleasesAfterTargetDepth()
+    {
+        long start = System.nanoTime();
+        buffer.push(packet(0), start, this::handle);
+        buffer.push(packet(2), start + FRAME_NANOS, this::handle);
+        Assertions.assertTrue(buffer.isWaiting());
+        Assertions.assertEquals(Arrays.asList("0"), frames);
+
+        // the speaker stopped sending, the frame behind the gap is released once it waited for the target depth
+        buffer.poll(start + FRAME_NANOS + FRAME_NANOS / 2);
+        Assertions.assertEquals(Arrays.asList("0"), frames);
+        buffer.poll(start + 2 * FRAME_NANOS);
+        Assertions.assertEquals(Arrays.asList("0", FEC + 2, "2"), frames);
+        Assertions.assertFalse(buffer.isWaiting());
+    }
+
+    private void push(int... sequences)
+    {
+        for (int seq : sequences)
+        {
+            // packets arrive exactly every 20ms, so the jitter and the target depth stay at the minimum
+            buffer.push(packet(seq), seq * FRAME_NANOS, this::handle);
+        }
+    }
+
+    private OpusPacket packet(int seq)
+    {
+        AudioPacket packet = new AudioPacket(null, (char) seq, seq * OpusPacket.OPUS_FRAME_SIZE, 1, ByteBuffer.wrap(new byte[] { (byte) seq }));
+        return new OpusPacket(packet, 0, decoder);
+    }
+
+    private void handle(short[] audio)
+    {
+        if (audio.length == 0)
+            frames.add(PLC);
+        else if (audio.length == 2)
+            frames.add(FEC + audio[1]);
+        else
+            frames.add(String.valueOf(audio[0] & 0xFFFF));
+    }
+}
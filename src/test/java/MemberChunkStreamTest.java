@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.GatewayEncoding;
+import net.dv8tion.jda.api.entities.ISnowflake;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.Compression;
+import net.dv8tion.jda.api.utils.ConcurrentSessionController;
+import net.dv8tion.jda.api.utils.concurrent.Task;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.entities.SelfUserImpl;
+import net.dv8tion.jda.internal.requests.WebSocketClient;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.SessionConfig;
+import net.dv8tion.jda.internal.utils.config.ThreadingConfig;
+import net.dv8tion.jda.internal.utils.config.flags.ConfigFlag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+public class MemberChunkStreamTest
+{
+    private static final long GUILD = 100;
+
+    private ThreadingConfig threading;
+    private TestClient client;
+    private GuildImpl guild;
+
+    @BeforeEach
+    public void setup()
+    {
+        threading = ThreadingConfig.getDefault();
+        threading.init(() -> "Test");
+        JDAImpl api = new TestJDA(threading);
+        client = (TestClient) api.getClient();
+        guild = new GuildImpl(api, GUILD).setMemberCount(100);
+    }
+
+    @AfterEach
+    public void cleanup()
+    {
+        threading.shutdownNow();
+    }
+
+    @Test
+    public void testStopEarly()
+    {
+        List<List<Long>> received = new ArrayList<>();
+        AtomicBoolean completed = new AtomicBoolean();
+        guild.loadMemberChunks((members) -> {
+            received.add(ids(members));
+            return received.size() < 2;
+        }).onSuccess(it -> completed.set(true));
+
+        String nonce = client.getNonce();
+        Assertions.assertTrue(handle(nonce, 0, 4, 1, 2));
+        Assertions.assertFalse(completed.get());
+        Assertions.assertTrue(handle(nonce, 1, 4, 3, 4));
+        Assertions.assertTrue(completed.get(), "Returning false must complete the task");
+
+        // the remaining chunks are consumed by the request, but their members are not built
+        Assertions.assertTrue(handle(nonce, 2, 4, 5));
+        Assertions.assertTrue(handle(nonce, 3, 4, 6));
+        Assertions.assertEquals(Arrays.asList(Arrays.asList(1L, 2L), Arrays.asList(3L, 4L)), received);
+        Assertions.assertNull(guild.getMemberById(5));
+        Assertions.assertNull(guild.getMemberById(6));
+        Assertions.assertNotNull(guild.getMemberById(4));
+        // the last chunk removed the request
+        Assertions.assertFalse(handle(nonce, 3, 4, 6));
+    }
+
+    @Test
+    public void testFindMembers()
+    {
+        List<Member> found = new ArrayList<>();
+        guild.findMembers(member -> member.getIdLong() % 2 == 0, 2).onSuccess(found::addAll);
+
+        String nonce = client.getNonce();
+        Assertions.assertTrue(handle(nonce, 0, 3, 1, 2, 3));
+        Assertions.assertTrue(found.isEmpty());
+        Assertions.assertTrue(handle(nonce, 1, 3, 5, 6, 8));
+        Assertions.assertEquals(Arrays.asList(2L, 6L), ids(found));
+
+        Assertions.assertTrue(handle(nonce, 2, 3, 10));
+        Assertions.assertEquals(Arrays.asList(2L, 6L), ids(found));
+        Assertions.assertNull(guild.getMemberById(10));
+    }
+
+    @Test
+    public void testCancelDropsChunksInFlight()
+    {
+        List<List<Long>> received = new ArrayList<>();
+        AtomicBoolean completed = new AtomicBoolean();
+        Task<Void> task = guild.loadMemberChunks((members) -> received.add(ids(members)));
+        task.onSuccess(it -> completed.set(true));
+
+        String nonce = client.getNonce();
+        Assertions.assertTrue(handle(nonce, 0, 3, 1));
+        task.cancel();
+
+        // chunks which were already sent must not end up in the member cache through the fallback path
+        Assertions.assertTrue(handle(nonce, 1, 3, 2));
+        Assertions.assertTrue(handle(nonce, 2, 3, 3));
+        Assertions.assertEquals(Arrays.asList(Arrays.asList(1L)), received);
+        Assertions.assertNull(guild.getMemberById(2));
+        Assertions.assertNull(guild.getMemberById(3));
+        Assertions.assertFalse(completed.get(), "Cancelled task must not complete successfully");
+    }
+
+    private boolean handle(String nonce, int index, int count, long... userIds)
+    {
+        DataArray members = DataArray.empty();
+        for (long id : userIds)
+            members.add(member(id));
+        DataObject chunk = DataObject.empty()
+            .put("guild_id", GUILD)
+            .put("nonce", nonce)
+            .put("chunk_index", index)
+            .put("chunk_count", count)
+            .put("members", members);
+        return client.getChunkManager().handleChunk(GUILD, chunk);
+    }
+
+    private static List<Long> ids(List<? extends ISnowflake> list)
+    {
+        return list.stream().map(ISnowflake::getIdLong).collect(Collectors.toList());
+    }
+
+    private static DataObject member(long id)
+    {
+        DataObject user = DataObject.empty()
+            .put("id", id)
+            .put("username", "User " + id)
+            .put("discriminator", "0001")
+            .put("avatar", null)
+            .put("bot", false)
+            .put("system", false);
+        return DataObject.empty()
+            .put("user", user)
+            .put("nick", null)
+            .put("roles", DataArray.empty())
+            .put("joined_at", "2021-01-01T00:00:00Z")
+            .put("premium_since", null)
+            .put("pending", false);
+    }
+
+    private static class TestJDA extends JDAImpl
+    {
+        private TestJDA(ThreadingConfig threading)
+        {
+            super(new AuthorizationConfig("token"), sessionConfig(), threading, null);
+            setSelfUser(new SelfUserImpl(999, this));
+            setChunkingFilter(ChunkingFilter.ALL);
+            client = new TestClient(this);
+        }
+
+        private static SessionConfig sessionConfig()
+        {
+            // the client is never connected, it must not be queued to identify
+            ConcurrentSessionController controller = new ConcurrentSessionController()
+            {
+                @Override
+                public void appendSession(@Nonnull SessionConnectNode node) {}
+            };
+            return new SessionConfig(controller, null, null, null, ConfigFlag.getDefault(), 900, 250);
+        }
+    }
+
+    private static class TestClient extends WebSocketClient
+    {
+        private final List<DataObject> chunkRequests = new ArrayList<>();
+
+        private TestClient(JDAImpl api)
+        {
+            super(api, Compression.NONE, GatewayIntent.getRaw(GatewayIntent.GUILD_MEMBERS), GatewayEncoding.JSON);
+        }
+
+        @Override
+        public void sendChunkRequest(DataObject request)
+        {
+            chunkRequests.add(request);
+        }
+
+        private String getNonce()
+        {
+            Assertions.assertEquals(1, chunkRequests.size());
+            return chunkRequests.get(0).getString("nonce");
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.entities.MemberImpl;
+import net.dv8tion.jda.internal.entities.RoleImpl;
+import net.dv8tion.jda.internal.entities.SelfUserImpl;
+import net.dv8tion.jda.internal.entities.UserImpl;
+import net.dv8tion.jda.internal.utils.UnlockHook;
+import net.dv8tion.jda.internal.utils.cache.MemberCacheViewImpl;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class MemberIndexTest
+{
+    private GuildImpl guild;
+    private MemberCacheViewImpl indexed, plain;
+    private RoleImpl red, blue, green;
+
+    @BeforeEach
+    public void setup()
+    {
+        JDAImpl api = new JDAImpl(new AuthorizationConfig("token"));
+        api.setSelfUser(new SelfUserImpl(1000, api));
+        guild = new GuildImpl(api, 1);
+        indexed = new MemberCacheViewImpl();
+        indexed.enableIndex();
+        plain = new MemberCacheViewImpl();
+        red = role(10, 1);
+        blue = role(11, 2);
+        green = role(12, 3);
+    }
+
+    @Test
+    public void testUnmodifiable()
+    {
+        add(member(1, "Alice", null, red));
+        for (MemberCacheViewImpl view : Arrays.asList(indexed, plain))
+        {
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> view.getElementsByName("alice", true).clear());
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> view.getElementsByUsername("alice", true).clear());
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> view.getElementsByNickname(null, true).clear());
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> view.getElementsByPrefix("al", 10).clear());
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> view.getElementsWithRoles(red).clear());
+        }
+    }
+
+    @Test
+    public void testPrefix()
+    {
+        add(member(1, "Bob", null));
+        add(member(2, "alice", null));
+        add(member(3, "Carol", "Alan"));
+        add(member(4, "Albert", "Alf")); // matches twice, but is only returned once
+        add(member(5, "Dave", "bobby"));
+
+        // Alan, Albert (and Alf), alice
+        Assertions.assertEquals(Arrays.asList(3L, 4L, 2L), ids(indexed.getElementsByPrefix("AL", 10)), "Members are ordered by their matching name");
+        Assertions.assertEquals(Arrays.asList(3L, 4L), ids(indexed.getElementsByPrefix("al", 2)));
+        Assertions.assertEquals(Arrays.asList(1L, 5L), ids(indexed.getElementsByPrefix("bob", 10)));
+        Assertions.assertTrue(indexed.getElementsByPrefix("x", 10).isEmpty());
+        assertSameMembers(plain.getElementsByPrefix("al", 10), indexed.getElementsByPrefix("al", 10));
+    }
+
+    @Test
+    public void testNames()
+    {
+        add(member(1, "Alice", null));
+        add(member(2, "Bob", "alice"));
+        add(member(3, "ALICE", "Carol"));
+
+        for (boolean ignoreCase : new boolean[] { true, false })
+        {
+            assertSameMembers(plain.getElementsByName("alice", ignoreCase), indexed.getElementsByName("alice", ignoreCase));
+            assertSameMembers(plain.getElementsByUsername("alice", ignoreCase), indexed.getElementsByUsername("alice", ignoreCase));
+            assertSameMembers(plain.getElementsByNickname("alice", ignoreCase), indexed.getElementsByNickname("alice", ignoreCase));
+        }
+        Assertions.assertEquals(Arrays.asList(2L), ids(indexed.getElementsByName("alice", false)));
+        Assertions.assertEquals(Arrays.asList(1L, 2L), ids(indexed.getElementsByName("alice", true)));
+    }
+
+    @Test
+    public void testRoleIntersection()
+    {
+        add(member(1, "A", null, red));
+        add(member(2, "B", null, red, blue));
+        add(member(3, "C", null, blue));
+        add(member(4, "D", null, red, blue, green));
+
+        Assertions.assertEquals(Arrays.asList(2L, 4L), ids(indexed.getElementsWithRoles(red, blue)));
+        Assertions.assertEquals(Arrays.asList(4L), ids(indexed.getElementsWithRoles(green, red)));
+        Assertions.assertEquals(Arrays.asList(1L, 2L, 4L), ids(indexed.getElementsWithRoles(red)));
+        Assertions.assertTrue(indexed.getElementsWithRoles(role(13, 4), red).isEmpty());
+        for (List<Role> roles : Arrays.asList(Arrays.<Role>asList(red, blue), Arrays.<Role>asList(green), Collections.<Role>emptyList()))
+            assertSameMembers(plain.getElementsWithRoles(roles), indexed.getElementsWithRoles(roles));
+    }
+
+    @Test
+    public void testStaleEntries()
+    {
+        MemberImpl member = member(1, "Alice", "Ally", red, blue);
+        add(member);
+        add(member(2, "Bob", null, red, blue));
+
+        // the member changed, but the index was not updated yet
+        ((UserImpl) member.getUser()).setName("Eve");
+        member.setNickname(null);
+        member.getRoleSet().remove(blue);
+        Assertions.assertTrue(indexed.getElementsByPrefix("al", 10).isEmpty());
+        Assertions.assertTrue(indexed.getElementsByName("alice", true).isEmpty());
+        Assertions.assertTrue(indexed.getElementsByNickname("ally", true).isEmpty());
+        Assertions.assertEquals(Arrays.asList(2L), ids(indexed.getElementsWithRoles(red, blue)));
+
+        indexed.updateIndex(member);
+        Assertions.assertEquals(Arrays.asList(1L), ids(indexed.getElementsByPrefix("ev", 10)));
+        Assertions.assertEquals(Arrays.asList(1L, 2L), ids(indexed.getElementsWithRoles(red)));
+
+        // removed members are dropped from the index
+        indexed.remove(1);
+        Assertions.assertTrue(indexed.getElementsByPrefix("ev", 10).isEmpty());
+        Assertions.assertEquals(Arrays.asList(2L), ids(indexed.getElementsWithRoles(red)));
+    }
+
+    private void add(MemberImpl member)
+    {
+        for (MemberCacheViewImpl view : Arrays.asList(indexed, plain))
+        {
+            try (UnlockHook hook = view.writeLock())
+            {
+                view.getMap().put(member.getIdLong(), member);
+            }
+            view.updateIndex(member);
+        }
+    }
+
+    private RoleImpl role(long id, int position)
+    {
+        return new RoleImpl(id, guild).setRawPosition(position);
+    }
+
+    private MemberImpl member(long id, String name, String nickname, Role... roles)
+    {
+        UserImpl user = new UserImpl(id, guild.getJDA()).setName(name);
+        MemberImpl member = new MemberImpl(guild, user).setNickname(nickname);
+        member.getRoleSet().addAll(Arrays.asList(roles));
+        return member;
+    }
+
+    private static List<Long> ids(List<Member> members)
+    {
+        return members.stream().map(Member::getIdLong).collect(Collectors.toList());
+    }
+
+    private static void assertSameMembers(List<Member> expected, List<Member> actual)
+    {
+        Assertions.assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+        Assertions.assertEquals(expected.size(), actual.size());
+    }
+}
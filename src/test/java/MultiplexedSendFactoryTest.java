@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.audio.factory.IAudioSendSystem;
+import net.dv8tion.jda.api.audio.factory.IPacketProvider;
+import net.dv8tion.jda.api.audio.factory.MultiplexedSendFactory;
+import net.dv8tion.jda.api.audio.hooks.ConnectionStatus;
+import net.dv8tion.jda.api.entities.VoiceChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class MultiplexedSendFactoryTest
+{
+    private DatagramSocket sink;
+    private final List<FakeProvider> providers = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() throws SocketException
+    {
+        sink = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+    }
+
+    @AfterEach
+    public void cleanup()
+    {
+        providers.forEach((provider) -> provider.socket.close());
+        sink.close();
+    }
+
+    @Test
+    public void testSlotAssignment() throws SocketException
+    {
+        // the wheel threads never run, this only checks where connections are placed
+        WheelFactory factory = new WheelFactory(2);
+        Set<String> used = new HashSet<>();
+        List<WheelFactory.SlotConnection> connections = new ArrayList<>();
+        for (int i = 0; i < 40; i++)
+        {
+            WheelFactory.SlotConnection connection = factory.createSendSystem(provider());
+            connection.start();
+            connections.add(connection);
+            Assertions.assertTrue(used.add(connection.getPosition()), "Slot was assigned twice before the wheels were full: " + connection.getPosition());
+        }
+        Assertions.assertEquals(40, factory.getConnectionCount());
+
+        // a free slot is reused before any slot is assigned twice
+        WheelFactory.SlotConnection removed = connections.get(13);
+        removed.shutdown();
+        Assertions.assertEquals(39, factory.getConnectionCount());
+        WheelFactory.SlotConnection replacement = factory.createSendSystem(provider());
+        replacement.start();
+        Assertions.assertEquals(removed.position, replacement.getPosition());
+
+        // once full, the next connections are spread over both threads
+        WheelFactory.SlotConnection first = factory.createSendSystem(provider());
+        WheelFactory.SlotConnection second = factory.createSendSystem(provider());
+        first.start();
+        second.start();
+        Assertions.assertNotEquals(first.getThread(), second.getThread());
+        Assertions.assertEquals(42, factory.getConnectionCount());
+    }
+
+    @Test
+    public void testSendsOncePerFrame() throws Exception
+    {
+        MultiplexedSendFactory factory = new MultiplexedSendFactory(1);
+        try
+        {
+            List<IAudioSendSystem> systems = new ArrayList<>();
+            for (int i = 0; i < 3; i++)
+            {
+                IAudioSendSystem system = factory.createSendSystem(provider());
+                system.start();
+                systems.add(system);
+            }
+
+            awaitCondition(() -> providers.stream().allMatch((provider) -> factory.getStatistics().get(provider.identifier).getPacketsSent() >= 10));
+            Assertions.assertEquals(3, factory.getStatistics().size());
+            long start = System.nanoTime();
+            long sent = factory.getStatistics().get(providers.get(0).identifier).getPacketsSent();
+            Thread.sleep(500);
+            long frames = (System.nanoTime() - start) / 20_000_000L;
+            long actual = factory.getStatistics().get(providers.get(0).identifier).getPacketsSent() - sent;
+            // skipped frames are never sent in a burst
+            Assertions.assertTrue(actual <= frames + 1, "Sent " + actual + " packets in " + frames + " frames");
+
+            systems.forEach(IAudioSendSystem::shutdown);
+            Assertions.assertEquals(0, factory.getConnectionCount());
+            Assertions.assertTrue(factory.getStatistics().isEmpty());
+        }
+        finally
+        {
+            factory.shutdown();
+        }
+    }
+
+    @Test
+    public void testStartAfterShutdown() throws Exception
+    {
+        MultiplexedSendFactory factory = new MultiplexedSendFactory(1);
+        IAudioSendSystem created = factory.createSendSystem(provider());
+        factory.shutdown();
+
+        // connections started after the shutdown fall back to their own thread
+        created.start();
+        IAudioSendSystem late = factory.createSendSystem(provider());
+        late.start();
+        Assertions.assertEquals(0, factory.getConnectionCount());
+        awaitCondition(() -> providers.stream().allMatch((provider) -> provider.polls.get() > 2));
+
+        created.shutdown();
+        late.shutdown();
+        int polls = providers.get(0).polls.get();
+        Thread.sleep(100);
+        Assertions.assertTrue(providers.get(0).polls.get() <= polls + 1, "Fallback did not stop on shutdown");
+    }
+
+    private FakeProvider provider() throws SocketException
+    {
+        FakeProvider provider = new FakeProvider("connection-" + providers.size(), (InetSocketAddress) sink.getLocalSocketAddress());
+        providers.add(provider);
+        return provider;
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean())
+        {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "Condition was not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private static class WheelFactory extends MultiplexedSendFactory
+    {
+        private WheelFactory(int threadCount)
+        {
+            super(threadCount, (r) -> new Thread(() -> {}));
+        }
+
+        @Nonnull
+        @Override
+        public SlotConnection createSendSystem(@Nonnull IPacketProvider packetProvider)
+        {
+            return new SlotConnection(packetProvider);
+        }
+
+        private class SlotConnection extends Connection
+        {
+            private String position;
+
+            private SlotConnection(IPacketProvider packetProvider)
+            {
+                super(packetProvider);
+            }
+
+            @Override
+            public void start()
+            {
+                super.start();
+                position = getPosition();
+            }
+
+            private Object getThread()
+            {
+                return worker;
+            }
+
+            private String getPosition()
+            {
+                return System.identityHashCode(worker) + ":" + slot;
+            }
+        }
+    }
+
+    private static class FakeProvider implements IPacketProvider
+    {
+        private final String identifier;
+        private final InetSocketAddress address;
+        private final DatagramSocket socket;
+        private final AtomicInteger polls = new AtomicInteger();
+
+        private FakeProvider(String identifier, InetSocketAddress address) throws SocketException
+        {
+            this.identifier = identifier;
+            this.address = address;
+            this.socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        }
+
+        @Nonnull
+        @Override
+        public String getIdentifier()
+        {
+            return identifier;
+        }
+
+        @Nonnull
+        @Override
+        public VoiceChannel getConnectedChannel()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Nonnull
+        @Override
+        public DatagramSocket getUdpSocket()
+        {
+            return socket;
+        }
+
+        @Nonnull
+        @Override
+        public InetSocketAddress getSocketAddress()
+        {
+            return address;
+        }
+
+        @Override
+        public ByteBuffer getNextPacketRaw(boolean changeTalking)
+        {
+            polls.incrementAndGet();
+            return ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 });
+        }
+
+        @Override
+        public DatagramPacket getNextPacket(boolean changeTalking)
+        {
+            polls.incrementAndGet();
+            return new DatagramPacket(new byte[] { 1, 2, 3, 4 }, 4, address);
+        }
+
+        @Override
+        public void onConnectionError(@Nonnull ConnectionStatus status) {}
+
+        @Override
+        public void onConnectionLost() {}
+    }
+}
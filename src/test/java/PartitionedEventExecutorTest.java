@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.PartitionedEventExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class PartitionedEventExecutorTest
+{
+    private ExecutorService pool;
+
+    @BeforeEach
+    public void setup()
+    {
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void cleanup()
+    {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testLaneOrder() throws Exception
+    {
+        PartitionedEventExecutor executor = create(8, 1000, 1, TimeUnit.SECONDS);
+        Map<Long, List<Integer>> received = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(10 * 500);
+        for (int i = 0; i < 500; i++)
+        {
+            for (long key = 0; key < 10; key++)
+            {
+                int index = i;
+                long partition = key;
+                executor.execute(new KeyEvent(key), () ->
+                {
+                    received.computeIfAbsent(partition, k -> Collections.synchronizedList(new ArrayList<>())).add(index);
+                    done.countDown();
+                });
+            }
+        }
+
+        Assertions.assertTrue(done.await(10, TimeUnit.SECONDS), "Not all events were handled");
+        // the lane counts an event as pending until its listener returned
+        awaitEmpty(executor);
+        for (List<Integer> events : received.values())
+        {
+            for (int i = 0; i < events.size(); i++)
+                Assertions.assertEquals(i, events.get(i), "Events of a partition were reordered");
+        }
+        Assertions.assertEquals(5000, executor.getDispatchedEvents());
+        Assertions.assertEquals(0, executor.getQueueSize());
+    }
+
+    @Test
+    public void testLanesRunInParallel() throws Exception
+    {
+        PartitionedEventExecutor executor = create(64, 10, 1, TimeUnit.SECONDS);
+        // find two keys on different lanes, a blocked lane must not hold back the other one
+        long other = 1;
+        while (sameLane(executor, 0, other))
+            other++;
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch handled = new CountDownLatch(1);
+        executor.execute(new KeyEvent(0), () -> await(release));
+        executor.execute(new KeyEvent(other), handled::countDown);
+        Assertions.assertTrue(handled.await(5, TimeUnit.SECONDS), "Blocked lane held back another lane");
+        release.countDown();
+    }
+
+    @Test
+    public void testBoundedWait() throws Exception
+    {
+        PartitionedEventExecutor executor = create(1, 2, 50, TimeUnit.MILLISECONDS);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new KeyEvent(0), () -> await(release));
+        executor.execute(new KeyEvent(0), () -> {});
+        executor.execute(new KeyEvent(0), () -> {});
+
+        // the lane is full, the first event waits for the timeout and the following events don't wait at all
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++)
+            executor.execute(new KeyEvent(0), () -> {});
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assertions.assertTrue(elapsed < 1000, "Waited " + elapsed + " ms for a full lane");
+        Assertions.assertEquals(1, executor.getOverflowCount());
+        Assertions.assertTrue(executor.getQueueSize() > executor.getLaneCapacity());
+        Assertions.assertFalse(executor.offer(new KeyEvent(0), () -> {}));
+
+        release.countDown();
+        awaitEmpty(executor);
+        Assertions.assertTrue(executor.offer(new KeyEvent(0), () -> {}));
+    }
+
+    @Test
+    public void testRejectedExecution() throws Exception
+    {
+        PartitionedEventExecutor executor = create(4, 10, 1, TimeUnit.SECONDS);
+        pool.shutdown();
+        List<Integer> received = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            int index = i;
+            executor.execute(new KeyEvent(0), () -> received.add(index));
+        }
+        // a shut down executor runs the events on the dispatching thread, in order
+        Assertions.assertEquals(Arrays.asList(0, 1, 2, 3, 4), received);
+    }
+
+    private PartitionedEventExecutor create(int lanes, int capacity, long maxWait, TimeUnit unit)
+    {
+        return new PartitionedEventExecutor(pool, lanes, capacity, (event) -> ((KeyEvent) event).key, maxWait, unit);
+    }
+
+    private static boolean sameLane(PartitionedEventExecutor executor, long first, long second) throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new KeyEvent(first), () -> await(release));
+        boolean offered = true;
+        for (int i = 0; i < executor.getLaneCapacity(); i++)
+            offered &= executor.offer(new KeyEvent(second), () -> {});
+        release.countDown();
+        awaitEmpty(executor);
+        return !offered;
+    }
+
+    private static void awaitEmpty(PartitionedEventExecutor executor) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getQueueSize() > 0)
+        {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "Lanes did not drain");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class KeyEvent implements GenericEvent
+    {
+        private final long key;
+
+        private KeyEvent(long key)
+        {
+            this.key = key;
+        }
+
+        @Nonnull
+        @Override
+        public JDA getJDA()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getResponseNumber()
+        {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import net.dv8tion.jda.api.sharding.DefaultShardManager;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.utils.UnlockHook;
+import net.dv8tion.jda.internal.utils.cache.ShardCacheViewImpl;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.ThreadingConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class ReshardingTest
+{
+    private TestShardManager manager;
+
+    @BeforeEach
+    public void setup()
+    {
+        manager = new TestShardManager();
+    }
+
+    @AfterEach
+    public void cleanup()
+    {
+        manager.shutdown();
+    }
+
+    @Test
+    public void testSwap() throws Exception
+    {
+        JDAImpl previous = manager.current;
+        List<GenericEvent> received = Collections.synchronizedList(new ArrayList<>());
+        manager.listener = received::add;
+        manager.connect = false;
+
+        CompletableFuture<Void> future = manager.reshard(2);
+        JDAImpl first = manager.awaitBuilt(0);
+        JDAImpl second = manager.awaitBuilt(1);
+
+        // events of warming shards are dropped
+        first.handleEvent(new TestEvent(first));
+        Assertions.assertTrue(received.isEmpty());
+        Assertions.assertSame(previous, manager.getShardById(0));
+
+        first.setStatus(JDA.Status.CONNECTED);
+        second.setStatus(JDA.Status.CONNECTED);
+        future.get(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(2, manager.getShardsTotal());
+        Assertions.assertSame(first, manager.getShardById(0));
+        Assertions.assertSame(second, manager.getShardById(1));
+        Assertions.assertEquals(JDA.Status.SHUTDOWN, previous.getStatus());
+
+        first.handleEvent(new TestEvent(first));
+        Assertions.assertEquals(1, received.size());
+    }
+
+    @Test
+    public void testShutdownWhileBuilding() throws Exception
+    {
+        // shutdown finishes while the last new shard is built, it is not in the pending shards yet
+        // and would wait forever for a connection if resharding didn't shut it down
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        manager.connect = false;
+        manager.beforeBuild = () ->
+        {
+            building.countDown();
+            await(release);
+        };
+
+        CompletableFuture<Void> future = manager.reshard(1);
+        Assertions.assertTrue(building.await(10, TimeUnit.SECONDS));
+        manager.shutdown();
+        Assertions.assertTrue(manager.awaitExecutor(), "Shutdown did not finish");
+        release.countDown();
+
+        ExecutionException failure = Assertions.assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(failure.getCause() instanceof IllegalStateException);
+        Assertions.assertEquals(1, manager.built.size(), "Resharding continued after shutdown");
+        for (JDAImpl jda : manager.built)
+            Assertions.assertEquals(JDA.Status.SHUTDOWN, jda.getStatus(), "New shard was not shut down");
+        Assertions.assertEquals(JDA.Status.SHUTDOWN, manager.current.getStatus());
+    }
+
+    @Test
+    public void testShutdownWhileLoading() throws Exception
+    {
+        // the new shards never finish loading, shutdown has to stop them
+        manager.connect = false;
+        CompletableFuture<Void> future = manager.reshard(2);
+        manager.awaitBuilt(1);
+        manager.shutdown();
+
+        Assertions.assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(manager.awaitExecutor(), "Shutdown did not finish");
+        for (JDAImpl jda : manager.built)
+            Assertions.assertEquals(JDA.Status.SHUTDOWN, jda.getStatus(), "New shard was not shut down");
+        Assertions.assertSame(manager.current, manager.getShardById(0), "Shards were swapped after shutdown");
+    }
+
+    @Test
+    public void testFailedBuild() throws Exception
+    {
+        manager.beforeBuild = () ->
+        {
+            if (manager.built.size() == 1)
+                throw new IllegalStateException("Expected by the test");
+        };
+        CompletableFuture<Void> future = manager.reshard(2);
+        Assertions.assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(JDA.Status.SHUTDOWN, manager.built.get(0).getStatus());
+        Assertions.assertSame(manager.current, manager.getShardById(0));
+        Assertions.assertEquals(1, manager.getShardsTotal());
+
+        // the shard manager can reshard again after a failure
+        manager.beforeBuild = () -> {};
+        manager.reshard(1).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(JDA.Status.SHUTDOWN, manager.current.getStatus());
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Shard manager with one connected shard, which builds shards without connecting them to a gateway
+    private static class TestShardManager extends DefaultShardManager
+    {
+        private final JDAImpl current;
+        private final List<JDAImpl> built = new CopyOnWriteArrayList<>();
+        private volatile Runnable beforeBuild = () -> {};
+        private volatile boolean connect = true;
+        private volatile EventListener listener;
+
+        private TestShardManager()
+        {
+            super("token");
+            current = createShard(false);
+            current.setStatus(JDA.Status.CONNECTED);
+            try (UnlockHook hook = shards.writeLock())
+            {
+                shards.getMap().put(0, current);
+            }
+        }
+
+        private JDAImpl createShard(boolean suspendEvents)
+        {
+            // the pools are usually created on login
+            ThreadingConfig threading = ThreadingConfig.getDefault();
+            threading.init(() -> "Test");
+            JDAImpl jda = new JDAImpl(new AuthorizationConfig("token"), null, threading, null);
+            jda.setEventsSuspended(suspendEvents);
+            return jda;
+        }
+
+        @Override
+        protected JDAImpl buildInstance(int shardId, int shardsTotal, boolean suspendEvents)
+        {
+            beforeBuild.run();
+            JDAImpl jda = createShard(suspendEvents);
+            if (listener != null)
+                jda.addEventListener(listener);
+            if (connect)
+                jda.setStatus(JDA.Status.CONNECTED);
+            built.add(jda);
+            return jda;
+        }
+
+        private JDAImpl awaitBuilt(int index) throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (built.size() <= index)
+            {
+                Assertions.assertTrue(System.currentTimeMillis() < deadline, "Shard " + index + " was not built");
+                Thread.sleep(5);
+            }
+            return built.get(index);
+        }
+
+        private boolean awaitExecutor() throws InterruptedException
+        {
+            return executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static class TestEvent implements GenericEvent
+    {
+        private final JDA api;
+
+        private TestEvent(JDA api)
+        {
+            this.api = api;
+        }
+
+        @Nonnull
+        @Override
+        public JDA getJDA()
+        {
+            return api;
+        }
+
+        @Override
+        public long getResponseNumber()
+        {
+            return 0;
+        }
+    }
+}
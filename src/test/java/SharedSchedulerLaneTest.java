@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.sharding.SharedThreadPoolProvider;
+import net.dv8tion.jda.internal.utils.concurrent.SharedSchedulerLane;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SharedSchedulerLaneTest
+{
+    private SharedThreadPoolProvider provider;
+
+    @BeforeEach
+    public void setup()
+    {
+        provider = new SharedThreadPoolProvider("Test", 1, 1, 4);
+    }
+
+    @AfterEach
+    public void cleanup()
+    {
+        provider.shutdown();
+    }
+
+    @Test
+    public void testFixedRate() throws Exception
+    {
+        ScheduledExecutorService lane = provider.provide(0);
+        List<Long> runs = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(5);
+        long start = System.nanoTime();
+        ScheduledFuture<?> future = lane.scheduleAtFixedRate(() ->
+        {
+            runs.add(System.nanoTime() - start);
+            done.countDown();
+        }, 20, 20, TimeUnit.MILLISECONDS);
+
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS), "Periodic task did not repeat");
+        future.cancel(false);
+        // the period is measured from the trigger time, every run happens after its due time
+        for (int i = 0; i < 5; i++)
+            Assertions.assertTrue(runs.get(i) >= TimeUnit.MILLISECONDS.toNanos(20 * (i + 1)), "Run " + i + " was early");
+        Assertions.assertTrue(future.isCancelled());
+        Assertions.assertEquals(0, provider.getScheduledCount(0));
+    }
+
+    @Test
+    public void testCancel() throws Exception
+    {
+        ScheduledExecutorService lane = provider.provide(0);
+        AtomicInteger runs = new AtomicInteger();
+        ScheduledFuture<?> delayed = lane.schedule(runs::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> periodic = lane.scheduleWithFixedDelay(runs::incrementAndGet, 100, 10, TimeUnit.MILLISECONDS);
+        Assertions.assertEquals(2, provider.getScheduledCount(0));
+
+        Assertions.assertTrue(delayed.cancel(false));
+        Assertions.assertTrue(periodic.cancel(false));
+        Assertions.assertEquals(0, provider.getScheduledCount(0));
+        Thread.sleep(200);
+        Assertions.assertEquals(0, runs.get());
+        Assertions.assertThrows(CancellationException.class, delayed::get);
+    }
+
+    @Test
+    public void testShutdown() throws Exception
+    {
+        ScheduledExecutorService lane = provider.provide(0);
+        AtomicInteger runs = new AtomicInteger();
+        ScheduledFuture<?> delayed = lane.schedule(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> periodic = lane.scheduleAtFixedRate(runs::incrementAndGet, 50, 50, TimeUnit.MILLISECONDS);
+
+        // like the ScheduledThreadPoolExecutor, delayed tasks still run but periodic tasks are cancelled
+        lane.shutdown();
+        Assertions.assertThrows(RejectedExecutionException.class, () -> lane.execute(() -> {}));
+        Assertions.assertTrue(periodic.isCancelled());
+        Assertions.assertTrue(lane.awaitTermination(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(delayed.isDone());
+        Assertions.assertEquals(1, runs.get());
+
+        // the terminated lane is removed from the provider, the shard gets a new lane
+        Assertions.assertFalse(provider.getQueueDepths().containsKey(0));
+        ScheduledExecutorService next = provider.provide(0);
+        Assertions.assertNotSame(lane, next);
+        Assertions.assertEquals(1, provider.getQueueDepths().size());
+    }
+
+    @Test
+    public void testShutdownNow() throws Exception
+    {
+        ScheduledExecutorService lane = provider.provide(0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        lane.execute(() ->
+        {
+            started.countDown();
+            await(release);
+        });
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        lane.execute(() -> {});
+        lane.schedule(() -> {}, 1, TimeUnit.HOURS);
+
+        List<Runnable> remaining = lane.shutdownNow();
+        Assertions.assertEquals(2, remaining.size());
+        Assertions.assertFalse(lane.isTerminated(), "Lane terminated while a task was running");
+        release.countDown();
+        Assertions.assertTrue(lane.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBusyLaneYields() throws Exception
+    {
+        // one worker, the busy lane yields after 4 tasks and the other lane must get its turn long before it is done
+        ScheduledExecutorService busy = provider.provide(0);
+        ScheduledExecutorService other = provider.provide(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        busy.execute(() -> await(release));
+        for (int i = 0; i < 100; i++)
+        {
+            int index = i;
+            busy.execute(() -> order.add("busy " + index));
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        other.execute(() ->
+        {
+            order.add("other");
+            done.countDown();
+        });
+
+        release.countDown();
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        int position = order.indexOf("other");
+        Assertions.assertTrue(position < 20, "Other lane only ran after " + position + " tasks of the busy lane");
+    }
+
+    @Test
+    public void testManagedBlock() throws Exception
+    {
+        // the only worker blocks, the pool has to add a thread for the other lane
+        ScheduledExecutorService first = provider.provide(0);
+        ScheduledExecutorService second = provider.provide(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        first.submit(() -> SharedSchedulerLane.managedBlock(() -> release.await(10, TimeUnit.SECONDS)));
+        second.execute(done::countDown);
+        try
+        {
+            Assertions.assertTrue(done.await(5, TimeUnit.SECONDS), "Blocked worker held back the other lane");
+        }
+        finally
+        {
+            release.countDown();
+        }
+        Assertions.assertThrows(InterruptedException.class, () -> SharedSchedulerLane.managedBlock(() ->
+        {
+            throw new InterruptedException();
+        }));
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
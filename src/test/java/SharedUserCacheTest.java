@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.UserImpl;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.cache.SharedUserCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class SharedUserCacheTest
+{
+    private JDAImpl first, second, third;
+    private SharedUserCache cache;
+
+    @BeforeEach
+    public void setup()
+    {
+        first = new JDAImpl(new AuthorizationConfig("first"));
+        second = new JDAImpl(new AuthorizationConfig("second"));
+        third = new JDAImpl(new AuthorizationConfig("third"));
+        cache = new SharedUserCache(() -> Arrays.asList(first, second, third).stream());
+    }
+
+    @Test
+    public void testAcquireSharesInstance()
+    {
+        UserImpl user = new UserImpl(1, first);
+        Assertions.assertSame(user, cache.acquire(user, first));
+        Assertions.assertSame(user, cache.acquire(new UserImpl(1, second), second), "Second shard must reuse the instance");
+        Assertions.assertSame(first, user.getJDA());
+        Assertions.assertEquals(2, cache.getReferenceCount(1));
+        Assertions.assertEquals(1, cache.size());
+
+        // acquiring again from the same shard does not add another reference
+        cache.acquire(user, second);
+        Assertions.assertEquals(2, cache.getReferenceCount(1));
+    }
+
+    @Test
+    public void testReleaseEvictsLast()
+    {
+        UserImpl user = new UserImpl(1, first);
+        cache.acquire(user, first);
+        cache.acquire(user, second);
+
+        Assertions.assertFalse(cache.release(1, second));
+        Assertions.assertEquals(1, cache.getReferenceCount(1));
+        Assertions.assertFalse(cache.release(1, second), "Releasing twice must not drop the reference of another shard");
+        Assertions.assertEquals(1, cache.getReferenceCount(1));
+        Assertions.assertSame(user, cache.getElementById(1));
+
+        Assertions.assertTrue(cache.release(1, first));
+        Assertions.assertEquals(0, cache.getReferenceCount(1));
+        Assertions.assertNull(cache.getElementById(1));
+        Assertions.assertTrue(cache.release(1, first), "Unknown users are always evicted");
+    }
+
+    @Test
+    public void testRebind()
+    {
+        UserImpl user = new UserImpl(1, first);
+        cache.acquire(user, first);
+        cache.acquire(user, second);
+        cache.acquire(user, third);
+
+        // releasing a shard the user is not bound to keeps the binding
+        Assertions.assertFalse(cache.release(1, second));
+        Assertions.assertSame(first, user.getJDA());
+
+        // releasing the bound shard moves the user to a remaining holder
+        Assertions.assertFalse(cache.release(1, first));
+        Assertions.assertSame(third, user.getJDA());
+
+        // a shard acquiring the user again does not take over the binding
+        cache.acquire(user, first);
+        Assertions.assertSame(third, user.getJDA());
+        Assertions.assertFalse(cache.release(1, third));
+        Assertions.assertSame(first, user.getJDA());
+    }
+}
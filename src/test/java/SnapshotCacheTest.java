@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.entities.MemberImpl;
+import net.dv8tion.jda.internal.entities.RoleImpl;
+import net.dv8tion.jda.internal.entities.UserImpl;
+import net.dv8tion.jda.internal.handle.SnapshotCache;
+import net.dv8tion.jda.internal.utils.UnlockHook;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class SnapshotCacheTest
+{
+    private static final long SELF_ID = 999;
+    private static final long JOINED = OffsetDateTime.parse("2021-02-03T04:05:06.789Z").toInstant().toEpochMilli();
+
+    @TempDir
+    Path directory;
+
+    private File file;
+    private GuildImpl first, second;
+
+    @BeforeEach
+    public void setup() throws IOException
+    {
+        JDAImpl api = new JDAImpl(new AuthorizationConfig("token"));
+        first = new GuildImpl(api, 100);
+        second = new GuildImpl(api, 200);
+
+        MemberImpl member = addMember(first, 1, "first");
+        member.setNickname("nick").setJoinDate(JOINED).setBoostDate(JOINED).setPending(true);
+        member.getRoleSet().add(new RoleImpl(50, first));
+        ((UserImpl) member.getUser()).setAvatarId("avatar").setBot(true).setFlags(64);
+        addMember(first, 2, "second");
+        addMember(second, 1, "first");
+
+        file = directory.resolve("shard-0-1.snapshot").toFile();
+        SnapshotCache.write(file, SELF_ID, Arrays.asList(first, second));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        SnapshotCache cache = SnapshotCache.read(file);
+        Assertions.assertNotNull(cache);
+        Assertions.assertEquals(SELF_ID, cache.getSelfUserId());
+        Assertions.assertFalse(cache.isExpired());
+        Assertions.assertEquals(2, cache.size());
+
+        DataArray members = cache.remove(100);
+        Assertions.assertNotNull(members);
+        Assertions.assertEquals(2, members.length());
+        DataObject member = find(members, 1);
+        DataObject user = member.getObject("user");
+        Assertions.assertEquals("first", user.getString("username"));
+        Assertions.assertEquals("0001", user.getString("discriminator"));
+        Assertions.assertEquals("avatar", user.getString("avatar"));
+        Assertions.assertTrue(user.getBoolean("bot"));
+        Assertions.assertEquals(64, user.getInt("public_flags"));
+        Assertions.assertEquals("nick", member.getString("nick"));
+        Assertions.assertEquals(JOINED, OffsetDateTime.parse(member.getString("joined_at")).toInstant().toEpochMilli());
+        Assertions.assertEquals(JOINED, OffsetDateTime.parse(member.getString("premium_since")).toInstant().toEpochMilli());
+        Assertions.assertTrue(member.getBoolean("pending"));
+        Assertions.assertEquals("50", member.getArray("roles").getString(0));
+
+        DataObject other = find(members, 2);
+        Assertions.assertTrue(other.isNull("nick"));
+        Assertions.assertTrue(other.getObject("user").isNull("avatar"));
+        Assertions.assertTrue(other.isNull("joined_at"));
+        Assertions.assertEquals(0, other.getArray("roles").length());
+
+        // each guild is only restored once
+        Assertions.assertNull(cache.remove(100));
+        Assertions.assertEquals(1, cache.remove(200).length());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testExpired() throws IOException
+    {
+        // move the creation time back, it is stored after the magic, the version, and the self user id
+        byte[] content;
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file)))
+        {
+            content = readAll(in);
+        }
+        ByteBuffer.wrap(content).putLong(16, System.currentTimeMillis() - SnapshotCache.MAX_AGE - TimeUnit.MINUTES.toMillis(1));
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file)))
+        {
+            out.write(content);
+        }
+
+        SnapshotCache cache = SnapshotCache.read(file);
+        Assertions.assertNotNull(cache);
+        Assertions.assertTrue(cache.isExpired());
+        Assertions.assertEquals(0, cache.size(), "Members of an expired snapshot must not be read");
+    }
+
+    @Test
+    public void testUnsupportedFormat() throws IOException
+    {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file.toPath())))
+        {
+            out.write(new byte[16]);
+        }
+        Assertions.assertNull(SnapshotCache.read(file));
+    }
+
+    private static MemberImpl addMember(GuildImpl guild, long id, String name)
+    {
+        UserImpl user = new UserImpl(id, guild.getJDA()).setName(name).setDiscriminator("0001");
+        MemberImpl member = new MemberImpl(guild, user);
+        try (UnlockHook hook = guild.getMembersView().writeLock())
+        {
+            guild.getMembersView().getMap().put(id, member);
+        }
+        return member;
+    }
+
+    private static DataObject find(DataArray members, long userId)
+    {
+        for (int i = 0; i < members.length(); i++)
+        {
+            DataObject member = members.getObject(i);
+            if (member.getObject("user").getUnsignedLong("id") == userId)
+                return member;
+        }
+        throw new AssertionError("Missing member " + userId);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) > 0)
+            out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+}
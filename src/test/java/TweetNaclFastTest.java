@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.iwebpp.crypto.TweetNaclFast;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class TweetNaclFastTest
+{
+    // the lengths cover empty messages and both sides of the 64 byte salsa20 block boundaries
+    private static final int[] LENGTHS = { 0, 1, 15, 16, 31, 32, 63, 64, 65, 127, 128, 129, 960 };
+    private static final int HEADER = 12;
+    private static final int OVERHEAD = TweetNaclFast.SecretBox.overheadLength;
+
+    private Random random;
+    private byte[] key;
+
+    @BeforeEach
+    public void setup()
+    {
+        random = new Random(4242);
+        key = bytes(TweetNaclFast.SecretBox.keyLength);
+    }
+
+    @Test
+    public void testSealMatchesBox()
+    {
+        // the same instance is reused for every message, like the audio connection does
+        TweetNaclFast.SecretBox boxer = new TweetNaclFast.SecretBox(key);
+        for (int offset : new int[] { 0, HEADER })
+        {
+            for (int length : LENGTHS)
+            {
+                byte[] message = bytes(length);
+                byte[] nonce = bytes(TweetNaclFast.SecretBox.nonceLength);
+                byte[] expected = new TweetNaclFast.SecretBox(key).box(message, nonce);
+
+                byte[] buffer = new byte[offset + OVERHEAD + length];
+                System.arraycopy(message, 0, buffer, offset + OVERHEAD, length);
+                Assertions.assertEquals(OVERHEAD + length, boxer.sealInPlace(buffer, offset, length, nonce));
+                Assertions.assertArrayEquals(expected, Arrays.copyOfRange(buffer, offset, buffer.length), "Length " + length + " at offset " + offset);
+            }
+        }
+    }
+
+    @Test
+    public void testOpenMatchesOpen()
+    {
+        TweetNaclFast.SecretBox boxer = new TweetNaclFast.SecretBox(key);
+        for (int offset : new int[] { 0, HEADER })
+        {
+            for (int length : LENGTHS)
+            {
+                byte[] message = bytes(length);
+                byte[] nonce = bytes(TweetNaclFast.SecretBox.nonceLength);
+                byte[] box = new TweetNaclFast.SecretBox(key).box(message, nonce);
+
+                byte[] buffer = new byte[offset + box.length];
+                System.arraycopy(box, 0, buffer, offset, box.length);
+                Assertions.assertEquals(length, boxer.openInPlace(buffer, offset, box.length, nonce));
+                Assertions.assertArrayEquals(message, Arrays.copyOfRange(buffer, offset + OVERHEAD, buffer.length), "Length " + length + " at offset " + offset);
+            }
+        }
+    }
+
+    @Test
+    public void testAuthentication()
+    {
+        TweetNaclFast.SecretBox boxer = new TweetNaclFast.SecretBox(key);
+        byte[] nonce = bytes(TweetNaclFast.SecretBox.nonceLength);
+        byte[] box = boxer.box(bytes(100), nonce);
+        for (int index : new int[] { 0, OVERHEAD - 1, OVERHEAD, box.length - 1 })
+        {
+            byte[] buffer = new byte[HEADER + box.length];
+            System.arraycopy(box, 0, buffer, HEADER, box.length);
+            buffer[HEADER + index] ^= 1;
+            byte[] tampered = buffer.clone();
+            Assertions.assertEquals(-1, boxer.openInPlace(buffer, HEADER, box.length, nonce), "Modified byte " + index + " was accepted");
+            Assertions.assertArrayEquals(tampered, buffer, "Buffer was modified by a failed authentication");
+        }
+
+        byte[] otherNonce = nonce.clone();
+        otherNonce[23] ^= 1;
+        Assertions.assertEquals(-1, boxer.openInPlace(box.clone(), 0, box.length, otherNonce));
+        Assertions.assertEquals(-1, boxer.openInPlace(box, 0, OVERHEAD - 1, nonce));
+    }
+
+    @Test
+    public void testNormalLayout()
+    {
+        // xsalsa20_poly1305: the RTP header padded with zeros is the nonce
+        for (int length : LENGTHS)
+        {
+            byte[] packet = packet(length, 0);
+            byte[] nonce = Arrays.copyOf(packet, TweetNaclFast.SecretBox.nonceLength);
+            testLayout(packet, length, nonce);
+        }
+    }
+
+    @Test
+    public void testSuffixLayout()
+    {
+        // xsalsa20_poly1305_suffix: a random 24 byte nonce is appended to the packet
+        for (int length : LENGTHS)
+        {
+            byte[] packet = packet(length, TweetNaclFast.SecretBox.nonceLength);
+            byte[] nonce = Arrays.copyOfRange(packet, packet.length - TweetNaclFast.SecretBox.nonceLength, packet.length);
+            testLayout(packet, length, nonce);
+        }
+    }
+
+    @Test
+    public void testLiteLayout()
+    {
+        // xsalsa20_poly1305_lite: a 4 byte counter is appended to the packet and padded with zeros for the nonce
+        for (int length : LENGTHS)
+        {
+            byte[] packet = packet(length, 4);
+            byte[] nonce = Arrays.copyOf(Arrays.copyOfRange(packet, packet.length - 4, packet.length), TweetNaclFast.SecretBox.nonceLength);
+            testLayout(packet, length, nonce);
+        }
+    }
+
+    private void testLayout(byte[] packet, int length, byte[] nonce)
+    {
+        byte[] message = Arrays.copyOfRange(packet, HEADER + OVERHEAD, HEADER + OVERHEAD + length);
+        byte[] suffix = Arrays.copyOfRange(packet, HEADER + OVERHEAD + length, packet.length);
+
+        // sealed in place, opened by the reference
+        byte[] sealed = packet.clone();
+        Assertions.assertEquals(OVERHEAD + length, new TweetNaclFast.SecretBox(key).sealInPlace(sealed, HEADER, length, nonce));
+        byte[] box = Arrays.copyOfRange(sealed, HEADER, HEADER + OVERHEAD + length);
+        Assertions.assertArrayEquals(message, new TweetNaclFast.SecretBox(key).open(box, nonce));
+        Assertions.assertArrayEquals(Arrays.copyOf(packet, HEADER), Arrays.copyOf(sealed, HEADER), "Header was modified");
+        Assertions.assertArrayEquals(suffix, Arrays.copyOfRange(sealed, HEADER + OVERHEAD + length, sealed.length), "Nonce was modified");
+
+        // sealed by the reference, opened in place
+        byte[] opened = packet.clone();
+        System.arraycopy(new TweetNaclFast.SecretBox(key).box(message, nonce), 0, opened, HEADER, OVERHEAD + length);
+        Assertions.assertEquals(length, new TweetNaclFast.SecretBox(key).openInPlace(opened, HEADER, OVERHEAD + length, nonce));
+        Assertions.assertArrayEquals(message, Arrays.copyOfRange(opened, HEADER + OVERHEAD, HEADER + OVERHEAD + length));
+        Assertions.assertArrayEquals(Arrays.copyOf(packet, HEADER), Arrays.copyOf(opened, HEADER), "Header was modified");
+        Assertions.assertArrayEquals(suffix, Arrays.copyOfRange(opened, HEADER + OVERHEAD + length, opened.length), "Nonce was modified");
+    }
+
+    // header | space for the authenticator | message | nonce
+    private byte[] packet(int length, int nonceLength)
+    {
+        byte[] packet = bytes(HEADER + OVERHEAD + length + nonceLength);
+        Arrays.fill(packet, HEADER, HEADER + OVERHEAD, (byte) 0);
+        return packet;
+    }
+
+    private byte[] bytes(int length)
+    {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.audio.AudioReceiveHandler;
+import net.dv8tion.jda.api.audio.AudioSendHandler;
+import net.dv8tion.jda.api.audio.factory.IAudioSendFactory;
+import net.dv8tion.jda.api.audio.factory.MultiplexedSendFactory;
+import net.dv8tion.jda.api.audio.hooks.ConnectionStatus;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.VoiceChannel;
+import net.dv8tion.jda.api.managers.AudioManager;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.audio.AudioConnection;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.entities.SelfUserImpl;
+import net.dv8tion.jda.internal.entities.UserImpl;
+import net.dv8tion.jda.internal.entities.VoiceChannelImpl;
+import net.dv8tion.jda.internal.managers.AudioManagerImpl;
+import net.dv8tion.jda.internal.managers.DirectAudioControllerImpl;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.SessionConfig;
+import net.dv8tion.jda.internal.utils.UnlockHook;
+import net.dv8tion.jda.internal.utils.config.flags.ConfigFlag;
+
+import javax.annotation.Nonnull;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Opens simulated voice connections against a {@link FakeVoiceServer} and reports how well they keep up.
+ *
+ * <p>Every connection sends one opus frame every 20 milliseconds. The report contains the packet loss and jitter
+ * measured by the server, and the CPU time and allocated memory of the whole JVM divided by the amount of connections.
+ *
+ * <p>Usage: {@code VoiceLoadHarness [connections] [seconds] [mode] [--nio] [--shared] [--multiplexed] [--pcm]}
+ */
+public class VoiceLoadHarness
+{
+    private final FakeVoiceServer server;
+    private final JDAImpl api;
+    private final List<AudioConnection> connections = new ArrayList<>();
+
+    public VoiceLoadHarness(FakeVoiceServer server, Collection<ConfigFlag> audioFlags, IAudioSendFactory sendFactory)
+    {
+        this.server = server;
+
+        EnumSet<ConfigFlag> flags = ConfigFlag.getDefault();
+        flags.remove(ConfigFlag.SHUTDOWN_HOOK);
+        flags.addAll(audioFlags);
+        SessionConfig sessionConfig = new SessionConfig(null, null, FakeVoiceServer.createWebSocketFactory(), null, flags, 900, 250);
+        this.api = new JDAImpl(new AuthorizationConfig("fake-token"), sessionConfig, null, null)
+        {
+            private final DirectAudioControllerImpl controller = new DirectAudioControllerImpl(this)
+            {
+                // there is no main gateway to send voice state updates to
+                @Override
+                public void connect(@Nonnull VoiceChannel channel) {}
+
+                @Override
+                public void disconnect(@Nonnull Guild guild) {}
+
+                @Override
+                public void reconnect(@Nonnull VoiceChannel channel) {}
+            };
+
+            @Override
+            public DirectAudioControllerImpl getDirectAudioController()
+            {
+                return controller;
+            }
+        };
+        api.setSelfUser(new SelfUserImpl(1, api));
+        if (sendFactory != null)
+            api.setAudioSendFactory(sendFactory);
+    }
+
+    /**
+     * Opens a new voice connection in its own guild.
+     *
+     * @param  handler
+     *         The send handler of the connection, or null
+     *
+     * @return The connection
+     */
+    public AudioConnection connect(AudioSendHandler handler)
+    {
+        return connect(handler, null);
+    }
+
+    /**
+     * Opens a new voice connection in its own guild.
+     *
+     * @param  sendHandler
+     *         The send handler of the connection, or null
+     * @param  receiveHandler
+     *         The receive handler of the connection, or null
+     *
+     * @return The connection
+     */
+    public AudioConnection connect(AudioSendHandler sendHandler, AudioReceiveHandler receiveHandler)
+    {
+        long id = 1000 + connections.size();
+        TestGuild guild = new TestGuild(api, id);
+        VoiceChannelImpl channel = new VoiceChannelImpl(id, guild);
+        guild.manager.setSendingHandler(sendHandler);
+        guild.manager.setReceivingHandler(receiveHandler);
+
+        AudioConnection connection = new AudioConnection(guild.manager, server.getEndpoint(), "session-" + id, "token-" + id, channel);
+        guild.manager.setAudioConnection(connection);
+        connection.startConnection();
+        connections.add(connection);
+        return connection;
+    }
+
+    /**
+     * Adds a user to the cache, received audio is only handled for known users.
+     *
+     * @param  id
+     *         The id of the user
+     *
+     * @return The user
+     */
+    public User addUser(long id)
+    {
+        UserImpl user = new UserImpl(id, api);
+        user.setName("User " + id);
+        try (UnlockHook hook = api.getUsersView().writeLock())
+        {
+            api.getUsersView().getMap().put(id, user);
+        }
+        return user;
+    }
+
+    public List<AudioConnection> getConnections()
+    {
+        return connections;
+    }
+
+    public void shutdown()
+    {
+        for (AudioConnection connection : connections)
+            connection.close(ConnectionStatus.NOT_CONNECTED);
+        connections.clear();
+        api.getAudioLifeCyclePool().shutdownNow();
+    }
+
+    /**
+     * Waits until all connections finished the handshake.
+     *
+     * @param  timeout
+     *         The maximum time to wait in milliseconds
+     *
+     * @return True, if all connections are connected
+     */
+    public boolean awaitConnected(long timeout) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (System.currentTimeMillis() < deadline)
+        {
+            if (connections.stream().allMatch(c -> c.getWebSocket() != null && isConnected(c)))
+                return true;
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private static boolean isConnected(AudioConnection connection)
+    {
+        AudioManager manager = connection.getGuild().getAudioManager();
+        return manager.getConnectionStatus() == ConnectionStatus.CONNECTED;
+    }
+
+    /**
+     * Send handler which provides an opus frame every time it is polled.
+     */
+    public static class FrameSource implements AudioSendHandler
+    {
+        // 20ms of opus silence, the same frame discord clients send
+        private static final byte[] OPUS_FRAME = {(byte) 0xF8, (byte) 0xFF, (byte) 0xFE};
+
+        private final boolean pcm;
+        private final ByteBuffer frame;
+
+        public FrameSource(boolean pcm)
+        {
+            this.pcm = pcm;
+            this.frame = pcm ? ByteBuffer.allocate(3840) : ByteBuffer.wrap(OPUS_FRAME);
+        }
+
+        @Override
+        public boolean canProvide()
+        {
+            return true;
+        }
+
+        @Override
+        public ByteBuffer provide20MsAudio()
+        {
+            return frame.duplicate();
+        }
+
+        @Override
+        public boolean isOpus()
+        {
+            return !pcm;
+        }
+    }
+
+    private static class TestGuild extends GuildImpl
+    {
+        private final AudioManagerImpl manager;
+
+        private TestGuild(JDAImpl api, long id)
+        {
+            super(api, id);
+            this.manager = new AudioManagerImpl(this);
+        }
+
+        @Nonnull
+        @Override
+        public AudioManager getAudioManager()
+        {
+            return manager;
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        String mode = args.length > 2 && !args[2].startsWith("--") ? args[2] : "xsalsa20_poly1305_lite";
+        List<String> options = new ArrayList<>();
+        for (String arg : args)
+        {
+            if (arg.startsWith("--"))
+                options.add(arg);
+        }
+        EnumSet<ConfigFlag> audioFlags = EnumSet.noneOf(ConfigFlag.class);
+        if (options.contains("--nio"))
+            audioFlags.add(ConfigFlag.NIO_AUDIO);
+        if (options.contains("--shared"))
+            audioFlags.add(ConfigFlag.SHARED_VOICE_SOCKET);
+        boolean pcm = options.contains("--pcm");
+        MultiplexedSendFactory multiplexed = options.contains("--multiplexed") ? new MultiplexedSendFactory() : null;
+
+        com.sun.management.OperatingSystemMXBean os = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        try (FakeVoiceServer server = new FakeVoiceServer(mode))
+        {
+            VoiceLoadHarness harness = new VoiceLoadHarness(server, audioFlags, multiplexed);
+            for (int i = 0; i < count; i++)
+                harness.connect(new FrameSource(pcm));
+            if (!harness.awaitConnected(30000))
+                System.out.println("Not all connections finished the handshake!");
+            System.out.printf("%d connections ready (mode=%s, options=%s), measuring for %d seconds%n", count, mode, options, seconds);
+
+            long cpuStart = os.getProcessCpuTime();
+            long allocStart = totalAllocatedBytes(threads);
+            long wallStart = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            long wall = System.nanoTime() - wallStart;
+            long cpu = os.getProcessCpuTime() - cpuStart;
+            long allocated = totalAllocatedBytes(threads) - allocStart;
+
+            long packets = 0, lost = 0, failures = 0;
+            double jitter = 0, maxJitter = 0, maxInterval = 0;
+            for (FakeVoiceServer.Session session : server.getSessions().values())
+            {
+                packets += session.getPacketsReceived();
+                lost += session.getPacketsLost();
+                failures += session.getDecryptFailures();
+                jitter += session.getJitterMillis();
+                maxJitter = Math.max(maxJitter, session.getJitterMillis());
+                maxInterval = Math.max(maxInterval, session.getMaxIntervalMillis());
+            }
+            int sessions = Math.max(1, server.getSessions().size());
+
+            System.out.printf(Locale.ROOT, "packets received: %d (%.1f/s per connection)%n", packets, packets / (wall / 1e9) / sessions);
+            System.out.printf(Locale.ROOT, "packets lost:     %d (%.3f%%)%n", lost, 100.0 * lost / Math.max(1, packets + lost));
+            System.out.printf(Locale.ROOT, "decrypt failures: %d%n", failures);
+            System.out.printf(Locale.ROOT, "send jitter:      %.3f ms average, %.3f ms worst, %.1f ms longest gap%n", jitter / sessions, maxJitter, maxInterval);
+            System.out.printf(Locale.ROOT, "cpu:              %.2f%% of one core per connection%n", 100.0 * cpu / wall / count);
+            System.out.printf(Locale.ROOT, "allocations:      %.1f KB/s per connection%n", allocated / 1024.0 / (wall / 1e9) / count);
+
+            harness.shutdown();
+            if (multiplexed != null)
+                multiplexed.shutdown();
+        }
+    }
+
+    private static long totalAllocatedBytes(com.sun.management.ThreadMXBean threads)
+    {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+        {
+            if (bytes > 0)
+                total += bytes;
+        }
+        return total;
+    }
+}